@@ -0,0 +1,58 @@
+package com.sdklite.aapt;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of {@link ApkFile#classes()}, only the bundled APK is measured by
+ * default, the larger APKs with dex are measured with
+ * {@code -p apkSize=medium,huge -Daapt.benchmark.data=<dir>}
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ApkFileBenchmark {
+
+    @Param({ BenchmarkData.SMALL })
+    public String apkSize;
+
+    private ApkFile apk;
+
+    @Setup
+    public void setup() throws IOException {
+        this.apk = new ApkFile(BenchmarkData.getApk(this.apkSize));
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        this.apk.close();
+    }
+
+    @Benchmark
+    public void classes(final Blackhole bh) {
+        for (final String name : this.apk.classes()) {
+            bh.consume(name);
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.sdklite.io.IOUtil;
+
+/**
+ * The inputs of benchmarks in three scales: {@code small}, {@code medium} and
+ * {@code huge}.
+ *
+ * The symbols, XML and resource tables are synthesized for each scale, the
+ * larger inputs are read from {@code <aapt.benchmark.data>/<size>/} if the
+ * system property is specified. The {@code small} APK is the bundled
+ * {@code src/test/data/app.apk}, the larger APKs must be specified by the
+ * system property as the generated ones have no dex
+ *
+ * @author johnsonlee
+ *
+ */
+final class BenchmarkData {
+
+    static final String SMALL = "small";
+
+    static final String MEDIUM = "medium";
+
+    static final String HUGE = "huge";
+
+    private static final String APP_APK = "src" + File.separator + "test" + File.separator + "data" + File.separator + "app.apk";
+
+    private static final long SEED = 0x5eed;
+
+    private static final File TMP_DIR = new File(System.getProperty("java.io.tmpdir"), "aapt-benchmark");
+
+    /**
+     * Returns the number of symbols or XML elements of the specified scale
+     */
+    static int scaleOf(final String size) {
+        if (SMALL.equals(size)) {
+            return 100;
+        }
+
+        if (MEDIUM.equals(size)) {
+            return 10000;
+        }
+
+        if (HUGE.equals(size)) {
+            return 500000;
+        }
+
+        throw new IllegalArgumentException("Unknown size " + size);
+    }
+
+    static File getApk(final String size) {
+        if (SMALL.equals(size)) {
+            return new File(APP_APK);
+        }
+
+        final File external = getExternal(size, "app.apk");
+        if (null == external) {
+            throw new IllegalStateException("The " + size + " APK requires -Daapt.benchmark.data");
+        }
+
+        return external;
+    }
+
+    /**
+     * Returns the resource table of the specified scale, the bundled one for
+     * {@code small} and the generated one of 1 MB and 100 MB for the others
+     */
+    static File getResourceTable(final String size) throws IOException {
+        final File external = getExternal(size, Aapt.RESOURCES_ARSC);
+        if (null != external) {
+            return external;
+        }
+
+        final File arsc = new File(TMP_DIR, size + File.separator + Aapt.RESOURCES_ARSC);
+        if (arsc.exists()) {
+            return arsc;
+        }
+
+        if (!SMALL.equals(size)) {
+            AssetGenerator.ofSize(SEED, MEDIUM.equals(size) ? 1L << 20 : 100L << 20).writeResourceTable(mkdirs(arsc));
+            return arsc;
+        }
+
+        final ZipFile apk = new ZipFile(APP_APK);
+
+        try {
+            final ZipEntry entry = apk.getEntry(Aapt.RESOURCES_ARSC);
+            final InputStream in = apk.getInputStream(entry);
+            final OutputStream out = new FileOutputStream(mkdirs(arsc));
+
+            try {
+                IOUtil.copy(in, out);
+            } finally {
+                IOUtil.closeQuietly(in);
+                IOUtil.closeQuietly(out);
+            }
+        } finally {
+            apk.close();
+        }
+
+        return arsc;
+    }
+
+    /**
+     * Returns a binary XML with nested elements of the specified scale
+     */
+    static File getXml(final String size) throws IOException {
+        final File xml = new File(TMP_DIR, size + File.separator + "layout.xml");
+        if (xml.exists()) {
+            return xml;
+        }
+
+        final File txt = new File(TMP_DIR, size + File.separator + "layout.txt");
+        final PrintWriter out = new PrintWriter(mkdirs(txt), "UTF-8");
+
+        try {
+            final int n = scaleOf(size);
+            out.println("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+            out.println("<root>");
+
+            for (int i = 0; i < n; i += 4) {
+                out.printf("<group id=\"g%d\">", i);
+                out.printf("<item name=\"item%d\" value=\"%d\"><item name=\"item%d\" enabled=\"true\"/></item>", i, i, i + 1);
+                out.printf("<item name=\"item%d\">text %d</item>", i + 2, i);
+                out.println("</group>");
+            }
+
+            out.println("</root>");
+        } finally {
+            out.close();
+        }
+
+        new XmlCompiler(null).compile(txt, xml);
+        return xml;
+    }
+
+    /**
+     * Returns a text symbols file with entries of the specified scale
+     */
+    static File getSymbols(final String size) throws IOException {
+        final File r = new File(TMP_DIR, size + File.separator + "R.txt");
+        if (r.exists()) {
+            return r;
+        }
+
+        final String[] types = { "attr", "color", "dimen", "drawable", "id", "layout", "string", "style" };
+        final PrintWriter out = new PrintWriter(mkdirs(r), "UTF-8");
+
+        try {
+            final int n = scaleOf(size);
+            for (int i = 0; i < n; i++) {
+                final int type = i % types.length;
+                out.printf("int %s %s_%d 0x7f%02x%04x", types[type], types[type], i, type + 1, (i / types.length) & 0xffff).println();
+            }
+        } finally {
+            out.close();
+        }
+
+        return r;
+    }
+
+    /**
+     * Returns the symbols of the entries in the specified resource table,
+     * every second entry is skipped so that purging has work to do
+     */
+    static Symbols toSymbols(final ResourceTable table) throws IOException {
+        final File r = File.createTempFile("symbols", ".txt");
+        final PrintWriter out = new PrintWriter(r, "UTF-8");
+
+        try {
+            int i = 0;
+            final ResourceTable.Package pkg = table.getPackage();
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                for (final Map.Entry<ResourceName, Integer> entry : spec.entries().entrySet()) {
+                    if (0 == (i++ & 1)) {
+                        out.printf("int %s %s 0x%08x", entry.getKey().typeName, entry.getKey().name, Internal.makeId(pkg.getId(), spec.id, entry.getValue())).println();
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        try {
+            return new SymbolParser().parse(r);
+        } finally {
+            r.delete();
+        }
+    }
+
+    private static File getExternal(final String size, final String name) {
+        final String dir = System.getProperty("aapt.benchmark.data");
+        if (null == dir || SMALL.equals(size)) {
+            return null;
+        }
+
+        final File file = new File(dir, size + File.separator + name);
+        if (!file.exists()) {
+            throw new IllegalStateException(file + " not found");
+        }
+
+        return file;
+    }
+
+    private static File mkdirs(final File file) {
+        file.getParentFile().mkdirs();
+        return file;
+    }
+
+    private BenchmarkData() {
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.sdklite.aapt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link ChunkOutputStream}
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkOutputStreamBenchmark {
+
+    @Param({ BenchmarkData.SMALL, BenchmarkData.MEDIUM, BenchmarkData.HUGE })
+    public String size;
+
+    private ResourceTable arsc;
+
+    private Xml xml;
+
+    @Setup
+    public void setup() throws IOException {
+        final ChunkParser parser = new ChunkParser();
+        this.arsc = parser.parse(BenchmarkData.getResourceTable(this.size));
+        this.xml = parser.parse(BenchmarkData.getXml(this.size));
+    }
+
+    @Benchmark
+    public int writeResourceTable() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(this.arsc.getSize());
+        final ChunkOutputStream cos = new ChunkOutputStream(out);
+
+        try {
+            cos.write(this.arsc);
+        } finally {
+            cos.close();
+        }
+
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeXml() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(this.xml.getSize());
+        final ChunkOutputStream cos = new ChunkOutputStream(out);
+
+        try {
+            cos.write(this.xml);
+        } finally {
+            cos.close();
+        }
+
+        return out.size();
+    }
+
+}
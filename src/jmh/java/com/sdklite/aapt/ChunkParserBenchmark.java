@@ -0,0 +1,56 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link ChunkParser#parse(File)}
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkParserBenchmark {
+
+    @Param({ BenchmarkData.SMALL, BenchmarkData.MEDIUM, BenchmarkData.HUGE })
+    public String size;
+
+    private File arsc;
+
+    private File xml;
+
+    @Setup
+    public void setup() throws IOException {
+        this.arsc = BenchmarkData.getResourceTable(this.size);
+        this.xml = BenchmarkData.getXml(this.size);
+    }
+
+    @Benchmark
+    public ResourceTable parseResourceTable() throws IOException {
+        return new ChunkParser().parse(this.arsc);
+    }
+
+    @Benchmark
+    public Xml parseXml() throws IOException {
+        return new ChunkParser().parse(this.xml);
+    }
+
+}
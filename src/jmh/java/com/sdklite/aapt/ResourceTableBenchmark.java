@@ -0,0 +1,61 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link ResourceTable#purge(Symbols)}, the table is parsed
+ * again before each invocation since purging is destructive
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ResourceTableBenchmark {
+
+    @Param({ BenchmarkData.SMALL, BenchmarkData.MEDIUM, BenchmarkData.HUGE })
+    public String size;
+
+    private File file;
+
+    private Symbols symbols;
+
+    private ResourceTable arsc;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        this.file = BenchmarkData.getResourceTable(this.size);
+        this.symbols = BenchmarkData.toSymbols(new ChunkParser().<ResourceTable>parse(this.file));
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        this.arsc = new ChunkParser().parse(this.file);
+    }
+
+    @Benchmark
+    public ResourceTable purge() {
+        this.arsc.purge(this.symbols);
+        return this.arsc;
+    }
+
+}
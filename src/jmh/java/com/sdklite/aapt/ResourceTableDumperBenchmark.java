@@ -0,0 +1,84 @@
+package com.sdklite.aapt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link ResourceTableDumper} against
+ * {@link ResourceTableVisitor}, the output is discarded
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResourceTableDumperBenchmark {
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    };
+
+    @Param({ BenchmarkData.SMALL, BenchmarkData.MEDIUM })
+    public String size;
+
+    private ResourceTable arsc;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() throws IOException {
+        this.arsc = new ChunkParser().parse(BenchmarkData.getResourceTable(this.size));
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void teardown() {
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public void visit() {
+        this.arsc.accept(new ResourceTableVisitor(NULL, true));
+    }
+
+    @Benchmark
+    public void dump() throws IOException {
+        new ResourceTableDumper().dump(this.arsc, NULL);
+    }
+
+    @Benchmark
+    public void dumpConcurrently() throws IOException {
+        final Writer out = new OutputStreamWriter(NULL);
+        new ResourceTableDumper().dump(this.arsc, out, this.executor);
+        out.flush();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of {@link SymbolParser}, {@link Symbols#compact()} and
+ * {@link Aapt#generateR(OutputStream, String, Symbols)}
+ *
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SymbolsBenchmark {
+
+    /**
+     * The per-invocation copy of symbols, it is set up only for
+     * {@link SymbolsBenchmark#compact(Compaction)}, so that the other
+     * benchmarks are not paced by the invocation level fixture
+     */
+    @State(Scope.Thread)
+    public static class Compaction {
+
+        private Symbols copy;
+
+        @Setup(Level.Invocation)
+        public void setup(final SymbolsBenchmark benchmark) {
+            // compacting is destructive
+            this.copy = benchmark.symbols.clone();
+        }
+
+    }
+
+    @Param({ BenchmarkData.SMALL, BenchmarkData.MEDIUM, BenchmarkData.HUGE })
+    public String size;
+
+    private File file;
+
+    private Symbols symbols;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        this.file = BenchmarkData.getSymbols(this.size);
+        this.symbols = new SymbolParser().parse(this.file);
+    }
+
+    @Benchmark
+    public Symbols parse() throws IOException {
+        return new SymbolParser().parse(this.file);
+    }
+
+    @Benchmark
+    public Symbols compact(final Compaction compaction) {
+        return compaction.copy.compact();
+    }
+
+    @Benchmark
+    public void generateR(final Blackhole bh) throws IOException {
+        Aapt.generateR(new OutputStream() {
+
+            @Override
+            public void write(final int b) {
+                bh.consume(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                bh.consume(len);
+            }
+
+        }, "com.example", this.symbols);
+    }
+
+}
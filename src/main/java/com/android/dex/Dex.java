@@ -23,15 +23,18 @@ import com.android.dex.util.ByteOutput;
 import com.android.dex.util.FileUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
@@ -66,6 +69,7 @@ public final class Dex {
     private final ProtoIdTable protoIds = new ProtoIdTable();
     private final FieldIdTable fieldIds = new FieldIdTable();
     private final MethodIdTable methodIds = new MethodIdTable();
+    private volatile String[] stringCache;
 
     /**
      * Creates a new dex that reads from {@code data}. It is an error to modify
@@ -110,7 +114,7 @@ public final class Dex {
             try {
                 if (entry != null) {
                     try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                        loadFrom(inputStream);
+                        loadFrom(inputStream, entry.getSize());
                     }
                 } else {
                     throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME + " in " + file);
@@ -120,7 +124,7 @@ public final class Dex {
             }
         } else if (file.getName().endsWith(".dex")) {
             try (InputStream inputStream = new FileInputStream(file)) {
-                loadFrom(inputStream);
+                loadFrom(inputStream, file.length());
             }
         } else {
             throw new DexException("unknown output extension: " + file);
@@ -152,6 +156,70 @@ public final class Dex {
         return new Dex(data);
     }
 
+    /**
+     * Creates a new dex by memory mapping {@code file} read-only. The file is
+     * not copied onto the heap, all sections read directly from the mapped
+     * buffer. The returned dex can't be written, e.g. {@link #writeHashes()}
+     * and {@link #appendSection(int, String)} are unsupported.
+     */
+    public static Dex map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            // the mapping remains valid after the channel is closed
+            return create(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Creates a new dex from {@code entry} in {@code zipFile}. If the
+     * uncompressed size of the entry is known, the entry is read into an
+     * exactly sized buffer without intermediate copies.
+     */
+    public static Dex create(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            long size = entry.getSize();
+            if (size < 0) {
+                return new Dex(in);
+            }
+            return create(ByteBuffer.wrap(readFully(in, size)));
+        }
+    }
+
+    /**
+     * Reads exactly {@code size} bytes from {@code in}.
+     */
+    private static byte[] readFully(InputStream in, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new DexException("dex too large: " + size + " bytes");
+        }
+
+        byte[] result = new byte[(int) size];
+        int offset = 0;
+        while (offset < result.length) {
+            int count = in.read(result, offset, result.length - offset);
+            if (count == -1) {
+                throw new EOFException("Expected " + size + " bytes, but " + offset + " read");
+            }
+            offset += count;
+        }
+        return result;
+    }
+
+    /**
+     * Reads {@code size} bytes if it's known, otherwise the whole stream.
+     * It is the caller's responsibility to close {@code in}.
+     */
+    private void loadFrom(InputStream in, long size) throws IOException {
+        if (size < 0) {
+            loadFrom(in);
+            return;
+        }
+
+        this.data = ByteBuffer.wrap(readFully(in, size));
+        this.data.order(ByteOrder.LITTLE_ENDIAN);
+        this.tableOfContents.readFrom(this);
+    }
+
     /**
      * It is the caller's responsibility to close {@code in}.
      */
@@ -354,12 +422,144 @@ public final class Dex {
         return data.getInt(position);  // nameIndex
     }
 
+    /**
+     * Enables or disables the cache of decoded strings. When enabled, each
+     * string returned by {@link #strings()}, {@link #typeNames()} and
+     * {@link ClassDef#getDescriptor()} is decoded at most once. The cache is
+     * filled lazily and disabled by default.
+     */
+    public void setStringCacheEnabled(boolean enabled) {
+        if (!enabled) {
+            stringCache = null;
+        } else if (stringCache == null) {
+            stringCache = new String[tableOfContents.stringIds.size];
+        }
+    }
+
+    public boolean isStringCacheEnabled() {
+        return stringCache != null;
+    }
+
+    /**
+     * Returns the string index of {@code s}, or a negative value as
+     * {@link Collections#binarySearch(List, Object)} does if not found. The
+     * search compares the encoded bytes without decoding any strings.
+     */
     public int findStringIndex(String s) {
-        return Collections.binarySearch(strings, s);
+        int low = 0;
+        int high = tableOfContents.stringIds.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(mid, s);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
     }
 
+    /**
+     * Returns the type index of {@code descriptor}, or a negative value as
+     * {@link Collections#binarySearch(List, Object)} does if not found. The
+     * search compares the encoded bytes without decoding any strings.
+     */
     public int findTypeIndex(String descriptor) {
-        return Collections.binarySearch(typeNames, descriptor);
+        int low = 0;
+        int high = tableOfContents.typeIds.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(descriptorIndexFromTypeIndex(mid), descriptor);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares the string at {@code stringIndex} with {@code s} without
+     * decoding it.
+     */
+    public int compareString(int stringIndex, String s) {
+        checkBounds(stringIndex, tableOfContents.stringIds.size);
+        int position = data.getInt(tableOfContents.stringIds.off + (stringIndex * SizeOf.STRING_ID_ITEM));
+        while ((data.get(position++) & 0x80) != 0) {
+            // skip the uleb128 utf16_size
+        }
+        try {
+            return Mutf8.compare(data, position, s);
+        } catch (UTFDataFormatException e) {
+            throw new DexException(e);
+        }
+    }
+
+    /**
+     * Decodes the string at {@code stringIndex}, reading the buffer with
+     * absolute positions instead of opening a section.
+     */
+    private String decodeString(int stringIndex) {
+        ByteInput in = openString(stringIndex);
+        int expectedLength = Leb128.readUnsignedLeb128(in);
+        try {
+            String result = Mutf8.decode(in, new char[expectedLength]);
+            if (result.length() != expectedLength) {
+                throw new DexException("Declared length " + expectedLength
+                        + " doesn't match decoded length of " + result.length());
+            }
+            return result;
+        } catch (UTFDataFormatException e) {
+            throw new DexException(e);
+        }
+    }
+
+    /**
+     * Decodes the string at {@code stringIndex} into {@code out} without
+     * allocating a string, so that the caller can reuse {@code out} across
+     * strings. Nothing is decoded if {@code out} is shorter than the string.
+     *
+     * @return the length of the string in UTF-16 code units.
+     */
+    public int decodeString(int stringIndex, char[] out) {
+        checkBounds(stringIndex, tableOfContents.stringIds.size);
+        ByteInput in = openString(stringIndex);
+        int expectedLength = Leb128.readUnsignedLeb128(in);
+        if (expectedLength > out.length) {
+            return expectedLength;
+        }
+        try {
+            int length = Mutf8.decodeChars(in, out);
+            if (length != expectedLength) {
+                throw new DexException("Declared length " + expectedLength
+                        + " doesn't match decoded length of " + length);
+            }
+            return length;
+        } catch (UTFDataFormatException e) {
+            throw new DexException(e);
+        }
+    }
+
+    /**
+     * Returns the input of the string data at {@code stringIndex}, reading
+     * the buffer with absolute positions.
+     */
+    private ByteInput openString(int stringIndex) {
+        final int offset = data.getInt(tableOfContents.stringIds.off + (stringIndex * SizeOf.STRING_ID_ITEM));
+        return new ByteInput() {
+            private int position = offset;
+
+            @Override
+            public byte readByte() {
+                return data.get(position++);
+            }
+        };
     }
 
     public int findFieldIndex(FieldId fieldId) {
@@ -903,8 +1103,16 @@ public final class Dex {
     private final class StringTable extends AbstractList<String> implements RandomAccess {
         @Override public String get(int index) {
             checkBounds(index, tableOfContents.stringIds.size);
-            return open(tableOfContents.stringIds.off + (index * SizeOf.STRING_ID_ITEM))
-                    .readString();
+            String[] cache = stringCache;
+            if (cache == null) {
+                return decodeString(index);
+            }
+            // racy but benign, strings are immutable
+            String result = cache[index];
+            if (result == null) {
+                result = cache[index] = decodeString(index);
+            }
+            return result;
         }
         @Override public int size() {
             return tableOfContents.stringIds.size;
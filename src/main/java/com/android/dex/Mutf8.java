@@ -18,6 +18,7 @@ package com.android.dex;
 
 import com.android.dex.util.ByteInput;
 import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
 
 /**
  * Modified UTF-8 as described in the dex file format spec.
@@ -32,11 +33,19 @@ public final class Mutf8 {
      * encountered. Returns a new string containing the decoded characters.
      */
     public static String decode(ByteInput in, char[] out) throws UTFDataFormatException {
+        return new String(out, 0, decodeChars(in, out));
+    }
+
+    /**
+     * Decodes bytes from {@code in} into {@code out} until a delimiter 0x00 is
+     * encountered. Returns the number of decoded characters.
+     */
+    static int decodeChars(ByteInput in, char[] out) throws UTFDataFormatException {
         int s = 0;
         while (true) {
             char a = (char) (in.readByte() & 0xff);
             if (a == 0) {
-                return new String(out, 0, s);
+                return s;
             }
             out[s] = a;
             if (a < '\u0080') {
@@ -60,6 +69,50 @@ public final class Mutf8 {
         }
     }
 
+    /**
+     * Compares the zero terminated modified UTF-8 string starting at
+     * {@code offset} in {@code data} with {@code s} by UTF-16 code unit values,
+     * the same order as {@link String#compareTo(String)} and the sort order of
+     * dex string ids. No string is decoded and nothing is allocated.
+     *
+     * @return a negative integer, zero, or a positive integer as the encoded
+     *     string is less than, equal to, or greater than {@code s}.
+     */
+    public static int compare(ByteBuffer data, int offset, String s) throws UTFDataFormatException {
+        final int length = s.length();
+        for (int i = 0; ; i++) {
+            int a = data.get(offset++) & 0xff;
+            if (a == 0) {
+                return i < length ? -1 : 0;
+            }
+            char ch;
+            if (a < 0x80) {
+                ch = (char) a;
+            } else if ((a & 0xe0) == 0xc0) {
+                int b = data.get(offset++) & 0xff;
+                if ((b & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("bad second byte");
+                }
+                ch = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            } else if ((a & 0xf0) == 0xe0) {
+                int b = data.get(offset++) & 0xff;
+                int c = data.get(offset++) & 0xff;
+                if (((b & 0xC0) != 0x80) || ((c & 0xC0) != 0x80)) {
+                    throw new UTFDataFormatException("bad second or third byte");
+                }
+                ch = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+            } else {
+                throw new UTFDataFormatException("bad byte");
+            }
+            if (i >= length) {
+                return 1;
+            }
+            if (ch != s.charAt(i)) {
+                return ch - s.charAt(i);
+            }
+        }
+    }
+
     /**
      * Returns the number of bytes the modified UTF8 representation of 's' would take.
      */
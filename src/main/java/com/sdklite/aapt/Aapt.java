@@ -1,20 +1,27 @@
 package com.sdklite.aapt;
 
-import static com.sdklite.aapt.Internal.find;
-
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-
-import com.sdklite.aapt.Internal.Filter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class represents the Android Assets Packaging Tool
@@ -159,85 +166,7 @@ public class Aapt {
      *             if parsing error
      */
     public static boolean setApplicationDebuggable(final File manifest) throws IOException {
-        final AssetEditor parser = new AssetEditor(manifest);
-
-        StringPool pool = null;
-
-        try {
-            final ChunkHeader header = parser.parseChunkHeader();
-            if (ChunkType.XML != header.type) {
-                throw new AaptException(String.format("XML chunk was expected, but 0x%04x found", header.type));
-            }
-
-            while (parser.hasRemaining()) {
-                final ChunkHeader chunk = parser.parseChunkHeader();
-
-                switch (chunk.type) {
-                case ChunkType.STRING_POOL:
-                    parser.seek(parser.tell() - ChunkHeader.MIN_HEADER_SIZE);
-                    pool = parser.parseStringPool();
-                    break;
-                case ChunkType.XML_CDATA:
-                    parser.skip(chunk.size - ChunkHeader.MIN_HEADER_SIZE);
-                    break;
-                case ChunkType.XML_END_ELEMENT:
-                    parser.skip(chunk.size - ChunkHeader.MIN_HEADER_SIZE);
-                    break;
-                case ChunkType.XML_END_NAMESPACE:
-                    parser.skip(chunk.size - ChunkHeader.MIN_HEADER_SIZE);
-                    break;
-                case ChunkType.XML_RESOURCE_MAP:
-                    parser.skip(chunk.size - ChunkHeader.MIN_HEADER_SIZE);
-                    break;
-                case ChunkType.XML_START_ELEMENT: {
-                    final long p = parser.tell();
-
-                    parser.skip(4); // lineNumber
-                    parser.skip(4); // commentIndex
-                    parser.skip(4); // namespaceUri
-
-                    if ("application".equals(pool.getStringAt(parser.readInt()))) {
-                        parser.skip(2); // attributeStart
-                        parser.skip(2); // attributeSize
-
-                        final short attributeCount = parser.readShort();
-
-                        parser.skip(2); // idIndex
-                        parser.skip(2); // classIndex
-                        parser.skip(2); // styleIndex
-
-                        for (int i = 0; i < attributeCount; i++) {
-                            parser.skip(4); // namespace
-
-                            if ("debuggable".equals(pool.getStringAt(parser.readInt()))) {
-                                parser.skip(4); // rawValue
-                                parser.skip(2); // typedValue.size
-                                parser.skip(1); // typedValue.res0
-                                parser.skip(1); // typedValue.dataType
-                                parser.writeInt(0xffffffff); // true
-                                return true;
-                            } else {
-                                parser.skip(4); // rawValue
-                                parser.skip(8); // typedValue
-                            }
-                        }
-                    }
-
-                    parser.seek(p - ChunkHeader.MIN_HEADER_SIZE + chunk.size);
-                    break;
-                }
-                case ChunkType.XML_START_NAMESPACE:
-                    parser.skip(chunk.size - ChunkHeader.MIN_HEADER_SIZE);
-                    break;
-                default:
-                    throw new AaptException(String.format("Unexpected chunk type 0x%04x", chunk.type));
-                }
-            }
-        } finally {
-            parser.close();
-        }
-
-        return false;
+        return new XmlPatcher().set("manifest/application", "debuggable", ValueType.INT_BOOLEAN, 0xffffffff).apply(manifest).isEmpty();
     }
 
     private final File file;
@@ -284,59 +213,198 @@ public class Aapt {
     }
 
     /**
-     * Delete the resource files related to the specified symbols
+     * Delete the resource files related to the specified symbols, the type
+     * names and entry names of symbols are indexed before walking the
+     * {@code res} folder, and the files are deleted in parallel batches
      * 
      * @param symbols
      *            The resource symbols
      * @return deleted resource keys
      */
     public Set<String> deleteResources(final Symbols symbols) {
-        final Set<String> resources = new HashSet<String>();
-        final File resDir = new File(this.file, "res");
-        final File[] typeDirs = resDir.listFiles();
-
-        if (null != typeDirs) {
-            for (final File typeDir : typeDirs) {
-                final File[] entryFiles = typeDir.listFiles();
-                if (null == entryFiles || entryFiles.length <= 0) {
-                    typeDir.delete();
-                    continue;
+        final Set<String> typeNames = new HashSet<String>();
+        final Set<String> entryNames = new HashSet<String>();
+
+        for (final Symbols.Entry entry : symbols.entries.values()) {
+            typeNames.add(entry.type.name);
+            entryNames.add(entry.name);
+        }
+
+        final Path resDir = new File(this.file, "res").toPath();
+        if (!Files.isDirectory(resDir)) {
+            return new HashSet<String>();
+        }
+
+        final int nThreads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+
+        try {
+            final ResourceDeleter deleter = new ResourceDeleter(resDir, typeNames, entryNames, executor);
+            Files.walkFileTree(resDir, EnumSet.noneOf(FileVisitOption.class), 2, deleter);
+            return deleter.finish();
+        } catch (final IOException e) {
+            throw new AaptException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The file visitor for resource deleting
+     * 
+     * @author johnsonlee
+     *
+     */
+    private static final class ResourceDeleter extends SimpleFileVisitor<Path> {
+
+        private static final int BATCH_SIZE = 256;
+
+        private final Path resDir;
+
+        private final Set<String> typeNames;
+
+        private final Set<String> entryNames;
+
+        private final ExecutorService executor;
+
+        private final Set<String> resources = new HashSet<String>();
+
+        private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        private final List<Path> typeDirs = new ArrayList<Path>();
+
+        private List<Path> batch = new ArrayList<Path>(BATCH_SIZE);
+
+        private boolean typeMatched;
+
+        ResourceDeleter(final Path resDir, final Set<String> typeNames, final Set<String> entryNames, final ExecutorService executor) {
+            this.resDir = resDir;
+            this.typeNames = typeNames;
+            this.entryNames = entryNames;
+            this.executor = executor;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+            if (!dir.equals(this.resDir)) {
+                this.typeMatched = hasPrefix(dir.getFileName().toString());
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            final Path typeDir = file.getParent();
+
+            if (typeDir.equals(this.resDir)) {
+                // not a type folder
+                this.typeDirs.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            final String name = file.getFileName().toString();
+            if (!this.typeMatched || hasEntry(name)) {
+                this.resources.add("res" + File.separator + typeDir.getFileName() + File.separator + name);
+            }
+
+            this.batch.add(file);
+            if (this.batch.size() >= BATCH_SIZE) {
+                submit();
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir, final IOException e) {
+            if (!dir.equals(this.resDir)) {
+                this.typeDirs.add(dir);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Waits for all of the deletions and then deletes the type folders
+         * 
+         * @return deleted resource keys
+         */
+        Set<String> finish() {
+            submit();
+
+            try {
+                for (final Future<?> future : this.futures) {
+                    future.get();
                 }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AaptException(e);
+            } catch (final ExecutionException e) {
+                throw new AaptException(e.getCause());
+            }
 
-                final Symbols.Entry entry = find(symbols.entries.values(), new Filter<Symbols.Entry>() {
-                    @Override
-                    public boolean accept(final Symbols.Entry it) {
-                        return typeDir.getName().startsWith(it.type.name);
-                    }
-                });
+            delete(this.typeDirs); // it shall be succeeded if it's empty
+            return this.resources;
+        }
 
-                if (null == entry) {
-                    for (final File entryFile : entryFiles) {
-                        resources.add(String.format("res%s%s%s%s", File.separator, typeDir.getName(), File.separator, entryFile.getName()));
-                        entryFile.delete();
-                    }
-                } else {
-                    for (final File entryFile : entryFiles) {
-                        final Symbols.Entry resEntry = find(symbols.entries.values(), new Filter<Symbols.Entry>() {
-                            @Override
-                            public boolean accept(final Symbols.Entry it) {
-                                return entryFile.getName().startsWith(it.name + ".");
-                            }
-                        });
-
-                        if (null != resEntry) {
-                            resources.add(String.format("res%s%s%s%s", File.separator, typeDir.getName(), File.separator, entryFile.getName()));
-                        }
+        private void submit() {
+            if (this.batch.isEmpty()) {
+                return;
+            }
 
-                        entryFile.delete();
-                    }
+            final List<Path> files = this.batch;
+            this.batch = new ArrayList<Path>(BATCH_SIZE);
+            this.futures.add(this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    delete(files);
+                }
+            }));
+        }
+
+        /**
+         * Determine if any type name is the prefix of the specified folder
+         * name
+         */
+        private boolean hasPrefix(final String name) {
+            for (int i = name.length(); i > 0; i--) {
+                if (this.typeNames.contains(name.substring(0, i))) {
+                    return true;
                 }
+            }
+
+            return false;
+        }
 
-                typeDir.delete(); // it shall be succeeded if it's empty
+        /**
+         * Determine if the specified file name starts with any entry name
+         * followed by {@code '.'}
+         */
+        private boolean hasEntry(final String name) {
+            for (int i = name.indexOf('.'); i >= 0; i = name.indexOf('.', i + 1)) {
+                if (this.entryNames.contains(name.substring(0, i))) {
+                    return true;
+                }
             }
+
+            return false;
         }
 
-        return resources;
+        private static void delete(final List<Path> files) {
+            for (final Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (final IOException e) {
+                    // ignore, keep the same behavior as File#delete()
+                }
+            }
+        }
     }
 
 }
@@ -0,0 +1,742 @@
+package com.sdklite.aapt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+
+import com.android.dex.Dex;
+
+/**
+ * The concurrent analysis pipeline of APK files, each APK is read by the I/O
+ * stage, then the manifest, resource table and dex are summarized by the
+ * parsing stages concurrently:
+ *
+ * <pre>
+ * final ApkBatchAnalyzer analyzer = new ApkBatchAnalyzer(8, 32);
+ * analyzer.analyze(ApkBatchAnalyzer.list(new File("apks")), new ApkBatchAnalyzer.Listener() {
+ *     public void onSummary(ApkBatchAnalyzer.Summary summary) {
+ *         System.out.println(summary);
+ *     }
+ * });
+ * analyzer.dump(new PrintWriter(System.err, true));
+ * analyzer.close();
+ * </pre>
+ *
+ * The I/O stage runs on virtual threads if the runtime supports, otherwise
+ * on a fixed thread pool, the parsing stages run on a fixed thread pool. At
+ * most {@code capacity} APK files are in flight, the submitting is blocked
+ * until the preceding summaries have been consumed, so that neither the
+ * memory nor the temporary files grow with the number of APK files. The
+ * summaries are delivered to the listener on the calling thread in order of
+ * completion.
+ *
+ * @author johnsonlee
+ *
+ */
+public class ApkBatchAnalyzer implements Closeable {
+
+    /**
+     * The pipeline stages
+     */
+    public enum Stage {
+
+        /**
+         * Opens APK and reads the manifest, resource table and dex
+         */
+        READ,
+
+        /**
+         * Parses the manifest
+         */
+        MANIFEST,
+
+        /**
+         * Parses the resource table
+         */
+        TABLE,
+
+        /**
+         * Parses the dex
+         */
+        DEX,
+
+    }
+
+    /**
+     * The listener of summaries
+     *
+     * @author johnsonlee
+     *
+     */
+    public interface Listener {
+
+        /**
+         * Called on the thread of {@link ApkBatchAnalyzer#analyze(Iterable, Listener)}
+         * once an APK has been analyzed
+         *
+         * @param summary
+         *            The summary of APK, it might be partial if
+         *            {@link Summary#getError()} is not null
+         */
+        public void onSummary(final Summary summary);
+
+    }
+
+    /**
+     * The summary of APK
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Summary {
+
+        final File file;
+
+        String packageName;
+
+        String versionCode;
+
+        String versionName;
+
+        String minSdkVersion;
+
+        String targetSdkVersion;
+
+        int resourcePackages;
+
+        int resourceTypes;
+
+        int resources;
+
+        int resourceValues;
+
+        int strings;
+
+        int dexes;
+
+        int classes;
+
+        int methods;
+
+        private Stage failedStage;
+
+        private Exception error;
+
+        Summary(final File file) {
+            this.file = file;
+        }
+
+        public File getFile() {
+            return this.file;
+        }
+
+        public String getPackageName() {
+            return this.packageName;
+        }
+
+        public String getVersionCode() {
+            return this.versionCode;
+        }
+
+        public String getVersionName() {
+            return this.versionName;
+        }
+
+        public String getMinSdkVersion() {
+            return this.minSdkVersion;
+        }
+
+        public String getTargetSdkVersion() {
+            return this.targetSdkVersion;
+        }
+
+        /**
+         * Returns the number of packages in resource table
+         */
+        public int getResourcePackageCount() {
+            return this.resourcePackages;
+        }
+
+        /**
+         * Returns the number of type specs in resource table
+         */
+        public int getResourceTypeCount() {
+            return this.resourceTypes;
+        }
+
+        /**
+         * Returns the number of resource ids in resource table
+         */
+        public int getResourceCount() {
+            return this.resources;
+        }
+
+        /**
+         * Returns the number of values of all configurations in resource table
+         */
+        public int getResourceValueCount() {
+            return this.resourceValues;
+        }
+
+        /**
+         * Returns the number of strings in the global string pool of resource
+         * table
+         */
+        public int getStringCount() {
+            return this.strings;
+        }
+
+        public int getDexCount() {
+            return this.dexes;
+        }
+
+        public int getClassCount() {
+            return this.classes;
+        }
+
+        public int getMethodCount() {
+            return this.methods;
+        }
+
+        /**
+         * Returns the stage of the first failure, or null if succeeded
+         */
+        public synchronized Stage getFailedStage() {
+            return this.failedStage;
+        }
+
+        /**
+         * Returns the first failure, or null if succeeded
+         */
+        public synchronized Exception getError() {
+            return this.error;
+        }
+
+        synchronized void fail(final Stage stage, final Exception e) {
+            if (null == this.error) {
+                this.failedStage = stage;
+                this.error = e;
+            }
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder(this.file.getPath());
+
+            if (null != this.packageName) {
+                builder.append(" package=").append(this.packageName);
+                builder.append(" versionCode=").append(this.versionCode);
+                builder.append(" versionName=").append(this.versionName);
+                builder.append(" minSdk=").append(this.minSdkVersion);
+                builder.append(" targetSdk=").append(this.targetSdkVersion);
+            }
+
+            builder.append(" packages=").append(this.resourcePackages);
+            builder.append(" types=").append(this.resourceTypes);
+            builder.append(" resources=").append(this.resources);
+            builder.append(" values=").append(this.resourceValues);
+            builder.append(" strings=").append(this.strings);
+            builder.append(" dexes=").append(this.dexes);
+            builder.append(" classes=").append(this.classes);
+            builder.append(" methods=").append(this.methods);
+
+            final Exception e = getError();
+            if (null != e) {
+                builder.append(" error=").append(getFailedStage()).append(':').append(String.valueOf(e.getMessage()).replace('\n', ' '));
+            }
+
+            return builder.toString();
+        }
+
+    }
+
+    /**
+     * The aggregated metric of stage
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class StageMetric {
+
+        final Stage stage;
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong errors = new AtomicLong();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        final AtomicLong nanos = new AtomicLong();
+
+        StageMetric(final Stage stage) {
+            this.stage = stage;
+        }
+
+        public Stage getStage() {
+            return this.stage;
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public long getErrors() {
+            return this.errors.get();
+        }
+
+        /**
+         * Returns the number of bytes processed
+         */
+        public long getBytes() {
+            return this.bytes.get();
+        }
+
+        /**
+         * Returns the busy time of all threads in nanoseconds
+         */
+        public long getNanos() {
+            return this.nanos.get();
+        }
+
+        void record(final long start, final long bytes, final boolean failed) {
+            this.nanos.addAndGet(System.nanoTime() - start);
+            this.bytes.addAndGet(bytes);
+            this.count.incrementAndGet();
+
+            if (failed) {
+                this.errors.incrementAndGet();
+            }
+        }
+
+    }
+
+    /**
+     * The default number of APK files in flight per parsing thread
+     */
+    public static final int DEFAULT_CAPACITY_PER_THREAD = 4;
+
+    private final ExecutorService io;
+
+    private final ExecutorService cpu;
+
+    private final boolean virtual;
+
+    private final int capacity;
+
+    private final StageMetric[] metrics;
+
+    private final AtomicLong blocked = new AtomicLong();
+
+    private final AtomicLong elapsed = new AtomicLong();
+
+    /**
+     * Instantialize with the number of available processors
+     */
+    public ApkBatchAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * DEFAULT_CAPACITY_PER_THREAD);
+    }
+
+    /**
+     * Instantialize with the parallelism and capacity
+     *
+     * @param threads
+     *            The number of parsing threads, and the number of I/O threads
+     *            if virtual threads are not supported
+     * @param capacity
+     *            The maximum number of APK files in flight
+     */
+    public ApkBatchAnalyzer(final int threads, final int capacity) {
+        if (threads < 1 || capacity < 1) {
+            throw new IllegalArgumentException("threads and capacity must be positive");
+        }
+
+        final ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        this.virtual = null != virtual;
+        this.io = this.virtual ? virtual : Executors.newFixedThreadPool(threads);
+        this.cpu = Executors.newFixedThreadPool(threads);
+        this.capacity = capacity;
+        this.metrics = new StageMetric[Stage.values().length];
+
+        for (final Stage stage : Stage.values()) {
+            this.metrics[stage.ordinal()] = new StageMetric(stage);
+        }
+    }
+
+    /**
+     * Returns true if the I/O stage runs on virtual threads
+     */
+    public boolean isVirtual() {
+        return this.virtual;
+    }
+
+    /**
+     * Lists the APK files in the specified file recursively
+     *
+     * @param files
+     *            The APK files or directories
+     * @return the APK files in path order of each directory
+     */
+    public static List<File> list(final File... files) {
+        final List<File> apks = new ArrayList<File>();
+
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                final File[] children = file.listFiles();
+
+                if (null != children) {
+                    Arrays.sort(children);
+                    apks.addAll(list(children));
+                }
+            } else if (file.getName().endsWith(".apk")) {
+                apks.add(file);
+            }
+        }
+
+        return apks;
+    }
+
+    /**
+     * Analyzes the specified APK files concurrently, the summaries are
+     * delivered to the listener as soon as they are completed
+     *
+     * @param apks
+     *            The APK files, the iterable is consumed lazily with back
+     *            pressure
+     * @param listener
+     *            The listener of summaries
+     * @return the number of analyzed APK files
+     */
+    public long analyze(final Iterable<File> apks, final Listener listener) {
+        final BlockingQueue<Summary> completed = new LinkedBlockingQueue<Summary>();
+        final long start = System.nanoTime();
+        long submitted = 0;
+        long delivered = 0;
+
+        try {
+            for (final File apk : apks) {
+                for (Summary summary; null != (summary = completed.poll());) {
+                    listener.onSummary(summary);
+                    delivered++;
+                }
+
+                if (submitted - delivered >= this.capacity) {
+                    final long t = System.nanoTime();
+                    final Summary summary = completed.take();
+                    this.blocked.addAndGet(System.nanoTime() - t);
+                    listener.onSummary(summary);
+                    delivered++;
+                }
+
+                this.io.execute(new Read(new Summary(apk), completed));
+                submitted++;
+            }
+
+            for (; delivered < submitted; delivered++) {
+                listener.onSummary(completed.take());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AaptException(e);
+        } finally {
+            this.elapsed.addAndGet(System.nanoTime() - start);
+        }
+
+        return delivered;
+    }
+
+    /**
+     * Returns the metrics of stages
+     */
+    public List<StageMetric> getMetrics() {
+        return Collections.unmodifiableList(Arrays.asList(this.metrics));
+    }
+
+    /**
+     * Returns the time of submitting blocked by back pressure in nanoseconds
+     */
+    public long getBlockedNanos() {
+        return this.blocked.get();
+    }
+
+    /**
+     * Returns the wall-clock time of analyzing in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsed.get();
+    }
+
+    /**
+     * Prints the throughput of stages against the wall-clock time of
+     * analyzing
+     *
+     * @param out
+     *            The output
+     */
+    public void dump(final PrintWriter out) {
+        final double seconds = Math.max(1L, getElapsedNanos()) / 1e9;
+
+        out.printf("%-8s %8s %8s %12s %10s %10s %10s", "stage", "count", "errors", "bytes", "busy(ms)", "apk/s", "MB/s").println();
+
+        for (final StageMetric metric : this.metrics) {
+            out.printf("%-8s %8d %8d %12d %10d %10.1f %10.1f",
+                    metric.getStage(),
+                    metric.getCount(),
+                    metric.getErrors(),
+                    metric.getBytes(),
+                    TimeUnit.NANOSECONDS.toMillis(metric.getNanos()),
+                    metric.getCount() / seconds,
+                    metric.getBytes() / seconds / (1 << 20)).println();
+        }
+
+        out.printf("elapsed %d ms, blocked %d ms, %s I/O threads",
+                TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()),
+                TimeUnit.NANOSECONDS.toMillis(getBlockedNanos()),
+                this.virtual ? "virtual" : "platform").println();
+        out.flush();
+    }
+
+    /**
+     * Shutdown the thread pools, the APK files in flight are still analyzed
+     */
+    @Override
+    public void close() {
+        this.io.shutdown();
+        this.cpu.shutdown();
+    }
+
+    /**
+     * Returns {@code Executors.newVirtualThreadPerTaskExecutor()} if the
+     * runtime supports, otherwise null
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private StageMetric metricOf(final Stage stage) {
+        return this.metrics[stage.ordinal()];
+    }
+
+    /**
+     * Returns the specified throwable if it is an exception, otherwise wraps
+     * it, e.g. {@link OutOfMemoryError}, so that it is reported by the summary
+     * instead of losing the APK in flight
+     */
+    private static Exception asException(final Throwable t) {
+        return t instanceof Exception ? (Exception) t : new AaptException(t);
+    }
+
+    /**
+     * The I/O stage, reads the entries of APK then forks the parsing stages
+     */
+    private final class Read implements Runnable {
+
+        final Summary summary;
+
+        final BlockingQueue<Summary> completed;
+
+        final AtomicInteger pending = new AtomicInteger(3);
+
+        byte[] manifest;
+
+        File arsc;
+
+        final List<byte[]> dexes = new ArrayList<byte[]>();
+
+        Read(final Summary summary, final BlockingQueue<Summary> completed) {
+            this.summary = summary;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            long bytes = 0;
+
+            try {
+                final ApkFile apk = new ApkFile(this.summary.file);
+
+                try {
+                    this.manifest = apk.read(Aapt.ANDROID_MANIFEST_XML);
+                    this.arsc = apk.extract(Aapt.RESOURCES_ARSC, "resources", "arsc");
+
+                    for (final ZipEntry entry : apk.dexEntries()) {
+                        final byte[] dex = apk.read(entry);
+                        this.dexes.add(dex);
+                        bytes += dex.length;
+                    }
+                } finally {
+                    apk.close();
+                }
+
+                bytes += null != this.manifest ? this.manifest.length : 0;
+                bytes += null != this.arsc ? this.arsc.length() : 0;
+            } catch (final Throwable t) {
+                this.summary.fail(Stage.READ, asException(t));
+                metricOf(Stage.READ).record(start, bytes, true);
+                dispose();
+                this.completed.add(this.summary);
+                return;
+            }
+
+            metricOf(Stage.READ).record(start, bytes, false);
+            fork(Stage.MANIFEST, Stage.TABLE, Stage.DEX);
+        }
+
+        /**
+         * Submits the parsing stages, the stages which could not be submitted
+         * are failed and completed, so that the summary is always delivered
+         */
+        void fork(final Stage... stages) {
+            for (int i = 0; i < stages.length; i++) {
+                try {
+                    cpu.execute(new Parse(this, stages[i]));
+                } catch (final Throwable t) {
+                    for (int j = i; j < stages.length; j++) {
+                        this.summary.fail(stages[j], asException(t));
+                        metricOf(stages[j]).record(System.nanoTime(), 0, true);
+                        done();
+                    }
+                    return;
+                }
+            }
+        }
+
+        void done() {
+            if (0 == this.pending.decrementAndGet()) {
+                dispose();
+                this.completed.add(this.summary);
+            }
+        }
+
+        void dispose() {
+            if (null != this.arsc) {
+                this.arsc.delete();
+            }
+        }
+
+    }
+
+    /**
+     * The parsing stages
+     */
+    private final class Parse implements Runnable {
+
+        final Read read;
+
+        final Stage stage;
+
+        Parse(final Read read, final Stage stage) {
+            this.read = read;
+            this.stage = stage;
+        }
+
+        @Override
+        public void run() {
+            final Summary summary = this.read.summary;
+            final long start = System.nanoTime();
+            long bytes = 0;
+            boolean failed = false;
+
+            try {
+                switch (this.stage) {
+                case MANIFEST:
+                    if (null != this.read.manifest) {
+                        bytes = this.read.manifest.length;
+                        summarizeManifest(summary, this.read.manifest);
+                    }
+                    break;
+                case TABLE:
+                    if (null != this.read.arsc) {
+                        bytes = this.read.arsc.length();
+                        summarizeResourceTable(summary, new ChunkParser().<ResourceTable>parse(this.read.arsc));
+                    }
+                    break;
+                default:
+                    for (final byte[] dex : this.read.dexes) {
+                        bytes += dex.length;
+                        summarizeDex(summary, new Dex(dex));
+                    }
+                    break;
+                }
+            } catch (final Throwable t) {
+                failed = true;
+                summary.fail(this.stage, asException(t));
+            } finally {
+                metricOf(this.stage).record(start, bytes, failed);
+                this.read.done();
+            }
+        }
+
+    }
+
+    private static void summarizeManifest(final Summary summary, final byte[] manifest) {
+        final XmlPullParser parser = new XmlPullParser(ByteBuffer.wrap(manifest));
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (XmlPullParser.START_TAG != event) {
+                continue;
+            }
+
+            if (1 == parser.getDepth() && "manifest".equals(parser.getName())) {
+                summary.packageName = getAttributeValue(parser, "package");
+                summary.versionCode = getAttributeValue(parser, "versionCode");
+                summary.versionName = getAttributeValue(parser, "versionName");
+            } else if (2 == parser.getDepth() && "uses-sdk".equals(parser.getName())) {
+                summary.minSdkVersion = getAttributeValue(parser, "minSdkVersion");
+                summary.targetSdkVersion = getAttributeValue(parser, "targetSdkVersion");
+                break;
+            }
+        }
+    }
+
+    private static String getAttributeValue(final XmlPullParser parser, final String name) {
+        final int index = parser.getAttributeIndex(name);
+        return index < 0 ? null : parser.getAttributeValue(index);
+    }
+
+    private static void summarizeResourceTable(final Summary summary, final ResourceTable table) {
+        summary.strings = table.getStringPool().getStringCount();
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            summary.resourcePackages++;
+
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                summary.resourceTypes++;
+                summary.resources += spec.getEntryCount();
+
+                for (final ResourceTable.Type type : spec.configs) {
+                    for (final IndexedEntry<ResourceTable.Entry> entry : type.entries) {
+                        if (ResourceTable.Entry.NO_ENTRY != entry.index && null != entry.value) {
+                            summary.resourceValues++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void summarizeDex(final Summary summary, final Dex dex) {
+        summary.dexes++;
+        summary.classes += dex.getTableOfContents().classDefs.size;
+        summary.methods += dex.getTableOfContents().methodIds.size;
+    }
+
+}
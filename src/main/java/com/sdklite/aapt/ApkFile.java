@@ -1,11 +1,25 @@
 package com.sdklite.aapt;
 
+import static com.sdklite.aapt.Internal.await;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -55,18 +69,7 @@ public class ApkFile {
      *             if error occurred
      */
     public Xml getAndroidManifest() throws IOException {
-        final ZipEntry entry = this.archive.getEntry(Aapt.ANDROID_MANIFEST_XML);
-        final File tmp = File.createTempFile("AndroidManifest", "xml");
-        final InputStream in = this.archive.getInputStream(entry);
-        final OutputStream out = new FileOutputStream(tmp);
-
-        try {
-            IOUtil.copy(in, out);
-        } finally {
-            IOUtil.closeQuietly(in);
-            IOUtil.closeQuietly(out);
-        }
-
+        final File tmp = extract(Aapt.ANDROID_MANIFEST_XML, "AndroidManifest", "xml");
         final AssetEditor parser = new AssetEditor(tmp);
 
         try {
@@ -85,18 +88,7 @@ public class ApkFile {
      *             if error occurred
      */
     public ResourceTable getResourceTable() throws IOException {
-        final ZipEntry arsc = this.archive.getEntry(Aapt.RESOURCES_ARSC);
-        final File tmp = File.createTempFile("resources", "arsc");
-        final InputStream in = this.archive.getInputStream(arsc);
-        final OutputStream out = new FileOutputStream(tmp);
-
-        try {
-            IOUtil.copy(in, out);
-        } finally {
-            IOUtil.closeQuietly(in);
-            IOUtil.closeQuietly(out);
-        }
-
+        final File tmp = extract(Aapt.RESOURCES_ARSC, "resources", "arsc");
         final AssetEditor parser = new AssetEditor(tmp);
 
         try {
@@ -115,8 +107,8 @@ public class ApkFile {
      *             if error occurred
      */
     public Dex getMainDex() throws IOException {
-        final ZipEntry arsc = this.archive.getEntry(Aapt.CLASSES_DEX);
-        return new Dex(this.archive.getInputStream(arsc));
+        final ZipEntry dex = this.archive.getEntry(Aapt.CLASSES_DEX);
+        return Dex.create(this.archive, dex);
     }
 
     /**
@@ -137,6 +129,128 @@ public class ApkFile {
         return new ClassIterable();
     }
 
+    /**
+     * Loads all dex in this APK concurrently with the specified executor
+     * 
+     * @param executor
+     *            The executor for dex loading
+     * @return the dex list in the order of {@code classes.dex},
+     *         {@code classes2.dex}, ...
+     * @throws IOException
+     *             if error occurred
+     */
+    public List<Dex> dexes(final ExecutorService executor) throws IOException {
+        final List<Future<Dex>> futures = new ArrayList<Future<Dex>>();
+
+        for (final ZipEntry entry : dexEntries()) {
+            futures.add(executor.submit(new Callable<Dex>() {
+                @Override
+                public Dex call() throws IOException {
+                    return Dex.create(archive, entry);
+                }
+            }));
+        }
+
+        return await(futures);
+    }
+
+    /**
+     * Returns all class names in this APK, the dex are loaded and enumerated
+     * concurrently with the specified executor
+     * 
+     * @param executor
+     *            The executor for dex loading and class enumerating
+     * @return the class names in the same order as {@link #classes()}
+     * @throws IOException
+     *             if error occurred
+     */
+    public List<String> classes(final ExecutorService executor) throws IOException {
+        final List<String> classes = new ArrayList<String>();
+        for (final List<String> names : getClassNames(executor)) {
+            classes.addAll(names);
+        }
+
+        return classes;
+    }
+
+    /**
+     * Returns a map of class name to the index of dex which the class defined
+     * in, e.g. 0 for {@code classes.dex}, 1 for {@code classes2.dex}
+     * 
+     * @param executor
+     *            The executor for dex loading and class enumerating
+     * @return the class name to dex index map
+     * @throws IOException
+     *             if error occurred
+     */
+    public Map<String, Integer> getClassIndex(final ExecutorService executor) throws IOException {
+        final List<List<String>> dexes = getClassNames(executor);
+        int nclasses = 0;
+        for (final List<String> names : dexes) {
+            nclasses += names.size();
+        }
+
+        final Map<String, Integer> index = new HashMap<String, Integer>(nclasses * 4 / 3 + 1);
+        for (int i = dexes.size() - 1; i >= 0; i--) {
+            // the class in the former dex takes precedence
+            for (final String name : dexes.get(i)) {
+                index.put(name, i);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Decompiles the manifest and all of the binary XML under {@code res/} in
+     * parallel
+     * 
+     * @param decompiler
+     *            The XML decompiler
+     * @param executor
+     *            The executor for decompiling
+     * @return the entry name to text XML map in entry name order
+     * @throws IOException
+     *             if error occurred
+     */
+    public Map<String, String> decompileXml(final XmlDecompiler decompiler, final ExecutorService executor) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        final List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        for (final Enumeration<? extends ZipEntry> entries = this.archive.entries(); entries.hasMoreElements();) {
+            final ZipEntry entry = entries.nextElement();
+            final String name = entry.getName();
+
+            if (entry.isDirectory() || !name.endsWith(".xml") || !(name.startsWith("res/") || Aapt.ANDROID_MANIFEST_XML.equals(name))) {
+                continue;
+            }
+
+            names.add(name);
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    final ByteBuffer buffer = ByteBuffer.wrap(read(entry)).order(ByteOrder.LITTLE_ENDIAN);
+                    if (buffer.remaining() < ChunkHeader.MIN_HEADER_SIZE || ChunkType.XML != buffer.getShort(0)) {
+                        return null; // not a binary XML, e.g. res/raw
+                    }
+
+                    return decompiler.decompile(buffer);
+                }
+            }));
+        }
+
+        final List<String> results = await(futures);
+        final Map<String, String> xmls = new TreeMap<String, String>();
+
+        for (int i = 0, n = names.size(); i < n; i++) {
+            if (null != results.get(i)) {
+                xmls.put(names.get(i), results.get(i));
+            }
+        }
+
+        return xmls;
+    }
+
     /**
      * Close this APK file
      * 
@@ -147,6 +261,110 @@ public class ApkFile {
         this.archive.close();
     }
 
+    /**
+     * Returns the specified entry from the central directory, or null if not
+     * found
+     */
+    ZipEntry getEntry(final String name) {
+        return this.archive.getEntry(name);
+    }
+
+    /**
+     * Copies the specified entry into a temporary file, returns null if the
+     * entry not found
+     */
+    File extract(final String name, final String prefix, final String suffix) throws IOException {
+        final ZipEntry entry = this.archive.getEntry(name);
+        if (null == entry) {
+            return null;
+        }
+
+        final File tmp = File.createTempFile(prefix, suffix);
+        final InputStream in = this.archive.getInputStream(entry);
+        final OutputStream out = new FileOutputStream(tmp);
+
+        try {
+            IOUtil.copy(in, out);
+        } finally {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+
+        return tmp;
+    }
+
+    /**
+     * Returns the content of the specified entry, or null if not found
+     */
+    byte[] read(final String name) throws IOException {
+        final ZipEntry entry = this.archive.getEntry(name);
+        return null != entry ? read(entry) : null;
+    }
+
+    List<ZipEntry> dexEntries() {
+        final List<ZipEntry> entries = new ArrayList<ZipEntry>();
+
+        for (ZipEntry entry = this.archive.getEntry(Aapt.CLASSES_DEX); null != entry; entry = this.archive.getEntry(String.format("classes%d.dex", entries.size() + 1))) {
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    byte[] read(final ZipEntry entry) throws IOException {
+        final InputStream in = this.archive.getInputStream(entry);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+
+        try {
+            IOUtil.copy(in, out);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+
+        return out.toByteArray();
+    }
+
+    private List<List<String>> getClassNames(final ExecutorService executor) throws IOException {
+        final List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+
+        for (final ZipEntry entry : dexEntries()) {
+            futures.add(executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws IOException {
+                    return getClassNames(Dex.create(archive, entry));
+                }
+            }));
+        }
+
+        return await(futures);
+    }
+
+    private static List<String> getClassNames(final Dex dex) {
+        final List<String> names = new ArrayList<String>(dex.getTableOfContents().classDefs.size);
+        char[] buffer = new char[256];
+
+        for (final ClassDef classDef : dex.classDefs()) {
+            // decode the descriptor into the reused buffer, so that the name is the only string of each class
+            final int descriptor = dex.descriptorIndexFromTypeIndex(classDef.getTypeIndex());
+            int length = dex.decodeString(descriptor, buffer);
+
+            if (length > buffer.length) {
+                buffer = new char[length * 2];
+                length = dex.decodeString(descriptor, buffer);
+            }
+
+            for (int i = 1; i < length - 1; i++) {
+                if ('/' == buffer[i]) {
+                    buffer[i] = '.';
+                }
+            }
+
+            names.add(new String(buffer, 1, length - 2));
+        }
+
+        return names;
+    }
+
     private final class DexIterable implements Iterable<Dex> {
         @Override
         public Iterator<Dex> iterator() {
@@ -178,7 +396,7 @@ public class ApkFile {
         @Override
         public Dex next() {
             try {
-                return new Dex(archive.getInputStream(nextEntry()));
+                return Dex.create(archive, nextEntry());
             } catch (final IOException e) {
                 throw new AaptException(e);
             } finally {
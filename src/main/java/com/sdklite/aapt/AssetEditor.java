@@ -3,8 +3,10 @@ package com.sdklite.aapt;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 
 import com.sdklite.sed.StreamEditor;
@@ -17,8 +19,14 @@ import com.sdklite.sed.StreamEditor;
  */
 public final class AssetEditor extends StreamEditor {
 
+    private final File file;
+
+    private final String source;
+
     public AssetEditor(final File file) throws FileNotFoundException {
         super(file, ByteOrder.LITTLE_ENDIAN);
+        this.file = file;
+        this.source = file.getPath();
     }
 
     /**
@@ -137,70 +145,82 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public ResourceTable parseResourceTable() throws IOException {
-        final long p = tell();
-
-        return new ResourceTable() {
-
-            private final StringPool pool;
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.TABLE);
+        long bytes = 0;
 
-            {
-                parseChunkHeader(this);
-
-                final int npkg = readInt();
-                if (npkg <= 0) {
-                    throw new AaptException("No packages found");
-                }
+        try {
+            final long p = tell();
 
-                this.pool = parseStringPool();
+            final ResourceTable table = new ResourceTable() {
 
-                for (int i = 0; i < npkg; i++) {
-                    final ResourceTable.Package pkg = parsePackage(this);
-                    final ResourceTable.PackageGroup group;
+                private final StringPool pool;
 
-                    int index = this.packageMap[pkg.id];
-                    if (index == 0) {
-                        index = this.packageGroups.size() + 1;
-                        group = new ResourceTable.PackageGroup(this, pkg.name, pkg.id);
-                        this.packageGroups.add(group);
-                        this.packageMap[pkg.id] = (byte) index;
+                {
+                    parseChunkHeader(this);
 
-                        for (int j = 0, n = this.packageGroups.size(); j < n; j++) {
-                            this.packageGroups.get(j).dynamicRefTale.addMapping(pkg.name, (byte) pkg.id);
-                        }
-                    } else {
-                        group = this.packageGroups.get(index - 1);
-                        if (null == group) {
-                            throw new AaptException("Package group not found");
-                        }
+                    final int npkg = readInt();
+                    if (npkg <= 0) {
+                        throw new AaptException("No packages found");
                     }
 
-                    group.packages.add(pkg);
-
-                    while (tell() - p < this.size) {
-                        switch (expectChunkTypes(TABLE_TYPE, TABLE_TYPE_SPEC, TABLE_LIBRARY)) {
-                        case TABLE_TYPE_SPEC: {
-                            final ResourceTable.TypeSpec spec = parseResourceTableTypeSpec(pkg);
-                            pkg.specs.add(spec);
-                            break;
-                        }
-                        case TABLE_TYPE: {
-                            final ResourceTable.Type type = parseResourceTableType(pkg);
-                            pkg.specs.get(type.id - 1).configs.add(type);
-                            break;
+                    this.pool = parseStringPool();
+
+                    for (int i = 0; i < npkg; i++) {
+                        final long q = tell();
+                        final ResourceTable.Package pkg = parsePackage(this);
+                        final ResourceTable.PackageGroup group;
+
+                        int index = this.packageMap[pkg.id];
+                        if (index == 0) {
+                            index = this.packageGroups.size() + 1;
+                            group = new ResourceTable.PackageGroup(this, pkg.name, pkg.id);
+                            this.packageGroups.add(group);
+                            this.packageMap[pkg.id] = (byte) index;
+
+                            for (int j = 0, n = this.packageGroups.size(); j < n; j++) {
+                                this.packageGroups.get(j).dynamicRefTale.addMapping(pkg.name, (byte) pkg.id);
+                            }
+                        } else {
+                            group = this.packageGroups.get(index - 1);
+                            if (null == group) {
+                                throw new AaptException("Package group not found");
+                            }
                         }
-                        case TABLE_LIBRARY:
-                            this.libraries.add(parseResourceTableLibrary(pkg));
-                            break;
+
+                        group.packages.add(pkg);
+
+                        // the types of package are bounded by the package chunk
+                        while (tell() - q < pkg.size && tell() - p < this.size) {
+                            switch (expectChunkTypes(TABLE_TYPE, TABLE_TYPE_SPEC, TABLE_LIBRARY)) {
+                            case TABLE_TYPE_SPEC: {
+                                final ResourceTable.TypeSpec spec = parseResourceTableTypeSpec(pkg);
+                                pkg.specs.add(spec);
+                                break;
+                            }
+                            case TABLE_TYPE: {
+                                final ResourceTable.Type type = parseResourceTableType(pkg);
+                                pkg.specs.get(type.id - 1).configs.add(type);
+                                break;
+                            }
+                            case TABLE_LIBRARY:
+                                this.libraries.add(parseResourceTableLibrary(pkg));
+                                break;
+                            }
                         }
                     }
                 }
-            }
 
-            @Override
-            public StringPool getStringPool() {
-                return this.pool;
-            }
-        };
+                @Override
+                public StringPool getStringPool() {
+                    return this.pool;
+                }
+            };
+
+            bytes = table.size;
+            return table;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -213,50 +233,60 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public ResourceTable.Package parsePackage(final ResourceTable table) throws IOException {
-        return table.new Package() {
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.TABLE_PACKAGE);
+        long bytes = 0;
 
-            private final StringPool typePool;
-            private final StringPool keyPool;
+        try {
+            final ResourceTable.Package pkg = table.new Package() {
 
-            {
-                parseChunkHeader(this);
-
-                this.id = readInt();
-                this.name = parsePackageName();
-                this.typeStrings = readInt();
-                this.lastPublicType = readInt();
-                this.keyStrings = readInt();
-                this.lastPublicKey = readInt();
-
-                if (this.headerSize == ResourceTable.Package.HEADER_SIZE) {
-                    this.typeIdOffset = readInt();
-                } else {
-                    this.typeIdOffset = 0;
-                }
+                private final StringPool typePool;
+                private final StringPool keyPool;
+
+                {
+                    parseChunkHeader(this);
+
+                    this.id = readInt();
+                    this.name = parsePackageName();
+                    this.typeStrings = readInt();
+                    this.lastPublicType = readInt();
+                    this.keyStrings = readInt();
+                    this.lastPublicKey = readInt();
 
-                if (this.typeStrings != 0) {
-                    this.typePool = parseStringPool();
-                } else {
-                    this.typePool = null;
+                    if (this.headerSize == ResourceTable.Package.HEADER_SIZE) {
+                        this.typeIdOffset = readInt();
+                    } else {
+                        this.typeIdOffset = 0;
+                    }
+
+                    if (this.typeStrings != 0) {
+                        this.typePool = parseStringPool();
+                    } else {
+                        this.typePool = null;
+                    }
+
+                    if (this.keyStrings != 0) {
+                        this.keyPool = parseStringPool();
+                    } else {
+                        this.keyPool = null;
+                    }
                 }
 
-                if (this.keyStrings != 0) {
-                    this.keyPool = parseStringPool();
-                } else {
-                    this.keyPool = null;
+                @Override
+                public StringPool getTypeStringPool() {
+                    return this.typePool;
                 }
-            }
 
-            @Override
-            public StringPool getTypeStringPool() {
-                return this.typePool;
-            }
+                @Override
+                public StringPool getKeyStringPool() {
+                    return this.keyPool;
+                }
+            };
 
-            @Override
-            public StringPool getKeyStringPool() {
-                return this.keyPool;
-            }
-        };
+            bytes = pkg.size;
+            return pkg;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -269,36 +299,46 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public ResourceTable.TypeSpec parseResourceTableTypeSpec(final ResourceTable.Package pkg) throws IOException {
-        final ResourceTable table = pkg.getResourceTable();
-        return table.new TypeSpec() {
-            {
-                parseChunkHeader(this);
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.TABLE_TYPE_SPEC);
+        long bytes = 0;
 
-                this.id = readByte();
-                if (this.id < 1) {
-                    throw new AaptException(String.format("Invalid type specification id %d", this.id));
-                }
+        try {
+            final ResourceTable table = pkg.getResourceTable();
+            final ResourceTable.TypeSpec spec = table.new TypeSpec() {
+                {
+                    parseChunkHeader(this);
+
+                    this.id = readByte();
+                    if (this.id < 1) {
+                        throw new AaptException(String.format("Invalid type specification id %d", this.id));
+                    }
 
-                this.res0 = readByte();
-                if (0 != res0) {
-                    throw new AaptException("res0 expected to be zero");
-                }
+                    this.res0 = readByte();
+                    if (0 != res0) {
+                        throw new AaptException("res0 expected to be zero");
+                    }
+
+                    this.res1 = readShort();
+                    if (0 != this.res1) {
+                        throw new AaptException("res1 expected to be zero");
+                    }
 
-                this.res1 = readShort();
-                if (0 != this.res1) {
-                    throw new AaptException("res1 expected to be zero");
+                    for (int i = 0, entryCount = readInt(); i < entryCount; i++) {
+                        this.flags.add(readInt());
+                    }
                 }
 
-                for (int i = 0, entryCount = readInt(); i < entryCount; i++) {
-                    this.flags.add(readInt());
+                @Override
+                public ResourceTable.Package getPackage() {
+                    return pkg;
                 }
-            }
+            };
 
-            @Override
-            public ResourceTable.Package getPackage() {
-                return pkg;
-            }
-        };
+            bytes = spec.size;
+            return spec;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -311,111 +351,121 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public ResourceTable.Type parseResourceTableType(final ResourceTable.Package pkg) throws IOException {
-        final long p = tell();
-        final ResourceTable table = pkg.getResourceTable();
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.TABLE_TYPE);
+        long bytes = 0;
 
-        return table.new Type() {
-            {
-                parseChunkHeader(this);
+        try {
+            final long p = tell();
+            final ResourceTable table = pkg.getResourceTable();
 
-                this.id = readByte();
-                if (this.id < 1) {
-                    throw new AaptException(String.format("Invalid type id %d", this.id));
-                }
+            final ResourceTable.Type type = table.new Type() {
+                {
+                    parseChunkHeader(this);
 
-                this.res0 = readByte();
-                if (0 != res0) {
-                    throw new AaptException("res0 expected to be zero");
-                }
+                    this.id = readByte();
+                    if (this.id < 1) {
+                        throw new AaptException(String.format("Invalid type id %d", this.id));
+                    }
 
-                this.res1 = readShort();
-                if (0 != this.res1) {
-                    throw new AaptException("res1 expected to be zero");
-                }
+                    this.res0 = readByte();
+                    if (0 != res0) {
+                        throw new AaptException("res0 expected to be zero");
+                    }
 
-                final int entryCount = readInt();
-                this.entriesStart = readInt();
-                this.config.size = readInt();
-                this.config.imsi.mcc = readShort();
-                this.config.imsi.mnc = readShort();
-                this.config.locale.language[1] = readByte();
-                this.config.locale.language[0] = readByte();
-                this.config.locale.country[1] = readByte();
-                this.config.locale.country[0] = readByte();
-                this.config.screenType.orientation = readByte();
-                this.config.screenType.touchscreen = readByte();
-                this.config.screenType.density = readShort();
-                this.config.input.keyboard = readByte();
-                this.config.input.navigation = readByte();
-                this.config.input.flags = readByte();
-                this.config.input.pad0 = readByte();
-                this.config.screenSize.width = readShort();
-                this.config.screenSize.height = readShort();
-                this.config.version.sdk = readShort();
-                this.config.version.minor = readShort();
-
-                if (this.config.size >= 32) {
-                    this.config.screenConfig.layout = readByte();
-                    this.config.screenConfig.uiMode = readByte();
-                    this.config.screenConfig.smallestWidthDp = readShort();
-                }
+                    this.res1 = readShort();
+                    if (0 != this.res1) {
+                        throw new AaptException("res1 expected to be zero");
+                    }
 
-                if (this.config.size >= 36) {
-                    this.config.screenSizeDp.width = readShort();
-                    this.config.screenSizeDp.height = readShort();
-                }
+                    final int entryCount = readInt();
+                    this.entriesStart = readInt();
+                    this.config.size = readInt();
+                    this.config.imsi.mcc = readShort();
+                    this.config.imsi.mnc = readShort();
+                    this.config.locale.language[1] = readByte();
+                    this.config.locale.language[0] = readByte();
+                    this.config.locale.country[1] = readByte();
+                    this.config.locale.country[0] = readByte();
+                    this.config.screenType.orientation = readByte();
+                    this.config.screenType.touchscreen = readByte();
+                    this.config.screenType.density = readShort();
+                    this.config.input.keyboard = readByte();
+                    this.config.input.navigation = readByte();
+                    this.config.input.flags = readByte();
+                    this.config.input.pad0 = readByte();
+                    this.config.screenSize.width = readShort();
+                    this.config.screenSize.height = readShort();
+                    this.config.version.sdk = readShort();
+                    this.config.version.minor = readShort();
+
+                    if (this.config.size >= 32) {
+                        this.config.screenConfig.layout = readByte();
+                        this.config.screenConfig.uiMode = readByte();
+                        this.config.screenConfig.smallestWidthDp = readShort();
+                    }
 
-                if (this.config.size >= 48) {
-                    this.config.localeScript[0] = readByte();
-                    this.config.localeScript[1] = readByte();
-                    this.config.localeScript[2] = readByte();
-                    this.config.localeScript[3] = readByte();
-                    this.config.localeVariant[0] = readByte();
-                    this.config.localeVariant[1] = readByte();
-                    this.config.localeVariant[2] = readByte();
-                    this.config.localeVariant[3] = readByte();
-                    this.config.localeVariant[4] = readByte();
-                    this.config.localeVariant[5] = readByte();
-                    this.config.localeVariant[6] = readByte();
-                    this.config.localeVariant[7] = readByte();
-                }
+                    if (this.config.size >= 36) {
+                        this.config.screenSizeDp.width = readShort();
+                        this.config.screenSizeDp.height = readShort();
+                    }
 
-                if (this.config.size >= 52) {
-                    this.config.screenConfig2.layout = readByte();
-                    this.config.screenConfig2.pad1 = readByte();
-                    this.config.screenConfig2.pad2 = readShort();
-                }
+                    if (this.config.size >= 48) {
+                        this.config.localeScript[0] = readByte();
+                        this.config.localeScript[1] = readByte();
+                        this.config.localeScript[2] = readByte();
+                        this.config.localeScript[3] = readByte();
+                        this.config.localeVariant[0] = readByte();
+                        this.config.localeVariant[1] = readByte();
+                        this.config.localeVariant[2] = readByte();
+                        this.config.localeVariant[3] = readByte();
+                        this.config.localeVariant[4] = readByte();
+                        this.config.localeVariant[5] = readByte();
+                        this.config.localeVariant[6] = readByte();
+                        this.config.localeVariant[7] = readByte();
+                    }
 
-                seek(p + this.headerSize);
+                    if (this.config.size >= 52) {
+                        this.config.screenConfig2.layout = readByte();
+                        this.config.screenConfig2.pad1 = readByte();
+                        this.config.screenConfig2.pad2 = readShort();
+                    }
 
-                for (int i = 0; i < entryCount; i++) {
-                    this.entries.add(new IndexedEntry<ResourceTable.Entry>(readInt(), null));
-                }
+                    seek(p + this.headerSize);
 
-                final long entriesStart = p + this.entriesStart;
+                    for (int i = 0; i < entryCount; i++) {
+                        this.entries.add(new IndexedEntry<ResourceTable.Entry>(readInt(), null));
+                    }
 
-                for (int i = 0; i < entryCount; i++) {
-                    final IndexedEntry<ResourceTable.Entry> entry = this.entries.get(i);
+                    final long entriesStart = p + this.entriesStart;
 
-                    if (ResourceTable.Entry.NO_ENTRY != entry.index) {
-                        seek(entriesStart + entry.index);
-                        entry.value = parseResourceTableEntry();
+                    for (int i = 0; i < entryCount; i++) {
+                        final IndexedEntry<ResourceTable.Entry> entry = this.entries.get(i);
+
+                        if (ResourceTable.Entry.NO_ENTRY != entry.index) {
+                            seek(entriesStart + entry.index);
+                            entry.value = parseResourceTableEntry();
+                        }
                     }
+
+                    seek(p + this.size);
                 }
 
-                seek(p + this.size);
-            }
+                @Override
+                public ResourceTable.Package getPackage() {
+                    return pkg;
+                }
 
-            @Override
-            public ResourceTable.Package getPackage() {
-                return pkg;
-            }
+                @Override
+                public ResourceTable.Config getConfig() {
+                    return this.config;
+                }
+            };
 
-            @Override
-            public ResourceTable.Config getConfig() {
-                return this.config;
-            }
-        };
+            bytes = type.size;
+            return type;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -525,16 +575,26 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public ResourceTable.Library parseResourceTableLibrary(final ResourceTable.Package pkg) throws IOException {
-        final ResourceTable table = pkg.getResourceTable();
-        return table.new Library() {
-            {
-                parseChunkHeader(this);
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.TABLE_LIBRARY);
+        long bytes = 0;
+
+        try {
+            final ResourceTable table = pkg.getResourceTable();
+            final ResourceTable.Library lib = table.new Library() {
+                {
+                    parseChunkHeader(this);
 
-                for (int i = 0, count = readInt(); i < count; i++) {
-                    this.entries.add(new IndexedEntry<String>(readInt(), parsePackageName()));
+                    for (int i = 0, count = readInt(); i < count; i++) {
+                        this.entries.add(new IndexedEntry<String>(readInt(), parsePackageName()));
+                    }
                 }
-            }
-        };
+            };
+
+            bytes = lib.size;
+            return lib;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -568,35 +628,105 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public Xml parseXml() throws IOException {
-        final Xml xml = parseChunkHeader(new Xml());
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.XML);
+        long bytes = 0;
 
-        while (hasRemaining()) {
-            switch (expectChunkTypes(ChunkType.STRING_POOL, ChunkType.XML_RESOURCE_MAP, ChunkType.XML_CDATA, ChunkType.XML_END_ELEMENT, ChunkType.XML_END_NAMESPACE, ChunkType.XML_START_ELEMENT, ChunkType.XML_START_NAMESPACE)) {
-            case ChunkType.STRING_POOL:
-                xml.pool = parseStringPool();
-                break;
-            case ChunkType.XML_RESOURCE_MAP:
-                xml.resources = parseXmlResourceMap(xml);
-                break;
-            case ChunkType.XML_CDATA:
-                xml.chunks.add(parseXmlCharData(xml));
-                break;
-            case ChunkType.XML_END_ELEMENT:
-                xml.chunks.add(parseXmlEndElement(xml));
-                break;
-            case ChunkType.XML_END_NAMESPACE:
-                xml.chunks.add(parseXmlNamespace(xml.new Namespace(ChunkType.XML_END_NAMESPACE)));
-                break;
-            case ChunkType.XML_START_ELEMENT:
-                xml.chunks.add(parseXmlStartElement(xml));
-                break;
-            case ChunkType.XML_START_NAMESPACE:
-                xml.chunks.add(parseXmlNamespace(xml.new Namespace(ChunkType.XML_START_NAMESPACE)));
-                break;
+        try {
+            final long p = tell();
+            final Xml xml = parseChunkHeader(new Xml());
+            final XmlPullParser parser = new XmlPullParser(map(p, xml.size));
+
+            for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+                switch (event) {
+                case XmlPullParser.START_NAMESPACE:
+                case XmlPullParser.END_NAMESPACE:
+                    final Xml.Namespace namespace = parseXmlNode(xml.new Namespace((short) event), parser);
+                    namespace.prefix = parser.getNamespacePrefixIndex();
+                    namespace.uri = parser.getNamespaceUriIndex();
+                    xml.chunks.add(namespace);
+                    break;
+                case XmlPullParser.START_TAG:
+                    final Xml.Element element = parseXmlElement(xml.new Element(ChunkType.XML_START_ELEMENT), parser);
+                    element.attributeStart = parser.getAttributeStart();
+                    element.attributeSize = parser.getAttributeSize();
+                    element.idIndex = parser.getIdIndex();
+                    element.classIndex = parser.getClassIndex();
+                    element.styleIndex = parser.getStyleIndex();
+
+                    for (int i = 0, n = parser.getAttributeCount(); i < n; i++) {
+                        final Xml.Attribute attr = xml.new Attribute();
+                        attr.ns = parser.getAttributeNamespaceIndex(i);
+                        attr.name = parser.getAttributeNameIndex(i);
+                        attr.rawValue = parser.getAttributeRawValueIndex(i);
+                        parser.getAttributeTypedValue(i, attr.typedValue);
+                        element.attributes.add(attr);
+                    }
+
+                    xml.chunks.add(element);
+                    break;
+                case XmlPullParser.END_TAG:
+                    xml.chunks.add(parseXmlElement(xml.new Element(ChunkType.XML_END_ELEMENT), parser));
+                    break;
+                case XmlPullParser.TEXT:
+                    final Xml.CharData cdata = parseXmlNode(xml.new CharData(), parser);
+                    cdata.data = parser.getTextIndex();
+                    parser.getTextTypedValue(cdata.typedData);
+                    xml.chunks.add(cdata);
+                    break;
+                }
+            }
+
+            if (parser.getResourceIdCount() > 0) {
+                xml.resources = xml.new ResourceMap();
+                xml.resources.headerSize = (short) parser.getResourceMapHeaderSize();
+                xml.resources.size = xml.resources.headerSize + parser.getResourceIdCount() * 4;
+
+                for (int i = 0, n = parser.getResourceIdCount(); i < n; i++) {
+                    xml.resources.ids.add(parser.getResourceId(i));
+                }
+            }
+
+            // the strings decoded by the parser are reused rather than parsed again
+            xml.pool = parser.getStringPool();
+
+            seek(p + xml.size);
+            bytes = xml.size;
+            return xml;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
+    }
+
+    /**
+     * Maps the specified region of file into memory
+     */
+    private ByteBuffer map(final long position, final int size) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+
+        try {
+            if (position + size > raf.length()) {
+                throw new AaptException(String.format("Expect %d bytes of XML, but %d found", size, raf.length() - position));
             }
+
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            raf.close();
         }
+    }
+
+    private static <T extends Xml.Node> T parseXmlNode(final T node, final XmlPullParser parser) {
+        node.headerSize = parser.getChunkHeaderSize();
+        node.size = parser.getChunkSize();
+        node.lineNumber = parser.getLineNumber();
+        node.commentIndex = parser.getCommentIndex();
+        return node;
+    }
 
-        return xml;
+    private static <T extends Xml.Element> T parseXmlElement(final T element, final XmlPullParser parser) {
+        parseXmlNode(element, parser);
+        element.ns = parser.getNamespaceIndex();
+        element.name = parser.getNameIndex();
+        return element;
     }
 
     /**
@@ -744,52 +874,61 @@ public final class AssetEditor extends StreamEditor {
      *             if error occurred
      */
     public StringPool parseStringPool() throws IOException {
-        final long p = tell();
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PARSE, ChunkType.STRING_POOL);
+        long bytes = 0;
 
-        return new StringPool() {
-            {
-                parseChunkHeader(this);
+        try {
+            final long p = tell();
 
-                final int stringCount = readInt();
-                final int styleCount = readInt();
+            final StringPool pool = new StringPool() {
+                {
+                    parseChunkHeader(this);
 
-                this.flags = readInt();
-                this.stringsStart = readInt();
-                this.stylesStart = readInt();
+                    final int stringCount = readInt();
+                    final int styleCount = readInt();
 
-                for (int i = 0; i < stringCount; i++) {
-                    this.strings.add(new IndexedEntry<String>(readInt(), null));
-                }
+                    this.flags = readInt();
+                    this.stringsStart = readInt();
+                    this.stylesStart = readInt();
 
-                for (int i = 0; i < styleCount; i++) {
-                    this.styles.add(new IndexedEntry<StringPool.Style>(readInt(), new StringPool.Style()));
-                }
+                    for (int i = 0; i < stringCount; i++) {
+                        this.strings.add(new IndexedEntry<String>(readInt(), null));
+                    }
 
-                for (int i = 0; i < stringCount; i++) {
-                    final IndexedEntry<String> entry = this.strings.get(i);
-                    seek(p + this.stringsStart + entry.index);
-                    entry.value = isUTF8() ? parseUtf8String() : parseUtf16String();
-                }
+                    for (int i = 0; i < styleCount; i++) {
+                        this.styles.add(new IndexedEntry<StringPool.Style>(readInt(), new StringPool.Style()));
+                    }
+
+                    for (int i = 0; i < stringCount; i++) {
+                        final IndexedEntry<String> entry = this.strings.get(i);
+                        seek(p + this.stringsStart + entry.index);
+                        entry.value = isUTF8() ? parseUtf8String() : parseUtf16String();
+                    }
 
-                for (int i = 0; i < styleCount; i++) {
-                    final IndexedEntry<StringPool.Style> entry = this.styles.get(i);
-                    seek(p + this.stylesStart + entry.index);
+                    for (int i = 0; i < styleCount; i++) {
+                        final IndexedEntry<StringPool.Style> entry = this.styles.get(i);
+                        seek(p + this.stylesStart + entry.index);
 
-                    for (long p = tell(); StringPool.Span.END != readInt(); p = tell()) {
-                        seek(p);
+                        for (long p = tell(); StringPool.Span.END != readInt(); p = tell()) {
+                            seek(p);
 
-                        final StringPool.Span span = parseStringPoolSpan();
-                        entry.value.add(span);
-                        if (span.name == StringPool.Span.END) {
-                            break;
+                            final StringPool.Span span = parseStringPoolSpan();
+                            entry.value.add(span);
+                            if (span.name == StringPool.Span.END) {
+                                break;
+                            }
                         }
                     }
-                }
 
-                seek(p + this.size);
-            }
-        };
+                    seek(p + this.size);
+                }
+            };
 
+            bytes = pool.size;
+            return pool;
+        } finally {
+            Instrumentations.end(probe, this.source, bytes);
+        }
     }
 
     /**
@@ -0,0 +1,679 @@
+package com.sdklite.aapt;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import android.util.TypedValue;
+
+/**
+ * The generator of synthetic resource tables, string pools, binary XML and
+ * symbols for scale testing, the same seed and sizes always generate the same
+ * assets:
+ *
+ * <pre>
+ * final AssetGenerator generator = new AssetGenerator(42)
+ *         .setPackageCount(1)
+ *         .setTypeCount(12)
+ *         .setEntryCount(5000)
+ *         .setConfigCount(3);
+ * generator.writeApk(new File("synthetic.apk"));
+ * </pre>
+ *
+ * The generated models have all the sizes and offsets computed, so they can be
+ * written by {@link ChunkOutputStream} directly
+ *
+ * @author johnsonlee
+ *
+ */
+public class AssetGenerator {
+
+    /**
+     * The names of the well known resource types, the types beyond are named
+     * {@code type<id>}
+     */
+    private static final String[] TYPES = { "attr", "string", "style", "layout", "dimen", "color", "id", "drawable", "bool", "integer", "array", "menu" };
+
+    private static final String[] TAGS = { "b", "i", "u" };
+
+    private static final String[] LANGUAGES = { "en", "zh", "fr", "de", "ja", "ko", "es", "pt" };
+
+    private static final short[] DENSITIES = { 160, 240, 320, 480, 640 };
+
+    private static final int ATTR_TYPE = 0x01000000;
+
+    private static final int CONFIG_LOCALE = 0x0004;
+
+    private static final int CONFIG_DENSITY = 0x0100;
+
+    private static final int ENTRY_SIZE = 8;
+
+    private static final int VALUE_SIZE = 8;
+
+    private static final int MAP_ENTRY_SIZE = ENTRY_SIZE + 8;
+
+    private static final int MAP_SIZE = 4 + VALUE_SIZE;
+
+    private static final int TYPE_SPEC_HEADER_SIZE = ChunkHeader.MIN_HEADER_SIZE + 8;
+
+    private static final int CONFIG_SIZE = ResourceTable.Type.HEADER_SIZE - ChunkHeader.MIN_HEADER_SIZE - 12;
+
+    private static final String RES_AUTO = "http://schemas.android.com/apk/res-auto";
+
+    private final long seed;
+
+    private int packageCount = 1;
+
+    private int typeCount = 8;
+
+    private int entryCount = 100;
+
+    private int configCount = 2;
+
+    private int stringCount = 100;
+
+    private int styleCount = 0;
+
+    private int spanCount = 2;
+
+    private int xmlDepth = 4;
+
+    private int xmlWidth = 4;
+
+    private int xmlCount = 8;
+
+    /**
+     * Instantialize with the random seed
+     *
+     * @param seed
+     *            The random seed
+     */
+    public AssetGenerator(final long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns a generator which generates the resource table of approximately
+     * the specified size in bytes
+     *
+     * @param seed
+     *            The random seed
+     * @param size
+     *            The approximate size of resource table in bytes
+     * @return a new generator
+     */
+    public static AssetGenerator ofSize(final long seed, final long size) {
+        // about 80 bytes per entry of each type with 2 configs
+        final long bytesPerEntry = 8 * 80;
+        final int packages = (int) Math.max(1, (size + bytesPerEntry * 0xffff - 1) / (bytesPerEntry * 0xffff));
+        final int entries = (int) Math.max(1, Math.min(0xffff, size / (bytesPerEntry * packages)));
+
+        return new AssetGenerator(seed)
+                .setPackageCount(packages)
+                .setTypeCount(8)
+                .setEntryCount(entries)
+                .setConfigCount(2)
+                .setStringCount(Math.max(1, entries * 2))
+                .setStyleCount(Math.max(1, entries / 16));
+    }
+
+    /**
+     * Sets the number of packages, up to 126
+     */
+    public AssetGenerator setPackageCount(final int packageCount) {
+        this.packageCount = check(packageCount, 1, Constants.APP_PACKAGE_ID - Constants.SYS_PACKAGE_ID, "packages");
+        return this;
+    }
+
+    /**
+     * Sets the number of types in each package, up to 255
+     */
+    public AssetGenerator setTypeCount(final int typeCount) {
+        this.typeCount = check(typeCount, 1, 0xff, "types");
+        return this;
+    }
+
+    /**
+     * Sets the number of entries in each type, up to 65535
+     */
+    public AssetGenerator setEntryCount(final int entryCount) {
+        this.entryCount = check(entryCount, 1, 0xffff, "entries");
+        return this;
+    }
+
+    /**
+     * Sets the number of configurations of each type
+     */
+    public AssetGenerator setConfigCount(final int configCount) {
+        this.configCount = check(configCount, 1, 1 + DENSITIES.length * LANGUAGES.length, "configs");
+        return this;
+    }
+
+    /**
+     * Sets the number of distinct string values in the global string pool
+     */
+    public AssetGenerator setStringCount(final int stringCount) {
+        this.stringCount = check(stringCount, 1, Integer.MAX_VALUE, "strings");
+        return this;
+    }
+
+    /**
+     * Sets the number of styled strings in the global string pool
+     */
+    public AssetGenerator setStyleCount(final int styleCount) {
+        this.styleCount = check(styleCount, 0, Integer.MAX_VALUE, "styles");
+        return this;
+    }
+
+    /**
+     * Sets the number of spans of each styled string
+     */
+    public AssetGenerator setSpanCount(final int spanCount) {
+        this.spanCount = check(spanCount, 1, Integer.MAX_VALUE, "spans");
+        return this;
+    }
+
+    /**
+     * Sets the depth of the generated XML
+     */
+    public AssetGenerator setXmlDepth(final int xmlDepth) {
+        this.xmlDepth = check(xmlDepth, 1, Integer.MAX_VALUE, "XML depth");
+        return this;
+    }
+
+    /**
+     * Sets the number of child elements of each element in the generated XML
+     */
+    public AssetGenerator setXmlWidth(final int xmlWidth) {
+        this.xmlWidth = check(xmlWidth, 1, Integer.MAX_VALUE, "XML width");
+        return this;
+    }
+
+    /**
+     * Sets the number of layout files in the generated APK
+     */
+    public AssetGenerator setXmlCount(final int xmlCount) {
+        this.xmlCount = check(xmlCount, 1, Integer.MAX_VALUE, "XML files");
+        return this;
+    }
+
+    /**
+     * Generates the global string pool of resource table, the styled strings
+     * come first as the styles are indexed with the strings
+     *
+     * @return a new string pool
+     */
+    public StringPool newStringPool() {
+        final Random random = new Random(this.seed);
+        final int nstyles = Math.min(this.styleCount, this.stringCount);
+        final List<String> strings = new ArrayList<String>(this.stringCount + this.xmlCount + TAGS.length);
+        final List<StringPool.Style> styles = new ArrayList<StringPool.Style>(nstyles);
+
+        for (int i = 0; i < this.stringCount; i++) {
+            strings.add(i + " " + randomString(random, 4 + random.nextInt(28)));
+        }
+
+        for (int i = 0; i < this.xmlCount; i++) {
+            strings.add("res/layout/layout_" + i + ".xml");
+        }
+
+        final int tags = strings.size();
+
+        for (final String tag : TAGS) {
+            strings.add(tag);
+        }
+
+        for (int i = 0; i < nstyles; i++) {
+            final int length = strings.get(i).length();
+            final StringPool.Style style = new StringPool.Style();
+
+            for (int j = 0; j < this.spanCount; j++) {
+                final StringPool.Span span = new StringPool.Span();
+                span.name = tags + random.nextInt(TAGS.length);
+                span.firstChar = random.nextInt(length);
+                span.lastChar = span.firstChar + random.nextInt(length - span.firstChar);
+                style.add(span);
+            }
+
+            styles.add(style);
+        }
+
+        return newStringPool(strings, styles, StringPool.FLAG_UTF8);
+    }
+
+    /**
+     * Generates the resource table
+     *
+     * @return a new resource table
+     */
+    public ResourceTable newResourceTable() {
+        final StringPool pool = newStringPool();
+
+        final ResourceTable table = new ResourceTable() {
+            @Override
+            public StringPool getStringPool() {
+                return pool;
+            }
+        };
+
+        final Random random = new Random(this.seed);
+        int size = ResourceTable.HEADER_SIZE + pool.size;
+
+        for (int i = 0; i < this.packageCount; i++) {
+            final ResourceTable.Package pkg = newPackage(table, Constants.APP_PACKAGE_ID - i, random);
+            final ResourceTable.PackageGroup group = new ResourceTable.PackageGroup(table, pkg.name, pkg.id);
+            group.packages.add(pkg);
+            table.packageGroups.add(group);
+            table.packageMap[pkg.id] = (byte) table.packageGroups.size();
+            size += pkg.size;
+        }
+
+        table.headerSize = ResourceTable.HEADER_SIZE;
+        table.size = size;
+        return table;
+    }
+
+    /**
+     * Generates the symbols of the specified resource table
+     *
+     * @param table
+     *            The resource table
+     * @return the symbols of all entries in the resource table
+     */
+    public Symbols newSymbols(final ResourceTable table) {
+        final Symbols symbols = new Symbols();
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                for (final java.util.Map.Entry<ResourceName, Integer> e : spec.entries().entrySet()) {
+                    final Symbols.Entry entry = new Symbols.Entry("int", e.getKey().typeName, e.getKey().name, Internal.makeId(pkg.id, spec.id, e.getValue()));
+                    symbols.entries.put(entry.key, entry);
+                }
+            }
+        }
+
+        return symbols;
+    }
+
+    /**
+     * Generates the binary XML with elements nested in the specified depth,
+     * the attributes reference the resources of the specified table
+     *
+     * @param table
+     *            The resource table
+     * @return a new binary XML
+     * @throws IOException
+     *             if error occurred
+     */
+    public Xml newXml(final ResourceTable table) throws IOException {
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        final PrintWriter out = new PrintWriter(text);
+        final String[] types = getTypeNames(TYPES.length);
+        final int nattrs = Math.min(8, this.entryCount);
+
+        out.printf("<LinearLayout xmlns:app=\"%s\">", RES_AUTO).println();
+        writeElements(out, new Random(this.seed), types, nattrs, 1);
+        out.println("</LinearLayout>");
+        out.flush();
+
+        return new XmlCompiler(null, table).compile(new ByteArrayInputStream(text.toByteArray()), "layout.xml");
+    }
+
+    /**
+     * Writes the generated resource table into the specified file
+     *
+     * @param file
+     *            The output file
+     * @return the generated resource table
+     * @throws IOException
+     *             if error occurred
+     */
+    public ResourceTable writeResourceTable(final File file) throws IOException {
+        final ResourceTable table = newResourceTable();
+        final ChunkOutputStream out = new ChunkOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            out.write(table);
+        } finally {
+            out.close();
+        }
+
+        return table;
+    }
+
+    /**
+     * Writes the generated manifest, resource table and layouts into the
+     * specified APK file, no dex is included
+     *
+     * @param file
+     *            The APK file
+     * @return the generated resource table
+     * @throws IOException
+     *             if error occurred
+     */
+    public ResourceTable writeApk(final File file) throws IOException {
+        final ResourceTable table = newResourceTable();
+        final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            zip.putNextEntry(new ZipEntry(Aapt.ANDROID_MANIFEST_XML));
+            write(zip, newManifest(table));
+            zip.putNextEntry(new ZipEntry(Aapt.RESOURCES_ARSC));
+            write(zip, table);
+
+            final Xml layout = newXml(table);
+            for (int i = 0; i < this.xmlCount; i++) {
+                zip.putNextEntry(new ZipEntry("res/layout/layout_" + i + ".xml"));
+                write(zip, layout);
+            }
+        } finally {
+            zip.close();
+        }
+
+        return table;
+    }
+
+    private ResourceTable.Package newPackage(final ResourceTable table, final int id, final Random random) {
+        final String[] types = getTypeNames(this.typeCount);
+        final List<String> keys = new ArrayList<String>(this.typeCount * this.entryCount);
+
+        for (final String type : types) {
+            for (int i = 0; i < this.entryCount; i++) {
+                keys.add(type + "_" + i);
+            }
+        }
+
+        final StringPool typePool = newStringPool(java.util.Arrays.asList(types), new ArrayList<StringPool.Style>(), StringPool.FLAG_UTF8);
+        final StringPool keyPool = newStringPool(keys, new ArrayList<StringPool.Style>(), StringPool.FLAG_UTF8);
+
+        final ResourceTable.Package pkg = table.new Package() {
+            @Override
+            public StringPool getTypeStringPool() {
+                return typePool;
+            }
+
+            @Override
+            public StringPool getKeyStringPool() {
+                return keyPool;
+            }
+        };
+
+        pkg.id = id;
+        pkg.name = Constants.APP_PACKAGE_ID == id ? "com.example.synthetic" : "com.example.synthetic" + (Constants.APP_PACKAGE_ID - id);
+        pkg.headerSize = ResourceTable.Package.HEADER_SIZE;
+        pkg.typeStrings = pkg.headerSize;
+        pkg.lastPublicType = types.length;
+        pkg.keyStrings = pkg.typeStrings + typePool.size;
+        pkg.lastPublicKey = keys.size();
+
+        int size = pkg.keyStrings + keyPool.size;
+
+        for (int i = 0; i < types.length; i++) {
+            final ResourceTable.TypeSpec spec = newTypeSpec(pkg, i + 1, types[i], random);
+            pkg.specs.add(spec);
+            size += spec.size;
+
+            for (final ResourceTable.Type type : spec.configs) {
+                size += type.size;
+            }
+        }
+
+        pkg.size = size;
+        return pkg;
+    }
+
+    private ResourceTable.TypeSpec newTypeSpec(final ResourceTable.Package pkg, final int id, final String name, final Random random) {
+        final ResourceTable table = pkg.getResourceTable();
+        final ResourceTable.TypeSpec spec = table.new TypeSpec() {
+            @Override
+            public ResourceTable.Package getPackage() {
+                return pkg;
+            }
+        };
+
+        spec.id = (byte) id;
+        spec.headerSize = TYPE_SPEC_HEADER_SIZE;
+        spec.size = TYPE_SPEC_HEADER_SIZE + this.entryCount * 4;
+
+        for (int i = 0; i < this.entryCount; i++) {
+            spec.flags.add(this.configCount > 1 ? CONFIG_DENSITY | CONFIG_LOCALE : 0);
+        }
+
+        for (int i = 0; i < this.configCount; i++) {
+            spec.configs.add(newType(pkg, id, name, i, random));
+        }
+
+        return spec;
+    }
+
+    private ResourceTable.Type newType(final ResourceTable.Package pkg, final int id, final String name, final int configIndex, final Random random) {
+        final ResourceTable table = pkg.getResourceTable();
+        final ResourceTable.Type type = table.new Type() {
+            @Override
+            public ResourceTable.Package getPackage() {
+                return pkg;
+            }
+
+            @Override
+            public ResourceTable.Config getConfig() {
+                return this.config;
+            }
+        };
+
+        type.id = (byte) id;
+        type.headerSize = ResourceTable.Type.HEADER_SIZE;
+        type.entriesStart = type.headerSize + this.entryCount * 4;
+        setConfig(type.config, configIndex);
+
+        final int attrs = Internal.makeId(pkg.id, 1, 0); // the first type is attr
+        final int key0 = (id - 1) * this.entryCount;
+        int offset = 0;
+
+        for (int i = 0; i < this.entryCount; i++) {
+            final ResourceTable.Entry entry;
+
+            if ("attr".equals(name)) {
+                entry = newMapEntry(0, ATTR_TYPE, ValueType.INT_DEC, 0x0000ffff);
+            } else if ("style".equals(name)) {
+                // chain the styles by 4 so that the flattening has work to do
+                final int parent = 0 != (i & 3) ? Internal.makeId(pkg.id, id, i - 1) : 0;
+                final ResourceTable.MapEntry style = newMapEntry(parent);
+
+                for (int j = 0, n = 1 + random.nextInt(4); j < n; j++) {
+                    addMap(style, attrs + (i + j) % this.entryCount, ValueType.INT_DEC, random.nextInt());
+                }
+
+                entry = style;
+            } else {
+                final ResourceTable.ValueEntry value = new ResourceTable.ValueEntry();
+                value.size = ENTRY_SIZE;
+                value.value.size = VALUE_SIZE;
+
+                if ("string".equals(name)) {
+                    value.value.dataType = ValueType.STRING;
+                    value.value.data = (i + configIndex) % this.stringCount;
+                } else if ("layout".equals(name)) {
+                    value.value.dataType = ValueType.STRING;
+                    value.value.data = this.stringCount + i % this.xmlCount;
+                } else if ("dimen".equals(name)) {
+                    value.value.dataType = ValueType.DIMENSION;
+                    value.value.data = XmlCompiler.toComplex(random.nextInt(256), TypedValue.COMPLEX_UNIT_DIP);
+                } else if ("color".equals(name)) {
+                    value.value.dataType = ValueType.INT_COLOR_ARGB8;
+                    value.value.data = random.nextInt() | 0xff000000;
+                } else if ("id".equals(name) || "bool".equals(name)) {
+                    value.value.dataType = ValueType.INT_BOOLEAN;
+                    value.value.data = random.nextBoolean() ? 0xffffffff : 0;
+                } else if (i > 0) {
+                    value.value.dataType = ValueType.REFERENCE;
+                    value.value.data = Internal.makeId(pkg.id, id, random.nextInt(i));
+                } else {
+                    value.value.dataType = ValueType.INT_DEC;
+                    value.value.data = random.nextInt();
+                }
+
+                entry = value;
+            }
+
+            entry.key = key0 + i;
+            type.entries.add(new IndexedEntry<ResourceTable.Entry>(offset, entry));
+            offset += sizeOf(entry);
+        }
+
+        type.size = type.entriesStart + offset;
+        return type;
+    }
+
+    private static ResourceTable.MapEntry newMapEntry(final int parent, final int... items) {
+        final ResourceTable.MapEntry entry = new ResourceTable.MapEntry();
+        entry.size = MAP_ENTRY_SIZE;
+        entry.flags = ResourceTable.Entry.FLAG_COMPLEX;
+        entry.parent = parent;
+
+        for (int i = 0; i < items.length; i += 3) {
+            addMap(entry, items[i], (byte) items[i + 1], items[i + 2]);
+        }
+
+        return entry;
+    }
+
+    private static void addMap(final ResourceTable.MapEntry entry, final int name, final byte dataType, final int data) {
+        final ResourceTable.Map map = new ResourceTable.Map();
+        map.name = name;
+        map.value.size = VALUE_SIZE;
+        map.value.dataType = dataType;
+        map.value.data = data;
+        entry.addValue(map);
+    }
+
+    private static int sizeOf(final ResourceTable.Entry entry) {
+        if (entry instanceof ResourceTable.MapEntry) {
+            return MAP_ENTRY_SIZE + ((ResourceTable.MapEntry) entry).getValueCount() * MAP_SIZE;
+        }
+
+        return ENTRY_SIZE + VALUE_SIZE;
+    }
+
+    /**
+     * The first configuration is the default one, the others are the
+     * combinations of densities and languages
+     */
+    private static void setConfig(final ResourceTable.Config config, final int index) {
+        config.size = CONFIG_SIZE;
+
+        if (index > 0) {
+            final String language = LANGUAGES[(index - 1) / DENSITIES.length];
+            config.screenType.density = DENSITIES[(index - 1) % DENSITIES.length];
+            config.locale.language[1] = (byte) language.charAt(0);
+            config.locale.language[0] = (byte) language.charAt(1);
+            config.version.sdk = 4;
+        }
+    }
+
+    private static StringPool newStringPool(final List<String> strings, final List<StringPool.Style> styles, final int flags) {
+        final StringPool pool = new StringPool();
+        pool.flags = flags;
+        pool.headerSize = StringPool.HEADER_SIZE;
+
+        int offset = 0;
+
+        for (final String s : strings) {
+            pool.strings.add(new IndexedEntry<String>(offset, s));
+            offset += pool.sizeOf(s);
+        }
+
+        pool.stringsStart = StringPool.HEADER_SIZE + (strings.size() + styles.size()) * 4;
+        pool.size = pool.stringsStart + ((offset + 3) & ~3);
+
+        if (styles.isEmpty()) {
+            pool.stylesStart = 0;
+            return pool;
+        }
+
+        offset = 0;
+
+        for (final StringPool.Style style : styles) {
+            pool.styles.add(new IndexedEntry<StringPool.Style>(offset, style));
+            offset += pool.sizeOf(style);
+        }
+
+        // two END markers are appended after styles
+        pool.stylesStart = pool.size;
+        pool.size += offset + 8;
+        return pool;
+    }
+
+    private Xml newManifest(final ResourceTable table) throws IOException {
+        final String xml = String.format("<manifest xmlns:android=\"%s\" package=\"%s\"><application/></manifest>", Constants.ANDROID_SCHEMA, table.getPackage().getName());
+        return new XmlCompiler(null, table).compile(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), Aapt.ANDROID_MANIFEST_XML);
+    }
+
+    private void writeElements(final PrintWriter out, final Random random, final String[] types, final int nattrs, final int depth) {
+        for (int i = 0; i < this.xmlWidth; i++) {
+            final int attr = random.nextInt(nattrs);
+            final String ref = types[random.nextInt(Math.min(types.length, this.typeCount))];
+
+            if (depth >= this.xmlDepth) {
+                out.printf("<TextView app:attr_%d=\"@%s/%s_%d\" text=\"%d\"/>", attr, ref, ref, random.nextInt(this.entryCount), i).println();
+            } else {
+                out.printf("<LinearLayout app:attr_%d=\"@%s/%s_%d\">", attr, ref, ref, random.nextInt(this.entryCount)).println();
+                writeElements(out, random, types, nattrs, depth + 1);
+                out.println("</LinearLayout>");
+            }
+        }
+    }
+
+    private static String[] getTypeNames(final int n) {
+        final String[] types = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            types[i] = i < TYPES.length ? TYPES[i] : "type" + (i + 1);
+        }
+
+        return types;
+    }
+
+    private static String randomString(final Random random, final int length) {
+        final char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+
+        return new String(chars);
+    }
+
+    private static void write(final OutputStream out, final Chunk chunk) throws IOException {
+        // ChunkOutputStream closes the underlying stream
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(chunk instanceof ChunkHeader ? ((ChunkHeader) chunk).getSize() : 8192);
+        final ChunkOutputStream cos = new ChunkOutputStream(buffer);
+
+        try {
+            cos.write(chunk);
+        } finally {
+            cos.close();
+        }
+
+        buffer.writeTo(out);
+    }
+
+    private static int check(final int value, final int min, final int max, final String name) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(String.format("The number of %s must be in [%d, %d]", name, min, max));
+        }
+
+        return value;
+    }
+
+}
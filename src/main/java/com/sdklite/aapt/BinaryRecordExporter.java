@@ -0,0 +1,280 @@
+package com.sdklite.aapt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary exporter of resource table, the records are length-prefixed so
+ * that they could be skipped or split without decoding. The layout of binary
+ * records in little endian is:
+ *
+ * <pre>
+ * header   : magic, version, reserved
+ * record   : uint32_t length of the following fields,
+ *            { id, flags, data type, data, [parent, key], strings }
+ * strings  : { varint length + 1 or 0 for null, UTF-8 bytes } for each of
+ *            package, type, name, config, [key name], value
+ * </pre>
+ *
+ * The parent, key and key name are only present for bag items, the records
+ * could be read by {@link BinaryRecordExporter.Reader}
+ *
+ * @author johnsonlee
+ *
+ */
+public class BinaryRecordExporter extends ResourceTableExporter {
+
+    /**
+     * The magic number of binary records, {@code RREC} in little endian
+     */
+    public static final int MAGIC = 0x43455252;
+
+    /**
+     * The current version of binary records
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The record is an item of bag
+     */
+    public static final int FLAG_BAG = 1 << 0;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The reader of binary records
+     *
+     * @author johnsonlee
+     *
+     */
+    public static class Reader implements Closeable {
+
+        private final InputStream in;
+
+        private final Record record = new Record();
+
+        private byte[] buffer = new byte[256];
+
+        /**
+         * Instantialize with the input stream, the header is read immediately
+         *
+         * @param in
+         *            The input stream
+         * @throws IOException
+         *             if error occurred
+         * @throws AaptException
+         *             if the input is not binary records
+         */
+        public Reader(final InputStream in) throws IOException {
+            this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE);
+
+            final ByteBuffer header = read(8);
+            if (null == header || MAGIC != header.getInt()) {
+                throw new AaptException("Bad magic number");
+            }
+
+            final short version = header.getShort();
+            if (VERSION != version) {
+                throw new AaptException("Unsupported version " + version);
+            }
+        }
+
+        /**
+         * Reads the next record
+         *
+         * @return the next record or null if no more records, the instance is
+         *         reused by the subsequent reading
+         * @throws IOException
+         *             if error occurred
+         */
+        public Record next() throws IOException {
+            final ByteBuffer length = read(4);
+            if (null == length) {
+                return null;
+            }
+
+            final ByteBuffer buf = read(length.getInt());
+            if (null == buf) {
+                throw new EOFException();
+            }
+
+            final Record r = this.record;
+            r.id = buf.getInt();
+            r.bag = 0 != (buf.get() & FLAG_BAG);
+            r.dataType = buf.get();
+            r.data = buf.getInt();
+            r.parent = r.bag ? buf.getInt() : 0;
+            r.key = r.bag ? buf.getInt() : 0;
+            r.packageName = readString(buf);
+            r.typeName = readString(buf);
+            r.name = readString(buf);
+            r.config = readString(buf);
+            r.keyName = r.bag ? readString(buf) : null;
+            r.value = readString(buf);
+            return r;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+
+        /**
+         * Reads the specified number of bytes, returns null at the end of
+         * input
+         */
+        private ByteBuffer read(final int size) throws IOException {
+            if (size > this.buffer.length) {
+                this.buffer = new byte[Math.max(size, this.buffer.length << 1)];
+            }
+
+            for (int n = 0; n < size;) {
+                final int count = this.in.read(this.buffer, n, size - n);
+                if (count < 0) {
+                    if (0 == n) {
+                        return null;
+                    }
+                    throw new EOFException();
+                }
+                n += count;
+            }
+
+            return ByteBuffer.wrap(this.buffer, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static String readString(final ByteBuffer buf) {
+            int length = 0;
+            for (int shift = 0;; shift += 7) {
+                final byte b = buf.get();
+                length |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+
+            if (0 == length) {
+                return null;
+            }
+
+            final String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length - 1, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length - 1);
+            return s;
+        }
+    }
+
+    private final OutputStream out;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    private boolean headerWritten;
+
+    /**
+     * Instantialize with the output stream
+     *
+     * @param out
+     *            The output stream
+     */
+    public BinaryRecordExporter(final OutputStream out) {
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    protected void write(final Record record) throws IOException {
+        if (!this.headerWritten) {
+            writeHeader();
+        }
+
+        final ByteBuffer buf = this.buffer;
+        buf.clear();
+        buf.putInt(0);
+        buf.putInt(record.id);
+        buf.put((byte) (record.bag ? FLAG_BAG : 0));
+        buf.put(record.dataType);
+        buf.putInt(record.data);
+
+        if (record.bag) {
+            buf.putInt(record.parent);
+            buf.putInt(record.key);
+        }
+
+        putString(record.packageName);
+        putString(record.typeName);
+        putString(record.name);
+        putString(record.config);
+
+        if (record.bag) {
+            putString(record.keyName);
+        }
+
+        putString(record.value);
+
+        final ByteBuffer data = this.buffer;
+        data.putInt(0, data.position() - 4);
+        this.out.write(data.array(), 0, data.position());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!this.headerWritten) {
+            writeHeader();
+        }
+
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.out.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0);
+        this.out.write(header.array());
+        this.headerWritten = true;
+    }
+
+    private void putString(final String value) {
+        if (null == value) {
+            ensureCapacity(1);
+            this.buffer.put((byte) 0);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(5 + bytes.length);
+
+        for (int v = bytes.length + 1; ; v >>>= 7) {
+            if (v < 0x80) {
+                this.buffer.put((byte) v);
+                break;
+            }
+            this.buffer.put((byte) ((v & 0x7f) | 0x80));
+        }
+
+        this.buffer.put(bytes);
+    }
+
+    private void ensureCapacity(final int size) {
+        if (this.buffer.remaining() < size) {
+            final ByteBuffer buf = ByteBuffer.allocate(Math.max(this.buffer.capacity() << 1, this.buffer.position() + size)).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.flip();
+            this.buffer = buf.put(this.buffer);
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import com.sdklite.io.IOUtil;
+
+/**
+ * The process-wide LRU cache of parsed resource tables and XML, keyed by
+ * content rather than by path, so that the APK variants sharing identical
+ * {@code resources.arsc} or {@code AndroidManifest.xml} are parsed only once:
+ *
+ * <pre>
+ * final ChunkCache cache = ChunkCache.getDefault();
+ * final ResourceTable table = cache.getResourceTable(apk);
+ * final Xml manifest = cache.getAndroidManifest(apk);
+ * System.out.println(cache.getHitCount() + " hits, " + cache.getMissCount() + " misses");
+ * </pre>
+ *
+ * The entries of APK are keyed by CRC-32 and size from the central directory
+ * without reading the content, the loose files are keyed by CRC-32 and size of
+ * the content. The cached chunks are evicted in least recently used order once
+ * their estimated heap footprint exceeds the budget, a chunk larger than the
+ * budget is never cached.
+ *
+ * The cached chunks are shared by all callers, so that the resource tables and
+ * the XML documents are {@linkplain ResourceTable#freeze() frozen}, they are
+ * safe to be read concurrently and accepted by {@link ResourceResolver},
+ * {@link StyleFlattener}, {@link ResourceTableDumper} and the exporters. Use
+ * {@link ResourceTable#snapshot()} for an editable copy, or
+ * {@link ApkFile#getResourceTable()} and {@link ChunkParser#parse(File)} for a
+ * private copy to be modified.
+ *
+ * @author johnsonlee
+ *
+ */
+public final class ChunkCache {
+
+    /**
+     * The estimated ratio of heap footprint to binary size of chunk. The
+     * retained heap of frozen chunks measured on a 64-bit JVM with compressed
+     * oops is 5.3 to 5.8 times of the binary size for the resource tables of
+     * 2 KB to 8 MB and the layouts, and 3.7 times for a 280 KB manifest. It's
+     * rounded up as a rough estimate rather than an exact size.
+     */
+    public static final int FOOTPRINT_RATIO = 6;
+
+    /**
+     * The default budget, an eighth of the maximum heap
+     */
+    public static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 8;
+
+    private static volatile ChunkCache defaultCache;
+
+    /**
+     * The content key of chunk
+     */
+    private static final class Key {
+
+        final Class<?> type;
+
+        final long crc;
+
+        final long size;
+
+        Key(final Class<?> type, final long crc, final long size) {
+            this.type = type;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (this.crc ^ (this.size * 31)) ^ this.type.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) obj;
+            return this.crc == key.crc && this.size == key.size && this.type == key.type;
+        }
+
+    }
+
+    /**
+     * The frozen chunk with its estimated heap footprint
+     */
+    private static final class Cached {
+
+        final Object value;
+
+        final long footprint;
+
+        Cached(final Object value, final long footprint) {
+            this.value = value;
+            this.footprint = footprint;
+        }
+
+    }
+
+    private final long budget;
+
+    private final LinkedHashMap<Key, Cached> cache = new LinkedHashMap<Key, Cached>(16, 0.75f, true);
+
+    private long footprint;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Returns the process-wide cache with {@link #DEFAULT_BUDGET}
+     */
+    public static ChunkCache getDefault() {
+        ChunkCache cache = defaultCache;
+
+        if (null == cache) {
+            synchronized (ChunkCache.class) {
+                cache = defaultCache;
+
+                if (null == cache) {
+                    defaultCache = cache = new ChunkCache(DEFAULT_BUDGET);
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Instantialize with the heap budget
+     *
+     * @param budget
+     *            The maximum estimated heap footprint of cached chunks in
+     *            bytes
+     */
+    public ChunkCache(final long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the cached resource table of the specified APK, or parses it if
+     * not cached
+     *
+     * @param apk
+     *            The APK file
+     * @return the shared frozen resource table
+     * @throws IOException
+     *             if error occurred
+     */
+    public ResourceTable getResourceTable(final ApkFile apk) throws IOException {
+        final ZipEntry entry = getEntry(apk, Aapt.RESOURCES_ARSC);
+        final Key key = new Key(ResourceTable.class, entry.getCrc(), entry.getSize());
+        final ResourceTable table = get(key);
+
+        return null != table ? table : put(key, apk.getResourceTable().freeze());
+    }
+
+    /**
+     * Returns the cached {@code AndroidManifest.xml} of the specified APK, or
+     * parses it if not cached
+     *
+     * @param apk
+     *            The APK file
+     * @return the shared frozen XML
+     * @throws IOException
+     *             if error occurred
+     */
+    public Xml getAndroidManifest(final ApkFile apk) throws IOException {
+        final ZipEntry entry = getEntry(apk, Aapt.ANDROID_MANIFEST_XML);
+        final Key key = new Key(Xml.class, entry.getCrc(), entry.getSize());
+        final Xml xml = get(key);
+
+        return null != xml ? xml : put(key, apk.getAndroidManifest().freeze());
+    }
+
+    /**
+     * Returns the cached resource table of the specified file, or parses it
+     * if not cached
+     *
+     * @param file
+     *            The resource table file
+     * @return the shared frozen resource table
+     * @throws IOException
+     *             if error occurred
+     */
+    public ResourceTable getResourceTable(final File file) throws IOException {
+        final Key key = new Key(ResourceTable.class, crc32(file), file.length());
+        final ResourceTable table = get(key);
+
+        return null != table ? table : put(key, parse(ResourceTable.class, file).freeze());
+    }
+
+    /**
+     * Returns the cached XML of the specified file, or parses it if not cached
+     *
+     * @param file
+     *            The binary XML file
+     * @return the shared frozen XML
+     * @throws IOException
+     *             if error occurred
+     */
+    public Xml getXml(final File file) throws IOException {
+        final Key key = new Key(Xml.class, crc32(file), file.length());
+        final Xml xml = get(key);
+
+        return null != xml ? xml : put(key, parse(Xml.class, file).freeze());
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Returns the estimated heap footprint of cached chunks in bytes
+     */
+    public synchronized long getFootprint() {
+        return this.footprint;
+    }
+
+    /**
+     * Returns the number of cached chunks
+     */
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Removes all of the cached chunks, the statistics are retained
+     */
+    public synchronized void clear() {
+        this.cache.clear();
+        this.footprint = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits %d, misses %d, evictions %d, cached %d, footprint %d/%d", getHitCount(), getMissCount(), getEvictionCount(), size(), getFootprint(), this.budget);
+    }
+
+    private static <T extends Chunk> T parse(final Class<T> type, final File file) throws IOException {
+        final Chunk parsed = new ChunkParser().parse(file);
+        if (!type.isInstance(parsed)) {
+            throw new AaptException(String.format("Expect %s but %s found in %s", type.getSimpleName(), parsed.getClass().getSimpleName(), file));
+        }
+
+        return type.cast(parsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T get(final Key key) {
+        final Cached cached = this.cache.get(key);
+
+        if (null == cached) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        return (T) cached.value;
+    }
+
+    /**
+     * Caches the frozen chunk unless another thread has cached the same
+     * content meanwhile, then evicts the least recently used chunks
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T put(final Key key, final T value) {
+        final Cached present = this.cache.get(key);
+        if (null != present) {
+            return (T) present.value;
+        }
+
+        final long footprint = key.size * FOOTPRINT_RATIO;
+        if (footprint > this.budget) {
+            return value;
+        }
+
+        this.cache.put(key, new Cached(value, footprint));
+        this.footprint += footprint;
+
+        for (final Iterator<Cached> i = this.cache.values().iterator(); this.footprint > this.budget && i.hasNext();) {
+            this.footprint -= i.next().footprint;
+            this.evictions.incrementAndGet();
+            i.remove();
+        }
+
+        return value;
+    }
+
+    private static ZipEntry getEntry(final ApkFile apk, final String name) {
+        final ZipEntry entry = apk.getEntry(name);
+        if (null == entry || entry.getCrc() < 0 || entry.getSize() < 0) {
+            throw new AaptException(name + " not found or the CRC-32 is unknown");
+        }
+
+        return entry;
+    }
+
+    private static long crc32(final File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[8192];
+        final InputStream in = new FileInputStream(file);
+
+        try {
+            for (int n; (n = in.read(buffer)) > 0;) {
+                crc.update(buffer, 0, n);
+            }
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+
+        return crc.getValue();
+    }
+
+}
@@ -43,55 +43,55 @@ public class ChunkOutputStream extends FilterOutputStream {
         case ChunkType.NULL:
             throw new AaptException("Unsupported chunk type 0");
         case ChunkType.STRING_POOL:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             write((StringPool) chunk);
             break;
         case ChunkType.TABLE:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             write((ResourceTable) chunk);
             break;
         case ChunkType.TABLE_LIBRARY:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeResourceTableLibrary((ResourceTable.Library) chunk);
             break;
         case ChunkType.TABLE_PACKAGE:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeResoruceTablePackage((ResourceTable.Package) chunk);
             break;
         case ChunkType.TABLE_TYPE:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeResourceTableType((ResourceTable.Type) chunk);
             break;
         case ChunkType.TABLE_TYPE_SPEC:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeResourceTableTypeSpec((ResourceTable.TypeSpec) chunk);
             break;
         case ChunkType.XML:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             write((Xml) chunk);
             break;
         case ChunkType.XML_CDATA:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlCharData((Xml.CharData) chunk);
             break;
         case ChunkType.XML_END_ELEMENT:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlEndElement((Xml.Element) chunk);
             break;
         case ChunkType.XML_END_NAMESPACE:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlNamespace((Xml.Namespace) chunk);
             break;
         case ChunkType.XML_RESOURCE_MAP:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlResourceMap((Xml.ResourceMap) chunk);
             break;
         case ChunkType.XML_START_ELEMENT:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlStartElement((Xml.Element) chunk);
             break;
         case ChunkType.XML_START_NAMESPACE:
-            chunk.accept(new ReconcileChunkVisitor());
+            reconcile(chunk);
             writeXmlNamespace((Xml.Namespace) chunk);
             break;
         default:
@@ -99,6 +99,33 @@ public class ChunkOutputStream extends FilterOutputStream {
         }
     }
 
+    private static void reconcile(final Chunk chunk) {
+        // the frozen chunks have been reconciled by freezing
+        if (isFrozen(chunk)) {
+            return;
+        }
+
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.RECONCILE, chunk.getType());
+
+        try {
+            chunk.accept(new ReconcileChunkVisitor());
+        } finally {
+            Instrumentations.end(probe, chunk);
+        }
+    }
+
+    private static boolean isFrozen(final Chunk chunk) {
+        if (chunk instanceof ResourceTable) {
+            return ((ResourceTable) chunk).isFrozen();
+        }
+
+        if (chunk instanceof ResourceTable.Component) {
+            return ((ResourceTable.Component) chunk).getResourceTable().isFrozen();
+        }
+
+        return chunk instanceof StringPool && ((StringPool) chunk).frozen;
+    }
+
     public void write(final ChunkHeader chunk) throws IOException {
         writeShort(chunk.type);
         writeShort(chunk.headerSize);
@@ -106,79 +133,90 @@ public class ChunkOutputStream extends FilterOutputStream {
     }
 
     public void write(final StringPool chunk) throws IOException {
-        write(chunk);
-        writeInt(chunk.strings.size());
-        writeInt(chunk.styles.size());
-        writeInt(chunk.flags);
-        writeInt(chunk.stringsStart);
-        writeInt(chunk.stylesStart);
-
-        for (int i = 0, n = chunk.strings.size(); i < n; i++) {
-            writeInt(chunk.strings.get(i).index);
-        }
-
-        for (int i = 0, n = chunk.styles.size(); i < n; i++) {
-            writeInt(chunk.styles.get(i).index);
-        }
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.STRING_POOL);
+
+        try {
+            write((ChunkHeader) chunk);
+            writeInt(chunk.strings.size());
+            writeInt(chunk.styles.size());
+            writeInt(chunk.flags);
+            writeInt(chunk.stringsStart);
+            writeInt(chunk.stylesStart);
+
+            for (int i = 0, n = chunk.strings.size(); i < n; i++) {
+                writeInt(chunk.strings.get(i).index);
+            }
 
-        if (chunk.strings.size() > 0) {
-            int stringsSize = 0;
+            for (int i = 0, n = chunk.styles.size(); i < n; i++) {
+                writeInt(chunk.styles.get(i).index);
+            }
 
-            if (chunk.isUTF8()) {
-                for (int i = 0, n = chunk.strings.size(); i < n; i++) {
-                    stringsSize += writeUtf8String(chunk.strings.get(i).value);
+            if (chunk.strings.size() > 0) {
+                int stringsSize = 0;
+
+                if (chunk.isUTF8()) {
+                    for (int i = 0, n = chunk.strings.size(); i < n; i++) {
+                        stringsSize += writeUtf8String(chunk.strings.get(i).value);
+                    }
+                } else {
+                    for (int i = 0, n = chunk.strings.size(); i < n; i++) {
+                        stringsSize += writeUtf16String(chunk.strings.get(i).value);
+                    }
                 }
-            } else {
-                for (int i = 0, n = chunk.strings.size(); i < n; i++) {
-                    stringsSize += writeUtf16String(chunk.strings.get(i).value);
+
+                while (stringsSize++ % 4 != 0) {
+                    write(0x00);
                 }
             }
 
-            while (stringsSize++ % 4 != 0) {
-                write(0x00);
-            }
-        }
+            if (chunk.styles.size() > 0) {
+                for (int i = 0, n = chunk.styles.size(); i < n; i++) {
+                    final StringPool.Style style = chunk.styles.get(i).value;
 
-        if (chunk.styles.size() > 0) {
-            for (int i = 0, n = chunk.styles.size(); i < n; i++) {
-                final StringPool.Style style = chunk.styles.get(i).value;
+                    for (final StringPool.Span span : style) {
+                        writeInt(span.name);
+                        writeInt(span.firstChar);
+                        writeInt(span.lastChar);
+                    }
 
-                for (final StringPool.Span span : style) {
-                    writeInt(span.name);
-                    writeInt(span.firstChar);
-                    writeInt(span.lastChar);
+                    writeInt(StringPool.Span.END);
                 }
 
                 writeInt(StringPool.Span.END);
+                writeInt(StringPool.Span.END);
             }
-
-            writeInt(StringPool.Span.END);
-            writeInt(StringPool.Span.END);
+        } finally {
+            Instrumentations.end(probe, chunk);
         }
     }
 
     public void write(final ResourceTable chunk) throws IOException {
-        write(chunk);
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.TABLE);
 
-        final ResourceTable.Package[] packages = chunk.getPackages();
+        try {
+            write((ChunkHeader) chunk);
 
-        writeInt(packages.length);
-        write(chunk.getStringPool());
+            final ResourceTable.Package[] packages = chunk.getPackages();
 
-        for (int i = 0, n = packages.length; i < n; i++) {
-            writeResoruceTablePackage(packages[i]);
-        }
+            writeInt(packages.length);
+            write(chunk.getStringPool());
 
-        for (final ResourceTable.Library lib : chunk.libraries) {
-            writeResourceTableLibrary(lib);
-        }
+            for (int i = 0, n = packages.length; i < n; i++) {
+                writeResoruceTablePackage(packages[i]);
 
-        for (final ResourceTable.PackageGroup group : chunk.packageGroups) {
-            for (final ResourceTable.Package pkg : group.packages) {
-                for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                if (0 == i) {
+                    for (final ResourceTable.Library lib : chunk.libraries) {
+                        writeResourceTableLibrary(lib);
+                    }
+                }
+
+                // the types must be written inside the package chunk
+                for (final ResourceTable.TypeSpec spec : packages[i].specs) {
                     writeResourceTableTypeSpec(spec);
                 }
             }
+        } finally {
+            Instrumentations.end(probe, chunk);
         }
     }
 
@@ -254,33 +292,45 @@ public class ChunkOutputStream extends FilterOutputStream {
     }
 
     private void writeResoruceTablePackage(final ResourceTable.Package chunk) throws IOException {
-        write(chunk);
-        writeInt(chunk.id);
-        writePackageName(chunk.name);
-        writeInt(chunk.typeStrings);
-        writeInt(chunk.lastPublicType);
-        writeInt(chunk.keyStrings);
-        writeInt(chunk.lastPublicKey);
-        writeInt(chunk.typeIdOffset);
-
-        if (0 != chunk.typeStrings) {
-            write(chunk.getTypeStringPool());
-        }
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.TABLE_PACKAGE);
+
+        try {
+            write(chunk);
+            writeInt(chunk.id);
+            writePackageName(chunk.name);
+            writeInt(chunk.typeStrings);
+            writeInt(chunk.lastPublicType);
+            writeInt(chunk.keyStrings);
+            writeInt(chunk.lastPublicKey);
+            writeInt(chunk.typeIdOffset);
+
+            if (0 != chunk.typeStrings) {
+                write(chunk.getTypeStringPool());
+            }
 
-        if (0 != chunk.keyStrings) {
-            write(chunk.getKeyStringPool());
+            if (0 != chunk.keyStrings) {
+                write(chunk.getKeyStringPool());
+            }
+        } finally {
+            Instrumentations.end(probe, chunk);
         }
     }
 
     private void writeResourceTableTypeSpec(final ResourceTable.TypeSpec chunk) throws IOException {
-        write(chunk);
-        write(chunk.id);
-        write(chunk.res0);
-        writeShort(chunk.res1);
-        writeInt(chunk.flags.size());
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.TABLE_TYPE_SPEC);
 
-        for (final Integer flag : chunk.flags) {
-            writeInt(flag);
+        try {
+            write(chunk);
+            write(chunk.id);
+            write(chunk.res0);
+            writeShort(chunk.res1);
+            writeInt(chunk.flags.size());
+
+            for (final Integer flag : chunk.flags) {
+                writeInt(flag);
+            }
+        } finally {
+            Instrumentations.end(probe, chunk);
         }
 
         for (final ResourceTable.Type config : chunk.configs) {
@@ -289,22 +339,28 @@ public class ChunkOutputStream extends FilterOutputStream {
     }
 
     private void writeResourceTableType(final ResourceTable.Type chunk) throws IOException {
-        write(chunk);
-        write(chunk.id);
-        write(chunk.res0);
-        writeShort(chunk.res1);
-        writeInt(chunk.entries.size());
-        writeInt(chunk.entriesStart);
-        writeResourceTableConfig(chunk.getConfig());
-
-        for (final IndexedEntry<ResourceTable.Entry> entry : chunk.entries) {
-            writeInt(entry.index);
-        }
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.TABLE_TYPE);
+
+        try {
+            write(chunk);
+            write(chunk.id);
+            write(chunk.res0);
+            writeShort(chunk.res1);
+            writeInt(chunk.entries.size());
+            writeInt(chunk.entriesStart);
+            writeResourceTableConfig(chunk.getConfig());
+
+            for (final IndexedEntry<ResourceTable.Entry> entry : chunk.entries) {
+                writeInt(entry.index);
+            }
 
-        for (final IndexedEntry<ResourceTable.Entry> entry : chunk.entries) {
-            if (entry.index != ResourceTable.Entry.NO_ENTRY) {
-                writeResourceTableEntry(entry.value);
+            for (final IndexedEntry<ResourceTable.Entry> entry : chunk.entries) {
+                if (entry.index != ResourceTable.Entry.NO_ENTRY) {
+                    writeResourceTableEntry(entry.value);
+                }
             }
+        } finally {
+            Instrumentations.end(probe, chunk);
         }
     }
 
@@ -325,36 +381,42 @@ public class ChunkOutputStream extends FilterOutputStream {
     }
 
     public void write(final Xml xml) throws IOException {
-        write(xml);
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.WRITE, ChunkType.XML);
 
-        if (null != xml.pool) {
-            write(xml.pool);
-        }
+        try {
+            write((ChunkHeader) xml);
 
-        if (null != xml.resources) {
-            writeXmlResourceMap(xml.resources);
-        }
+            if (null != xml.pool) {
+                write(xml.pool);
+            }
+
+            if (null != xml.resources) {
+                writeXmlResourceMap(xml.resources);
+            }
 
-        for (final Xml.Node node : xml.chunks) {
-            switch (node.type) {
-            case ChunkType.XML_CDATA:
-                writeXmlCharData((Xml.CharData) node);
-                break;
-            case ChunkType.XML_END_ELEMENT:
-                writeXmlEndElement((Xml.Element) node);
-                break;
-            case ChunkType.XML_END_NAMESPACE:
-                writeXmlNamespace((Xml.Namespace) node);
-                break;
-            case ChunkType.XML_START_ELEMENT:
-                writeXmlStartElement((Xml.Element) node);
-                break;
-            case ChunkType.XML_START_NAMESPACE:
-                writeXmlNamespace((Xml.Namespace) node);
-                break;
-            default:
-                throw new AaptException(String.format("Unexpected chunk type 0x%04x", node.type));
+            for (final Xml.Node node : xml.chunks) {
+                switch (node.type) {
+                case ChunkType.XML_CDATA:
+                    writeXmlCharData((Xml.CharData) node);
+                    break;
+                case ChunkType.XML_END_ELEMENT:
+                    writeXmlEndElement((Xml.Element) node);
+                    break;
+                case ChunkType.XML_END_NAMESPACE:
+                    writeXmlNamespace((Xml.Namespace) node);
+                    break;
+                case ChunkType.XML_START_ELEMENT:
+                    writeXmlStartElement((Xml.Element) node);
+                    break;
+                case ChunkType.XML_START_NAMESPACE:
+                    writeXmlNamespace((Xml.Namespace) node);
+                    break;
+                default:
+                    throw new AaptException(String.format("Unexpected chunk type 0x%04x", node.type));
+                }
             }
+        } finally {
+            Instrumentations.end(probe, xml);
         }
     }
 
@@ -373,6 +435,8 @@ public class ChunkOutputStream extends FilterOutputStream {
 
     private void writeXmlStartElement(final Xml.Element node) throws IOException {
         writeXmlNode(node);
+        writeInt(node.ns);
+        writeInt(node.name);
         writeShort(node.attributeStart);
         writeShort(node.attributeSize);
         writeShort(node.attributes.size());
@@ -443,14 +507,16 @@ public class ChunkOutputStream extends FilterOutputStream {
     public final int writeUtf16String(final String s) throws IOException {
         final byte[] data = s.getBytes(StandardCharsets.UTF_16LE);
 
+        final int nchars = s.length();
+
         int nbytes = data.length;
 
-        if (data.length > 0x7fff) {
-            writeShort(((data.length - (data.length & 0xffff)) >> 16) | 0x8000);
-            writeShort(data.length & 0xffff);
+        if (nchars > 0x7fff) {
+            writeShort((nchars >> 16) | 0x8000);
+            writeShort(nchars & 0xffff);
             nbytes += 4;
         } else {
-            writeShort(data.length);
+            writeShort(nchars);
             nbytes += 2;
         }
 
@@ -0,0 +1,549 @@
+package com.sdklite.aapt;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sdklite.io.IOUtil;
+
+/**
+ * The long-running aapt server, the requests are served concurrently against
+ * the warm code and the recently parsed chunks are kept in a bounded LRU keyed
+ * by canonical path, the chunk is reparsed if the size or modification time of
+ * file changed.
+ *
+ * Each request is a line of text, and the response is a status line of
+ * {@code OK} or {@code ERROR <message>}, followed by the body lines and ended
+ * with a single {@code .} line, the body lines starting with {@code .} are
+ * escaped with an extra {@code .}:
+ *
+ * <pre>
+ * dump resources|strings|xml &lt;file&gt;
+ * id &lt;[package:]type/name&gt; &lt;arsc-or-apk&gt;
+ * name &lt;0xid&gt; &lt;arsc-or-apk&gt;
+ * stats
+ * ping
+ * shutdown
+ * </pre>
+ *
+ * The requests of stdin are executed concurrently, and the responses are
+ * written in order of requests. At most {@link #DEFAULT_PENDING_PER_THREAD}
+ * requests per worker thread of each input are in flight, the reading is
+ * paused until the preceding responses have been written. Each socket
+ * connection is served by its own thread, at most {@code connections}
+ * connections are served at the same time, the further connections are
+ * responded with {@code ERROR} and closed.
+ *
+ * @author johnsonlee
+ *
+ */
+public class Daemon implements Closeable {
+
+    /**
+     * The default capacity of chunk cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    /**
+     * The default maximum number of connections served at the same time
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+    /**
+     * The maximum number of requests in flight per worker thread of each
+     * input
+     */
+    public static final int DEFAULT_PENDING_PER_THREAD = 4;
+
+    private static final String CHARSET = "UTF-8";
+
+    private static final String END = ".";
+
+    /**
+     * The parsed chunk with the file attributes at parsing time
+     */
+    private static final class Cached {
+
+        final long length;
+
+        final long lastModified;
+
+        final Chunk chunk;
+
+        Cached(final long length, final long lastModified, final Chunk chunk) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.chunk = chunk;
+        }
+
+    }
+
+    private final ExecutorService executor;
+
+    private final ExecutorService connections;
+
+    private final int pending;
+
+    private final LinkedHashMap<String, Cached> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile boolean shutdown;
+
+    private volatile ServerSocket server;
+
+    /**
+     * Instantialize with the available processors and the default cache size
+     */
+    public Daemon() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Instantialize with the number of worker threads and the cache capacity
+     *
+     * @param threads
+     *            The number of worker threads
+     * @param capacity
+     *            The maximum number of cached chunks
+     */
+    public Daemon(final int threads, final int capacity) {
+        this(threads, capacity, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Instantialize with the number of worker threads, the cache capacity and
+     * the maximum number of connections
+     *
+     * @param threads
+     *            The number of worker threads
+     * @param capacity
+     *            The maximum number of cached chunks
+     * @param connections
+     *            The maximum number of connections served at the same time
+     */
+    public Daemon(final int threads, final int capacity, final int connections) {
+        if (threads < 1 || connections < 1) {
+            throw new IllegalArgumentException("threads and connections must be positive");
+        }
+
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.connections = new ThreadPoolExecutor(0, connections, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        this.pending = threads * DEFAULT_PENDING_PER_THREAD;
+        this.cache = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final java.util.Map.Entry<String, Cached> eldest) {
+                return size() > capacity;
+            }
+
+        };
+    }
+
+    /**
+     * Serves the requests from the specified input until the end of input or
+     * {@code shutdown} requested
+     *
+     * @param in
+     *            The request input
+     * @param out
+     *            The response output
+     * @throws IOException
+     *             if error occurred
+     */
+    public void serve(final InputStream in, final OutputStream out) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, CHARSET));
+        final Writer writer = new OutputStreamWriter(out, CHARSET);
+        final BlockingQueue<Future<String>> responses = new ArrayBlockingQueue<Future<String>>(this.pending);
+        final Future<String> eof = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return null;
+            }
+        });
+
+        final Thread responder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean gone = false;
+
+                try {
+                    for (Future<String> response; eof != (response = responses.take());) {
+                        final String text = await(response);
+                        if (gone) {
+                            continue; // keep draining, so that the reading is never blocked
+                        }
+
+                        try {
+                            writer.write(text);
+                            writer.flush();
+                        } catch (final IOException e) {
+                            gone = true; // the client has gone
+                        }
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "aapt-daemon-responder");
+        responder.start();
+
+        try {
+            for (String line; !this.shutdown && null != (line = reader.readLine());) {
+                final String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+
+                if ("shutdown".equals(request)) {
+                    shutdown();
+                    put(responses, done(respond(null)));
+                    break;
+                }
+
+                // blocked until the preceding responses have been written if too many requests in flight
+                put(responses, this.executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return respond(request);
+                    }
+                }));
+            }
+        } finally {
+            boolean interrupted = false;
+            boolean ended = false;
+
+            while (!ended) {
+                try {
+                    responses.put(eof);
+                    ended = true;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            while (responder.isAlive()) {
+                try {
+                    responder.join();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Serves the connections of the specified server socket until
+     * {@code shutdown} requested or the server socket closed, the server
+     * socket is expected to be bound to the loopback address
+     *
+     * @param server
+     *            The server socket
+     * @throws IOException
+     *             if error occurred
+     */
+    public void listen(final ServerSocket server) throws IOException {
+        this.server = server;
+
+        try {
+            while (!this.shutdown) {
+                final Socket socket;
+
+                try {
+                    socket = server.accept();
+                } catch (final SocketException e) {
+                    if (this.shutdown) {
+                        break;
+                    }
+                    throw e;
+                }
+
+                try {
+                    this.connections.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                serve(socket.getInputStream(), socket.getOutputStream());
+                            } catch (final IOException e) {
+                                // the client has gone
+                            } finally {
+                                IOUtil.closeQuietly(socket);
+                            }
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    reject(socket, this.shutdown ? "Shutting down" : "Too many connections");
+                }
+            }
+        } finally {
+            IOUtil.closeQuietly(server);
+        }
+    }
+
+    /**
+     * Executes the specified request
+     *
+     * @param request
+     *            The request line
+     * @return the response body
+     * @throws IOException
+     *             if error occurred
+     * @throws AaptException
+     *             if the request is malformed
+     */
+    public String execute(final String request) throws IOException {
+        final String[] args = request.trim().split("\\s+", 3);
+        final String cmd = args[0];
+
+        if ("ping".equals(cmd)) {
+            return "pong\n";
+        }
+
+        if ("stats".equals(cmd)) {
+            synchronized (this.cache) {
+                return String.format("cached %d\nhits %d\nmisses %d\n", this.cache.size(), this.hits.get(), this.misses.get());
+            }
+        }
+
+        if (args.length < 3) {
+            throw new AaptException("Malformed request: " + request);
+        }
+
+        if ("dump".equals(cmd) || "d".equals(cmd)) {
+            return dump(args[1], new File(args[2]));
+        }
+
+        if ("id".equals(cmd)) {
+            final String name = args[1];
+            final int colon = name.indexOf(':');
+            final int slash = name.indexOf('/');
+            if (slash < 0 || slash < colon) {
+                throw new AaptException("Malformed resource name: " + name);
+            }
+
+            final String packageName = colon < 0 ? null : name.substring(0, colon);
+            final String typeName = name.substring(colon + 1, slash);
+            final int id = getResourceTable(new File(args[2])).getResourceId(packageName, typeName, name.substring(slash + 1));
+            if (0 == id) {
+                throw new AaptException("Resource not found: " + name);
+            }
+
+            return String.format("0x%08x\n", id);
+        }
+
+        if ("name".equals(cmd)) {
+            final int id;
+
+            try {
+                id = (int) Long.parseLong(args[1].startsWith("0x") ? args[1].substring(2) : args[1], 16);
+            } catch (final NumberFormatException e) {
+                throw new AaptException("Malformed resource id: " + args[1]);
+            }
+
+            final ResourceName name = getResourceTable(new File(args[2])).getResourceName(id);
+            if (null == name) {
+                throw new AaptException(String.format("Resource not found: 0x%08x", id));
+            }
+
+            return name + "\n";
+        }
+
+        throw new AaptException("Unknown command: " + cmd);
+    }
+
+    /**
+     * Requests the daemon to stop serving
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        IOUtil.closeQuietly(this.server);
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+        this.connections.shutdown();
+        this.executor.shutdown();
+    }
+
+    private String dump(final String type, final File file) throws IOException {
+        if ("xml".equals(type)) {
+            return new XmlDecompiler().decompile(file);
+        }
+
+        if ("resources".equals(type)) {
+            final StringWriter text = new StringWriter();
+            new ResourceTableDumper("\n").dump(getResourceTable(file), text);
+            return text.toString();
+        }
+
+        if ("strings".equals(type)) {
+            final StringWriter text = new StringWriter();
+            final PrintWriter writer = new PrintWriter(text);
+            getChunk(file).accept(new StringPoolVisitor(writer));
+            writer.flush();
+            return text.toString();
+        }
+
+        throw new AaptException("Unknown dump type: " + type);
+    }
+
+    private ResourceTable getResourceTable(final File file) throws IOException {
+        final Chunk chunk = getChunk(file);
+        if (!(chunk instanceof ResourceTable)) {
+            throw new AaptException("Not a resource table: " + file);
+        }
+        return (ResourceTable) chunk;
+    }
+
+    /**
+     * Returns the cached chunk, or parses the file if not cached or the file
+     * has been modified
+     */
+    private Chunk getChunk(final File file) throws IOException {
+        if (!file.isFile()) {
+            throw new AaptException("File not found: " + file);
+        }
+
+        final String path = file.getCanonicalPath();
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+
+        synchronized (this.cache) {
+            final Cached cached = this.cache.get(path);
+            if (null != cached && cached.length == length && cached.lastModified == lastModified) {
+                this.hits.incrementAndGet();
+                return cached.chunk;
+            }
+        }
+
+        this.misses.incrementAndGet();
+
+        final Chunk chunk;
+        if (path.endsWith(".apk")) {
+            final ApkFile apk = new ApkFile(file);
+            try {
+                chunk = apk.getResourceTable();
+            } finally {
+                apk.close();
+            }
+        } else {
+            chunk = new ChunkParser().parse(file);
+        }
+
+        synchronized (this.cache) {
+            this.cache.put(path, new Cached(length, lastModified, chunk));
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Returns the framed response of the specified request, or the empty
+     * response if the request is null
+     */
+    private String respond(final String request) {
+        final StringBuilder response = new StringBuilder();
+
+        try {
+            final String body = null != request ? execute(request) : "";
+            response.append("OK\n");
+
+            int start = 0;
+            for (int end; start < body.length(); start = end + 1) {
+                end = body.indexOf('\n', start);
+                if (end < 0) {
+                    end = body.length();
+                }
+
+                if (body.charAt(start) == '.') {
+                    response.append('.');
+                }
+                response.append(body, start, end).append('\n');
+            }
+        } catch (final Exception e) {
+            response.setLength(0);
+            response.append("ERROR ").append(String.valueOf(e.getMessage()).replace('\n', ' ')).append('\n');
+        }
+
+        return response.append(END).append('\n').toString();
+    }
+
+    private static void reject(final Socket socket, final String message) {
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("ERROR " + message + "\n" + END + "\n").getBytes(CHARSET));
+            out.flush();
+        } catch (final IOException e) {
+            // the client has gone
+        } finally {
+            IOUtil.closeQuietly(socket);
+        }
+    }
+
+    private static void put(final BlockingQueue<Future<String>> responses, final Future<String> response) throws IOException {
+        try {
+            responses.put(response);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static String await(final Future<String> response) {
+        try {
+            return response.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR interrupted\n" + END + "\n";
+        } catch (final ExecutionException e) {
+            return "ERROR " + e.getCause() + "\n" + END + "\n";
+        }
+    }
+
+    private static Future<String> done(final String value) {
+        final FutureTask<String> future = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.sdklite.aapt;
+
+/**
+ * The SPI of parsing and writing instrumentation, the implementation is
+ * installed by {@link Instrumentations#set(Instrumentation)} or discovered by
+ * {@link java.util.ServiceLoader}, nothing is measured if no implementation is
+ * installed
+ *
+ * @author johnsonlee
+ *
+ * @see MetricsRegistry
+ * @see JfrInstrumentation
+ */
+public interface Instrumentation {
+
+    /**
+     * The instrumented phases
+     */
+    public enum Phase {
+
+        /**
+         * Decoding chunks by {@link AssetEditor}
+         */
+        PARSE,
+
+        /**
+         * Recomputing sizes and offsets by {@link ReconcileChunkVisitor}
+         */
+        RECONCILE,
+
+        /**
+         * Encoding chunks by {@link ChunkOutputStream}
+         */
+        WRITE,
+
+        /**
+         * Purging resource table by {@link ResourceTable#purge(Symbols)}
+         */
+        PURGE,
+
+    }
+
+    /**
+     * Invoked before a chunk is processed
+     *
+     * @param phase
+     *            The phase
+     * @param type
+     *            The chunk type
+     * @return the context to be passed to
+     *         {@link #end(Object, Phase, short, String, long, long, long)}
+     */
+    public Object begin(final Phase phase, final short type);
+
+    /**
+     * Invoked after a chunk is processed or failed to be processed, the probes
+     * of the same thread are nested, e.g. the type chunks are ended before the
+     * package chunk
+     *
+     * @param context
+     *            The context returned by {@link #begin(Phase, short)}
+     * @param phase
+     *            The phase
+     * @param type
+     *            The chunk type
+     * @param source
+     *            The file path or package name of the chunk, could be null
+     * @param bytes
+     *            The size of chunk in bytes, or 0 if failed to be parsed
+     * @param nanos
+     *            The elapsed time in nanoseconds
+     * @param allocated
+     *            The bytes allocated by the current thread, or -1 if not
+     *            supported by JVM
+     */
+    public void end(final Object context, final Phase phase, final short type, final String source, final long bytes, final long nanos, final long allocated);
+
+}
@@ -0,0 +1,156 @@
+package com.sdklite.aapt;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of the global {@link Instrumentation}, the first implementation
+ * found by {@link ServiceLoader} is installed by default.
+ *
+ * The probes are {@code null} if no instrumentation is installed, so the cost
+ * of the instrumented code is a volatile read and a null check. The probes are
+ * ended in {@code finally} blocks, so that every {@code begin} is paired with
+ * an {@code end} even if the chunk failed to be processed
+ *
+ * @author johnsonlee
+ *
+ */
+public final class Instrumentations {
+
+    /**
+     * The probe of an instrumented chunk
+     */
+    static final class Probe {
+
+        final Instrumentation instrumentation;
+
+        final Instrumentation.Phase phase;
+
+        final short type;
+
+        final Object context;
+
+        final long startTime;
+
+        final long startAllocated;
+
+        Probe(final Instrumentation instrumentation, final Instrumentation.Phase phase, final short type) {
+            this.instrumentation = instrumentation;
+            this.phase = phase;
+            this.type = type;
+            this.context = instrumentation.begin(phase, type);
+            this.startAllocated = getAllocatedBytes();
+            this.startTime = System.nanoTime();
+        }
+
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+     */
+    private static final Method GET_THREAD_ALLOCATED_BYTES = getThreadAllocatedBytesMethod();
+
+    private static volatile Instrumentation instrumentation = load();
+
+    /**
+     * Returns the installed instrumentation
+     *
+     * @return the installed instrumentation or null
+     */
+    public static Instrumentation get() {
+        return instrumentation;
+    }
+
+    /**
+     * Installs the specified instrumentation
+     *
+     * @param instrumentation
+     *            The instrumentation to install, null to uninstall
+     */
+    public static void set(final Instrumentation instrumentation) {
+        Instrumentations.instrumentation = instrumentation;
+    }
+
+    static Probe begin(final Instrumentation.Phase phase, final short type) {
+        final Instrumentation instrumentation = Instrumentations.instrumentation;
+        return null != instrumentation ? new Probe(instrumentation, phase, type) : null;
+    }
+
+    static void end(final Probe probe, final String source, final long bytes) {
+        if (null == probe) {
+            return;
+        }
+
+        final long nanos = System.nanoTime() - probe.startTime;
+        final long allocated = probe.startAllocated < 0 ? -1 : getAllocatedBytes() - probe.startAllocated;
+        probe.instrumentation.end(probe.context, probe.phase, probe.type, source, bytes, nanos, allocated);
+    }
+
+    static void end(final Probe probe, final Chunk chunk) {
+        if (null != probe) {
+            end(probe, sourceOf(chunk), chunk.getSize());
+        }
+    }
+
+    /**
+     * Returns the package name of the resource table chunks
+     */
+    private static String sourceOf(final Chunk chunk) {
+        final ResourceTable.Package pkg;
+
+        if (chunk instanceof ResourceTable) {
+            pkg = ((ResourceTable) chunk).getPackage();
+        } else if (chunk instanceof ResourceTable.Package) {
+            pkg = (ResourceTable.Package) chunk;
+        } else if (chunk instanceof ResourceTable.TypeSpec) {
+            pkg = ((ResourceTable.TypeSpec) chunk).getPackage();
+        } else if (chunk instanceof ResourceTable.Type) {
+            pkg = ((ResourceTable.Type) chunk).getPackage();
+        } else {
+            pkg = null;
+        }
+
+        return null != pkg ? pkg.getName() : null;
+    }
+
+    private static long getAllocatedBytes() {
+        if (null == GET_THREAD_ALLOCATED_BYTES) {
+            return -1;
+        }
+
+        try {
+            return (Long) GET_THREAD_ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+        } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+    private static Method getThreadAllocatedBytesMethod() {
+        try {
+            final Class<?> clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if (!clazz.isInstance(THREADS)) {
+                return null;
+            }
+
+            final Method method = clazz.getMethod("getThreadAllocatedBytes", long.class);
+            method.invoke(THREADS, Thread.currentThread().getId());
+            return method;
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private static Instrumentation load() {
+        final Iterator<Instrumentation> i = ServiceLoader.load(Instrumentation.class).iterator();
+        return i.hasNext() ? i.next() : null;
+    }
+
+    private Instrumentations() {
+    }
+
+}
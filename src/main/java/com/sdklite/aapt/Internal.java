@@ -1,11 +1,14 @@
 package com.sdklite.aapt;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Internal utilities
@@ -173,6 +176,41 @@ abstract class Internal {
         return resId != 0;
     }
 
+    /**
+     * Waits for all of the futures, the remaining futures are cancelled if any
+     * of them failed
+     * 
+     * @param futures
+     *            The futures to wait for
+     * @return the results in the order of futures
+     * @throws IOException
+     *             if any of the tasks failed with {@link IOException}
+     */
+    public static <T> List<T> await(final List<Future<T>> futures) throws IOException {
+        final List<T> results = new ArrayList<T>(futures.size());
+
+        try {
+            for (final Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AaptException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new AaptException(e.getCause());
+        } finally {
+            for (final Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return results;
+    }
+
     public static int getType(int resId) {
         return ((resId >> 16) & 0xff);
     }
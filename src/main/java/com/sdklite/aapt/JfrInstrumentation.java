@@ -0,0 +1,140 @@
+package com.sdklite.aapt;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The JDK Flight Recorder binding of {@link Instrumentation}, each chunk is
+ * committed as a {@code com.sdklite.aapt.Chunk} event with the phase, chunk
+ * type, source, bytes and allocated bytes, the duration of event is the
+ * elapsed time of chunk:
+ *
+ * <pre>
+ * if (JfrInstrumentation.isAvailable()) {
+ *     Instrumentations.set(new JfrInstrumentation());
+ * }
+ * </pre>
+ *
+ * The events are defined dynamically by {@code jdk.jfr.EventFactory}, so JFR
+ * is only required at runtime (JDK 11+ or 8u262+)
+ *
+ * @author johnsonlee
+ *
+ */
+public class JfrInstrumentation implements Instrumentation {
+
+    /**
+     * The name of event type
+     */
+    public static final String EVENT_NAME = "com.sdklite.aapt.Chunk";
+
+    private static final String[] FIELDS = { "phase", "chunkType", "source", "bytes", "allocated" };
+
+    private static final Class<?>[] FIELD_TYPES = { String.class, String.class, String.class, long.class, long.class };
+
+    private final Object factory;
+
+    private final Method newEvent;
+
+    private final Method begin;
+
+    private final Method end;
+
+    private final Method shouldCommit;
+
+    private final Method commit;
+
+    private final Method set;
+
+    /**
+     * Instantialize with a new event type
+     *
+     * @throws AaptException
+     *             if JFR is not available
+     */
+    public JfrInstrumentation() {
+        try {
+            final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> event = Class.forName("jdk.jfr.Event");
+            final Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+            final Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class);
+
+            final List<Object> annotations = Arrays.asList(
+                    newAnnotation.newInstance(annotation("jdk.jfr.Name"), EVENT_NAME),
+                    newAnnotation.newInstance(annotation("jdk.jfr.Label"), "AAPT Chunk"),
+                    newAnnotation.newInstance(annotation("jdk.jfr.Category"), new String[] { "AAPT" }));
+            final Object[] fields = new Object[FIELDS.length];
+            for (int i = 0; i < FIELDS.length; i++) {
+                fields[i] = newField.newInstance(FIELD_TYPES[i], FIELDS[i]);
+            }
+
+            this.factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, Arrays.asList(fields));
+            this.newEvent = eventFactory.getMethod("newEvent");
+            this.begin = event.getMethod("begin");
+            this.end = event.getMethod("end");
+            this.shouldCommit = event.getMethod("shouldCommit");
+            this.commit = event.getMethod("commit");
+            this.set = event.getMethod("set", int.class, Object.class);
+        } catch (final Exception e) {
+            throw new AaptException("JFR is not available", e);
+        }
+    }
+
+    /**
+     * Returns whether JFR is available in the current JVM
+     *
+     * @return true if JFR is available
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Object begin(final Phase phase, final short type) {
+        try {
+            final Object event = this.newEvent.invoke(this.factory);
+            this.begin.invoke(event);
+            return event;
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void end(final Object context, final Phase phase, final short type, final String source, final long bytes, final long nanos, final long allocated) {
+        if (null == context) {
+            return;
+        }
+
+        try {
+            this.end.invoke(context);
+
+            if (Boolean.TRUE.equals(this.shouldCommit.invoke(context))) {
+                this.set.invoke(context, 0, phase.name());
+                this.set.invoke(context, 1, MetricsRegistry.nameOf(type));
+                this.set.invoke(context, 2, source);
+                this.set.invoke(context, 3, bytes);
+                this.set.invoke(context, 4, allocated);
+                this.commit.invoke(context);
+            }
+        } catch (final Exception e) {
+            // ignore, the instrumentation must not break parsing or writing
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation(final String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+}
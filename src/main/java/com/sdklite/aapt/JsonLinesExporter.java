@@ -0,0 +1,139 @@
+package com.sdklite.aapt;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON Lines exporter of resource table, each record is written as a
+ * single line JSON object:
+ *
+ * <pre>
+ * {"id":"0x7f040000","package":"com.example","type":"dimen","name":"margin","config":"w820dp","dataType":5,"data":"0x00001001","value":"16dp"}
+ * {"id":"0x7f050000","package":"com.example","type":"style","name":"AppTheme","config":"","parent":"0x01030005","key":"0x7f010000","keyName":"com.example:attr/colorPrimary","dataType":1,"data":"0x7f060000","value":"@color/primary"}
+ * </pre>
+ *
+ * The {@code parent}, {@code key} and {@code keyName} are only present for bag
+ * items, the {@code keyName} is omitted if not resolved
+ *
+ * @author johnsonlee
+ *
+ */
+public class JsonLinesExporter extends ResourceTableExporter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Instantialize with the output stream, the records are encoded in UTF-8
+     *
+     * @param out
+     *            The output stream
+     */
+    public JsonLinesExporter(final OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Instantialize with the writer
+     *
+     * @param out
+     *            The writer
+     */
+    public JsonLinesExporter(final Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    @Override
+    protected void write(final Record record) throws IOException {
+        final StringBuilder buf = this.line;
+        buf.setLength(0);
+
+        hex(buf.append("{\"id\":"), record.id);
+        string(buf.append(",\"package\":"), record.packageName);
+        string(buf.append(",\"type\":"), record.typeName);
+        string(buf.append(",\"name\":"), record.name);
+        string(buf.append(",\"config\":"), record.config);
+
+        if (record.bag) {
+            hex(buf.append(",\"parent\":"), record.parent);
+            hex(buf.append(",\"key\":"), record.key);
+
+            if (null != record.keyName) {
+                string(buf.append(",\"keyName\":"), record.keyName);
+            }
+        }
+
+        buf.append(",\"dataType\":").append(record.dataType & 0xff);
+        hex(buf.append(",\"data\":"), record.data);
+        string(buf.append(",\"value\":"), record.value).append("}\n");
+
+        this.out.append(buf);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    private static StringBuilder hex(final StringBuilder buf, final int value) {
+        buf.append("\"0x");
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            buf.append(HEX[(value >>> shift) & 0xf]);
+        }
+        return buf.append('"');
+    }
+
+    private static StringBuilder string(final StringBuilder buf, final String value) {
+        if (null == value) {
+            return buf.append("null");
+        }
+
+        buf.append('"');
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+            case '"':
+                buf.append("\\\"");
+                break;
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                    buf.append("\\u").append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf]).append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+                } else {
+                    buf.append(c);
+                }
+                break;
+            }
+        }
+
+        return buf.append('"');
+    }
+
+}
@@ -1,6 +1,12 @@
 package com.sdklite.aapt;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Main class
@@ -21,20 +27,47 @@ public class Main {
             }
 
             final String type = args[1];
+            if ("xml".equals(type)) {
+                System.out.print(new XmlDecompiler().decompile(new File(args[2])));
+                return;
+            }
+
             final ChunkParser parser = new ChunkParser();
+            final Chunk chunk = parser.parse(args[2]);
             final ChunkVisitor visitor;
 
+            if ("resources".equals(type) && chunk instanceof ResourceTable) {
+                new ResourceTableDumper().dump((ResourceTable) chunk, System.out);
+                return;
+            }
+
             if ("resources".equals(type)) {
                 visitor = new ResourceTableVisitor(System.out, true);
             } else if ("strings".equals(type)) {
                 visitor = new StringPoolVisitor(System.out, true);
-            } else if ("xml".equals(type)) {
-                visitor = new XmlVisitor(System.out, true);
             } else {
                 visitor = new SimpleVisitor();
             }
 
-            parser.parse(args[2]).accept(visitor);
+            chunk.accept(visitor);
+        } else if ("export".equals(cmd)) {
+            final String format = args.length < 3 ? null : args[1];
+            final ResourceTableExporter exporter;
+
+            if ("json".equals(format)) {
+                exporter = new JsonLinesExporter(System.out);
+            } else if ("binary".equals(format)) {
+                exporter = new BinaryRecordExporter(System.out);
+            } else {
+                printUsage();
+                return;
+            }
+
+            exporter.export(new ChunkParser().<ResourceTable>parse(args[2]));
+        } else if ("daemon".equals(cmd)) {
+            daemon(args);
+        } else if ("batch".equals(cmd)) {
+            batch(args);
         } else if ("help".equals(cmd) || "h".equals(cmd) || "?".equals(cmd)) {
             printUsage();
         } else if ("--version".equals(args[0])) {
@@ -44,6 +77,87 @@ public class Main {
         }
     }
 
+    private static void daemon(final String[] args) throws IOException {
+        int port = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cache = Daemon.DEFAULT_CACHE_SIZE;
+        int connections = Daemon.DEFAULT_MAX_CONNECTIONS;
+
+        for (int i = 1; i < args.length - 1; i += 2) {
+            if ("--port".equals(args[i])) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else if ("--cache".equals(args[i])) {
+                cache = Integer.parseInt(args[i + 1]);
+            } else if ("--connections".equals(args[i])) {
+                connections = Integer.parseInt(args[i + 1]);
+            }
+        }
+
+        final Daemon daemon = new Daemon(threads, cache, connections);
+
+        try {
+            if (port < 0) {
+                daemon.serve(System.in, System.out);
+            } else {
+                final ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+                System.out.printf("aapt daemon listening on %s:%d", server.getInetAddress().getHostAddress(), server.getLocalPort()).println();
+                daemon.listen(server);
+            }
+        } finally {
+            daemon.close();
+        }
+    }
+
+    private static void batch(final String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int capacity = -1;
+        final List<File> files = new ArrayList<File>();
+
+        for (int i = 1; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i < args.length - 1) {
+                threads = parsePositive(args[++i]);
+            } else if ("--capacity".equals(args[i]) && i < args.length - 1) {
+                capacity = parsePositive(args[++i]);
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+
+        if (files.isEmpty() || threads < 1 || 0 == capacity) {
+            printUsage();
+            return;
+        }
+
+        final ApkBatchAnalyzer analyzer = new ApkBatchAnalyzer(threads, capacity > 0 ? capacity : threads * ApkBatchAnalyzer.DEFAULT_CAPACITY_PER_THREAD);
+
+        try {
+            analyzer.analyze(ApkBatchAnalyzer.list(files.toArray(new File[files.size()])), new ApkBatchAnalyzer.Listener() {
+                @Override
+                public void onSummary(final ApkBatchAnalyzer.Summary summary) {
+                    System.out.println(summary);
+                }
+            });
+        } finally {
+            analyzer.close();
+        }
+
+        analyzer.dump(new PrintWriter(System.err));
+    }
+
+    /**
+     * Returns the positive integer of the specified option value, or 0 if it
+     * is malformed or not positive
+     */
+    private static int parsePositive(final String value) {
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private static void printVersion() {
         System.out.printf("aapt version %s (git revision %s)", Build.VERSION, Build.REVISION).println();
     }
@@ -57,6 +171,10 @@ public class Main {
         System.out.println("  Commands");
         System.out.println("    help                                       Print usage");
         System.out.println("    dump [resources, strings, xml]             Dump asset chunks");
+        System.out.println("    export [json, binary]                      Export resource table values");
+        System.out.println("    daemon [--port, --threads, --cache,        Serve requests from stdin or loopback port");
+        System.out.println("            --connections]");
+        System.out.println("    batch [--threads, --capacity] <apk|dir>... Summarize APK files concurrently");
         System.out.println();
     }
 }
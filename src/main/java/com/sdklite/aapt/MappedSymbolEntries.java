@@ -0,0 +1,310 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The entries of binary symbols backed by a read-only memory mapped buffer.
+ * Strings and entries are decoded on first access, the entries are copied
+ * into a {@link TreeMap} once this map is modified.
+ *
+ * @author johnsonlee
+ *
+ * @see SymbolOutputStream
+ */
+final class MappedSymbolEntries extends AbstractMap<String, Symbols.Entry> {
+
+    /**
+     * Loads the binary symbols from the specified file
+     *
+     * @param file
+     *            The binary symbols file
+     * @return an instance of {@link Symbols}
+     * @throws IOException
+     *             if error occurred
+     */
+    static Symbols load(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final MappedSymbolEntries entries = new MappedSymbolEntries(buffer);
+            final Symbols symbols = new Symbols(entries);
+            symbols.packageId = entries.packageId;
+            return symbols;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Determine if the specified file is binary symbols
+     *
+     * @param file
+     *            The symbols file
+     * @return true if the file starts with {@link SymbolOutputStream#MAGIC}
+     * @throws IOException
+     *             if error occurred
+     */
+    static boolean isBinary(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            return raf.length() >= SymbolOutputStream.HEADER_SIZE && SymbolOutputStream.MAGIC == Integer.reverseBytes(raf.readInt());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int packageId;
+
+    private final int entryCount;
+
+    private final int stringIndexOffset;
+
+    private final int stringDataOffset;
+
+    private final int entriesOffset;
+
+    private final int arraysOffset;
+
+    private final String[] strings;
+
+    private final String[] keys;
+
+    private final Symbols.Entry[] entries;
+
+    private TreeMap<String, Symbols.Entry> materialized;
+
+    private MappedSymbolEntries(final ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.limit() < SymbolOutputStream.HEADER_SIZE || SymbolOutputStream.MAGIC != buffer.getInt(0)) {
+            throw new AaptException("Invalid binary symbols");
+        }
+
+        final short version = buffer.getShort(4);
+        if (version != SymbolOutputStream.VERSION) {
+            throw new AaptException(String.format("Unsupported binary symbols version %d", version));
+        }
+
+        this.packageId = buffer.getInt(8);
+        this.entryCount = buffer.getInt(12);
+        this.strings = new String[buffer.getInt(16)];
+        this.stringIndexOffset = buffer.getInt(20);
+        this.stringDataOffset = buffer.getInt(24);
+        this.entriesOffset = buffer.getInt(28);
+        this.arraysOffset = buffer.getInt(32);
+
+        if (buffer.getInt(36) != buffer.limit()) {
+            throw new AaptException(String.format("Binary symbols size %d expected, but %d found", buffer.getInt(36), buffer.limit()));
+        }
+
+        this.keys = new String[this.entryCount];
+        this.entries = new Symbols.Entry[this.entryCount];
+    }
+
+    @Override
+    public int size() {
+        return null != this.materialized ? this.materialized.size() : this.entryCount;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return null != this.materialized ? this.materialized.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public Symbols.Entry get(final Object key) {
+        if (null != this.materialized) {
+            return this.materialized.get(key);
+        }
+
+        final int index = indexOf(key);
+        return index < 0 ? null : getEntryAt(index);
+    }
+
+    @Override
+    public Symbols.Entry put(final String key, final Symbols.Entry value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public Symbols.Entry remove(final Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Symbols.Entry>> entrySet() {
+        if (null != this.materialized) {
+            return this.materialized.entrySet();
+        }
+
+        return new AbstractSet<Map.Entry<String, Symbols.Entry>>() {
+            @Override
+            public Iterator<Map.Entry<String, Symbols.Entry>> iterator() {
+                if (null != materialized) {
+                    return materialized.entrySet().iterator();
+                }
+
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return MappedSymbolEntries.this.size();
+            }
+        };
+    }
+
+    private TreeMap<String, Symbols.Entry> materialize() {
+        if (null == this.materialized) {
+            final TreeMap<String, Symbols.Entry> map = new TreeMap<String, Symbols.Entry>();
+
+            for (int i = 0; i < this.entryCount; i++) {
+                map.put(getKeyAt(i), getEntryAt(i));
+            }
+
+            this.materialized = map;
+        }
+
+        return this.materialized;
+    }
+
+    private int indexOf(final Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+
+        final String s = (String) key;
+
+        for (int low = 0, high = this.entryCount - 1; low <= high;) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = getKeyAt(mid).compareTo(s);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private String getStringAt(final int index) {
+        String s = this.strings[index];
+
+        if (null == s) {
+            final int start = this.buffer.getInt(this.stringIndexOffset + index * 4);
+            final int end = this.buffer.getInt(this.stringIndexOffset + index * 4 + 4);
+            final byte[] data = new byte[end - start];
+            final ByteBuffer dup = this.buffer.duplicate();
+            dup.position(this.stringDataOffset + start);
+            dup.get(data);
+            s = this.strings[index] = new String(data, StandardCharsets.UTF_8);
+        }
+
+        return s;
+    }
+
+    private String getKeyAt(final int index) {
+        String key = this.keys[index];
+
+        if (null == key) {
+            final int p = this.entriesOffset + index * SymbolOutputStream.ENTRY_SIZE;
+            key = this.keys[index] = getStringAt(this.buffer.getInt(p + 4)) + "/" + getStringAt(this.buffer.getInt(p + 8));
+        }
+
+        return key;
+    }
+
+    private Symbols.Entry getEntryAt(final int index) {
+        Symbols.Entry entry = this.entries[index];
+
+        if (null == entry) {
+            final int p = this.entriesOffset + index * SymbolOutputStream.ENTRY_SIZE;
+            final String vtype = getStringAt(this.buffer.getInt(p));
+            final Symbols.Type type = new Symbols.Type(getStringAt(this.buffer.getInt(p + 4)), this.buffer.get(p + 17) & 0xff);
+            final String name = getStringAt(this.buffer.getInt(p + 8));
+            final int value = this.buffer.getInt(p + 12);
+
+            if (0 != (this.buffer.get(p + 16) & SymbolOutputStream.FLAG_STYLEABLE)) {
+                final int offset = this.arraysOffset + value;
+                final int count = this.buffer.getInt(offset);
+                final List<Integer> values = new ArrayList<Integer>(count);
+
+                for (int i = 0; i < count; i++) {
+                    values.add(this.buffer.getInt(offset + 4 + i * 4));
+                }
+
+                entry = new Symbols.Styleable(vtype, type, name, values);
+            } else {
+                entry = new Symbols.Entry(vtype, type, name, value);
+            }
+
+            this.entries[index] = entry;
+        }
+
+        return entry;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Symbols.Entry>> {
+
+        private int index;
+
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+            return this.index < entryCount;
+        }
+
+        @Override
+        public Map.Entry<String, Symbols.Entry> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final int i = this.index++;
+            this.last = getKeyAt(i);
+            return new AbstractMap.SimpleImmutableEntry<String, Symbols.Entry>(this.last, getEntryAt(i));
+        }
+
+        @Override
+        public void remove() {
+            if (null == this.last) {
+                throw new IllegalStateException();
+            }
+
+            materialize().remove(this.last);
+            this.last = null;
+        }
+    }
+
+}
@@ -0,0 +1,314 @@
+package com.sdklite.aapt;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-memory metrics of parsing and writing, aggregated by phase and chunk
+ * type, and by phase and source for attributing the slow tables. The chunk
+ * types are inclusive of their nested chunks, only the outermost chunks of
+ * each phase are aggregated by source, so that the nested chunks are not
+ * counted twice:
+ *
+ * <pre>
+ * final MetricsRegistry metrics = new MetricsRegistry();
+ * Instrumentations.set(metrics);
+ * ...
+ * metrics.dump(new PrintWriter(System.out, true));
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ */
+public class MetricsRegistry implements Instrumentation {
+
+    /**
+     * The aggregated metric
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Metric {
+
+        final Phase phase;
+
+        final short type;
+
+        final String source;
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        final AtomicLong nanos = new AtomicLong();
+
+        final AtomicLong allocated = new AtomicLong();
+
+        Metric(final Phase phase, final short type, final String source) {
+            this.phase = phase;
+            this.type = type;
+            this.source = source;
+        }
+
+        public Phase getPhase() {
+            return this.phase;
+        }
+
+        /**
+         * Returns the chunk type, or {@link ChunkType#NULL} for the metric
+         * aggregated by source
+         */
+        public short getType() {
+            return this.type;
+        }
+
+        /**
+         * Returns the source, or null for the metric aggregated by chunk type
+         */
+        public String getSource() {
+            return this.source;
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public long getBytes() {
+            return this.bytes.get();
+        }
+
+        public long getNanos() {
+            return this.nanos.get();
+        }
+
+        /**
+         * Returns the allocated bytes, or a negative value if not supported by
+         * JVM
+         */
+        public long getAllocated() {
+            return this.allocated.get();
+        }
+
+        void add(final long bytes, final long nanos, final long allocated) {
+            this.count.incrementAndGet();
+            this.bytes.addAndGet(bytes);
+            this.nanos.addAndGet(nanos);
+
+            // the allocation tracking is either supported or not by JVM
+            if (allocated < 0) {
+                this.allocated.set(-1);
+            } else {
+                this.allocated.addAndGet(allocated);
+            }
+        }
+
+        String getName() {
+            return null != this.source ? this.source : nameOf(this.type);
+        }
+
+        String toString(final int width) {
+            final String allocated = getAllocated() < 0 ? "n/a" : String.valueOf(getAllocated());
+            return String.format("%-9s %-" + width + "s %10d %14d %12.3f %14s", this.phase, getName(), getCount(), getBytes(), getNanos() / 1e6, allocated);
+        }
+
+        @Override
+        public String toString() {
+            return toString(NAME_WIDTH);
+        }
+    }
+
+    private static final int NAME_WIDTH = 20;
+
+    private static final Comparator<Metric> SLOWEST_FIRST = new Comparator<Metric>() {
+        @Override
+        public int compare(final Metric m1, final Metric m2) {
+            final long n1 = m1.getNanos();
+            final long n2 = m2.getNanos();
+            return n1 < n2 ? 1 : (n1 > n2 ? -1 : 0);
+        }
+    };
+
+    private final ConcurrentMap<Integer, Metric> types = new ConcurrentHashMap<Integer, Metric>();
+
+    private final ConcurrentMap<String, Metric> sources = new ConcurrentHashMap<String, Metric>();
+
+    /**
+     * The depth of probes of each phase in the current thread
+     */
+    private final ThreadLocal<int[]> depths = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[Phase.values().length];
+        }
+    };
+
+    /**
+     * Returns {@link Boolean#TRUE} as context if the chunk is the outermost
+     * one of the phase in the current thread
+     */
+    @Override
+    public Object begin(final Phase phase, final short type) {
+        return 0 == this.depths.get()[phase.ordinal()]++;
+    }
+
+    @Override
+    public void end(final Object context, final Phase phase, final short type, final String source, final long bytes, final long nanos, final long allocated) {
+        this.depths.get()[phase.ordinal()]--;
+
+        final Integer key = (phase.ordinal() << 16) | (type & 0xffff);
+        Metric metric = this.types.get(key);
+        if (null == metric) {
+            final Metric m = this.types.putIfAbsent(key, metric = new Metric(phase, type, null));
+            metric = null != m ? m : metric;
+        }
+
+        metric.add(bytes, nanos, allocated);
+
+        if (null != source && Boolean.TRUE.equals(context)) {
+            final String name = phase + ":" + source;
+            Metric bySource = this.sources.get(name);
+            if (null == bySource) {
+                final Metric m = this.sources.putIfAbsent(name, bySource = new Metric(phase, ChunkType.NULL, source));
+                bySource = null != m ? m : bySource;
+            }
+
+            bySource.add(bytes, nanos, allocated);
+        }
+    }
+
+    /**
+     * Returns the metric of the specified phase and chunk type
+     *
+     * @param phase
+     *            The phase
+     * @param type
+     *            The chunk type
+     * @return the metric or null if nothing recorded
+     */
+    public Metric getMetric(final Phase phase, final short type) {
+        return this.types.get((phase.ordinal() << 16) | (type & 0xffff));
+    }
+
+    /**
+     * Returns the metric of the specified phase and source
+     *
+     * @param phase
+     *            The phase
+     * @param source
+     *            The file path or package name
+     * @return the metric or null if nothing recorded
+     */
+    public Metric getMetric(final Phase phase, final String source) {
+        return this.sources.get(phase + ":" + source);
+    }
+
+    /**
+     * Returns the metrics aggregated by chunk type, the slowest first
+     */
+    public List<Metric> getMetricsByType() {
+        return sort(this.types);
+    }
+
+    /**
+     * Returns the metrics aggregated by source, the slowest first
+     */
+    public List<Metric> getMetricsBySource() {
+        return sort(this.sources);
+    }
+
+    /**
+     * Clears all metrics
+     */
+    public void reset() {
+        this.types.clear();
+        this.sources.clear();
+    }
+
+    /**
+     * Dumps the metrics as text
+     *
+     * @param out
+     *            The output
+     */
+    public void dump(final PrintWriter out) {
+        final String header = "%-9s %-" + NAME_WIDTH + "s %10s %14s %12s %14s";
+
+        out.println(String.format(header, "PHASE", "CHUNK", "COUNT", "BYTES", "TIME(ms)", "ALLOCATED"));
+        for (final Metric metric : getMetricsByType()) {
+            out.println(metric);
+        }
+
+        final List<Metric> sources = getMetricsBySource();
+        if (!sources.isEmpty()) {
+            // the source column is as wide as the longest path or package name
+            int width = NAME_WIDTH;
+            for (final Metric metric : sources) {
+                width = Math.max(width, metric.getName().length());
+            }
+
+            out.println();
+            out.println(String.format(header.replace("-" + NAME_WIDTH, "-" + width), "PHASE", "SOURCE", "COUNT", "BYTES", "TIME(ms)", "ALLOCATED"));
+
+            for (final Metric metric : sources) {
+                out.println(metric.toString(width));
+            }
+        }
+
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        final StringWriter text = new StringWriter();
+        dump(new PrintWriter(text));
+        return text.toString();
+    }
+
+    private static List<Metric> sort(final Map<?, Metric> metrics) {
+        final List<Metric> list = new ArrayList<Metric>(metrics.values());
+        Collections.sort(list, SLOWEST_FIRST);
+        return list;
+    }
+
+    static String nameOf(final short type) {
+        switch (type) {
+        case ChunkType.STRING_POOL:
+            return "STRING_POOL";
+        case ChunkType.TABLE:
+            return "TABLE";
+        case ChunkType.TABLE_PACKAGE:
+            return "TABLE_PACKAGE";
+        case ChunkType.TABLE_TYPE:
+            return "TABLE_TYPE";
+        case ChunkType.TABLE_TYPE_SPEC:
+            return "TABLE_TYPE_SPEC";
+        case ChunkType.TABLE_LIBRARY:
+            return "TABLE_LIBRARY";
+        case ChunkType.XML:
+            return "XML";
+        case ChunkType.XML_START_NAMESPACE:
+            return "XML_START_NAMESPACE";
+        case ChunkType.XML_END_NAMESPACE:
+            return "XML_END_NAMESPACE";
+        case ChunkType.XML_START_ELEMENT:
+            return "XML_START_ELEMENT";
+        case ChunkType.XML_END_ELEMENT:
+            return "XML_END_ELEMENT";
+        case ChunkType.XML_CDATA:
+            return "XML_CDATA";
+        case ChunkType.XML_RESOURCE_MAP:
+            return "XML_RESOURCE_MAP";
+        default:
+            return String.format("0x%04x", type);
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.sdklite.aapt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The parallel traversal driver of resource table, the resource table is split
+ * into independent work units by package, type spec or configuration, and the
+ * units are visited on a {@link ForkJoinPool} by the thread-confined visitors
+ * created by {@link Reducer#newVisitor()}, then the results of visitors are
+ * combined by {@link Reducer#reduce(Object, Object)}:
+ *
+ * <pre>
+ * final int types = new ParallelChunkTraversal(pool).traverse(table, new ParallelChunkTraversal.Reducer&lt;TypeCounter, Integer&gt;() {
+ *     public TypeCounter newVisitor() { return new TypeCounter(); }
+ *     public Integer getResult(TypeCounter visitor) { return visitor.count; }
+ *     public Integer reduce(Integer a, Integer b) { return a + b; }
+ * });
+ * </pre>
+ *
+ * Unlike {@link Chunk#accept(ChunkVisitor)}, the driver visits every chunk of
+ * the resource table exactly once, so the visitor should not descend into the
+ * children by itself. The chunks are visited in order of the string pool and
+ * libraries of table, then each package with its type and key string pools,
+ * each type spec followed by its configurations. The results are reduced in
+ * order of work units, so that the order sensitive reducers are deterministic.
+ *
+ * @author johnsonlee
+ *
+ */
+public class ParallelChunkTraversal {
+
+    /**
+     * The splitting granularity of work units
+     */
+    public enum Granularity {
+
+        /**
+         * Each package is a work unit
+         */
+        PACKAGE,
+
+        /**
+         * Each type spec with its configurations is a work unit
+         */
+        TYPE_SPEC,
+
+        /**
+         * Each type spec and each configuration is a work unit
+         */
+        CONFIG,
+
+    }
+
+    /**
+     * The factory of thread-confined visitors and the combiner of their
+     * results
+     *
+     * @param <V>
+     *            The type of visitor
+     * @param <R>
+     *            The type of result
+     *
+     * @author johnsonlee
+     *
+     */
+    public interface Reducer<V extends ChunkVisitor, R> {
+
+        /**
+         * Returns a new visitor, each visitor is only used by one thread
+         */
+        public V newVisitor();
+
+        /**
+         * Returns the result of the specified visitor
+         *
+         * @param visitor
+         *            The visitor which has visited some work units
+         */
+        public R getResult(final V visitor);
+
+        /**
+         * Combines the results, the left result is from the preceding work
+         * units
+         */
+        public R reduce(final R left, final R right);
+
+    }
+
+    /**
+     * The work unit, a sequence of chunks
+     */
+    private static abstract class Unit {
+
+        abstract void accept(final ChunkVisitor visitor);
+
+    }
+
+    /**
+     * The default number of work units visited by a visitor
+     */
+    public static final int DEFAULT_THRESHOLD = 4;
+
+    private final ForkJoinPool pool;
+
+    private final Granularity granularity;
+
+    private final int threshold;
+
+    /**
+     * Instantialize with the fork join pool, the resource table is split by
+     * type spec
+     *
+     * @param pool
+     *            The fork join pool
+     */
+    public ParallelChunkTraversal(final ForkJoinPool pool) {
+        this(pool, Granularity.TYPE_SPEC, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Instantialize with the fork join pool and splitting policy
+     *
+     * @param pool
+     *            The fork join pool
+     * @param granularity
+     *            The splitting granularity of work units
+     * @param threshold
+     *            The maximum number of work units visited by a visitor
+     */
+    public ParallelChunkTraversal(final ForkJoinPool pool, final Granularity granularity, final int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+
+        this.pool = pool;
+        this.granularity = granularity;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Traverses the specified resource table in parallel
+     *
+     * @param table
+     *            The resource table, it should not be modified during
+     *            traversing
+     * @param reducer
+     *            The visitor factory and result combiner
+     * @return the reduced result
+     */
+    public <V extends ChunkVisitor, R> R traverse(final ResourceTable table, final Reducer<V, R> reducer) {
+        final List<Unit> units = split(table);
+        return this.pool.invoke(new Task<V, R>(units, 0, units.size(), this.threshold, reducer));
+    }
+
+    /**
+     * Splits the specified resource table into work units
+     */
+    private List<Unit> split(final ResourceTable table) {
+        final List<Unit> units = new ArrayList<Unit>();
+
+        units.add(new Unit() {
+            @Override
+            void accept(final ChunkVisitor visitor) {
+                visitor.visit(table.getStringPool());
+
+                for (final ResourceTable.Library lib : table.libraries) {
+                    visitor.visit(lib);
+                }
+            }
+        });
+
+        for (final ResourceTable.PackageGroup group : table.packageGroups) {
+            for (final ResourceTable.Package pkg : group.packages) {
+                if (Granularity.PACKAGE == this.granularity) {
+                    units.add(new Unit() {
+                        @Override
+                        void accept(final ChunkVisitor visitor) {
+                            visitPackage(visitor, pkg);
+
+                            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                                visitTypeSpec(visitor, spec, true);
+                            }
+                        }
+                    });
+                    continue;
+                }
+
+                units.add(new Unit() {
+                    @Override
+                    void accept(final ChunkVisitor visitor) {
+                        visitPackage(visitor, pkg);
+                    }
+                });
+
+                for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                    final boolean configs = Granularity.TYPE_SPEC == this.granularity;
+
+                    units.add(new Unit() {
+                        @Override
+                        void accept(final ChunkVisitor visitor) {
+                            visitTypeSpec(visitor, spec, configs);
+                        }
+                    });
+
+                    if (configs) {
+                        continue;
+                    }
+
+                    for (final ResourceTable.Type type : spec.configs) {
+                        units.add(new Unit() {
+                            @Override
+                            void accept(final ChunkVisitor visitor) {
+                                visitor.visit(type);
+                            }
+                        });
+                    }
+                }
+            }
+        }
+
+        return units;
+    }
+
+    private static void visitPackage(final ChunkVisitor visitor, final ResourceTable.Package pkg) {
+        visitor.visit(pkg);
+
+        final StringPool typePool = pkg.getTypeStringPool();
+        if (null != typePool) {
+            visitor.visit(typePool);
+        }
+
+        final StringPool keyPool = pkg.getKeyStringPool();
+        if (null != keyPool) {
+            visitor.visit(keyPool);
+        }
+    }
+
+    private static void visitTypeSpec(final ChunkVisitor visitor, final ResourceTable.TypeSpec spec, final boolean configs) {
+        visitor.visit(spec);
+
+        if (configs) {
+            for (final ResourceTable.Type type : spec.configs) {
+                visitor.visit(type);
+            }
+        }
+    }
+
+    /**
+     * Visits the work units in range [start, end) with a new visitor if the
+     * range is small enough, otherwise splits the range into halves
+     */
+    private static final class Task<V extends ChunkVisitor, R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Unit> units;
+
+        private final int start;
+
+        private final int end;
+
+        private final int threshold;
+
+        private final Reducer<V, R> reducer;
+
+        Task(final List<Unit> units, final int start, final int end, final int threshold, final Reducer<V, R> reducer) {
+            this.units = units;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+            this.reducer = reducer;
+        }
+
+        @Override
+        protected R compute() {
+            if (this.end - this.start <= this.threshold) {
+                final V visitor = this.reducer.newVisitor();
+
+                for (int i = this.start; i < this.end; i++) {
+                    this.units.get(i).accept(visitor);
+                }
+
+                return this.reducer.getResult(visitor);
+            }
+
+            final int middle = (this.start + this.end) >>> 1;
+            final Task<V, R> left = new Task<V, R>(this.units, this.start, middle, this.threshold, this.reducer);
+            final Task<V, R> right = new Task<V, R>(this.units, middle, this.end, this.threshold, this.reducer);
+
+            right.fork();
+            final R l = left.compute();
+            return this.reducer.reduce(l, right.join());
+        }
+
+    }
+
+}
@@ -0,0 +1,747 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.Internal.await;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.android.dex.ClassData;
+import com.android.dex.ClassDef;
+import com.android.dex.Dex;
+import com.sdklite.io.IOUtil;
+
+/**
+ * The remapper of resource ids, e.g. the id mapping which is applied by
+ * {@link ResourceTable#purge(Symbols, java.util.Map)}, it rewrites the
+ * references in the resource table, the binary XML files and the
+ * {@code const} and {@code const/high16} instructions of dex in one pass:
+ *
+ * <pre>
+ * final ResourceIdRemapper remapper = new ResourceIdRemapper(idMap);
+ * remapper.remap(new File("app.apk"), new File("app-remapped.apk"), executor);
+ * </pre>
+ *
+ * The XML files and dex files are rewritten in place in parallel, the ids are
+ * kept in primitive sorted arrays to avoid boxing on the hot path.
+ *
+ * @author johnsonlee
+ *
+ */
+public class ResourceIdRemapper {
+
+    /**
+     * The offset of typed value in attribute
+     */
+    private static final int TYPED_VALUE_OFFSET = 12;
+
+    /**
+     * The offset of instructions in code item
+     */
+    private static final int INSNS_OFFSET = 16;
+
+    private static final int OP_CONST = 0x14;
+
+    private static final int OP_CONST_HIGH16 = 0x15;
+
+    private static final int PACKED_SWITCH_PAYLOAD = 0x0100;
+
+    private static final int SPARSE_SWITCH_PAYLOAD = 0x0200;
+
+    private static final int FILL_ARRAY_DATA_PAYLOAD = 0x0300;
+
+    /**
+     * The number of code units of each dalvik opcode
+     */
+    private static final byte[] WIDTHS = new byte[256];
+
+    static {
+        Arrays.fill(WIDTHS, (byte) 1);
+        width(2, 0x02, 0x05, 0x08, 0x13, 0x15, 0x16, 0x19, 0x1a, 0x1c, 0x1f, 0x20, 0x22, 0x23, 0x29, 0xfe, 0xff);
+        width(3, 0x03, 0x06, 0x09, 0x14, 0x17, 0x1b, 0x24, 0x25, 0x26, 0x2a, 0x2b, 0x2c, 0xfc, 0xfd);
+        width(5, 0x18);
+        width(4, 0xfa, 0xfb);
+        range(2, 0x2d, 0x3d); // cmp, if-test, if-testz
+        range(2, 0x44, 0x6d); // aget, aput, iget, iput, sget, sput
+        range(3, 0x6e, 0x72); // invoke-kind
+        range(3, 0x74, 0x78); // invoke-kind/range
+        range(2, 0x90, 0xaf); // binop
+        range(2, 0xd0, 0xe2); // binop/lit16, binop/lit8
+    }
+
+    private final int[] from;
+
+    private final int[] to;
+
+    /**
+     * Instantialize with the resource id mapping
+     *
+     * @param idMap
+     *            The resource id mapping, oldId =&gt; newId
+     */
+    public ResourceIdRemapper(final Map<Integer, Integer> idMap) {
+        this.from = new int[idMap.size()];
+        this.to = new int[idMap.size()];
+
+        final Map.Entry<?, ?>[] entries = idMap.entrySet().toArray(new Map.Entry<?, ?>[idMap.size()]);
+        final long[] pairs = new long[entries.length];
+
+        for (int i = 0; i < entries.length; i++) {
+            pairs[i] = ((long) (Integer) entries[i].getKey() << 32) | ((Integer) entries[i].getValue() & 0xffffffffL);
+        }
+
+        sort(pairs);
+    }
+
+    /**
+     * Instantialize with the old ids and the new ids
+     *
+     * @param oldIds
+     *            The old resource ids
+     * @param newIds
+     *            The new resource ids at the same index of old ids
+     */
+    public ResourceIdRemapper(final int[] oldIds, final int[] newIds) {
+        if (oldIds.length != newIds.length) {
+            throw new IllegalArgumentException("Mismatched length of old ids and new ids");
+        }
+
+        this.from = new int[oldIds.length];
+        this.to = new int[oldIds.length];
+
+        final long[] pairs = new long[oldIds.length];
+
+        for (int i = 0; i < oldIds.length; i++) {
+            pairs[i] = ((long) oldIds[i] << 32) | (newIds[i] & 0xffffffffL);
+        }
+
+        sort(pairs);
+    }
+
+    private void sort(final long[] pairs) {
+        // the signed order of the high word is the signed order of old ids
+        Arrays.sort(pairs);
+
+        for (int i = 0; i < pairs.length; i++) {
+            this.from[i] = (int) (pairs[i] >> 32);
+            this.to[i] = (int) pairs[i];
+
+            if (i > 0 && this.from[i] == this.from[i - 1]) {
+                throw new IllegalArgumentException(String.format("Duplicated resource id 0x%08x", this.from[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns the new id of the specified resource id
+     *
+     * @param resId
+     *            The resource id
+     * @return the new id or the specified id if it's not mapped
+     */
+    public int remap(final int resId) {
+        final int n = this.from.length;
+        if (0 == n || resId < this.from[0] || resId > this.from[n - 1]) {
+            return resId;
+        }
+
+        final int index = Arrays.binarySearch(this.from, resId);
+        return index < 0 ? resId : this.to[index];
+    }
+
+    /**
+     * Remaps the references, the map names and the parents of the specified
+     * resource table
+     *
+     * @param table
+     *            The resource table
+     * @return the number of remapped references
+     * @throws UnsupportedOperationException
+     *             if the resource table is frozen
+     */
+    public int remap(final ResourceTable table) {
+        table.checkMutable();
+
+        int count = 0;
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                for (final ResourceTable.Type config : spec.configs) {
+                    for (final IndexedEntry<ResourceTable.Entry> entry : config.entries) {
+                        if (entry.value instanceof ResourceTable.ValueEntry) {
+                            count += remap(((ResourceTable.ValueEntry) entry.value).value);
+                        } else if (entry.value instanceof ResourceTable.MapEntry) {
+                            final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry.value;
+                            final int parent = remap(me.parent);
+
+                            if (parent != me.parent) {
+                                me.parent = parent;
+                                count++;
+                            }
+
+                            for (final ResourceTable.Map map : me.values) {
+                                final int name = remap(map.name);
+
+                                if (name != map.name) {
+                                    map.name = name;
+                                    count++;
+                                }
+
+                                count += remap(map.value);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Remaps the resource map and the typed values of the specified XML
+     * document
+     *
+     * @param xml
+     *            The XML document
+     * @return the number of remapped references
+     * @throws UnsupportedOperationException
+     *             if the XML document is frozen
+     */
+    public int remap(final Xml xml) {
+        xml.checkMutable();
+
+        int count = 0;
+
+        if (null != xml.resources) {
+            for (final ListIterator<Integer> i = xml.resources.ids.listIterator(); i.hasNext();) {
+                final int id = i.next();
+                final int newId = remap(id);
+
+                if (newId != id) {
+                    i.set(newId);
+                    count++;
+                }
+            }
+        }
+
+        for (final Chunk chunk : xml.chunks) {
+            if (chunk instanceof Xml.Element) {
+                for (final Iterator<Xml.Attribute> i = ((Xml.Element) chunk).attributes(); i.hasNext();) {
+                    count += remap(i.next().typedValue);
+                }
+            } else if (chunk instanceof Xml.CharData) {
+                count += remap(((Xml.CharData) chunk).typedData);
+            }
+        }
+
+        if (count > 0) {
+            xml.invalidate();
+        }
+
+        return count;
+    }
+
+    /**
+     * Remaps the resource map and the typed values of the binary XML in the
+     * specified buffer from its current position in place
+     *
+     * @param buffer
+     *            The buffer of binary XML
+     * @return the number of remapped references
+     */
+    public int remapXml(final ByteBuffer buffer) {
+        final ByteBuffer out = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int start = buffer.position();
+        final XmlPullParser parser = new XmlPullParser(buffer);
+
+        int count = 0;
+        boolean mapped = false;
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (!mapped && parser.getResourceMapOffset() >= 0) {
+                final int p = start + parser.getResourceMapOffset();
+
+                for (int i = 0, n = parser.getResourceIdCount(); i < n; i++) {
+                    final int id = out.getInt(p + i * 4);
+                    final int newId = remap(id);
+
+                    if (newId != id) {
+                        out.putInt(p + i * 4, newId);
+                        count++;
+                    }
+                }
+
+                mapped = true;
+            }
+
+            switch (event) {
+            case XmlPullParser.START_TAG:
+                for (int i = 0, n = parser.getAttributeCount(); i < n; i++) {
+                    count += remap(out, start + parser.getAttributeOffset(i) + TYPED_VALUE_OFFSET);
+                }
+                break;
+            case XmlPullParser.TEXT:
+                count += remap(out, start + parser.getChunkOffset() + parser.getChunkHeaderSize() + 4);
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Remaps the {@code const} and {@code const/high16} instructions of the
+     * specified dex in place, the checksum and signature are updated if any
+     * instruction is changed
+     *
+     * @param data
+     *            The content of dex
+     * @return the number of remapped instructions
+     * @throws IOException
+     *             if error occurred
+     */
+    public int remapDex(final byte[] data) throws IOException {
+        final Dex dex = new Dex(data);
+        final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        final Set<Integer> visited = new HashSet<Integer>();
+
+        int count = 0;
+
+        for (final ClassDef classDef : dex.classDefs()) {
+            if (0 == classDef.getClassDataOffset()) {
+                continue;
+            }
+
+            for (final ClassData.Method method : dex.readClassData(classDef).allMethods()) {
+                // the code item might be shared by methods
+                if (0 != method.getCodeOffset() && visited.add(method.getCodeOffset())) {
+                    count += remapCode(buffer, method.getCodeOffset());
+                }
+            }
+        }
+
+        if (count > 0) {
+            dex.writeHashes();
+        }
+
+        return count;
+    }
+
+    /**
+     * Remaps the resource table, the binary XML files and the dex files of the
+     * specified unzipped APK directory in place
+     *
+     * @param dir
+     *            The unzipped APK directory
+     * @param executor
+     *            The executor for remapping
+     * @return the number of remapped references
+     * @throws IOException
+     *             if error occurred
+     */
+    public int remap(final File dir, final ExecutorService executor) throws IOException {
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        final List<File> xmls = new ArrayList<File>();
+        final File manifest = new File(dir, Aapt.ANDROID_MANIFEST_XML);
+        final File[] dexes = dir.listFiles();
+
+        if (manifest.isFile()) {
+            xmls.add(manifest);
+        }
+
+        listXmlFiles(new File(dir, "res"), xmls);
+
+        for (final File xml : xmls) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return remapXml(xml);
+                }
+            }));
+        }
+
+        for (final File dex : null != dexes ? dexes : new File[0]) {
+            if (!isDex(dex.getName())) {
+                continue;
+            }
+
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    final byte[] data = Files.readAllBytes(dex.toPath());
+                    final int count = remapDex(data);
+
+                    if (count > 0) {
+                        Files.write(dex.toPath(), data);
+                    }
+
+                    return count;
+                }
+            }));
+        }
+
+        int count = 0;
+
+        final File arsc = new File(dir, Aapt.RESOURCES_ARSC);
+        if (arsc.isFile()) {
+            final ResourceTable table = new ChunkParser().parse(arsc);
+            count += remap(table);
+
+            final File tmp = new File(dir, Aapt.RESOURCES_ARSC + ".tmp");
+            write(table, tmp);
+            Files.move(tmp.toPath(), arsc.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        for (final Integer n : await(futures)) {
+            count += n;
+        }
+
+        return count;
+    }
+
+    /**
+     * Remaps the resource table, the binary XML files and the dex files of the
+     * specified APK into a new APK, the new APK must be aligned and signed
+     * before installation
+     *
+     * @param apk
+     *            The source APK
+     * @param dest
+     *            The destination APK
+     * @param executor
+     *            The executor for remapping
+     * @return the number of remapped references
+     * @throws IOException
+     *             if error occurred
+     */
+    public int remap(final File apk, final File dest, final ExecutorService executor) throws IOException {
+        final ZipFile archive = new ZipFile(apk);
+
+        try {
+            final List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            final List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+            final int[] counts = new int[archive.size()];
+
+            for (final Enumeration<? extends ZipEntry> i = archive.entries(); i.hasMoreElements();) {
+                final ZipEntry entry = i.nextElement();
+                final String name = entry.getName();
+                final int index = entries.size();
+
+                entries.add(entry);
+
+                if (entry.isDirectory()) {
+                    futures.add(null);
+                } else if (Aapt.RESOURCES_ARSC.equals(name)) {
+                    futures.add(executor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            final File tmp = File.createTempFile("resources", "arsc");
+
+                            try {
+                                Files.write(tmp.toPath(), read(archive, entry));
+                                final ResourceTable table = new ChunkParser().parse(tmp);
+                                counts[index] = remap(table);
+                                write(table, tmp);
+                                return Files.readAllBytes(tmp.toPath());
+                            } finally {
+                                tmp.delete();
+                            }
+                        }
+                    }));
+                } else if (isXml(name)) {
+                    futures.add(executor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            final byte[] data = read(archive, entry);
+                            final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+                            if (data.length >= ChunkHeader.MIN_HEADER_SIZE && ChunkType.XML == buffer.getShort(0)) {
+                                counts[index] = remapXml(buffer);
+                            }
+
+                            return data;
+                        }
+                    }));
+                } else if (isDex(name)) {
+                    futures.add(executor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            final byte[] data = read(archive, entry);
+                            counts[index] = remapDex(data);
+                            return data;
+                        }
+                    }));
+                } else {
+                    futures.add(null);
+                }
+            }
+
+            final List<Future<byte[]>> pending = new ArrayList<Future<byte[]>>();
+            for (final Future<byte[]> future : futures) {
+                if (null != future) {
+                    pending.add(future);
+                }
+            }
+
+            final Iterator<byte[]> results = await(pending).iterator();
+            final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(dest)));
+
+            try {
+                for (int i = 0, n = entries.size(); i < n; i++) {
+                    final ZipEntry entry = entries.get(i);
+                    final byte[] data = null != futures.get(i) ? results.next() : null;
+                    write(archive, entry, data, out);
+                }
+            } finally {
+                out.close();
+            }
+
+            int count = 0;
+            for (final int n : counts) {
+                count += n;
+            }
+
+            return count;
+        } finally {
+            archive.close();
+        }
+    }
+
+    private int remap(final ResourceValue value) {
+        switch (value.dataType) {
+        case ValueType.REFERENCE:
+        case ValueType.ATTRIBUTE:
+        case ValueType.DYNAMIC_REFERENCE:
+        case ValueType.DYNAMIC_ATTRIBUTE: {
+            final int id = remap(value.data);
+            if (id != value.data) {
+                value.data = id;
+                return 1;
+            }
+            break;
+        }
+        }
+
+        return 0;
+    }
+
+    private int remap(final ByteBuffer buffer, final int offset) {
+        switch (buffer.get(offset + 3)) {
+        case ValueType.REFERENCE:
+        case ValueType.ATTRIBUTE:
+        case ValueType.DYNAMIC_REFERENCE:
+        case ValueType.DYNAMIC_ATTRIBUTE: {
+            final int data = buffer.getInt(offset + 4);
+            final int id = remap(data);
+            if (id != data) {
+                buffer.putInt(offset + 4, id);
+                return 1;
+            }
+            break;
+        }
+        }
+
+        return 0;
+    }
+
+    private int remapXml(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+
+            if (buffer.remaining() < ChunkHeader.MIN_HEADER_SIZE || ChunkType.XML != buffer.order(ByteOrder.LITTLE_ENDIAN).getShort(0)) {
+                return 0; // not a binary XML, e.g. res/raw
+            }
+
+            final int count = remapXml(buffer);
+            if (count > 0) {
+                buffer.force();
+            }
+
+            return count;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int remapCode(final ByteBuffer buffer, final int codeOffset) {
+        final int start = codeOffset + INSNS_OFFSET;
+        final int size = buffer.getInt(codeOffset + 12);
+
+        int count = 0;
+
+        for (int pc = 0; pc < size;) {
+            final int p = start + pc * 2;
+            final int unit = buffer.getShort(p) & 0xffff;
+            final int op = unit & 0xff;
+
+            switch (op) {
+            case OP_CONST: {
+                final int value = buffer.getInt(p + 2);
+                final int id = remap(value);
+
+                if (id != value) {
+                    buffer.putInt(p + 2, id);
+                    count++;
+                }
+                break;
+            }
+            case OP_CONST_HIGH16: {
+                final int value = buffer.getShort(p + 2) << 16;
+                final int id = remap(value);
+
+                if (id != value) {
+                    if (0 != (id & 0xffff)) {
+                        throw new AaptException(String.format("Can't remap const/high16 0x%08x to 0x%08x at offset 0x%x", value, id, p));
+                    }
+
+                    buffer.putShort(p + 2, (short) (id >>> 16));
+                    count++;
+                }
+                break;
+            }
+            }
+
+            pc += width(buffer, p, unit);
+        }
+
+        return count;
+    }
+
+    private static int width(final ByteBuffer buffer, final int p, final int unit) {
+        switch (unit) {
+        case PACKED_SWITCH_PAYLOAD:
+            return 4 + (buffer.getShort(p + 2) & 0xffff) * 2;
+        case SPARSE_SWITCH_PAYLOAD:
+            return 2 + (buffer.getShort(p + 2) & 0xffff) * 4;
+        case FILL_ARRAY_DATA_PAYLOAD: {
+            final int elementWidth = buffer.getShort(p + 2) & 0xffff;
+            final long elementCount = buffer.getInt(p + 4) & 0xffffffffL;
+            return 4 + (int) ((elementWidth * elementCount + 1) / 2);
+        }
+        default:
+            return WIDTHS[unit & 0xff];
+        }
+    }
+
+    private static void width(final int width, final int... opcodes) {
+        for (final int op : opcodes) {
+            WIDTHS[op] = (byte) width;
+        }
+    }
+
+    private static void range(final int width, final int first, final int last) {
+        Arrays.fill(WIDTHS, first, last + 1, (byte) width);
+    }
+
+    private static boolean isXml(final String name) {
+        return name.endsWith(".xml") && (name.startsWith("res/") || Aapt.ANDROID_MANIFEST_XML.equals(name));
+    }
+
+    private static boolean isDex(final String name) {
+        return name.startsWith("classes") && name.endsWith(".dex");
+    }
+
+    private static void listXmlFiles(final File dir, final List<File> xmls) {
+        final File[] files = dir.listFiles();
+        if (null == files) {
+            return;
+        }
+
+        Arrays.sort(files);
+
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                listXmlFiles(file, xmls);
+            } else if (file.getName().endsWith(".xml")) {
+                xmls.add(file);
+            }
+        }
+    }
+
+    private static void write(final ResourceTable table, final File file) throws IOException {
+        final ChunkOutputStream out = new ChunkOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            out.write(table);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] read(final ZipFile archive, final ZipEntry entry) throws IOException {
+        final InputStream in = archive.getInputStream(entry);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+
+        try {
+            IOUtil.copy(in, out);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void write(final ZipFile archive, final ZipEntry entry, final byte[] data, final ZipOutputStream out) throws IOException {
+        final ZipEntry newEntry = new ZipEntry(entry.getName());
+        newEntry.setTime(entry.getTime());
+        newEntry.setMethod(entry.getMethod());
+
+        if (ZipEntry.STORED == entry.getMethod()) {
+            final byte[] content = null != data ? data : read(archive, entry);
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            newEntry.setSize(content.length);
+            newEntry.setCompressedSize(content.length);
+            newEntry.setCrc(crc.getValue());
+            out.putNextEntry(newEntry);
+            out.write(content);
+        } else {
+            out.putNextEntry(newEntry);
+
+            if (null != data) {
+                out.write(data);
+            } else if (!entry.isDirectory()) {
+                final InputStream in = archive.getInputStream(entry);
+
+                try {
+                    IOUtil.copy(in, out);
+                } finally {
+                    IOUtil.closeQuietly(in);
+                }
+            }
+        }
+
+        out.closeEntry();
+    }
+
+}
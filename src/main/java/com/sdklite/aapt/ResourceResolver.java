@@ -0,0 +1,784 @@
+package com.sdklite.aapt;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The resolver of resource values for a particular device configuration, the
+ * best matching value is picked with the qualifier precedence rules of Android
+ * framework, and the references are followed to the final value:
+ *
+ * <pre>
+ * final ResourceResolver resolver = new ResourceResolver(table);
+ * final ResourceTable.Config config = resolver.newConfig("zh-rCN-land-xhdpi-v21");
+ * final ResourceValue value = resolver.resolve(0x7f060001, config);
+ * </pre>
+ *
+ * The configurations of each {@link ResourceTable.TypeSpec} are packed into
+ * primitive arrays with the mask of specified qualifiers once, and the
+ * matching configurations for a target configuration are ranked best first
+ * and cached in a bounded LRU of each type spec, so resolving a resource is a
+ * few array lookups.
+ *
+ * @author johnsonlee
+ *
+ */
+public class ResourceResolver {
+
+    /**
+     * The default maximum number of target configurations whose rankings are
+     * cached for each type spec
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final int MCC = 0;
+    private static final int MNC = 1;
+    private static final int LANGUAGE = 2;
+    private static final int COUNTRY = 3;
+    private static final int SCRIPT = 4;
+    private static final int ORIENTATION = 5;
+    private static final int TOUCHSCREEN = 6;
+    private static final int DENSITY = 7;
+    private static final int KEYBOARD = 8;
+    private static final int NAVIGATION = 9;
+    private static final int INPUT_FLAGS = 10;
+    private static final int SCREEN_WIDTH = 11;
+    private static final int SCREEN_HEIGHT = 12;
+    private static final int SDK_VERSION = 13;
+    private static final int MINOR_VERSION = 14;
+    private static final int SCREEN_LAYOUT = 15;
+    private static final int UI_MODE = 16;
+    private static final int SMALLEST_WIDTH_DP = 17;
+    private static final int WIDTH_DP = 18;
+    private static final int HEIGHT_DP = 19;
+    private static final int SCREEN_LAYOUT2 = 20;
+    private static final int FIELD_COUNT = 21;
+
+    private static final int MASK_KEYSHIDDEN = 0x03;
+    private static final int MASK_NAVHIDDEN = 0x0c;
+    private static final int MASK_SCREENSIZE = 0x0f;
+    private static final int MASK_SCREENLONG = 0x30;
+    private static final int MASK_LAYOUTDIR = 0xc0;
+    private static final int MASK_UI_MODE_TYPE = 0x0f;
+    private static final int MASK_UI_MODE_NIGHT = 0x30;
+    private static final int MASK_SCREENROUND = 0x03;
+
+    private static final int KEYSHIDDEN_NO = 1;
+    private static final int KEYSHIDDEN_SOFT = 3;
+    private static final int SCREENSIZE_NORMAL = 2;
+    private static final int DENSITY_MEDIUM = 160;
+    private static final int DENSITY_ANY = 0xfffe;
+    private static final int DENSITY_NONE = 0xffff;
+
+    /**
+     * The maximum depth of reference chain
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * The packed configuration with the mask of specified qualifiers
+     */
+    static final class Key {
+
+        final int[] fields;
+
+        final int mask;
+
+        final int hash;
+
+        Key(final ResourceTable.Config config) {
+            this.fields = pack(config);
+
+            int mask = 0;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                if (0 != this.fields[i]) {
+                    mask |= 1 << i;
+                }
+            }
+
+            this.mask = mask;
+            this.hash = Arrays.hashCode(this.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && Arrays.equals(this.fields, ((Key) obj).fields);
+        }
+    }
+
+    /**
+     * The precomputed index of type spec
+     */
+    private static final class SpecIndex {
+
+        final Key[] configs;
+
+        final ResourceTable.Entry[][] entries;
+
+        final LinkedHashMap<Key, int[]> ranks;
+
+        SpecIndex(final ResourceTable.TypeSpec spec, final int capacity) {
+            final int n = spec.configs.size();
+
+            this.ranks = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final java.util.Map.Entry<Key, int[]> eldest) {
+                    return size() > capacity;
+                }
+
+            };
+
+            this.configs = new Key[n];
+            this.entries = new ResourceTable.Entry[n][];
+
+            for (int i = 0; i < n; i++) {
+                final ResourceTable.Type type = spec.configs.get(i);
+                final List<IndexedEntry<ResourceTable.Entry>> list = type.entries;
+
+                this.configs[i] = new Key(type.config);
+                this.entries[i] = new ResourceTable.Entry[list.size()];
+
+                for (int j = 0, m = list.size(); j < m; j++) {
+                    final IndexedEntry<ResourceTable.Entry> entry = list.get(j);
+                    if (ResourceTable.Entry.NO_ENTRY != entry.index) {
+                        this.entries[i][j] = entry.value;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the indices of configurations which match the specified
+         * configuration, the best is the first
+         */
+        int[] rank(final Key requested) {
+            int[] rank;
+
+            synchronized (this.ranks) {
+                rank = this.ranks.get(requested);
+            }
+
+            if (null == rank) {
+                final int[] matched = new int[this.configs.length];
+
+                int n = 0;
+                for (int i = 0; i < this.configs.length; i++) {
+                    if (match(this.configs[i], requested)) {
+                        matched[n++] = i;
+                    }
+                }
+
+                // selection by isBetterThan keeps the semantic of the linear
+                // scan of framework even if the order is not transitive
+                for (int i = 0; i < n; i++) {
+                    int best = i;
+
+                    for (int j = i + 1; j < n; j++) {
+                        if (isBetterThan(this.configs[matched[j]], this.configs[matched[best]], requested)) {
+                            best = j;
+                        }
+                    }
+
+                    final int tmp = matched[i];
+                    matched[i] = matched[best];
+                    matched[best] = tmp;
+                }
+
+                rank = Arrays.copyOf(matched, n);
+
+                synchronized (this.ranks) {
+                    this.ranks.put(requested, rank);
+                }
+            }
+
+            return rank;
+        }
+
+        ResourceTable.Entry getEntry(final int entryIndex, final Key requested) {
+            for (final int i : rank(requested)) {
+                final ResourceTable.Entry[] entries = this.entries[i];
+                if (entryIndex < entries.length && null != entries[entryIndex]) {
+                    return entries[entryIndex];
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private final ResourceTable table;
+
+    /**
+     * The type spec index by package id and type id
+     */
+    private final SpecIndex[][] specs = new SpecIndex[256][];
+
+    /**
+     * Instantialize with the resource table
+     *
+     * @param table
+     *            The resource table
+     */
+    public ResourceResolver(final ResourceTable table) {
+        this(table, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantialize with the resource table and the cache capacity
+     *
+     * @param table
+     *            The resource table
+     * @param capacity
+     *            The maximum number of target configurations whose rankings
+     *            are cached for each type spec
+     */
+    public ResourceResolver(final ResourceTable table, final int capacity) {
+        this.table = table;
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            final SpecIndex[] types = new SpecIndex[256];
+
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                types[spec.id & 0xff] = new SpecIndex(spec, capacity);
+            }
+
+            this.specs[pkg.getId() & 0xff] = types;
+        }
+    }
+
+    /**
+     * Returns the number of cached rankings of all type specs
+     *
+     * @return the number of cached rankings
+     */
+    public int size() {
+        int size = 0;
+
+        for (final SpecIndex[] types : this.specs) {
+            if (null == types) {
+                continue;
+            }
+
+            for (final SpecIndex spec : types) {
+                if (null != spec) {
+                    synchronized (spec.ranks) {
+                        size += spec.ranks.size();
+                    }
+                }
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the resource table
+     *
+     * @return the resource table
+     */
+    public ResourceTable getResourceTable() {
+        return this.table;
+    }
+
+    /**
+     * Returns the best matching entry of the specified resource for the
+     * specified configuration, the references are not followed
+     *
+     * @param resId
+     *            The resource id
+     * @param config
+     *            The target configuration
+     * @return the best matching entry or null if no entry matches
+     */
+    public ResourceTable.Entry resolveEntry(final int resId, final ResourceTable.Config config) {
+        return getEntry(resId, new Key(config));
+    }
+
+    /**
+     * Returns the best matching value of the specified resource for the
+     * specified configuration, the references are followed to the final
+     * value, and the value of bag, e.g. style, is the reference to the bag
+     *
+     * @param resId
+     *            The resource id
+     * @param config
+     *            The target configuration
+     * @return the final value or null if no entry matches
+     * @throws AaptException
+     *             if the reference chain is circular
+     */
+    public ResourceValue resolve(final int resId, final ResourceTable.Config config) {
+        final Key requested = new Key(config);
+        final int[] chain = new int[MAX_DEPTH];
+
+        ResourceValue value = null;
+
+        for (int id = resId, depth = 0;; depth++) {
+            for (int i = 0; i < depth; i++) {
+                if (chain[i] == id) {
+                    throw new AaptException(String.format("Circular reference 0x%08x => 0x%08x", resId, id));
+                }
+            }
+
+            if (depth >= MAX_DEPTH) {
+                throw new AaptException(String.format("Too deep reference 0x%08x", resId));
+            }
+
+            chain[depth] = id;
+
+            final ResourceTable.Entry entry = getEntry(id, requested);
+
+            if (null == entry) {
+                return value;
+            }
+
+            if (entry instanceof ResourceTable.MapEntry) {
+                final ResourceValue bag = new ResourceValue();
+                bag.size = 8;
+                bag.dataType = ValueType.REFERENCE;
+                bag.data = id;
+                return bag;
+            }
+
+            value = ((ResourceTable.ValueEntry) entry).value;
+
+            if (ValueType.REFERENCE != value.dataType || 0 == value.data) {
+                return value;
+            }
+
+            id = value.data;
+        }
+    }
+
+    /**
+     * Creates a configuration from the specified qualifiers, e.g.
+     * {@code mcc460-zh-rCN-ldrtl-sw360dp-w360dp-h640dp-normal-long-notround-port-car-night-xhdpi-finger-keyshidden-nokeys-navhidden-nonav-v21}
+     *
+     * @param qualifiers
+     *            The qualifiers separated by {@code -}, an empty string means
+     *            the default configuration
+     * @return the configuration
+     * @throws AaptException
+     *             if the qualifier is unknown
+     */
+    public ResourceTable.Config newConfig(final String qualifiers) {
+        return parseConfig(this.table.new Config(), qualifiers);
+    }
+
+    /**
+     * Parses the specified qualifiers into the specified empty configuration
+     *
+     * @param config
+     *            The empty configuration
+     * @param qualifiers
+     *            The qualifiers separated by {@code -}, an empty string means
+     *            the default configuration
+     * @return the specified configuration
+     * @throws AaptException
+     *             if the qualifier is unknown
+     */
+    static ResourceTable.Config parseConfig(final ResourceTable.Config config, final String qualifiers) {
+        config.size = 52;
+
+        if (null == qualifiers || qualifiers.isEmpty()) {
+            return config;
+        }
+
+        for (final String q : qualifiers.toLowerCase(java.util.Locale.US).split("-")) {
+            if (!parseQualifier(config, q)) {
+                throw new AaptException(String.format("Unknown qualifier `%s` in `%s`", q, qualifiers));
+            }
+        }
+
+        return config;
+    }
+
+    ResourceTable.Entry getEntry(final int resId, final Key requested) {
+        final SpecIndex[] types = this.specs[Internal.getPackage(resId)];
+        if (null == types) {
+            return null;
+        }
+
+        final SpecIndex spec = types[Internal.getType(resId)];
+        if (null == spec) {
+            return null;
+        }
+
+        return spec.getEntry(Internal.getEntry(resId), requested);
+    }
+
+    private static int[] pack(final ResourceTable.Config config) {
+        final int[] fields = new int[FIELD_COUNT];
+        fields[MCC] = config.imsi.mcc & 0xffff;
+        fields[MNC] = config.imsi.mnc & 0xffff;
+        fields[LANGUAGE] = (config.locale.language[1] & 0xff) << 8 | (config.locale.language[0] & 0xff);
+        fields[COUNTRY] = (config.locale.country[1] & 0xff) << 8 | (config.locale.country[0] & 0xff);
+        fields[SCRIPT] = (config.localeScript[0] & 0xff) << 24 | (config.localeScript[1] & 0xff) << 16 | (config.localeScript[2] & 0xff) << 8 | (config.localeScript[3] & 0xff);
+        fields[ORIENTATION] = config.screenType.orientation & 0xff;
+        fields[TOUCHSCREEN] = config.screenType.touchscreen & 0xff;
+        fields[DENSITY] = config.screenType.density & 0xffff;
+        fields[KEYBOARD] = config.input.keyboard & 0xff;
+        fields[NAVIGATION] = config.input.navigation & 0xff;
+        fields[INPUT_FLAGS] = config.input.flags & 0xff;
+        fields[SCREEN_WIDTH] = config.screenSize.width & 0xffff;
+        fields[SCREEN_HEIGHT] = config.screenSize.height & 0xffff;
+        fields[SDK_VERSION] = config.version.sdk & 0xffff;
+        fields[MINOR_VERSION] = config.version.minor & 0xffff;
+        fields[SCREEN_LAYOUT] = config.screenConfig.layout & 0xff;
+        fields[UI_MODE] = config.screenConfig.uiMode & 0xff;
+        fields[SMALLEST_WIDTH_DP] = config.screenConfig.smallestWidthDp & 0xffff;
+        fields[WIDTH_DP] = config.screenSizeDp.width & 0xffff;
+        fields[HEIGHT_DP] = config.screenSizeDp.height & 0xffff;
+        fields[SCREEN_LAYOUT2] = config.screenConfig2.layout & 0xff;
+        return fields;
+    }
+
+    /**
+     * Returns true if the configuration could be used for the requested
+     * configuration, see {@code ResTable_config::match}
+     */
+    private static boolean match(final Key config, final Key requested) {
+        final int[] c = config.fields;
+        final int[] r = requested.fields;
+
+        for (int bits = config.mask; 0 != bits; bits &= bits - 1) {
+            final int i = Integer.numberOfTrailingZeros(bits);
+
+            switch (i) {
+            case MCC:
+            case MNC:
+            case LANGUAGE:
+            case COUNTRY:
+            case ORIENTATION:
+            case TOUCHSCREEN:
+            case KEYBOARD:
+            case NAVIGATION:
+            case MINOR_VERSION:
+                if (c[i] != r[i]) {
+                    return false;
+                }
+                break;
+            case SCRIPT:
+                if (0 != r[i] && c[i] != r[i]) {
+                    return false;
+                }
+                break;
+            case SCREEN_WIDTH:
+            case SCREEN_HEIGHT:
+            case SDK_VERSION:
+            case SMALLEST_WIDTH_DP:
+            case WIDTH_DP:
+            case HEIGHT_DP:
+                if (c[i] > r[i]) {
+                    return false;
+                }
+                break;
+            case INPUT_FLAGS: {
+                final int keysHidden = c[i] & MASK_KEYSHIDDEN;
+                final int reqKeysHidden = r[i] & MASK_KEYSHIDDEN;
+
+                // KEYSHIDDEN_NO matches KEYSHIDDEN_SOFT for compatibility
+                if (0 != keysHidden && keysHidden != reqKeysHidden && (KEYSHIDDEN_NO != keysHidden || KEYSHIDDEN_SOFT != reqKeysHidden)) {
+                    return false;
+                }
+
+                if (0 != (c[i] & MASK_NAVHIDDEN) && (c[i] & MASK_NAVHIDDEN) != (r[i] & MASK_NAVHIDDEN)) {
+                    return false;
+                }
+                break;
+            }
+            case SCREEN_LAYOUT: {
+                if (0 != (c[i] & MASK_LAYOUTDIR) && (c[i] & MASK_LAYOUTDIR) != (r[i] & MASK_LAYOUTDIR)) {
+                    return false;
+                }
+
+                // a larger screen can use the resources for a smaller screen
+                if (0 != (c[i] & MASK_SCREENSIZE) && (c[i] & MASK_SCREENSIZE) > (r[i] & MASK_SCREENSIZE)) {
+                    return false;
+                }
+
+                if (0 != (c[i] & MASK_SCREENLONG) && (c[i] & MASK_SCREENLONG) != (r[i] & MASK_SCREENLONG)) {
+                    return false;
+                }
+                break;
+            }
+            case UI_MODE: {
+                if (0 != (c[i] & MASK_UI_MODE_TYPE) && (c[i] & MASK_UI_MODE_TYPE) != (r[i] & MASK_UI_MODE_TYPE)) {
+                    return false;
+                }
+
+                if (0 != (c[i] & MASK_UI_MODE_NIGHT) && (c[i] & MASK_UI_MODE_NIGHT) != (r[i] & MASK_UI_MODE_NIGHT)) {
+                    return false;
+                }
+                break;
+            }
+            case SCREEN_LAYOUT2:
+                if (0 != (c[i] & MASK_SCREENROUND) && (c[i] & MASK_SCREENROUND) != (r[i] & MASK_SCREENROUND)) {
+                    return false;
+                }
+                break;
+            default:
+                // density always matches, the best one is picked by ranking
+                break;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the configuration {@code a} is a better match than
+     * {@code b} for the requested configuration, see
+     * {@code ResTable_config::isBetterThan}
+     */
+    private static boolean isBetterThan(final Key a, final Key b, final Key requested) {
+        final int[] x = a.fields;
+        final int[] o = b.fields;
+        final int[] r = requested.fields;
+
+        if (x[MCC] != o[MCC] && 0 != r[MCC]) {
+            return 0 != x[MCC];
+        }
+
+        if (x[MNC] != o[MNC] && 0 != r[MNC]) {
+            return 0 != x[MNC];
+        }
+
+        if (x[LANGUAGE] != o[LANGUAGE] && 0 != r[LANGUAGE]) {
+            return 0 != x[LANGUAGE];
+        }
+
+        if (x[SCRIPT] != o[SCRIPT] && 0 != r[SCRIPT]) {
+            return 0 != x[SCRIPT];
+        }
+
+        if (x[COUNTRY] != o[COUNTRY] && 0 != r[COUNTRY]) {
+            return 0 != x[COUNTRY];
+        }
+
+        if (0 != ((x[SCREEN_LAYOUT] ^ o[SCREEN_LAYOUT]) & MASK_LAYOUTDIR) && 0 != (r[SCREEN_LAYOUT] & MASK_LAYOUTDIR)) {
+            return (x[SCREEN_LAYOUT] & MASK_LAYOUTDIR) > (o[SCREEN_LAYOUT] & MASK_LAYOUTDIR);
+        }
+
+        if (x[SMALLEST_WIDTH_DP] != o[SMALLEST_WIDTH_DP]) {
+            return x[SMALLEST_WIDTH_DP] > o[SMALLEST_WIDTH_DP];
+        }
+
+        if (x[WIDTH_DP] != o[WIDTH_DP] || x[HEIGHT_DP] != o[HEIGHT_DP]) {
+            final int delta = delta(x, r, WIDTH_DP, HEIGHT_DP);
+            final int otherDelta = delta(o, r, WIDTH_DP, HEIGHT_DP);
+
+            if (delta != otherDelta) {
+                return delta < otherDelta;
+            }
+        }
+
+        if (0 != ((x[SCREEN_LAYOUT] ^ o[SCREEN_LAYOUT]) & MASK_SCREENSIZE) && 0 != (r[SCREEN_LAYOUT] & MASK_SCREENSIZE)) {
+            final int size = x[SCREEN_LAYOUT] & MASK_SCREENSIZE;
+            final int otherSize = o[SCREEN_LAYOUT] & MASK_SCREENSIZE;
+
+            int fixedSize = size;
+            int fixedOtherSize = otherSize;
+
+            // the normal screen size is the default
+            if ((r[SCREEN_LAYOUT] & MASK_SCREENSIZE) >= SCREENSIZE_NORMAL) {
+                fixedSize = 0 == fixedSize ? SCREENSIZE_NORMAL : fixedSize;
+                fixedOtherSize = 0 == fixedOtherSize ? SCREENSIZE_NORMAL : fixedOtherSize;
+            }
+
+            return fixedSize == fixedOtherSize ? 0 != size : fixedSize > fixedOtherSize;
+        }
+
+        if (0 != ((x[SCREEN_LAYOUT] ^ o[SCREEN_LAYOUT]) & MASK_SCREENLONG) && 0 != (r[SCREEN_LAYOUT] & MASK_SCREENLONG)) {
+            return 0 != (x[SCREEN_LAYOUT] & MASK_SCREENLONG);
+        }
+
+        if (0 != ((x[SCREEN_LAYOUT2] ^ o[SCREEN_LAYOUT2]) & MASK_SCREENROUND) && 0 != (r[SCREEN_LAYOUT2] & MASK_SCREENROUND)) {
+            return 0 != (x[SCREEN_LAYOUT2] & MASK_SCREENROUND);
+        }
+
+        if (x[ORIENTATION] != o[ORIENTATION] && 0 != r[ORIENTATION]) {
+            return 0 != x[ORIENTATION];
+        }
+
+        if (0 != ((x[UI_MODE] ^ o[UI_MODE]) & MASK_UI_MODE_TYPE) && 0 != (r[UI_MODE] & MASK_UI_MODE_TYPE)) {
+            return 0 != (x[UI_MODE] & MASK_UI_MODE_TYPE);
+        }
+
+        if (0 != ((x[UI_MODE] ^ o[UI_MODE]) & MASK_UI_MODE_NIGHT) && 0 != (r[UI_MODE] & MASK_UI_MODE_NIGHT)) {
+            return 0 != (x[UI_MODE] & MASK_UI_MODE_NIGHT);
+        }
+
+        if (x[DENSITY] != o[DENSITY]) {
+            return isDensityBetterThan(x[DENSITY], o[DENSITY], r[DENSITY]);
+        }
+
+        if (x[TOUCHSCREEN] != o[TOUCHSCREEN] && 0 != r[TOUCHSCREEN]) {
+            return 0 != x[TOUCHSCREEN];
+        }
+
+        final int keysHidden = x[INPUT_FLAGS] & MASK_KEYSHIDDEN;
+        final int otherKeysHidden = o[INPUT_FLAGS] & MASK_KEYSHIDDEN;
+        final int reqKeysHidden = r[INPUT_FLAGS] & MASK_KEYSHIDDEN;
+
+        if (keysHidden != otherKeysHidden && 0 != reqKeysHidden) {
+            if (0 == keysHidden) {
+                return false;
+            } else if (0 == otherKeysHidden) {
+                return true;
+            } else if (reqKeysHidden == keysHidden) {
+                // the exact match is more specific than KEYSHIDDEN_NO
+                return true;
+            } else if (reqKeysHidden == otherKeysHidden) {
+                return false;
+            }
+        }
+
+        final int navHidden = x[INPUT_FLAGS] & MASK_NAVHIDDEN;
+        final int otherNavHidden = o[INPUT_FLAGS] & MASK_NAVHIDDEN;
+
+        if (navHidden != otherNavHidden && 0 != (r[INPUT_FLAGS] & MASK_NAVHIDDEN)) {
+            return 0 != navHidden;
+        }
+
+        if (x[KEYBOARD] != o[KEYBOARD] && 0 != r[KEYBOARD]) {
+            return 0 != x[KEYBOARD];
+        }
+
+        if (x[NAVIGATION] != o[NAVIGATION] && 0 != r[NAVIGATION]) {
+            return 0 != x[NAVIGATION];
+        }
+
+        if (x[SCREEN_WIDTH] != o[SCREEN_WIDTH] || x[SCREEN_HEIGHT] != o[SCREEN_HEIGHT]) {
+            final int delta = delta(x, r, SCREEN_WIDTH, SCREEN_HEIGHT);
+            final int otherDelta = delta(o, r, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+            if (delta != otherDelta) {
+                return delta < otherDelta;
+            }
+        }
+
+        if (x[SDK_VERSION] != o[SDK_VERSION] && 0 != r[SDK_VERSION]) {
+            return x[SDK_VERSION] > o[SDK_VERSION];
+        }
+
+        if (x[MINOR_VERSION] != o[MINOR_VERSION] && 0 != r[MINOR_VERSION]) {
+            return 0 != x[MINOR_VERSION];
+        }
+
+        return false;
+    }
+
+    private static int delta(final int[] c, final int[] r, final int width, final int height) {
+        int delta = 0;
+
+        if (0 != r[width]) {
+            delta += r[width] - c[width];
+        }
+
+        if (0 != r[height]) {
+            delta += r[height] - c[height];
+        }
+
+        return delta;
+    }
+
+    private static boolean isDensityBetterThan(final int density, final int otherDensity, final int reqDensity) {
+        final int thisDensity = 0 != density ? density : DENSITY_MEDIUM;
+        final int thatDensity = 0 != otherDensity ? otherDensity : DENSITY_MEDIUM;
+
+        // anydpi is always preferred over scaling a density bucket
+        if (DENSITY_ANY == thisDensity) {
+            return true;
+        } else if (DENSITY_ANY == thatDensity) {
+            return false;
+        }
+
+        final int requested = 0 == reqDensity || DENSITY_ANY == reqDensity ? DENSITY_MEDIUM : reqDensity;
+        final boolean bigger = thisDensity > thatDensity;
+        final int h = bigger ? thisDensity : thatDensity;
+        final int l = bigger ? thatDensity : thisDensity;
+
+        if (requested >= h) {
+            return bigger;
+        }
+
+        if (l >= requested) {
+            return !bigger;
+        }
+
+        // scaling down is 2x better than scaling up
+        return ((2 * l) - requested) * h > requested * requested ? !bigger : bigger;
+    }
+
+    private static boolean parseQualifier(final ResourceTable.Config config, final String q) {
+        if (q.matches("mcc\\d+")) {
+            config.imsi.mcc = Short.parseShort(q.substring(3));
+        } else if (q.matches("mnc\\d+")) {
+            config.imsi.mnc = Short.parseShort(q.substring(3));
+        } else if (q.matches("[a-z]{2}")) {
+            config.locale.language[1] = (byte) q.charAt(0);
+            config.locale.language[0] = (byte) q.charAt(1);
+        } else if (q.matches("r[a-z]{2}")) {
+            config.locale.country[1] = (byte) Character.toUpperCase(q.charAt(1));
+            config.locale.country[0] = (byte) Character.toUpperCase(q.charAt(2));
+        } else if ("ldltr".equals(q) || "ldrtl".equals(q)) {
+            config.screenConfig.layout |= "ldltr".equals(q) ? 0x40 : 0x80;
+        } else if (q.matches("sw\\d+dp")) {
+            config.screenConfig.smallestWidthDp = Short.parseShort(q.substring(2, q.length() - 2));
+        } else if (q.matches("w\\d+dp")) {
+            config.screenSizeDp.width = Short.parseShort(q.substring(1, q.length() - 2));
+        } else if (q.matches("h\\d+dp")) {
+            config.screenSizeDp.height = Short.parseShort(q.substring(1, q.length() - 2));
+        } else if (q.matches("small|normal|large|xlarge")) {
+            config.screenConfig.layout |= Arrays.asList("small", "normal", "large", "xlarge").indexOf(q) + 1;
+        } else if ("long".equals(q) || "notlong".equals(q)) {
+            config.screenConfig.layout |= "notlong".equals(q) ? 0x10 : 0x20;
+        } else if ("round".equals(q) || "notround".equals(q)) {
+            config.screenConfig2.layout |= "notround".equals(q) ? 0x01 : 0x02;
+        } else if (q.matches("port|land|square")) {
+            config.screenType.orientation = (byte) (Arrays.asList("port", "land", "square").indexOf(q) + 1);
+        } else if (q.matches("desk|car|television|appliance|watch|vrheadset")) {
+            config.screenConfig.uiMode |= Arrays.asList("desk", "car", "television", "appliance", "watch", "vrheadset").indexOf(q) + 2;
+        } else if ("night".equals(q) || "notnight".equals(q)) {
+            config.screenConfig.uiMode |= "notnight".equals(q) ? 0x10 : 0x20;
+        } else if (q.matches("ldpi|mdpi|tvdpi|hdpi|xhdpi|xxhdpi|xxxhdpi|nodpi|anydpi")) {
+            final int[] densities = { 120, 160, 213, 240, 320, 480, 640, DENSITY_NONE, DENSITY_ANY };
+            config.screenType.density = (short) densities[Arrays.asList("ldpi", "mdpi", "tvdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi", "nodpi", "anydpi").indexOf(q)];
+        } else if (q.matches("\\d+dpi")) {
+            config.screenType.density = Short.parseShort(q.substring(0, q.length() - 3));
+        } else if (q.matches("notouch|stylus|finger")) {
+            config.screenType.touchscreen = (byte) (Arrays.asList("notouch", "stylus", "finger").indexOf(q) + 1);
+        } else if (q.matches("keysexposed|keyshidden|keyssoft")) {
+            config.input.flags |= Arrays.asList("keysexposed", "keyshidden", "keyssoft").indexOf(q) + 1;
+        } else if (q.matches("nokeys|qwerty|12key")) {
+            config.input.keyboard = (byte) (Arrays.asList("nokeys", "qwerty", "12key").indexOf(q) + 1);
+        } else if ("navexposed".equals(q) || "navhidden".equals(q)) {
+            config.input.flags |= "navexposed".equals(q) ? 0x04 : 0x08;
+        } else if (q.matches("nonav|dpad|trackball|wheel")) {
+            config.input.navigation = (byte) (Arrays.asList("nonav", "dpad", "trackball", "wheel").indexOf(q) + 1);
+        } else if (q.matches("\\d+x\\d+")) {
+            final int x = q.indexOf('x');
+            final short a = Short.parseShort(q.substring(0, x));
+            final short b = Short.parseShort(q.substring(x + 1));
+            config.screenSize.width = (short) Math.max(a, b);
+            config.screenSize.height = (short) Math.min(a, b);
+        } else if (q.matches("v\\d+")) {
+            config.version.sdk = Short.parseShort(q.substring(1));
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+}
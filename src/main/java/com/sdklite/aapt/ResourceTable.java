@@ -8,6 +8,7 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -82,7 +83,7 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public List<ResourceTable.Package> getPackages() {
-            return this.packages;
+            return this.owner.frozen ? Collections.unmodifiableList(this.packages) : this.packages;
         }
     }
 
@@ -136,6 +137,7 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public void setId(final int id) {
+            checkMutable();
             this.id = id;
         }
 
@@ -144,6 +146,7 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public void setName(String name) {
+            checkMutable();
             this.name = name;
         }
 
@@ -372,16 +375,57 @@ public abstract class ResourceTable extends ChunkHeader {
 
         final ScreenConfig2 screenConfig2 = new ScreenConfig2();
 
+        /**
+         * Copies all fields of the specified configuration into this one
+         * 
+         * @param config
+         *            The source configuration
+         * @return this configuration
+         */
+        Config set(final Config config) {
+            this.size = config.size;
+            this.imsi.mcc = config.imsi.mcc;
+            this.imsi.mnc = config.imsi.mnc;
+            System.arraycopy(config.locale.language, 0, this.locale.language, 0, this.locale.language.length);
+            System.arraycopy(config.locale.country, 0, this.locale.country, 0, this.locale.country.length);
+            this.screenType.orientation = config.screenType.orientation;
+            this.screenType.touchscreen = config.screenType.touchscreen;
+            this.screenType.density = config.screenType.density;
+            this.input.keyboard = config.input.keyboard;
+            this.input.navigation = config.input.navigation;
+            this.input.flags = config.input.flags;
+            this.input.pad0 = config.input.pad0;
+            this.screenSize.width = config.screenSize.width;
+            this.screenSize.height = config.screenSize.height;
+            this.version.sdk = config.version.sdk;
+            this.version.minor = config.version.minor;
+            this.screenConfig.layout = config.screenConfig.layout;
+            this.screenConfig.uiMode = config.screenConfig.uiMode;
+            this.screenConfig.smallestWidthDp = config.screenConfig.smallestWidthDp;
+            this.screenSizeDp.width = config.screenSizeDp.width;
+            this.screenSizeDp.height = config.screenSizeDp.height;
+            System.arraycopy(config.localeScript, 0, this.localeScript, 0, this.localeScript.length);
+            System.arraycopy(config.localeVariant, 0, this.localeVariant, 0, this.localeVariant.length);
+            this.screenConfig2.layout = config.screenConfig2.layout;
+            this.screenConfig2.pad1 = config.screenConfig2.pad1;
+            this.screenConfig2.pad2 = config.screenConfig2.pad2;
+            return this;
+        }
+
+        /**
+         * The bytes of language and region are held in reverse order of the
+         * binary, see {@code AssetEditor#parseResourceTableType}
+         */
         byte[] unpackLaunguage() {
-            return unpackLanguageOrRegion(this.locale.language, (byte) 0x61);
+            return unpackLanguageOrRegion(new byte[] { this.locale.language[1], this.locale.language[0] }, (byte) 0x61);
         }
 
         byte[] unpackRegion() {
-            return unpackLanguageOrRegion(this.locale.country, (byte) 0x30);
+            return unpackLanguageOrRegion(new byte[] { this.locale.country[1], this.locale.country[0] }, (byte) 0x30);
         }
 
         void appendLocaleDir(final StringBuilder out) {
-            if (0 != this.locale.language[0]) {
+            if (0 == this.locale.language[1]) {
                 return;
             }
 
@@ -461,7 +505,7 @@ public abstract class ResourceTable extends ChunkHeader {
                 if (res.length() > 0) {
                     res.append("-");
                 }
-                res.append(String.format("h%ddp", this.screenSizeDp.width));
+                res.append(String.format("h%ddp", this.screenSizeDp.height));
             }
 
             if (this.screenType.orientation != ScreenType.ORIENTATION_ANY) {
@@ -586,6 +630,11 @@ public abstract class ResourceTable extends ChunkHeader {
          */
         public int key;
 
+        /**
+         * Set once the resource table is frozen
+         */
+        boolean frozen;
+
         public Entry() {
         }
 
@@ -622,10 +671,12 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public void setValueAt(final int index, final Map value) {
+            checkMutable(this);
             this.values.set(index, value);
         }
 
         public void addValue(final Map value) {
+            checkMutable(this);
             this.values.add(value);
         }
     }
@@ -641,11 +692,35 @@ public abstract class ResourceTable extends ChunkHeader {
             super(parent);
         }
 
+        /**
+         * Returns the value
+         * 
+         * @return the value
+         * @throws UnsupportedOperationException
+         *             if the resource table is frozen, use
+         *             {@link #getDataType()} and {@link #getData()} instead
+         */
         public ResourceValue getValue() {
+            checkMutable(this);
             return this.value;
         }
 
+        /**
+         * Returns the type of value, see {@link ValueType}
+         */
+        public byte getDataType() {
+            return this.value.dataType;
+        }
+
+        /**
+         * Returns the data of value
+         */
+        public int getData() {
+            return this.value.data;
+        }
+
         public void setValue(final ResourceValue value) {
+            checkMutable(this);
             this.value.size = value.size;
             this.value.res0 = value.res0;
             this.value.dataType = value.dataType;
@@ -709,7 +784,7 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public List<IndexedEntry<Entry>> getEntries() {
-            return this.entries;
+            return frozen ? Collections.unmodifiableList(this.entries) : this.entries;
         }
 
         public Entry getEntryAt(final int index) {
@@ -766,11 +841,11 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public List<Integer> getFlags() {
-            return this.flags;
+            return frozen ? Collections.unmodifiableList(this.flags) : this.flags;
         }
 
         public List<Type> getConfigs() {
-            return this.configs;
+            return frozen ? Collections.unmodifiableList(this.configs) : this.configs;
         }
 
         public int getEntryCount() {
@@ -831,7 +906,7 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         public List<IndexedEntry<String>> getEntries() {
-            return this.entries;
+            return frozen ? Collections.unmodifiableList(this.entries) : this.entries;
         }
 
         @Override
@@ -853,6 +928,14 @@ public abstract class ResourceTable extends ChunkHeader {
 
     int cookie;
 
+    /**
+     * The lazily built index of resource id by package name, type name and
+     * entry name
+     */
+    private volatile java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> nameIndex;
+
+    private volatile boolean frozen;
+
     public ResourceTable() {
         super(TABLE);
     }
@@ -882,9 +965,26 @@ public abstract class ResourceTable extends ChunkHeader {
         }
 
         final ResourceTable.Package pkg = group.getPackage(Internal.getPackage(resId));
-        final ResourceTable.TypeSpec spec = pkg.specs.get(typeIndex);
+        if (null == pkg) {
+            return null;
+        }
+
+        final ResourceTable.TypeSpec spec = find(pkg.specs, new Filter<ResourceTable.TypeSpec>() {
+            @Override
+            public boolean accept(final ResourceTable.TypeSpec it) {
+                return (it.id & 0xff) == typeIndex;
+            }
+        });
+
+        if (null == spec) {
+            return null;
+        }
 
         for (final ResourceTable.Type type : spec.configs) {
+            if (entryIndex >= type.entries.size()) {
+                continue;
+            }
+
             final IndexedEntry<ResourceTable.Entry> entry = type.entries.get(entryIndex);
             if (Entry.NO_ENTRY == entry.index || null == entry.value) {
                 continue;
@@ -898,6 +998,207 @@ public abstract class ResourceTable extends ChunkHeader {
         return null;
     }
 
+    /**
+     * Returns the first defined entry of the specified resource in any
+     * configuration
+     * 
+     * @param resId
+     *            The resource id
+     * @return the entry or null if not found
+     */
+    Entry getEntry(final int resId) {
+        final int packageIndex = getPackageIndex(resId);
+        if (packageIndex < 0 || packageIndex >= this.packageGroups.size()) {
+            return null;
+        }
+
+        final ResourceTable.Package pkg = this.packageGroups.get(packageIndex).getPackage(Internal.getPackage(resId));
+        if (null == pkg) {
+            return null;
+        }
+
+        final int typeId = Internal.getType(resId);
+        final int entryIndex = Internal.getEntry(resId);
+
+        for (final ResourceTable.TypeSpec spec : pkg.specs) {
+            if ((spec.id & 0xff) != typeId) {
+                continue;
+            }
+
+            for (final ResourceTable.Type type : spec.configs) {
+                if (entryIndex < type.entries.size()) {
+                    final IndexedEntry<ResourceTable.Entry> entry = type.entries.get(entryIndex);
+                    if (Entry.NO_ENTRY != entry.index && null != entry.value) {
+                        return entry.value;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the id of the specified resource, the index of resource names
+     * is built in one pass on the first lookup and invalidated by
+     * {@link #purge(Symbols, java.util.Map)}
+     * 
+     * @param packageName
+     *            The package name, null means the first package
+     * @param typeName
+     *            The resource type name, e.g. {@code string}
+     * @param name
+     *            The resource entry name, e.g. {@code app_name}
+     * @return the resource id or 0 if not found
+     */
+    public int getResourceId(final String packageName, final String typeName, final String name) {
+        final java.util.Map<String, java.util.Map<String, Integer>> types = getTypeIndex(packageName);
+        if (null == types) {
+            return 0;
+        }
+
+        final java.util.Map<String, Integer> entries = types.get(typeName);
+        if (null == entries) {
+            return 0;
+        }
+
+        final Integer id = entries.get(name);
+        return null != id ? id : 0;
+    }
+
+    /**
+     * Returns the id of the specified resource
+     * 
+     * @param name
+     *            The resource name, the null package name means the first
+     *            package
+     * @return the resource id or 0 if not found
+     */
+    public int getResourceId(final ResourceName name) {
+        return getResourceId(name.packageName, name.typeName, name.name);
+    }
+
+    /**
+     * Returns the ids of the specified resources
+     * 
+     * @param names
+     *            The resource names
+     * @return the resource ids at the same index of names, 0 if not found
+     */
+    public int[] getResourceIds(final ResourceName[] names) {
+        final int[] ids = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = getResourceId(names[i]);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the specified resources in the same package
+     * 
+     * @param packageName
+     *            The package name, null means the first package
+     * @param typeNames
+     *            The resource type names
+     * @param names
+     *            The resource entry names at the same index of type names
+     * @return the resource ids at the same index of names, 0 if not found
+     */
+    public int[] getResourceIds(final String packageName, final String[] typeNames, final String[] names) {
+        if (typeNames.length != names.length) {
+            throw new IllegalArgumentException("Mismatched length of type names and entry names");
+        }
+
+        final int[] ids = new int[names.length];
+        final java.util.Map<String, java.util.Map<String, Integer>> types = getTypeIndex(packageName);
+
+        if (null == types) {
+            return ids;
+        }
+
+        java.util.Map<String, Integer> entries = null;
+
+        for (int i = 0; i < names.length; i++) {
+            // the names of the same type are usually adjacent
+            if (0 == i || !typeNames[i].equals(typeNames[i - 1])) {
+                entries = types.get(typeNames[i]);
+            }
+
+            final Integer id = null != entries ? entries.get(names[i]) : null;
+            ids[i] = null != id ? id : 0;
+        }
+
+        return ids;
+    }
+
+    private java.util.Map<String, java.util.Map<String, Integer>> getTypeIndex(final String packageName) {
+        final java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> index = getNameIndex();
+
+        if (null != packageName) {
+            return index.get(packageName);
+        }
+
+        final ResourceTable.Package pkg = getPackage();
+        return null != pkg ? index.get(pkg.getName()) : null;
+    }
+
+    private java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> getNameIndex() {
+        java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> index = this.nameIndex;
+
+        if (null == index) {
+            synchronized (this) {
+                index = this.nameIndex;
+
+                if (null == index) {
+                    this.nameIndex = index = buildNameIndex();
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> buildNameIndex() {
+        final java.util.Map<String, java.util.Map<String, java.util.Map<String, Integer>>> index = new HashMap<String, java.util.Map<String, java.util.Map<String, Integer>>>();
+
+        for (final ResourceTable.Package pkg : getPackages()) {
+            final StringPool typePool = pkg.getTypeStringPool();
+            final StringPool keyPool = pkg.getKeyStringPool();
+
+            java.util.Map<String, java.util.Map<String, Integer>> types = index.get(pkg.getName());
+            if (null == types) {
+                index.put(pkg.getName(), types = new HashMap<String, java.util.Map<String, Integer>>());
+            }
+
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                final String typeName = typePool.getStringAt(spec.id - 1);
+
+                java.util.Map<String, Integer> entries = types.get(typeName);
+                if (null == entries) {
+                    types.put(typeName, entries = new HashMap<String, Integer>());
+                }
+
+                for (final ResourceTable.Type type : spec.configs) {
+                    for (int i = 0, n = type.entries.size(); i < n; i++) {
+                        final IndexedEntry<Entry> entry = type.entries.get(i);
+                        if (Entry.NO_ENTRY == entry.index || null == entry.value) {
+                            continue;
+                        }
+
+                        final String key = keyPool.getStringAt(entry.value.key);
+                        if (!entries.containsKey(key)) {
+                            entries.put(key, makeId(pkg.getId(), spec.id & 0xff, i));
+                        }
+                    }
+                }
+            }
+        }
+
+        return index;
+    }
+
     public int getPackageIndex(final int resId) {
         return this.packageMap[Internal.getPackage(resId)] - 1;
     }
@@ -926,6 +1227,81 @@ public abstract class ResourceTable extends ChunkHeader {
         return packages.toArray(new ResourceTable.Package[packages.size()]);
     }
 
+    /**
+     * Returns an immutable snapshot of this resource table which could be
+     * shared across threads and edited, the snapshot is not affected by the
+     * subsequent modifications of this resource table
+     *
+     * @return the snapshot
+     */
+    public ResourceTableSnapshot snapshot() {
+        return ResourceTableSnapshot.of(this);
+    }
+
+    /**
+     * Reconciles the sizes and offsets, builds the name index and rejects the
+     * further modification, the frozen resource table is safe to be read by
+     * multiple threads concurrently. The public fields of entries are not
+     * guarded, they must not be assigned.
+     * 
+     * @return this resource table
+     */
+    public ResourceTable freeze() {
+        if (this.frozen) {
+            return this;
+        }
+
+        accept(new ReconcileChunkVisitor());
+        getNameIndex();
+        getStringPool().frozen = true;
+
+        for (final ResourceTable.Package pkg : getPackages()) {
+            if (null != pkg.getTypeStringPool()) {
+                pkg.getTypeStringPool().frozen = true;
+            }
+
+            if (null != pkg.getKeyStringPool()) {
+                pkg.getKeyStringPool().frozen = true;
+            }
+
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                for (final ResourceTable.Type type : spec.configs) {
+                    for (final IndexedEntry<Entry> entry : type.entries) {
+                        if (null != entry.value) {
+                            entry.value.frozen = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        this.frozen = true;
+        return this;
+    }
+
+    /**
+     * Returns true if this resource table has been frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Rejects the modification of a frozen resource table, it should be
+     * called before anything written
+     */
+    void checkMutable() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("Resource table is frozen");
+        }
+    }
+
+    private static void checkMutable(final Entry entry) {
+        if (entry.frozen) {
+            throw new UnsupportedOperationException("Resource table is frozen");
+        }
+    }
+
     /**
      * Purge resource entries with the specified symbols
      * 
@@ -946,229 +1322,238 @@ public abstract class ResourceTable extends ChunkHeader {
      *            The resource id mapping, oldId =&gt; newId
      */
     public void purge(final Symbols symbols, java.util.Map<Integer, Integer> idMap) {
-        final List<Integer> libPackageIds = new ArrayList<Integer>();
-
-        final List<Integer> retainedStringIds = new ArrayList<Integer>(); // index of string in string pool
-        final StringPool pool = getStringPool();
-        for (final IndexedEntry<StringPool.Style> style : pool.styles) {
-            for (final StringPool.Span span : style.value) {
-                if (!retainedStringIds.contains(span.name)) {
-                    retainedStringIds.add(span.name);
-                }
-            }
-        }
+        checkMutable();
 
-        final Collection<Symbols.Type> uncompactedTypes = symbols.types();
-        final java.util.Map<String, Integer> uncompactedTypeIds = new HashMap<String, Integer>();
-        for (final Symbols.Type type : uncompactedTypes) {
-            uncompactedTypeIds.put(type.name, type.id);
-        }
+        final Instrumentations.Probe probe = Instrumentations.begin(Instrumentation.Phase.PURGE, TABLE);
 
-        final Collection<Symbols.Type> compactedTypes = symbols.clone().compact().types();
-        final java.util.Map<String, Integer> compactedTypeIds = new HashMap<String, Integer>();
-        for (final Symbols.Type type : compactedTypes) {
-            compactedTypeIds.put(type.name, type.id);
-        }
+        try {
+            final List<Integer> libPackageIds = new ArrayList<Integer>();
 
-        final Set<String> typeNames = new HashSet<String>(map(uncompactedTypes, new Mapper<Symbols.Type, String>() {
-            @Override
-            public String map(final Symbols.Type e) {
-                return e.name;
-            }
-        }));
-
-        for (final ResourceTable.PackageGroup pg : this.packageGroups) {
-            for (final ResourceTable.Package pkg : pg.packages) {
-                final List<Integer> retainedKeyIds = new ArrayList<Integer>(); // index of string in key string pool
-                final List<ResourceTable.TypeSpec> retainedTypeSpecs = findAll(pkg.specs, new Filter<ResourceTable.TypeSpec>() {
-                    @Override
-                    public boolean accept(final TypeSpec it) {
-                        return typeNames.contains(pkg.getTypeStringPool().getStringAt(it.id - 1));
+            final List<Integer> retainedStringIds = new ArrayList<Integer>(); // index of string in string pool
+            final StringPool pool = getStringPool();
+            for (final IndexedEntry<StringPool.Style> style : pool.styles) {
+                for (final StringPool.Span span : style.value) {
+                    if (!retainedStringIds.contains(span.name)) {
+                        retainedStringIds.add(span.name);
                     }
-                });
-
-                for (final ResourceTable.TypeSpec spec : retainedTypeSpecs) {
-                    final String typeName = pkg.getTypeStringPool().getStringAt(spec.id - 1);
-                    final Set<String> retainedEntryNames = new HashSet<String>(map(symbols.entries(typeName), new Mapper<Symbols.Entry, String>() {
-                        @Override
-                        public String map(final Symbols.Entry e) {
-                            return e.name;
-                        }
-                    }));
+                }
+            }
 
-                    // Purge flags
-                    final java.util.Map<ResourceName, Integer> entries = spec.entries();
-                    final List<Integer> flags = new ArrayList<Integer>();
-                    for (final ResourceName rn : entries.keySet()) {
-                        if (!retainedEntryNames.contains(rn.name)) {
-                            continue;
-                        }
+            final Collection<Symbols.Type> uncompactedTypes = symbols.types();
+            final java.util.Map<String, Integer> uncompactedTypeIds = new HashMap<String, Integer>();
+            for (final Symbols.Type type : uncompactedTypes) {
+                uncompactedTypeIds.put(type.name, type.id);
+            }
 
-                        final int entryIndex = entries.get(rn);
-                        flags.add(spec.flags.get(entryIndex));
-                    }
+            final Collection<Symbols.Type> compactedTypes = symbols.clone().compact().types();
+            final java.util.Map<String, Integer> compactedTypeIds = new HashMap<String, Integer>();
+            for (final Symbols.Type type : compactedTypes) {
+                compactedTypeIds.put(type.name, type.id);
+            }
 
-                    spec.flags.clear();
-                    spec.flags.addAll(flags);
-                    spec.id = compactedTypeIds.get(typeName).byteValue();
+            final Set<String> typeNames = new HashSet<String>(map(uncompactedTypes, new Mapper<Symbols.Type, String>() {
+                @Override
+                public String map(final Symbols.Type e) {
+                    return e.name;
+                }
+            }));
 
-                    // Purge config entries
-                    final List<ResourceTable.Type> configs = new ArrayList<ResourceTable.Type>();
-                    for (int i = 0, configCount = spec.configs.size(); i < configCount; i++) {
-                        final ResourceTable.Type config = spec.configs.get(i);
-                        if (config.entries.isEmpty()) {
-                            continue;
+            for (final ResourceTable.PackageGroup pg : this.packageGroups) {
+                for (final ResourceTable.Package pkg : pg.packages) {
+                    final List<Integer> retainedKeyIds = new ArrayList<Integer>(); // index of string in key string pool
+                    final List<ResourceTable.TypeSpec> retainedTypeSpecs = findAll(pkg.specs, new Filter<ResourceTable.TypeSpec>() {
+                        @Override
+                        public boolean accept(final TypeSpec it) {
+                            return typeNames.contains(pkg.getTypeStringPool().getStringAt(it.id - 1));
                         }
-
-                        final List<IndexedEntry<ResourceTable.Entry>> retainedEntries = new ArrayList<IndexedEntry<ResourceTable.Entry>>();
-
-                        for (int j = 0, entryCount = config.entries.size(); j < entryCount; j++) {
-                            final IndexedEntry<ResourceTable.Entry> entry = config.entries.get(j);
-                            if (Entry.NO_ENTRY == entry.index || entry.value == null) {
-                                continue;
+                    });
+
+                    for (final ResourceTable.TypeSpec spec : retainedTypeSpecs) {
+                        final String typeName = pkg.getTypeStringPool().getStringAt(spec.id - 1);
+                        final Set<String> retainedEntryNames = new HashSet<String>(map(symbols.entries(typeName), new Mapper<Symbols.Entry, String>() {
+                            @Override
+                            public String map(final Symbols.Entry e) {
+                                return e.name;
                             }
+                        }));
 
-                            final String entryName = pkg.getKeyStringPool().getStringAt(entry.value.key);
-                            if (!retainedEntryNames.contains(entryName)) {
+                        // Purge flags
+                        final java.util.Map<ResourceName, Integer> entries = spec.entries();
+                        final List<Integer> flags = new ArrayList<Integer>();
+                        for (final ResourceName rn : entries.keySet()) {
+                            if (!retainedEntryNames.contains(rn.name)) {
                                 continue;
                             }
 
-                            retainedEntries.add(entry);
-
-                            if (!retainedKeyIds.contains(entry.value.key)) {
-                                retainedKeyIds.add(entry.value.key);
-                            }
+                            final int entryIndex = entries.get(rn);
+                            flags.add(spec.flags.get(entryIndex));
+                        }
 
-                            if (entry.value instanceof ResourceTable.ValueEntry) {
-                                final ResourceTable.ValueEntry ve = (ResourceTable.ValueEntry) entry.value;
+                        spec.flags.clear();
+                        spec.flags.addAll(flags);
+                        spec.id = compactedTypeIds.get(typeName).byteValue();
 
-                                switch (ve.value.dataType) {
-                                case ValueType.STRING: {
-                                    final int oldId = ve.value.data;
-                                    final int newId = retainedStringIds.indexOf(oldId);
+                        // Purge config entries
+                        final List<ResourceTable.Type> configs = new ArrayList<ResourceTable.Type>();
+                        for (int i = 0, configCount = spec.configs.size(); i < configCount; i++) {
+                            final ResourceTable.Type config = spec.configs.get(i);
+                            if (config.entries.isEmpty()) {
+                                continue;
+                            }
 
-                                    if (newId < 0) {
-                                        retainedStringIds.add(oldId);
-                                        ve.value.data = retainedStringIds.size() - 1;
-                                    } else {
-                                        ve.value.data = newId;
-                                    }
+                            final List<IndexedEntry<ResourceTable.Entry>> retainedEntries = new ArrayList<IndexedEntry<ResourceTable.Entry>>();
 
-                                    break;
+                            for (int j = 0, entryCount = config.entries.size(); j < entryCount; j++) {
+                                final IndexedEntry<ResourceTable.Entry> entry = config.entries.get(j);
+                                if (Entry.NO_ENTRY == entry.index || entry.value == null) {
+                                    continue;
                                 }
-                                case ValueType.REFERENCE: {
-                                    if (idMap.containsKey(ve.value.data)) {
-                                        ve.value.data = idMap.get(ve.value.data);
-                                    }
-                                    break;
-                                }
-                                default:
-                                    break;
+
+                                final String entryName = pkg.getKeyStringPool().getStringAt(entry.value.key);
+                                if (!retainedEntryNames.contains(entryName)) {
+                                    continue;
                                 }
-                            } else if (entry.value instanceof ResourceTable.MapEntry) {
-                                final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry.value;
-                                if (idMap.containsKey(me.parent)) {
-                                    me.parent = idMap.get(me.parent);
+
+                                retainedEntries.add(entry);
+
+                                if (!retainedKeyIds.contains(entry.value.key)) {
+                                    retainedKeyIds.add(entry.value.key);
                                 }
 
-                                for (final ResourceTable.Map map : me.values) {
-                                    if (idMap.containsKey(map.name)) {
-                                        map.name = idMap.get(map.name);
-                                    }
+                                if (entry.value instanceof ResourceTable.ValueEntry) {
+                                    final ResourceTable.ValueEntry ve = (ResourceTable.ValueEntry) entry.value;
 
-                                    switch (map.value.dataType) {
+                                    switch (ve.value.dataType) {
                                     case ValueType.STRING: {
-                                        final int oldId = map.value.data;
+                                        final int oldId = ve.value.data;
                                         final int newId = retainedStringIds.indexOf(oldId);
 
                                         if (newId < 0) {
                                             retainedStringIds.add(oldId);
-                                            map.value.data = retainedStringIds.size() - 1;
+                                            ve.value.data = retainedStringIds.size() - 1;
                                         } else {
-                                            map.value.data = newId;
+                                            ve.value.data = newId;
                                         }
 
                                         break;
                                     }
                                     case ValueType.REFERENCE: {
-                                        if (idMap.containsKey(map.value.data)) {
-                                            final int id = idMap.get(map.value.data);
-                                            map.value.data = id;
-
-                                            final int pkgId = (id >> 24) & 0xff;
-                                            if (pkgId != Constants.APP_PACKAGE_ID && pkgId != Constants.SYS_PACKAGE_ID && pkgId != symbols.packageId) {
-                                                libPackageIds.add(pkgId);
-                                            }
+                                        if (idMap.containsKey(ve.value.data)) {
+                                            ve.value.data = idMap.get(ve.value.data);
                                         }
-
                                         break;
                                     }
                                     default:
                                         break;
                                     }
-                                }
-                            }
-                        }
+                                } else if (entry.value instanceof ResourceTable.MapEntry) {
+                                    final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry.value;
+                                    if (idMap.containsKey(me.parent)) {
+                                        me.parent = idMap.get(me.parent);
+                                    }
 
-                        if (retainedEntries.isEmpty()) {
-                            continue;
-                        }
+                                    for (final ResourceTable.Map map : me.values) {
+                                        if (idMap.containsKey(map.name)) {
+                                            map.name = idMap.get(map.name);
+                                        }
 
-                        config.id = spec.id;
-                        config.entries.clear();
-                        config.entries.addAll(retainedEntries);
-                        configs.add(config);
-                    }
+                                        switch (map.value.dataType) {
+                                        case ValueType.STRING: {
+                                            final int oldId = map.value.data;
+                                            final int newId = retainedStringIds.indexOf(oldId);
 
-                    spec.configs.clear();
-                    spec.configs.addAll(configs);
-                }
+                                            if (newId < 0) {
+                                                retainedStringIds.add(oldId);
+                                                map.value.data = retainedStringIds.size() - 1;
+                                            } else {
+                                                map.value.data = newId;
+                                            }
 
-                // Reset entry key reference
-                final java.util.Map<Integer, Integer> keyMap = new HashMap<Integer, Integer>();
-                for (int i = 0, n = retainedKeyIds.size(); i < n; i++) {
-                    keyMap.put(retainedKeyIds.get(i), i);
-                }
+                                            break;
+                                        }
+                                        case ValueType.REFERENCE: {
+                                            if (idMap.containsKey(map.value.data)) {
+                                                final int id = idMap.get(map.value.data);
+                                                map.value.data = id;
+
+                                                final int pkgId = (id >> 24) & 0xff;
+                                                if (pkgId != Constants.APP_PACKAGE_ID && pkgId != Constants.SYS_PACKAGE_ID && pkgId != symbols.packageId) {
+                                                    libPackageIds.add(pkgId);
+                                                }
+                                            }
 
-                for (final ResourceTable.TypeSpec spec : retainedTypeSpecs) {
-                    for (final ResourceTable.Type config : spec.configs) {
-                        for (final IndexedEntry<ResourceTable.Entry> entry : config.entries) {
-                            if (Entry.NO_ENTRY == entry.index || null == entry.value) {
+                                            break;
+                                        }
+                                        default:
+                                            break;
+                                        }
+                                    }
+                                }
+                            }
+
+                            if (retainedEntries.isEmpty()) {
                                 continue;
                             }
 
-                            entry.value.key = keyMap.get(entry.value.key);
+                            config.id = spec.id;
+                            config.entries.clear();
+                            config.entries.addAll(retainedEntries);
+                            configs.add(config);
                         }
+
+                        spec.configs.clear();
+                        spec.configs.addAll(configs);
                     }
-                }
 
-                java.util.Collections.sort(retainedTypeSpecs, new Comparator<ResourceTable.TypeSpec>() {
-                    @Override
-                    public int compare(final TypeSpec ts1, final TypeSpec ts2) {
-                        return ts1.id - ts2.id;
+                    // Reset entry key reference
+                    final java.util.Map<Integer, Integer> keyMap = new HashMap<Integer, Integer>();
+                    for (int i = 0, n = retainedKeyIds.size(); i < n; i++) {
+                        keyMap.put(retainedKeyIds.get(i), i);
                     }
-                });
-                pkg.specs.clear();
-                pkg.specs.addAll(retainedTypeSpecs);
-
-                // Purge type string pool
-                final int[] retainedTypes = toArray(map(uncompactedTypes, new Mapper<Symbols.Type, Integer>() {
-                    @Override
-                    public Integer map(final Symbols.Type e) {
-                        return e.id - 1;
+
+                    for (final ResourceTable.TypeSpec spec : retainedTypeSpecs) {
+                        for (final ResourceTable.Type config : spec.configs) {
+                            for (final IndexedEntry<ResourceTable.Entry> entry : config.entries) {
+                                if (Entry.NO_ENTRY == entry.index || null == entry.value) {
+                                    continue;
+                                }
+
+                                entry.value.key = keyMap.get(entry.value.key);
+                            }
+                        }
                     }
-                }), int.class);
-                pkg.getTypeStringPool().purge(retainedTypes);
 
-                // Purge key string pool
-                final int[] retainedKeys = toArray(retainedKeyIds, int.class);
-                pkg.getKeyStringPool().purge(retainedKeys);
+                    java.util.Collections.sort(retainedTypeSpecs, new Comparator<ResourceTable.TypeSpec>() {
+                        @Override
+                        public int compare(final TypeSpec ts1, final TypeSpec ts2) {
+                            return ts1.id - ts2.id;
+                        }
+                    });
+                    pkg.specs.clear();
+                    pkg.specs.addAll(retainedTypeSpecs);
+
+                    // Purge type string pool
+                    final int[] retainedTypes = toArray(map(uncompactedTypes, new Mapper<Symbols.Type, Integer>() {
+                        @Override
+                        public Integer map(final Symbols.Type e) {
+                            return e.id - 1;
+                        }
+                    }), int.class);
+                    pkg.getTypeStringPool().purge(retainedTypes);
+
+                    // Purge key string pool
+                    final int[] retainedKeys = toArray(retainedKeyIds, int.class);
+                    pkg.getKeyStringPool().purge(retainedKeys);
+                }
             }
-        }
 
-        // Purge string pool
-        final int[] retainedStrings = toArray(retainedStringIds, int.class);
-        this.getStringPool().purge(retainedStrings);
+            // Purge string pool
+            final int[] retainedStrings = toArray(retainedStringIds, int.class);
+            this.getStringPool().purge(retainedStrings);
+            this.nameIndex = null;
+        } finally {
+            Instrumentations.end(probe, this);
+        }
     }
 
     public void dump(final OutputStream output) throws IOException {
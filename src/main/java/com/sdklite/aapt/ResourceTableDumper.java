@@ -0,0 +1,333 @@
+package com.sdklite.aapt;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The fast dumper of resource table, the output is identical to
+ * {@link ResourceTableVisitor}, but the key names of a type spec are resolved
+ * in one pass instead of {@link ResourceTable#getResourceName(int)} for each
+ * entry, and the lines are rendered by hand-rolled appenders into a buffer per
+ * type spec instead of {@code printf}:
+ *
+ * <pre>
+ * new ResourceTableDumper().dump(table, System.out);
+ * </pre>
+ *
+ * The type specs and their configurations could be rendered concurrently with
+ * an executor, the output is written in the original order
+ *
+ * @author johnsonlee
+ *
+ */
+public class ResourceTableDumper {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String RESOURCE = " resource 0x";
+
+    private final String newLine;
+
+    /**
+     * Instantialize with the line separator of system
+     */
+    public ResourceTableDumper() {
+        this(System.getProperty("line.separator"));
+    }
+
+    /**
+     * Instantialize with the specified line separator
+     *
+     * @param newLine
+     *            The line separator
+     */
+    public ResourceTableDumper(final String newLine) {
+        this.newLine = newLine;
+    }
+
+    /**
+     * Dumps the specified resource table into the output stream with the
+     * default charset
+     *
+     * @param table
+     *            The resource table
+     * @param out
+     *            The output stream, it's not closed after dumping
+     * @throws IOException
+     *             if error occurred
+     */
+    public void dump(final ResourceTable table, final OutputStream out) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+        dump(table, writer);
+        writer.flush();
+    }
+
+    /**
+     * Dumps the specified resource table
+     *
+     * @param table
+     *            The resource table
+     * @param out
+     *            The output
+     * @throws IOException
+     *             if error occurred
+     */
+    public void dump(final ResourceTable table, final Writer out) throws IOException {
+        dump(table, out, null);
+    }
+
+    /**
+     * Dumps the specified resource table, the type specs and configurations
+     * are rendered concurrently with the specified executor
+     *
+     * @param table
+     *            The resource table
+     * @param out
+     *            The output
+     * @param executor
+     *            The executor for rendering, null means rendering in the
+     *            current thread
+     * @throws IOException
+     *             if error occurred
+     */
+    public void dump(final ResourceTable table, final Writer out, final ExecutorService executor) throws IOException {
+        final List<Future<StringBuilder>> futures = new ArrayList<Future<StringBuilder>>();
+        final StringBuilder buf = new StringBuilder(256);
+        final int groupCount = table.packageGroups.size();
+
+        buf.append("Package Groups (").append(groupCount).append(')').append(this.newLine);
+
+        for (int grpIdx = 0; grpIdx < groupCount; grpIdx++) {
+            final ResourceTable.PackageGroup group = table.packageGroups.get(grpIdx);
+            buf.append("Package Group ").append(grpIdx).append(" id=0x");
+            appendHex(buf, group.id, 2).append(" packageCount=").append(group.packages.size()).append(" name=").append(group.name).append(this.newLine);
+
+            final Map<String, Byte> entries = group.dynamicRefTale.entries;
+            if (entries.size() > 0) {
+                buf.append("  DynamicRefTable entryCount=").append(entries.size()).append(this.newLine);
+
+                for (final Map.Entry<String, Byte> entry : entries.entrySet()) {
+                    appendHex(buf.append("    0x"), entry.getValue() & 0xff, 2).append(" -> ").append(entry.getKey());
+                }
+
+                buf.append(this.newLine);
+            }
+
+            for (int pkgIdx = 0, pkgCount = group.packages.size(); pkgIdx < pkgCount; pkgIdx++) {
+                final ResourceTable.Package pkg = group.packages.get(pkgIdx);
+                buf.append("  Package ").append(pkgIdx).append(" id=0x");
+                appendHex(buf, pkg.id, 2).append(" name=").append(pkg.name).append(this.newLine);
+
+                for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                    if (null == executor) {
+                        out.append(buf);
+                        buf.setLength(0);
+                        out.append(render(spec));
+                        continue;
+                    }
+
+                    if (spec.configs.isEmpty()) {
+                        continue;
+                    }
+
+                    // the pending headers are prepended to the next rendered part
+                    final StringBuilder header = new StringBuilder(buf);
+                    buf.setLength(0);
+                    futures.add(executor.submit(new Callable<StringBuilder>() {
+                        @Override
+                        public StringBuilder call() {
+                            return header.append(renderSpec(spec));
+                        }
+                    }));
+
+                    for (final ResourceTable.Type type : spec.configs) {
+                        futures.add(executor.submit(new Callable<StringBuilder>() {
+                            @Override
+                            public StringBuilder call() {
+                                return renderType(spec, type);
+                            }
+                        }));
+                    }
+
+                    buf.append(this.newLine);
+                }
+            }
+        }
+
+        try {
+            for (final Future<StringBuilder> future : futures) {
+                out.append(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AaptException(e);
+        } catch (final ExecutionException e) {
+            throw new AaptException(e.getCause());
+        } finally {
+            for (final Future<StringBuilder> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        out.append(buf);
+    }
+
+    /**
+     * Renders the specified type spec with all configurations
+     *
+     * @param spec
+     *            The type spec
+     * @return the rendered text
+     */
+    public StringBuilder render(final ResourceTable.TypeSpec spec) {
+        if (spec.configs.isEmpty()) {
+            return new StringBuilder(0);
+        }
+
+        final StringBuilder buf = renderSpec(spec);
+        for (final ResourceTable.Type type : spec.configs) {
+            buf.append(renderType(spec, type));
+        }
+
+        return buf.append(this.newLine);
+    }
+
+    /**
+     * Renders the type spec header and the flags of each entry
+     */
+    private StringBuilder renderSpec(final ResourceTable.TypeSpec spec) {
+        final String[] keys = getKeyNames(spec);
+        final int entryCount = spec.flags.size();
+        final StringBuilder buf = new StringBuilder(96 * (1 + Math.min(entryCount, 1 << 20)));
+        final StringBuilder prefix = newPrefix(spec, spec.id);
+        final int entryOffset = prefix.indexOf(" ", RESOURCE.length()) - 4;
+
+        buf.append("  type ").append((spec.id & 0xff) - 1).append(" configCount=").append(spec.configs.size()).append(" entryCount=").append(entryCount).append(this.newLine);
+
+        for (int i = 0; i < entryCount; i++) {
+            setHex(prefix, entryOffset, i, 4);
+            buf.append("    spec").append(prefix).append(keys[i]).append(": flags=0x");
+            appendHex(buf, spec.flags.get(i), 8).append(this.newLine);
+        }
+
+        return buf;
+    }
+
+    /**
+     * Renders the entries of the specified configuration
+     */
+    private StringBuilder renderType(final ResourceTable.TypeSpec spec, final ResourceTable.Type type) {
+        final StringPool keyPool = type.getPackage().getKeyStringPool();
+        final StringBuilder buf = new StringBuilder(96 * (1 + Math.min(type.entries.size(), 1 << 20)));
+        final StringBuilder prefix = newPrefix(spec, type.id);
+        final int entryOffset = prefix.indexOf(" ", RESOURCE.length()) - 4;
+        final String config = type.config.toString();
+
+        buf.append("    config ").append(config.isEmpty() ? "(default)" : config).append(':').append(this.newLine);
+
+        for (int j = 0, size = type.entries.size(); j < size; j++) {
+            final ResourceTable.Entry entry = type.getEntryAt(j);
+            if (null == entry) {
+                continue;
+            }
+
+            setHex(prefix, entryOffset, j, 4);
+
+            if (entry instanceof ResourceTable.MapEntry) {
+                final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry;
+                final String key = keyPool.getStringAt(entry.key);
+
+                for (final ResourceTable.Map map : me.values) {
+                    buf.append("      ").append(prefix, 1, prefix.length()).append(key).append(": parent=0x");
+                    appendHex(buf, me.parent, 8).append(" t=0x");
+                    appendHex(buf, map.value.dataType & 0xff, 2).append(" d=0x");
+                    appendHex(buf, map.value.data, 8).append(" n=0x");
+                    appendHex(buf, map.name, 8).append(this.newLine);
+                }
+            } else if (entry instanceof ResourceTable.ValueEntry) {
+                final ResourceTable.ValueEntry ve = (ResourceTable.ValueEntry) entry;
+                buf.append("      ").append(prefix, 1, prefix.length()).append(keyPool.getStringAt(entry.key)).append(": t=0x");
+                appendHex(buf, ve.value.dataType & 0xff, 2).append(" d=0x");
+                appendHex(buf, ve.value.data, 8).append(this.newLine);
+            }
+        }
+
+        return buf;
+    }
+
+    /**
+     * Returns {@code " resource 0xpptt0000 package:type/"}, the entry digits
+     * are overwritten for each entry
+     */
+    private static StringBuilder newPrefix(final ResourceTable.TypeSpec spec, final byte typeId) {
+        final ResourceTable.Package pkg = spec.getPackage();
+        final String typeName = pkg.getTypeStringPool().getStringAt((spec.id & 0xff) - 1);
+        final StringBuilder prefix = appendHex(new StringBuilder(RESOURCE), pkg.id, 2);
+        appendHex(prefix, typeId & 0xff, 2);
+        return appendHex(prefix, 0, 4).append(' ').append(pkg.name).append(':').append(typeName).append('/');
+    }
+
+    /**
+     * Returns the key name of each entry of the specified type spec, the name
+     * is taken from the first configuration which defines the entry, the same
+     * as {@link ResourceTable#getResourceName(int)}
+     */
+    private static String[] getKeyNames(final ResourceTable.TypeSpec spec) {
+        final int entryCount = spec.flags.size();
+        final String[] keys = new String[entryCount];
+        int unresolved = entryCount;
+
+        for (int i = 0, n = spec.configs.size(); i < n && unresolved > 0; i++) {
+            final ResourceTable.Type type = spec.configs.get(i);
+            final StringPool keyPool = type.getPackage().getKeyStringPool();
+
+            for (int j = 0, size = Math.min(entryCount, type.entries.size()); j < size; j++) {
+                if (null != keys[j]) {
+                    continue;
+                }
+
+                final IndexedEntry<ResourceTable.Entry> entry = type.entries.get(j);
+                if (ResourceTable.Entry.NO_ENTRY != entry.index && null != entry.value) {
+                    keys[j] = keyPool.getStringAt(entry.value.key);
+                    unresolved--;
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Appends the value as lower case hex digits, left padded with zeros to
+     * the specified width, the same as {@code %0<width>x}
+     */
+    static StringBuilder appendHex(final StringBuilder buf, final int value, final int width) {
+        final int digits = Math.max(width, (35 - Integer.numberOfLeadingZeros(value)) >> 2);
+        for (int shift = (digits - 1) << 2; shift >= 0; shift -= 4) {
+            buf.append(HEX[(value >>> shift) & 0xf]);
+        }
+        return buf;
+    }
+
+    /**
+     * Overwrites the hex digits at the specified position
+     */
+    private static void setHex(final StringBuilder buf, final int offset, final int value, final int width) {
+        for (int i = width - 1, v = value; i >= 0; i--, v >>>= 4) {
+            buf.setCharAt(offset + i, HEX[v & 0xf]);
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.sdklite.aapt;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The streaming exporter of resource table, one record is exported for each
+ * value of resource in each configuration, e.g. a simple value, or an item of
+ * bag, with the resolved names and the decoded value:
+ *
+ * <pre>
+ * final ResourceTableExporter exporter = new JsonLinesExporter(new FileOutputStream("resources.jsonl"));
+ * try {
+ *     exporter.export(table);
+ * } finally {
+ *     exporter.close();
+ * }
+ * </pre>
+ *
+ * The records are written one by one as the chunk model is walked, nothing is
+ * buffered except for the bounded output buffer
+ *
+ * @author johnsonlee
+ *
+ * @see JsonLinesExporter
+ * @see BinaryRecordExporter
+ */
+public abstract class ResourceTableExporter implements Closeable, Flushable {
+
+    /**
+     * The exported record, the instance is reused by exporter, so it should
+     * not be retained by {@link ResourceTableExporter#write(Record)}
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Record {
+
+        int id;
+
+        String packageName;
+
+        String typeName;
+
+        String name;
+
+        String config;
+
+        boolean bag;
+
+        int parent;
+
+        int key;
+
+        String keyName;
+
+        byte dataType;
+
+        int data;
+
+        String value;
+
+        /**
+         * Returns the resource id
+         */
+        public int getId() {
+            return this.id;
+        }
+
+        public String getPackageName() {
+            return this.packageName;
+        }
+
+        public String getTypeName() {
+            return this.typeName;
+        }
+
+        /**
+         * Returns the resource entry name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the configuration, empty for the default configuration
+         */
+        public String getConfig() {
+            return this.config;
+        }
+
+        /**
+         * Returns whether this record is an item of bag
+         */
+        public boolean isBagItem() {
+            return this.bag;
+        }
+
+        /**
+         * Returns the parent of bag, 0 if no parent or not a bag item
+         */
+        public int getParent() {
+            return this.parent;
+        }
+
+        /**
+         * Returns the attribute id of bag item, 0 if not a bag item
+         */
+        public int getKey() {
+            return this.key;
+        }
+
+        /**
+         * Returns the attribute name of bag item, null if not resolved
+         */
+        public String getKeyName() {
+            return this.keyName;
+        }
+
+        /**
+         * Returns the value type, see {@link ValueType}
+         */
+        public byte getDataType() {
+            return this.dataType;
+        }
+
+        public int getData() {
+            return this.data;
+        }
+
+        /**
+         * Returns the decoded value, e.g. {@code 16dp}, {@code #ff00ff00},
+         * {@code @string/app_name} or the string value
+         */
+        public String getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("0x%08x %s:%s/%s [%s] %s", this.id, this.packageName, this.typeName, this.name, this.config, this.value);
+        }
+    }
+
+    private final Record record = new Record();
+
+    /**
+     * Exports all values of the specified resource table
+     *
+     * @param table
+     *            The resource table
+     * @return the number of exported records
+     * @throws IOException
+     *             if error occurred
+     */
+    public long export(final ResourceTable table) throws IOException {
+        final XmlDecompiler decompiler = new XmlDecompiler(table);
+        final StringPool values = table.getStringPool();
+        final Record r = this.record;
+        final Map<Integer, String> keyNames = new HashMap<Integer, String>();
+
+        long count = 0;
+
+        for (final ResourceTable.PackageGroup group : table.packageGroups) {
+            for (final ResourceTable.Package pkg : group.packages) {
+                final StringPool typePool = pkg.getTypeStringPool();
+
+                for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                    final String typeName = typePool.getStringAt((spec.id & 0xff) - 1);
+
+                    for (final ResourceTable.Type type : spec.configs) {
+                        final StringPool keyPool = type.getPackage().getKeyStringPool();
+
+                        r.packageName = pkg.name;
+                        r.typeName = typeName;
+                        r.config = type.config.toString();
+
+                        for (int i = 0, n = type.entries.size(); i < n; i++) {
+                            final ResourceTable.Entry entry = type.getEntryAt(i);
+                            if (null == entry) {
+                                continue;
+                            }
+
+                            r.id = Internal.makeId(pkg.id, type.id & 0xff, i);
+                            r.name = keyPool.getStringAt(entry.key);
+
+                            if (entry instanceof ResourceTable.ValueEntry) {
+                                r.bag = false;
+                                set(r, 0, 0, null, ((ResourceTable.ValueEntry) entry).value, decompiler, values);
+                                write(r);
+                                count++;
+                            } else if (entry instanceof ResourceTable.MapEntry) {
+                                final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry;
+                                r.bag = true;
+
+                                for (final ResourceTable.Map map : me.values) {
+                                    set(r, me.parent, map.name, getResourceName(table, map.name, keyNames), map.value, decompiler, values);
+                                    write(r);
+                                    count++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        flush();
+        return count;
+    }
+
+    /**
+     * Writes the specified record
+     *
+     * @param record
+     *            The record to be written, it's reused after this method
+     *            returned
+     * @throws IOException
+     *             if error occurred
+     */
+    protected abstract void write(final Record record) throws IOException;
+
+    private static void set(final Record r, final int parent, final int key, final String keyName, final ResourceValue value, final XmlDecompiler decompiler, final StringPool values) {
+        r.parent = parent;
+        r.key = key;
+        r.keyName = keyName;
+        r.dataType = value.dataType;
+        r.data = value.data;
+        r.value = ValueType.STRING == value.dataType ? values.getStringAt(value.data) : decompiler.format(key, value.dataType, value.data);
+    }
+
+    /**
+     * Returns the name of bag item key, the names are cached since the keys
+     * are shared by bags
+     */
+    private static String getResourceName(final ResourceTable table, final int resId, final Map<Integer, String> names) {
+        if (names.containsKey(resId)) {
+            return names.get(resId);
+        }
+
+        final String name = resolveResourceName(table, resId);
+        names.put(resId, name);
+        return name;
+    }
+
+    /**
+     * Resolves the name of resource with the bounds checked, or returns null if
+     * the resource is not defined in the table, e.g. the framework attributes
+     */
+    private static String resolveResourceName(final ResourceTable table, final int resId) {
+        final List<ResourceTable.PackageGroup> groups = table.getPackageGroups();
+        final int packageIndex = table.getPackageIndex(resId);
+        if (packageIndex < 0 || packageIndex >= groups.size()) {
+            return null;
+        }
+
+        final ResourceTable.PackageGroup group = groups.get(packageIndex);
+        final ResourceTable.Package pkg = group.getPackage(Internal.getPackage(resId));
+        final ResourceTable.Entry entry = table.getEntry(resId);
+        if (null == pkg || null == entry) {
+            return null;
+        }
+
+        final StringPool types = pkg.getTypeStringPool();
+        final StringPool keys = pkg.getKeyStringPool();
+        final int type = Internal.getType(resId) - 1;
+        if (type < 0 || type >= types.getStringCount() || entry.key < 0 || entry.key >= keys.getStringCount()) {
+            return null;
+        }
+
+        return new ResourceName(group.getName(), types.getStringAt(type), keys.getStringAt(entry.key)).toString();
+    }
+
+}
@@ -0,0 +1,1137 @@
+package com.sdklite.aapt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The deeply immutable snapshot of {@link ResourceTable}, created by
+ * {@link ResourceTable#snapshot()}, all of the lookup indexes are precomputed
+ * and all fields are final, so that one snapshot could be shared and queried
+ * by many threads without locking:
+ *
+ * <pre>
+ * final ResourceTableSnapshot snapshot = table.snapshot();
+ * final int id = snapshot.getResourceId(null, "string", "app_name");
+ * final ResourceTableSnapshot.Entry entry = snapshot.getEntry(id, "zh-rCN");
+ * </pre>
+ *
+ * The snapshot is edited by a copy-on-write {@link Builder}, the new snapshot
+ * shares the strings and the unmodified types with the original one, and it
+ * could be materialized into a new {@link ResourceTable} to be written:
+ *
+ * <pre>
+ * final ResourceTableSnapshot edited = snapshot.edit()
+ *         .setString(id, "", "Hello")
+ *         .remove(0x7f040000, "w820dp-v13")
+ *         .build();
+ * new ChunkOutputStream(out).write(edited.toResourceTable());
+ * </pre>
+ *
+ * The configurations, the entry flags, the type specs, the key strings and the
+ * styles of value strings are all kept, so that the materialized resource
+ * table of an unedited snapshot is written identically to the original one.
+ *
+ * @author johnsonlee
+ *
+ */
+public final class ResourceTableSnapshot {
+
+    /**
+     * The owner of the configuration copies, it holds nothing else
+     */
+    private static final ResourceTable CONFIGS = new ResourceTable() {
+        @Override
+        public StringPool getStringPool() {
+            return null;
+        }
+    };
+
+    /**
+     * The immutable typed value
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Value {
+
+        final byte dataType;
+
+        final int data;
+
+        final String string;
+
+        Value(final byte dataType, final int data, final String string) {
+            this.dataType = dataType;
+            this.data = data;
+            this.string = string;
+        }
+
+        /**
+         * Returns the value type, see {@link ValueType}
+         */
+        public byte getDataType() {
+            return this.dataType;
+        }
+
+        public int getData() {
+            return this.data;
+        }
+
+        /**
+         * Returns the string of {@link ValueType#STRING} value, otherwise null
+         */
+        public String getString() {
+            return this.string;
+        }
+
+        @Override
+        public String toString() {
+            return null != this.string ? this.string : String.format("t=0x%02x d=0x%08x", this.dataType, this.data);
+        }
+    }
+
+    /**
+     * The immutable item of bag
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class BagItem {
+
+        final int key;
+
+        final Value value;
+
+        BagItem(final int key, final Value value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * Returns the attribute id
+         */
+        public int getKey() {
+            return this.key;
+        }
+
+        public Value getValue() {
+            return this.value;
+        }
+    }
+
+    /**
+     * The immutable value of resource in a configuration, either a simple
+     * value or a bag
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Entry {
+
+        final int id;
+
+        final ResourceTable.Config config;
+
+        final short flags;
+
+        /**
+         * The index of entry name in the key strings of package
+         */
+        final int key;
+
+        final Value value;
+
+        final int parent;
+
+        final List<BagItem> items;
+
+        Entry(final int id, final ResourceTable.Config config, final short flags, final int key, final Value value) {
+            this.id = id;
+            this.config = config;
+            this.flags = flags;
+            this.key = key;
+            this.value = value;
+            this.parent = 0;
+            this.items = Collections.emptyList();
+        }
+
+        Entry(final int id, final ResourceTable.Config config, final short flags, final int key, final int parent, final List<BagItem> items) {
+            this.id = id;
+            this.config = config;
+            this.flags = flags;
+            this.key = key;
+            this.value = null;
+            this.parent = parent;
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * Returns the configuration, it's shared by the entries of the same
+         * configuration and must not be modified
+         */
+        public ResourceTable.Config getConfig() {
+            return this.config;
+        }
+
+        /**
+         * Returns the entry flags, see {@link ResourceTable.Entry#FLAG_PUBLIC}
+         */
+        public short getFlags() {
+            return this.flags;
+        }
+
+        public boolean isBag() {
+            return null == this.value;
+        }
+
+        /**
+         * Returns the simple value, null for bag
+         */
+        public Value getValue() {
+            return this.value;
+        }
+
+        /**
+         * Returns the parent of bag, 0 if no parent
+         */
+        public int getParent() {
+            return this.parent;
+        }
+
+        /**
+         * Returns the unmodifiable items of bag, empty for simple value
+         */
+        public List<BagItem> getItems() {
+            return this.items;
+        }
+    }
+
+    /**
+     * The package header with its type strings and key strings
+     */
+    static final class PackageData {
+
+        final int id;
+
+        final String name;
+
+        final String[] types;
+
+        final int typeFlags;
+
+        final String[] keys;
+
+        final int keyFlags;
+
+        final int lastPublicType;
+
+        final int lastPublicKey;
+
+        final int typeIdOffset;
+
+        PackageData(final ResourceTable.Package pkg) {
+            this.id = pkg.id;
+            this.name = pkg.name;
+            this.types = toArray(pkg.getTypeStringPool());
+            this.typeFlags = pkg.getTypeStringPool().flags;
+            this.keys = toArray(pkg.getKeyStringPool());
+            this.keyFlags = pkg.getKeyStringPool().flags;
+            this.lastPublicType = pkg.lastPublicType;
+            this.lastPublicKey = pkg.lastPublicKey;
+            this.typeIdOffset = pkg.typeIdOffset;
+        }
+    }
+
+    /**
+     * The package ids and package names of shared library
+     */
+    static final class LibraryData {
+
+        final int[] ids;
+
+        final String[] names;
+
+        LibraryData(final ResourceTable.Library lib) {
+            this.ids = new int[lib.entries.size()];
+            this.names = new String[lib.entries.size()];
+
+            for (int i = 0; i < this.ids.length; i++) {
+                this.ids[i] = lib.entries.get(i).index;
+                this.names[i] = lib.entries.get(i).value;
+            }
+        }
+    }
+
+    /**
+     * The entries of a resource type in all configurations, it's never
+     * modified after construction, {@link Builder} copies it before editing
+     */
+    static final class TypeData {
+
+        final PackageData pkg;
+
+        final int typeId;
+
+        final String typeName;
+
+        final String[] names;
+
+        /**
+         * The indexes of entry names in the key strings, -1 if undefined
+         */
+        final int[] keys;
+
+        final Map<String, Integer> indices;
+
+        /**
+         * The configuration change flags of type spec
+         */
+        final int[] flags;
+
+        final ResourceTable.Config[] configs;
+
+        final String[] qualifiers;
+
+        /**
+         * The entries indexed by [config][entry], the length of rows is the
+         * entry count of each configuration
+         */
+        final Entry[][] entries;
+
+        TypeData(final PackageData pkg, final int typeId, final String typeName, final String[] names, final int[] keys, final Map<String, Integer> indices, final int[] flags, final ResourceTable.Config[] configs, final String[] qualifiers, final Entry[][] entries) {
+            this.pkg = pkg;
+            this.typeId = typeId;
+            this.typeName = typeName;
+            this.names = names;
+            this.keys = keys;
+            this.indices = indices;
+            this.flags = flags;
+            this.configs = configs;
+            this.qualifiers = qualifiers;
+            this.entries = entries;
+        }
+
+        int indexOf(final String qualifiers) {
+            for (int i = 0; i < this.qualifiers.length; i++) {
+                if (this.qualifiers[i].equals(qualifiers)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int indexOf(final ResourceTable.Config config) {
+            final ResourceResolver.Key key = new ResourceResolver.Key(config);
+            for (int i = 0; i < this.configs.length; i++) {
+                if (this.configs[i].size == config.size && key.equals(new ResourceResolver.Key(this.configs[i]))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Entry getEntry(final int config, final int entry) {
+            final Entry[] row = this.entries[config];
+            return entry < row.length ? row[entry] : null;
+        }
+
+        /**
+         * Returns the flags of the specified entry in any configuration
+         */
+        short getEntryFlags(final int entry) {
+            for (int i = 0; i < this.entries.length; i++) {
+                final Entry e = getEntry(i, entry);
+                if (null != e) {
+                    return (short) (e.flags & ~ResourceTable.Entry.FLAG_COMPLEX);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns a copy for editing, the entries are shared
+         */
+        TypeData copy() {
+            final Entry[][] entries = new Entry[this.entries.length][];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = this.entries[i].clone();
+            }
+            return new TypeData(this.pkg, this.typeId, this.typeName, this.names, this.keys, this.indices, this.flags, this.configs.clone(), this.qualifiers.clone(), entries);
+        }
+    }
+
+    /**
+     * The copy-on-write builder of snapshot, the types are copied on the
+     * first edit, the original snapshot is never modified
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Builder {
+
+        private final ResourceTableSnapshot base;
+
+        private final Map<Integer, TypeData> types;
+
+        private final Map<Integer, TypeData> copied = new HashMap<Integer, TypeData>();
+
+        private final List<String> strings = new ArrayList<String>();
+
+        private final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+
+        Builder(final ResourceTableSnapshot base) {
+            this.base = base;
+            this.types = new LinkedHashMap<Integer, TypeData>(base.types);
+        }
+
+        /**
+         * Sets the simple value of the specified resource in the specified
+         * configuration, the configuration is added if not exists
+         *
+         * @param resId
+         *            The resource id
+         * @param config
+         *            The configuration
+         * @param dataType
+         *            The value type, see {@link ValueType}
+         * @param data
+         *            The value data
+         * @return this builder
+         * @throws AaptException
+         *             if the resource not found
+         */
+        public Builder setValue(final int resId, final ResourceTable.Config config, final byte dataType, final int data) {
+            if (ValueType.STRING == dataType) {
+                return setString(resId, config, this.base.getString(data));
+            }
+
+            return set(resId, config, new Value(dataType, data, null));
+        }
+
+        /**
+         * Sets the simple value of the specified resource in the specified
+         * configuration, see {@link #setValue(int, ResourceTable.Config, byte, int)}
+         *
+         * @param qualifiers
+         *            The qualifiers of configuration, empty for the default
+         *            configuration
+         */
+        public Builder setValue(final int resId, final String qualifiers, final byte dataType, final int data) {
+            return setValue(resId, this.base.getConfig(resId, qualifiers), dataType, data);
+        }
+
+        /**
+         * Sets the string value of the specified resource in the specified
+         * configuration, the string is appended into the string pool if
+         * not exists
+         *
+         * @param resId
+         *            The resource id
+         * @param config
+         *            The configuration
+         * @param value
+         *            The string value
+         * @return this builder
+         * @throws AaptException
+         *             if the resource not found
+         */
+        public Builder setString(final int resId, final ResourceTable.Config config, final String value) {
+            Integer index = this.base.strings.get(value);
+            if (null == index) {
+                index = this.stringIndices.get(value);
+            }
+
+            if (null == index) {
+                index = this.base.pool.length + this.strings.size();
+                this.strings.add(value);
+                this.stringIndices.put(value, index);
+            }
+
+            return set(resId, config, new Value(ValueType.STRING, index, value));
+        }
+
+        /**
+         * Sets the string value of the specified resource in the specified
+         * configuration, see {@link #setString(int, ResourceTable.Config, String)}
+         *
+         * @param qualifiers
+         *            The qualifiers of configuration, empty for the default
+         *            configuration
+         */
+        public Builder setString(final int resId, final String qualifiers, final String value) {
+            return setString(resId, this.base.getConfig(resId, qualifiers), value);
+        }
+
+        /**
+         * Removes the value of the specified resource in the specified
+         * configuration
+         *
+         * @param resId
+         *            The resource id
+         * @param config
+         *            The configuration
+         * @return this builder
+         */
+        public Builder remove(final int resId, final ResourceTable.Config config) {
+            final TypeData type = this.types.get(keyOf(resId));
+            return null != type ? remove(resId, type.indexOf(config)) : this;
+        }
+
+        /**
+         * Removes the value of the specified resource in the specified
+         * configuration
+         *
+         * @param resId
+         *            The resource id
+         * @param qualifiers
+         *            The qualifiers of configuration, empty for the default
+         *            configuration
+         * @return this builder
+         */
+        public Builder remove(final int resId, final String qualifiers) {
+            final TypeData type = this.types.get(keyOf(resId));
+            return null != type ? remove(resId, type.indexOf(qualifiers)) : this;
+        }
+
+        /**
+         * Returns a new snapshot with the edits
+         */
+        public ResourceTableSnapshot build() {
+            final String[] pool;
+            final Map<String, Integer> strings;
+
+            if (this.strings.isEmpty()) {
+                pool = this.base.pool;
+                strings = this.base.strings;
+            } else {
+                pool = Arrays.copyOf(this.base.pool, this.base.pool.length + this.strings.size());
+                strings = new HashMap<String, Integer>(this.base.strings);
+
+                for (int i = 0, n = this.strings.size(); i < n; i++) {
+                    pool[this.base.pool.length + i] = this.strings.get(i);
+                    strings.put(this.strings.get(i), this.base.pool.length + i);
+                }
+            }
+
+            // the built types must not be modified by the subsequent edits
+            this.copied.clear();
+
+            final Map<Integer, TypeData> types = new LinkedHashMap<Integer, TypeData>(this.types);
+            return new ResourceTableSnapshot(this.base.packages, this.base.libraries, pool, this.base.styles, this.base.poolFlags, Collections.unmodifiableMap(strings), types);
+        }
+
+        private Builder remove(final int resId, final int i) {
+            final TypeData type = this.types.get(keyOf(resId));
+            final int entry = Internal.getEntry(resId);
+            if (i >= 0 && null != type.getEntry(i, entry)) {
+                edit(resId).entries[i][entry] = null;
+            }
+
+            return this;
+        }
+
+        private Builder set(final int resId, final ResourceTable.Config config, final Value value) {
+            final TypeData type = edit(resId);
+            final int entry = Internal.getEntry(resId);
+            if (null == type || entry >= type.names.length || null == type.names[entry]) {
+                throw new AaptException(String.format("Resource not found: 0x%08x", resId));
+            }
+
+            int i = type.indexOf(config);
+            if (i < 0) {
+                i = addConfig(resId, config);
+            }
+
+            final TypeData edited = this.copied.get(keyOf(resId));
+            if (entry >= edited.entries[i].length) {
+                edited.entries[i] = Arrays.copyOf(edited.entries[i], type.names.length);
+            }
+
+            edited.entries[i][entry] = new Entry(resId, edited.configs[i], edited.getEntryFlags(entry), type.keys[entry], value);
+            return this;
+        }
+
+        private int addConfig(final int resId, final ResourceTable.Config config) {
+            final Integer key = keyOf(resId);
+            final TypeData type = this.copied.get(key);
+            final int n = type.configs.length;
+            final ResourceTable.Config[] configs = Arrays.copyOf(type.configs, n + 1);
+            final String[] qualifiers = Arrays.copyOf(type.qualifiers, n + 1);
+            final Entry[][] entries = Arrays.copyOf(type.entries, n + 1);
+
+            configs[n] = CONFIGS.new Config().set(config);
+            qualifiers[n] = configs[n].toString();
+            entries[n] = new Entry[type.names.length];
+
+            final TypeData added = new TypeData(type.pkg, type.typeId, type.typeName, type.names, type.keys, type.indices, type.flags, configs, qualifiers, entries);
+            this.copied.put(key, added);
+            this.types.put(key, added);
+            return n;
+        }
+
+        /**
+         * Returns the editable copy of type
+         */
+        private TypeData edit(final int resId) {
+            final Integer key = keyOf(resId);
+            TypeData type = this.copied.get(key);
+
+            if (null == type) {
+                final TypeData origin = this.types.get(key);
+                if (null == origin) {
+                    return null;
+                }
+
+                type = origin.copy();
+                this.copied.put(key, type);
+                this.types.put(key, type);
+            }
+
+            return type;
+        }
+    }
+
+    private final List<PackageData> packages;
+
+    private final List<LibraryData> libraries;
+
+    private final List<String> packageNames;
+
+    private final String[] pool;
+
+    /**
+     * The spans of styled strings, each span is (name, firstChar, lastChar)
+     */
+    private final int[][] styles;
+
+    private final int poolFlags;
+
+    private final Map<String, Integer> strings;
+
+    private final Map<Integer, TypeData> types;
+
+    /**
+     * package name =&gt; type name =&gt; type
+     */
+    private final Map<String, Map<String, TypeData>> names;
+
+    private ResourceTableSnapshot(final List<PackageData> packages, final List<LibraryData> libraries, final String[] pool, final int[][] styles, final int poolFlags, final Map<String, Integer> strings, final Map<Integer, TypeData> types) {
+        final Map<String, Map<String, TypeData>> names = new HashMap<String, Map<String, TypeData>>();
+        final List<String> packageNames = new ArrayList<String>();
+
+        for (final PackageData pkg : packages) {
+            if (!packageNames.contains(pkg.name)) {
+                packageNames.add(pkg.name);
+            }
+        }
+
+        for (final TypeData type : types.values()) {
+            Map<String, TypeData> byType = names.get(type.pkg.name);
+            if (null == byType) {
+                names.put(type.pkg.name, byType = new HashMap<String, TypeData>());
+            }
+
+            if (!byType.containsKey(type.typeName)) {
+                byType.put(type.typeName, type);
+            }
+        }
+
+        this.packages = packages;
+        this.libraries = libraries;
+        this.packageNames = Collections.unmodifiableList(packageNames);
+        this.pool = pool;
+        this.styles = styles;
+        this.poolFlags = poolFlags;
+        this.strings = strings;
+        this.types = types;
+        this.names = names;
+    }
+
+    /**
+     * Creates a snapshot of the specified resource table, the resource table
+     * should not be modified during freezing
+     *
+     * @param table
+     *            The resource table
+     * @return the snapshot
+     */
+    static ResourceTableSnapshot of(final ResourceTable table) {
+        final StringPool valuePool = table.getStringPool();
+        final String[] pool = toArray(valuePool);
+        final int[][] styles = new int[valuePool.getStyleCount()][];
+        final Map<String, Integer> strings = new HashMap<String, Integer>(pool.length * 4 / 3 + 1);
+
+        for (int i = 0; i < pool.length; i++) {
+            if (!strings.containsKey(pool[i])) {
+                strings.put(pool[i], i);
+            }
+        }
+
+        for (int i = 0; i < styles.length; i++) {
+            final StringPool.Style style = valuePool.getStyleAt(i);
+            styles[i] = new int[style.size() * 3];
+
+            for (int j = 0, n = style.size(); j < n; j++) {
+                final StringPool.Span span = style.get(j);
+                styles[i][j * 3] = span.name;
+                styles[i][j * 3 + 1] = span.firstChar;
+                styles[i][j * 3 + 2] = span.lastChar;
+            }
+        }
+
+        final List<LibraryData> libraries = new ArrayList<LibraryData>(table.libraries.size());
+        for (final ResourceTable.Library lib : table.libraries) {
+            libraries.add(new LibraryData(lib));
+        }
+
+        final List<PackageData> packages = new ArrayList<PackageData>();
+        final Map<Integer, TypeData> types = new LinkedHashMap<Integer, TypeData>();
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            final PackageData data = new PackageData(pkg);
+            packages.add(data);
+
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                final int typeId = spec.id & 0xff;
+                final int entryCount = spec.flags.size();
+                final String[] names = new String[entryCount];
+                final int[] keys = new int[entryCount];
+                final int[] flags = new int[entryCount];
+                final ResourceTable.Config[] configs = new ResourceTable.Config[spec.configs.size()];
+                final String[] qualifiers = new String[configs.length];
+                final Entry[][] entries = new Entry[configs.length][];
+
+                Arrays.fill(keys, -1);
+
+                for (int j = 0; j < entryCount; j++) {
+                    flags[j] = spec.flags.get(j);
+                }
+
+                for (int i = 0; i < configs.length; i++) {
+                    final ResourceTable.Type type = spec.configs.get(i);
+                    configs[i] = CONFIGS.new Config().set(type.config);
+                    qualifiers[i] = configs[i].toString();
+                    entries[i] = new Entry[type.entries.size()];
+
+                    for (int j = 0, n = type.entries.size(); j < n; j++) {
+                        final ResourceTable.Entry entry = type.getEntryAt(j);
+                        if (null == entry || ResourceTable.Entry.NO_ENTRY == type.entries.get(j).index) {
+                            continue;
+                        }
+
+                        if (j < entryCount && null == names[j]) {
+                            names[j] = data.keys[entry.key];
+                            keys[j] = entry.key;
+                        }
+
+                        final int id = Internal.makeId(pkg.id, typeId, j);
+                        if (entry instanceof ResourceTable.MapEntry) {
+                            final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry;
+                            final List<BagItem> items = new ArrayList<BagItem>(me.values.size());
+                            for (final ResourceTable.Map map : me.values) {
+                                items.add(new BagItem(map.name, newValue(map.value, pool)));
+                            }
+                            entries[i][j] = new Entry(id, configs[i], entry.flags, entry.key, me.parent, items);
+                        } else if (entry instanceof ResourceTable.ValueEntry) {
+                            entries[i][j] = new Entry(id, configs[i], entry.flags, entry.key, newValue(((ResourceTable.ValueEntry) entry).value, pool));
+                        }
+                    }
+                }
+
+                final Map<String, Integer> indices = new HashMap<String, Integer>(entryCount * 4 / 3 + 1);
+                for (int j = 0; j < entryCount; j++) {
+                    if (null != names[j] && !indices.containsKey(names[j])) {
+                        indices.put(names[j], j);
+                    }
+                }
+
+                final Integer key = (pkg.id & 0xff) << 8 | typeId;
+                if (!types.containsKey(key)) {
+                    types.put(key, new TypeData(data, typeId, data.types[typeId - 1], names, keys, Collections.unmodifiableMap(indices), flags, configs, qualifiers, entries));
+                }
+            }
+        }
+
+        return new ResourceTableSnapshot(Collections.unmodifiableList(packages), Collections.unmodifiableList(libraries), pool, styles, valuePool.flags, Collections.unmodifiableMap(strings), types);
+    }
+
+    /**
+     * Returns the package names in order of packages
+     */
+    public List<String> getPackageNames() {
+        return this.packageNames;
+    }
+
+    public int getStringCount() {
+        return this.pool.length;
+    }
+
+    public String getStringAt(final int index) {
+        return this.pool[index];
+    }
+
+    /**
+     * Returns the number of styled strings, the styled strings come first in
+     * the string pool
+     */
+    public int getStyleCount() {
+        return this.styles.length;
+    }
+
+    /**
+     * Returns the id of the specified resource
+     *
+     * @param packageName
+     *            The package name, null means the first package
+     * @param typeName
+     *            The resource type name, e.g. {@code string}
+     * @param name
+     *            The resource entry name, e.g. {@code app_name}
+     * @return the resource id or 0 if not found
+     */
+    public int getResourceId(final String packageName, final String typeName, final String name) {
+        final String pkg = null != packageName ? packageName : (this.packageNames.isEmpty() ? null : this.packageNames.get(0));
+        final Map<String, TypeData> byType = this.names.get(pkg);
+        if (null == byType) {
+            return 0;
+        }
+
+        final TypeData type = byType.get(typeName);
+        if (null == type) {
+            return 0;
+        }
+
+        final Integer index = type.indices.get(name);
+        return null != index ? Internal.makeId(type.pkg.id, type.typeId, index) : 0;
+    }
+
+    /**
+     * Returns the name of the specified resource
+     *
+     * @param resId
+     *            The resource id
+     * @return the resource name or null if not found
+     */
+    public ResourceName getResourceName(final int resId) {
+        final TypeData type = this.types.get(keyOf(resId));
+        final int entry = Internal.getEntry(resId);
+        if (null == type || entry >= type.names.length || null == type.names[entry]) {
+            return null;
+        }
+
+        return new ResourceName(type.pkg.name, type.typeName, type.names[entry]);
+    }
+
+    /**
+     * Returns the configurations of the specified resource type
+     *
+     * @param resId
+     *            The id of any resource of the type
+     * @return the unmodifiable configurations, empty if not found
+     */
+    public List<ResourceTable.Config> getConfigs(final int resId) {
+        final TypeData type = this.types.get(keyOf(resId));
+        return null != type ? Collections.unmodifiableList(Arrays.asList(type.configs)) : Collections.<ResourceTable.Config> emptyList();
+    }
+
+    /**
+     * Returns the value of the specified resource in the specified
+     * configuration
+     *
+     * @param resId
+     *            The resource id
+     * @param config
+     *            The configuration
+     * @return the entry or null if not defined in the configuration
+     */
+    public Entry getEntry(final int resId, final ResourceTable.Config config) {
+        final TypeData type = this.types.get(keyOf(resId));
+        if (null == type) {
+            return null;
+        }
+
+        final int i = type.indexOf(config);
+        return i < 0 ? null : type.getEntry(i, Internal.getEntry(resId));
+    }
+
+    /**
+     * Returns the value of the specified resource in the first configuration
+     * with the specified qualifiers
+     *
+     * @param resId
+     *            The resource id
+     * @param qualifiers
+     *            The qualifiers of configuration, empty for the default
+     *            configuration
+     * @return the entry or null if not defined in the configuration
+     */
+    public Entry getEntry(final int resId, final String qualifiers) {
+        final TypeData type = this.types.get(keyOf(resId));
+        if (null == type) {
+            return null;
+        }
+
+        final int i = type.indexOf(qualifiers);
+        return i < 0 ? null : type.getEntry(i, Internal.getEntry(resId));
+    }
+
+    /**
+     * Returns the values of the specified resource in all configurations
+     *
+     * @param resId
+     *            The resource id
+     * @return the unmodifiable entries in order of configurations
+     */
+    public List<Entry> getEntries(final int resId) {
+        final TypeData type = this.types.get(keyOf(resId));
+        if (null == type) {
+            return Collections.emptyList();
+        }
+
+        final int entry = Internal.getEntry(resId);
+        final List<Entry> entries = new ArrayList<Entry>(type.configs.length);
+        for (int i = 0; i < type.entries.length; i++) {
+            final Entry e = type.getEntry(i, entry);
+            if (null != e) {
+                entries.add(e);
+            }
+        }
+
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns a copy-on-write builder for editing, this snapshot is not
+     * affected by the builder
+     */
+    public Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * Materializes this snapshot into a new resource table, which is not
+     * shared with this snapshot and could be modified and written
+     *
+     * @return a new resource table
+     */
+    public ResourceTable toResourceTable() {
+        final StringPool pool = newStringPool(this.pool, this.styles, this.poolFlags);
+        final ResourceTable table = new ResourceTable() {
+            @Override
+            public StringPool getStringPool() {
+                return pool;
+            }
+        };
+
+        table.headerSize = ResourceTable.HEADER_SIZE;
+
+        for (final LibraryData data : this.libraries) {
+            final ResourceTable.Library lib = table.new Library();
+            lib.headerSize = ChunkHeader.MIN_HEADER_SIZE + 4;
+            lib.size = lib.headerSize + data.ids.length * (4 + 256);
+
+            for (int i = 0; i < data.ids.length; i++) {
+                lib.entries.add(new IndexedEntry<String>(data.ids[i], data.names[i]));
+            }
+
+            table.libraries.add(lib);
+        }
+
+        final Map<PackageData, ResourceTable.Package> packages = new HashMap<PackageData, ResourceTable.Package>();
+
+        for (final PackageData data : this.packages) {
+            final ResourceTable.Package pkg = newPackage(table, data);
+            final ResourceTable.PackageGroup group;
+
+            int index = table.packageMap[pkg.id];
+            if (0 == index) {
+                group = new ResourceTable.PackageGroup(table, pkg.name, pkg.id);
+                table.packageGroups.add(group);
+                table.packageMap[pkg.id] = (byte) table.packageGroups.size();
+
+                for (final ResourceTable.PackageGroup g : table.packageGroups) {
+                    g.dynamicRefTale.addMapping(pkg.name, (byte) pkg.id);
+                }
+            } else {
+                group = table.packageGroups.get(index - 1);
+            }
+
+            group.packages.add(pkg);
+            packages.put(data, pkg);
+        }
+
+        for (final TypeData type : this.types.values()) {
+            final ResourceTable.Package pkg = packages.get(type.pkg);
+            pkg.specs.add(newTypeSpec(pkg, type));
+        }
+
+        new ReconcileChunkVisitor().visit(table);
+        return table;
+    }
+
+    ResourceTable.Config getConfig(final int resId, final String qualifiers) {
+        final TypeData type = this.types.get(keyOf(resId));
+        final int i = null != type ? type.indexOf(qualifiers) : -1;
+        return i >= 0 ? type.configs[i] : ResourceResolver.parseConfig(CONFIGS.new Config(), qualifiers);
+    }
+
+    private String getString(final int index) {
+        if (index < 0 || index >= this.pool.length) {
+            throw new AaptException("String index out of bounds " + index);
+        }
+        return this.pool[index];
+    }
+
+    private static Integer keyOf(final int resId) {
+        return (Internal.getPackage(resId) & 0xff) << 8 | (Internal.getType(resId) & 0xff);
+    }
+
+    private static Value newValue(final ResourceValue value, final String[] pool) {
+        final String string = ValueType.STRING == value.dataType && value.data >= 0 && value.data < pool.length ? pool[value.data] : null;
+        return new Value(value.dataType, value.data, string);
+    }
+
+    private static String[] toArray(final StringPool pool) {
+        final String[] strings = new String[pool.getStringCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = pool.getStringAt(i);
+        }
+        return strings;
+    }
+
+    private static StringPool newStringPool(final String[] strings, final int[][] styles, final int flags) {
+        final StringPool pool = new StringPool();
+        pool.flags = flags;
+
+        for (final String s : strings) {
+            pool.strings.add(new IndexedEntry<String>(0, s));
+        }
+
+        for (final int[] spans : styles) {
+            final StringPool.Style style = new StringPool.Style();
+
+            for (int i = 0; i < spans.length; i += 3) {
+                final StringPool.Span span = new StringPool.Span();
+                span.name = spans[i];
+                span.firstChar = spans[i + 1];
+                span.lastChar = spans[i + 2];
+                style.add(span);
+            }
+
+            pool.styles.add(new IndexedEntry<StringPool.Style>(0, style));
+        }
+
+        new ReconcileChunkVisitor().visit(pool);
+        return pool;
+    }
+
+    private static ResourceTable.Package newPackage(final ResourceTable table, final PackageData data) {
+        final StringPool typePool = newStringPool(data.types, new int[0][], data.typeFlags);
+        final StringPool keyPool = newStringPool(data.keys, new int[0][], data.keyFlags);
+        final ResourceTable.Package pkg = table.new Package() {
+            @Override
+            public StringPool getTypeStringPool() {
+                return typePool;
+            }
+
+            @Override
+            public StringPool getKeyStringPool() {
+                return keyPool;
+            }
+        };
+
+        pkg.id = data.id;
+        pkg.name = data.name;
+        pkg.headerSize = ResourceTable.Package.HEADER_SIZE;
+        pkg.typeStrings = pkg.headerSize;
+        pkg.lastPublicType = data.lastPublicType;
+        pkg.keyStrings = pkg.typeStrings + typePool.size;
+        pkg.lastPublicKey = data.lastPublicKey;
+        pkg.typeIdOffset = data.typeIdOffset;
+        return pkg;
+    }
+
+    private static ResourceTable.TypeSpec newTypeSpec(final ResourceTable.Package pkg, final TypeData data) {
+        final ResourceTable table = pkg.getResourceTable();
+        final ResourceTable.TypeSpec spec = table.new TypeSpec() {
+            @Override
+            public ResourceTable.Package getPackage() {
+                return pkg;
+            }
+        };
+
+        spec.id = (byte) data.typeId;
+        spec.headerSize = ChunkHeader.MIN_HEADER_SIZE + 8;
+
+        for (final int flags : data.flags) {
+            spec.flags.add(flags);
+        }
+
+        for (int i = 0; i < data.configs.length; i++) {
+            final ResourceTable.Type type = table.new Type() {
+                @Override
+                public ResourceTable.Package getPackage() {
+                    return pkg;
+                }
+
+                @Override
+                public ResourceTable.Config getConfig() {
+                    return this.config;
+                }
+            };
+
+            type.id = spec.id;
+            type.config.set(data.configs[i]);
+
+            for (final Entry entry : data.entries[i]) {
+                if (null == entry) {
+                    type.entries.add(new IndexedEntry<ResourceTable.Entry>(ResourceTable.Entry.NO_ENTRY, null));
+                } else {
+                    type.entries.add(new IndexedEntry<ResourceTable.Entry>(0, newEntry(entry)));
+                }
+            }
+
+            spec.configs.add(type);
+        }
+
+        return spec;
+    }
+
+    private static ResourceTable.Entry newEntry(final Entry entry) {
+        if (entry.isBag()) {
+            final ResourceTable.MapEntry me = new ResourceTable.MapEntry();
+            me.flags = entry.flags;
+            me.key = entry.key;
+            me.parent = entry.parent;
+
+            for (final BagItem item : entry.items) {
+                final ResourceTable.Map map = new ResourceTable.Map();
+                map.name = item.key;
+                map.value.size = 8;
+                map.value.dataType = item.value.dataType;
+                map.value.data = item.value.data;
+                me.addValue(map);
+            }
+
+            return me;
+        }
+
+        final ResourceTable.ValueEntry ve = new ResourceTable.ValueEntry();
+        ve.flags = entry.flags;
+        ve.key = entry.key;
+        ve.value.size = 8;
+        ve.value.dataType = entry.value.dataType;
+        ve.value.data = entry.value.data;
+        return ve;
+    }
+
+}
@@ -89,6 +89,11 @@ public class StringPool extends ChunkHeader {
 
     int stylesStart;
 
+    /**
+     * Set once the owner of this string pool is frozen
+     */
+    boolean frozen;
+
     public StringPool() {
         super(STRING_POOL);
     }
@@ -138,7 +143,7 @@ public class StringPool extends ChunkHeader {
             return (nchars > 0x7f ? 2 : 1) + (data.length > 0x7f ? 2 : 1) + data.length + 1;
         } else {
             final byte[] data = s.getBytes(StandardCharsets.UTF_16LE);
-            return (data.length > 0x7fff ? 4 : 2) + data.length + 2;
+            return (s.length() > 0x7fff ? 4 : 2) + data.length + 2;
         }
     }
 
@@ -164,8 +169,14 @@ public class StringPool extends ChunkHeader {
      * @param retainedIndices
      *            The index to be retained
      * @return the index map of old index to new index
+     * @throws UnsupportedOperationException
+     *             if the owner of this string pool is frozen
      */
     public Map<Integer, Integer> purge(final int... retainedIndices) {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("String pool is frozen");
+        }
+
         if (null == retainedIndices || retainedIndices.length <= 0) {
             return Collections.<Integer, Integer>emptyMap();
         }
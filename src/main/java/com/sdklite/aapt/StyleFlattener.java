@@ -0,0 +1,332 @@
+package com.sdklite.aapt;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * The flattener of styles and themes, the attributes of a style are merged
+ * with the attributes of its parent chain for a particular configuration:
+ *
+ * <pre>
+ * final StyleFlattener flattener = new StyleFlattener(resolver);
+ * final StyleFlattener.Style style = flattener.flatten(0x7f0b0001, config);
+ * final int index = style.indexOf(0x01010036);
+ * </pre>
+ *
+ * The flattened styles are cached in a bounded LRU by style id and
+ * configuration, the ancestors are flattened and cached in the same way, so
+ * the styles which share ancestors don't merge the ancestors again.
+ *
+ * @author johnsonlee
+ *
+ */
+public class StyleFlattener {
+
+    /**
+     * The flattened style with the attributes sorted by resource id
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Style {
+
+        final int id;
+
+        final int[] attrs;
+
+        final byte[] types;
+
+        final int[] data;
+
+        final int unresolvedParent;
+
+        Style(final int id, final int[] attrs, final byte[] types, final int[] data, final int unresolvedParent) {
+            this.id = id;
+            this.attrs = attrs;
+            this.types = types;
+            this.data = data;
+            this.unresolvedParent = unresolvedParent;
+        }
+
+        /**
+         * Returns the resource id of this style
+         *
+         * @return the resource id
+         */
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * Returns the number of attributes
+         *
+         * @return the number of attributes
+         */
+        public int getAttributeCount() {
+            return this.attrs.length;
+        }
+
+        /**
+         * Returns the resource id of the attribute at the specified index
+         *
+         * @param index
+         *            The index of attribute
+         * @return the resource id of attribute
+         */
+        public int getAttributeAt(final int index) {
+            return this.attrs[index];
+        }
+
+        /**
+         * Returns the value type of the attribute at the specified index
+         *
+         * @param index
+         *            The index of attribute
+         * @return the value type
+         * @see ValueType
+         */
+        public byte getValueTypeAt(final int index) {
+            return this.types[index];
+        }
+
+        /**
+         * Returns the value data of the attribute at the specified index
+         *
+         * @param index
+         *            The index of attribute
+         * @return the value data
+         */
+        public int getValueDataAt(final int index) {
+            return this.data[index];
+        }
+
+        /**
+         * Returns the index of the specified attribute
+         *
+         * @param attrId
+         *            The resource id of attribute
+         * @return the index of attribute or a negative value if not found
+         */
+        public int indexOf(final int attrId) {
+            return Arrays.binarySearch(this.attrs, attrId);
+        }
+
+        /**
+         * Returns a copy of the attribute ids in ascending order
+         *
+         * @return the attribute ids
+         */
+        public int[] getAttributes() {
+            return this.attrs.clone();
+        }
+
+        /**
+         * Returns the first parent which is not defined in the resource table,
+         * e.g. a framework style, its attributes are not included
+         *
+         * @return the resource id of the unresolved parent or 0 if the parent
+         *         chain is complete
+         */
+        public int getUnresolvedParent() {
+            return this.unresolvedParent;
+        }
+    }
+
+    /**
+     * The cache key of style
+     */
+    private static final class StyleKey {
+
+        final int id;
+
+        final ResourceResolver.Key config;
+
+        StyleKey(final int id, final ResourceResolver.Key config) {
+            this.id = id;
+            this.config = config;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.id + this.config.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof StyleKey)) {
+                return false;
+            }
+
+            final StyleKey key = (StyleKey) obj;
+            return this.id == key.id && this.config.equals(key.config);
+        }
+    }
+
+    /**
+     * The default capacity of cache
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The maximum depth of parent chain
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private final ResourceResolver resolver;
+
+    private final LinkedHashMap<StyleKey, Style> cache;
+
+    /**
+     * Instantialize with the resource resolver
+     *
+     * @param resolver
+     *            The resource resolver
+     */
+    public StyleFlattener(final ResourceResolver resolver) {
+        this(resolver, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantialize with the resource resolver and the capacity of cache
+     *
+     * @param resolver
+     *            The resource resolver
+     * @param capacity
+     *            The maximum number of flattened styles in cache
+     */
+    public StyleFlattener(final ResourceResolver resolver, final int capacity) {
+        this.resolver = resolver;
+        this.cache = new LinkedHashMap<StyleKey, Style>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final java.util.Map.Entry<StyleKey, Style> eldest) {
+                return size() > capacity;
+            }
+
+        };
+    }
+
+    /**
+     * Flattens the specified style for the specified configuration
+     *
+     * @param styleId
+     *            The resource id of style
+     * @param config
+     *            The target configuration
+     * @return the flattened style or null if the style is not found
+     * @throws AaptException
+     *             if the parent chain is circular
+     */
+    public Style flatten(final int styleId, final ResourceTable.Config config) {
+        return flatten(styleId, new ResourceResolver.Key(config), new int[MAX_DEPTH], 0);
+    }
+
+    /**
+     * Returns the number of flattened styles in cache
+     *
+     * @return the number of flattened styles in cache
+     */
+    public int size() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    private Style flatten(final int styleId, final ResourceResolver.Key config, final int[] chain, final int depth) {
+        final StyleKey key = new StyleKey(styleId, config);
+
+        synchronized (this.cache) {
+            final Style style = this.cache.get(key);
+            if (null != style) {
+                return style;
+            }
+        }
+
+        for (int i = 0; i < depth; i++) {
+            if (chain[i] == styleId) {
+                throw new AaptException(String.format("Circular style parent 0x%08x => 0x%08x", chain[0], styleId));
+            }
+        }
+
+        if (depth >= MAX_DEPTH) {
+            throw new AaptException(String.format("Too deep style parent 0x%08x", chain[0]));
+        }
+
+        final ResourceTable.Entry entry = this.resolver.getEntry(styleId, config);
+        if (!(entry instanceof ResourceTable.MapEntry)) {
+            return null;
+        }
+
+        chain[depth] = styleId;
+
+        final ResourceTable.MapEntry bag = (ResourceTable.MapEntry) entry;
+        final Style parent = 0 != bag.parent ? flatten(bag.parent, config, chain, depth + 1) : null;
+        final int unresolved = null != parent ? parent.unresolvedParent : bag.parent;
+        final Style style = merge(styleId, parent, bag, unresolved);
+
+        synchronized (this.cache) {
+            this.cache.put(key, style);
+        }
+
+        return style;
+    }
+
+    private static Style merge(final int styleId, final Style parent, final ResourceTable.MapEntry bag, final int unresolved) {
+        final int n = bag.values.size();
+        final long[] items = new long[n];
+
+        // sort the own attributes by id with the index of item in low word
+        for (int i = 0; i < n; i++) {
+            items[i] = ((long) bag.values.get(i).name << 32) | i;
+        }
+
+        Arrays.sort(items);
+
+        final int m = null != parent ? parent.attrs.length : 0;
+        final int[] attrs = new int[m + n];
+        final byte[] types = new byte[m + n];
+        final int[] data = new int[m + n];
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+
+        while (i < m || j < n) {
+            final int a = i < m ? parent.attrs[i] : Integer.MAX_VALUE;
+            final int b = j < n ? (int) (items[j] >> 32) : Integer.MAX_VALUE;
+
+            if (j >= n || (i < m && a < b)) {
+                attrs[k] = a;
+                types[k] = parent.types[i];
+                data[k] = parent.data[i];
+                i++;
+            } else {
+                // the own attribute overrides the attribute of parent
+                final ResourceValue value = bag.values.get((int) items[j]).value;
+                attrs[k] = b;
+                types[k] = value.dataType;
+                data[k] = value.data;
+
+                if (i < m && a == b) {
+                    i++;
+                }
+
+                // the latter duplicated item wins
+                while (j + 1 < n && (int) (items[j + 1] >> 32) == b) {
+                    final ResourceValue next = bag.values.get((int) items[++j]).value;
+                    types[k] = next.dataType;
+                    data[k] = next.data;
+                }
+
+                j++;
+            }
+
+            k++;
+        }
+
+        return new Style(styleId, Arrays.copyOf(attrs, k), Arrays.copyOf(types, k), Arrays.copyOf(data, k), unresolved);
+    }
+
+}
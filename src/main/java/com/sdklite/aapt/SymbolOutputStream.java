@@ -0,0 +1,189 @@
+package com.sdklite.aapt;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The output stream for writing {@link Symbols} in the compact binary format
+ * which could be loaded by {@link SymbolParser} with memory mapping. The layout
+ * of binary symbols is:
+ *
+ * <pre>
+ * header   : magic, version, header size, package id, entry count,
+ *            string count, string index offset, string data offset,
+ *            entries offset, arrays offset, total size
+ * strings  : uint32_t[stringCount + 1] offsets into the UTF-8 string data
+ * entries  : { vtype, type, name, value, flags, type id } sorted by key
+ * arrays   : { count, uint32_t[count] } for each styleable
+ * </pre>
+ *
+ * All of the names and types are interned into the string block, the value of
+ * styleable entry is the offset of its array relative to the arrays block.
+ *
+ * @author johnsonlee
+ *
+ */
+public class SymbolOutputStream extends FilterOutputStream {
+
+    /**
+     * The magic number of binary symbols, {@code RSYM} in little endian
+     */
+    public static final int MAGIC = 0x4d595352;
+
+    /**
+     * The current version of binary symbols
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The header size of binary symbols
+     */
+    public static final short HEADER_SIZE = 40;
+
+    /**
+     * The size of each entry record
+     */
+    public static final int ENTRY_SIZE = 20;
+
+    /**
+     * The entry is a styleable
+     */
+    public static final int FLAG_STYLEABLE = 1 << 0;
+
+    /**
+     * Instantialize with the output stream
+     *
+     * @param out
+     *            The underlying output stream
+     */
+    public SymbolOutputStream(final OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Writes the specified symbols in binary format
+     *
+     * @param symbols
+     *            The symbols to be written
+     * @throws IOException
+     *             if error occurred
+     */
+    public void write(final Symbols symbols) throws IOException {
+        final Map<String, Integer> indices = new HashMap<String, Integer>();
+        final List<byte[]> strings = new ArrayList<byte[]>();
+        final int entryCount = symbols.entries.size();
+        final int[] records = new int[entryCount * 3];
+
+        int stringsSize = 0;
+        int arraysSize = 0;
+        int i = 0;
+
+        for (final Symbols.Entry entry : symbols.entries.values()) {
+            final String[] values = { entry.vtype, entry.type.name, entry.name };
+
+            for (int j = 0; j < values.length; j++) {
+                Integer index = indices.get(values[j]);
+                if (null == index) {
+                    final byte[] data = values[j].getBytes(StandardCharsets.UTF_8);
+                    index = strings.size();
+                    indices.put(values[j], index);
+                    strings.add(data);
+                    stringsSize += data.length;
+                }
+
+                records[i++] = index;
+            }
+
+            if (entry instanceof Symbols.Styleable) {
+                arraysSize += 4 + ((Symbols.Styleable) entry).values.size() * 4;
+            }
+        }
+
+        final int stringIndexOffset = HEADER_SIZE;
+        final int stringDataOffset = stringIndexOffset + (strings.size() + 1) * 4;
+        final int entriesOffset = align(stringDataOffset + stringsSize);
+        final int arraysOffset = entriesOffset + entryCount * ENTRY_SIZE;
+
+        writeInt(MAGIC);
+        writeShort(VERSION);
+        writeShort(HEADER_SIZE);
+        writeInt(symbols.packageId);
+        writeInt(entryCount);
+        writeInt(strings.size());
+        writeInt(stringIndexOffset);
+        writeInt(stringDataOffset);
+        writeInt(entriesOffset);
+        writeInt(arraysOffset);
+        writeInt(arraysOffset + arraysSize);
+
+        for (int j = 0, offset = 0, n = strings.size(); j <= n; j++) {
+            writeInt(offset);
+
+            if (j < n) {
+                offset += strings.get(j).length;
+            }
+        }
+
+        for (final byte[] data : strings) {
+            write(data);
+        }
+
+        for (int j = stringDataOffset + stringsSize; j < entriesOffset; j++) {
+            write(0);
+        }
+
+        i = 0;
+
+        int arrayOffset = 0;
+
+        for (final Symbols.Entry entry : symbols.entries.values()) {
+            writeInt(records[i++]);
+            writeInt(records[i++]);
+            writeInt(records[i++]);
+
+            if (entry instanceof Symbols.Styleable) {
+                writeInt(arrayOffset);
+                write(FLAG_STYLEABLE);
+                arrayOffset += 4 + ((Symbols.Styleable) entry).values.size() * 4;
+            } else {
+                writeInt(entry.value);
+                write(0);
+            }
+
+            write(entry.type.id);
+            writeShort(0);
+        }
+
+        for (final Symbols.Entry entry : symbols.entries.values()) {
+            if (entry instanceof Symbols.Styleable) {
+                final List<Integer> values = ((Symbols.Styleable) entry).values;
+                writeInt(values.size());
+
+                for (final Integer value : values) {
+                    writeInt(value);
+                }
+            }
+        }
+    }
+
+    public final void writeShort(final int v) throws IOException {
+        write(ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort((short) v).array());
+    }
+
+    public final void writeInt(final int v) throws IOException {
+        write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(v).array());
+    }
+
+    private static int align(final int offset) {
+        return (offset + 3) & ~3;
+    }
+
+}
@@ -13,7 +13,8 @@ import com.sdklite.aapt.Internal.Mapper;
 import com.sdklite.aapt.Symbols.Entry;
 
 /**
- * The parser of aapt-generated text symbols file {@code R.txt}
+ * The parser of aapt-generated text symbols file {@code R.txt}, the binary
+ * symbols written by {@link SymbolOutputStream} is also supported
  * 
  * @author johnsonlee
  *
@@ -34,7 +35,8 @@ public final class SymbolParser {
     }
 
     /**
-     * Parses the R.txt file
+     * Parses the R.txt file, if the file is binary symbols, it will be memory
+     * mapped and the entries will be decoded lazily
      * 
      * @param file
      *            The R.txt file
@@ -43,6 +45,10 @@ public final class SymbolParser {
      *             If error occurred
      */
     public Symbols parse(final File file) throws IOException {
+        if (MappedSymbolEntries.isBinary(file)) {
+            return MappedSymbolEntries.load(file);
+        }
+
         final LineNumberReader reader = new LineNumberReader(new FileReader(file));
 
         try {
@@ -286,9 +286,21 @@ public class Symbols implements Cloneable, Iterable<Map.Entry<String, Symbols.En
 
     int packageId = Constants.APP_PACKAGE_ID;
 
-    final Map<String, Entry> entries = new TreeMap<String, Entry>();
+    final Map<String, Entry> entries;
 
     Symbols() {
+        this(new TreeMap<String, Entry>());
+    }
+
+    /**
+     * Instantialize with the specified entry map, the keys of the map are
+     * expected to be iterated in natural order
+     * 
+     * @param entries
+     *            The entries keyed by {@link Entry#key}
+     */
+    Symbols(final Map<String, Entry> entries) {
+        this.entries = entries;
     }
 
     public void setPackageId(final int packageId) {
@@ -1,12 +1,19 @@
 package com.sdklite.aapt;
 
 import static com.sdklite.aapt.Internal.find;
-import static com.sdklite.aapt.Internal.findAll;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.sdklite.aapt.Internal.Filter;
 
@@ -35,6 +42,26 @@ public class Xml extends ChunkHeader {
             super(ChunkType.XML_RESOURCE_MAP);
         }
 
+        /**
+         * Returns the number of resource identifiers
+         * 
+         * @return the number of resource identifiers
+         */
+        public int getIdCount() {
+            return this.ids.size();
+        }
+
+        /**
+         * Returns the resource identifier of the specified string
+         * 
+         * @param index
+         *            The index of string in the string pool
+         * @return the resource identifier or 0 if the string is not mapped
+         */
+        public int getIdAt(final int index) {
+            return index >= 0 && index < this.ids.size() ? this.ids.get(index) : 0;
+        }
+
         @Override
         public void accept(final ChunkVisitor visitor) {
             visitor.visit(this);
@@ -160,6 +187,16 @@ public class Xml extends ChunkHeader {
 
         final List<Attribute> attributes = new ArrayList<Attribute>();
 
+        Element parent;
+
+        final List<Element> children = new ArrayList<Element>();
+
+        /**
+         * The attributes sorted by resource id, rebuilt once the document
+         * has been invalidated
+         */
+        private AttributeIndex attributeIndex;
+
         /**
          * Instantialize with element type
          * 
@@ -190,13 +227,34 @@ public class Xml extends ChunkHeader {
             return pool.getStringAt(this.name);
         }
 
+        /**
+         * Returns the parent element
+         * 
+         * @return the parent element or null if this is the document element
+         */
+        public Element getParent() {
+            index();
+            return this.parent;
+        }
+
+        /**
+         * Returns the child elements
+         * 
+         * @return the child elements
+         */
+        public List<Element> getChildren() {
+            index();
+            return Collections.unmodifiableList(this.children);
+        }
+
         /**
          * Returns an iterator of attributes
          * 
-         * @return an iterator of attributes
+         * @return an iterator of attributes, which is read-only if the
+         *         document is frozen
          */
         public Iterator<Attribute> attributes() {
-            return this.attributes.iterator();
+            return frozen ? Collections.unmodifiableList(this.attributes).iterator() : this.attributes.iterator();
         }
 
         /**
@@ -223,18 +281,16 @@ public class Xml extends ChunkHeader {
          *             if the specified attribute already exists
          */
         public void addAttribute(final Attribute attr) throws DuplicateAttributeException {
-            final Attribute duplicated = find(this.attributes, new Filter<Attribute>() {
-                @Override
-                public boolean accept(final Attribute it) {
-                    return it.name == attr.name;
-                }
-            });
+            checkMutable();
+
+            final Attribute duplicated = findAttribute(attr);
 
             if (null != duplicated) {
                 throw new DuplicateAttributeException(attr.getName());
             }
 
             this.attributes.add(attr);
+            invalidate();
         }
 
         /**
@@ -245,14 +301,12 @@ public class Xml extends ChunkHeader {
          * @return true if the attribute exists
          */
         public boolean removeAttribute(final Attribute attr) {
-            final Attribute duplicated = find(this.attributes, new Filter<Attribute>() {
-                @Override
-                public boolean accept(final Attribute it) {
-                    return it.name == attr.name;
-                }
-            });
+            checkMutable();
+
+            final Attribute duplicated = findAttribute(attr);
 
             if (duplicated != null) {
+                invalidate();
                 return this.attributes.remove(duplicated);
             }
 
@@ -267,12 +321,9 @@ public class Xml extends ChunkHeader {
          *            The attribute to be merged
          */
         public void mergeAttribute(final Attribute attr) {
-            final Attribute duplicated = find(this.attributes, new Filter<Attribute>() {
-                @Override
-                public boolean accept(final Attribute it) {
-                    return it.name == attr.name;
-                }
-            });
+            checkMutable();
+
+            final Attribute duplicated = findAttribute(attr);
 
             if (duplicated != null) {
                 duplicated.ns = attr.ns;
@@ -283,6 +334,108 @@ public class Xml extends ChunkHeader {
             } else {
                 this.attributes.add(attr);
             }
+
+            invalidate();
+        }
+
+        /**
+         * Returns the attribute with the specified resource id, e.g.
+         * {@code 0x0101000f} for {@code android:debuggable}. The attribute
+         * names are resolved through the {@link ResourceMap} and looked up by
+         * binary search without decoding any string.
+         * 
+         * @param resId
+         *            The resource id of attribute
+         * @return the attribute or null if not found
+         */
+        public Attribute getAttributeById(final int resId) {
+            final AttributeIndex index = attributeIndex();
+            final int i = Arrays.binarySearch(index.ids, resId);
+            return i < 0 ? null : index.attributes[i];
+        }
+
+        /**
+         * Remove the attribute with the specified resource id
+         * 
+         * @param resId
+         *            The resource id of attribute
+         * @return true if the attribute exists
+         */
+        public boolean removeAttributeById(final int resId) {
+            checkMutable();
+
+            final Attribute attr = getAttributeById(resId);
+            if (null == attr) {
+                return false;
+            }
+
+            invalidate();
+            return this.attributes.remove(attr);
+        }
+
+        /**
+         * Returns the attribute which has the same name with the specified
+         * attribute
+         */
+        private Attribute findAttribute(final Attribute attr) {
+            final int resId = attr.getResourceId();
+
+            if (0 != resId) {
+                final Attribute candidate = getAttributeById(resId);
+                if (null == candidate || candidate.name == attr.name) {
+                    return candidate;
+                }
+            }
+
+            return find(this.attributes, new Filter<Attribute>() {
+                @Override
+                public boolean accept(final Attribute it) {
+                    return it.name == attr.name;
+                }
+            });
+        }
+
+        /**
+         * Returns the attributes sorted by resource id, the index is
+         * immutable, so that it's safe to be published without
+         * synchronization
+         */
+        private AttributeIndex attributeIndex() {
+            final int version = Xml.this.version;
+            final AttributeIndex index = this.attributeIndex;
+
+            if (null != index && index.version == version) {
+                return index;
+            }
+
+            return this.attributeIndex = sortAttributes(version);
+        }
+
+        private AttributeIndex sortAttributes(final int version) {
+            final List<Attribute> attrs = new ArrayList<Attribute>(this.attributes.size());
+
+            for (final Attribute attr : this.attributes) {
+                if (0 != attr.getResourceId()) {
+                    attrs.add(attr);
+                }
+            }
+
+            final Attribute[] sorted = attrs.toArray(new Attribute[attrs.size()]);
+            Arrays.sort(sorted, new Comparator<Attribute>() {
+                @Override
+                public int compare(final Attribute a, final Attribute b) {
+                    final int x = a.getResourceId();
+                    final int y = b.getResourceId();
+                    return x < y ? -1 : (x == y ? 0 : 1);
+                }
+            });
+
+            final int[] ids = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                ids[i] = sorted[i].getResourceId();
+            }
+
+            return new AttributeIndex(version, ids, sorted);
         }
 
         @Override
@@ -337,6 +490,43 @@ public class Xml extends ChunkHeader {
         Attribute() {
         }
 
+        /**
+         * Returns the resource id of attribute name
+         * 
+         * @return the resource id or 0 if the name is not mapped in
+         *         {@link ResourceMap}
+         */
+        public int getResourceId() {
+            return null != resources ? resources.getIdAt(this.name) : 0;
+        }
+
+        /**
+         * Returns the typed value
+         * 
+         * @return the typed value
+         * @throws UnsupportedOperationException
+         *             if the document is frozen, use {@link #getDataType()}
+         *             and {@link #getData()} instead
+         */
+        public ResourceValue getTypedValue() {
+            checkMutable();
+            return this.typedValue;
+        }
+
+        /**
+         * Returns the type of typed value, see {@link ValueType}
+         */
+        public byte getDataType() {
+            return this.typedValue.dataType;
+        }
+
+        /**
+         * Returns the data of typed value
+         */
+        public int getData() {
+            return this.typedValue.data;
+        }
+
         /**
          * Returns the attribute name
          * 
@@ -366,28 +556,193 @@ public class Xml extends ChunkHeader {
         }
     }
 
+    /**
+     * The lazily built indexes of elements
+     */
+    private static final class Index {
+
+        Element documentElement;
+
+        final Map<String, List<Element>> elementsByName = new HashMap<String, List<Element>>();
+
+        final Map<Integer, Element> elementsById = new HashMap<Integer, Element>();
+    }
+
+    /**
+     * The attributes of element sorted by resource id at the specified
+     * version of document
+     */
+    private static final class AttributeIndex {
+
+        final int version;
+
+        final int[] ids;
+
+        final Attribute[] attributes;
+
+        AttributeIndex(final int version, final int[] ids, final Attribute[] attributes) {
+            this.version = version;
+            this.ids = ids;
+            this.attributes = attributes;
+        }
+    }
+
     StringPool pool;
 
     ResourceMap resources;
 
     final List<Node> chunks = new ArrayList<Node>();
 
+    private volatile Index index;
+
+    /**
+     * The version of document, increased once the document is invalidated
+     */
+    private volatile int version;
+
+    private volatile boolean frozen;
+
     public Xml() {
         super(XML);
     }
 
+    /**
+     * Builds all of the indexes and rejects the further modification, the
+     * frozen document is safe to be read by multiple threads concurrently
+     * 
+     * @return this document
+     */
+    public Xml freeze() {
+        for (final Node node : this.chunks) {
+            if (node instanceof Element) {
+                ((Element) node).attributeIndex();
+            }
+        }
+
+        index();
+
+        if (null != this.pool) {
+            new ReconcileChunkVisitor().visit(this.pool);
+            this.pool.frozen = true;
+        }
+
+        this.frozen = true;
+        return this;
+    }
+
+    /**
+     * Returns true if this document has been frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Discards the element indexes and the attribute indexes of all elements,
+     * it should be called after {@link #chunks}, the attributes of element or
+     * the {@link #resources} modified
+     */
+    void invalidate() {
+        checkMutable();
+        this.index = null;
+        this.version++;
+    }
+
+    /**
+     * Rejects the modification of a frozen document, it should be called
+     * before anything written
+     */
+    void checkMutable() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("XML is frozen");
+        }
+    }
+
+    /**
+     * Returns the element indexes, the indexes are built in one pass if
+     * absent, the parent and children of elements are rewritten under the
+     * lock and published by the volatile index
+     */
+    private Index index() {
+        final Index built = this.index;
+        if (null != built) {
+            return built;
+        }
+
+        synchronized (this) {
+            return null != this.index ? this.index : buildIndex();
+        }
+    }
+
+    private Index buildIndex() {
+        final Index index = new Index();
+        final Set<Integer> idNames = new HashSet<Integer>();
+
+        if (null != this.pool) {
+            for (int i = 0, n = this.pool.getStringCount(); i < n; i++) {
+                if ("id".equals(this.pool.getStringAt(i))) {
+                    idNames.add(i);
+                }
+            }
+        }
+
+        final Deque<Element> stack = new ArrayDeque<Element>();
+
+        for (final Node node : this.chunks) {
+            switch (node.type) {
+            case ChunkType.XML_START_ELEMENT: {
+                final Element element = (Element) node;
+                final Element parent = stack.peek();
+
+                element.parent = parent;
+                element.children.clear();
+
+                if (null != parent) {
+                    parent.children.add(element);
+                } else if (null == index.documentElement) {
+                    index.documentElement = element;
+                }
+
+                final String name = this.pool.getStringAt(element.name);
+                List<Element> elements = index.elementsByName.get(name);
+                if (null == elements) {
+                    elements = new ArrayList<Element>();
+                    index.elementsByName.put(name, elements);
+                }
+                elements.add(element);
+
+                for (final Attribute attr : element.attributes) {
+                    if (idNames.contains(attr.name)) {
+                        if (!index.elementsById.containsKey(attr.rawValue)) {
+                            index.elementsById.put(attr.rawValue, element);
+                        }
+                        break;
+                    }
+                }
+
+                stack.push(element);
+                break;
+            }
+            case ChunkType.XML_END_ELEMENT:
+                if (!stack.isEmpty()) {
+                    stack.pop();
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        return this.index = index;
+    }
+
     /**
      * Returns the document element
      * 
      * @return the document element
      */
     public Element getDocumentElement() {
-        return (Element) find(this.chunks, new Filter<Node>() {
-            @Override
-            public boolean accept(final Node it) {
-                return ChunkType.XML_START_ELEMENT == it.type;
-            }
-        });
+        return index().documentElement;
     }
 
     /**
@@ -398,13 +753,12 @@ public class Xml extends ChunkHeader {
      * @return a collection of XML element
      */
     public List<Element> getElementsByName(final String name) {
-        final List<Node> nodes = findAll(this.chunks, new Filter<Node>() {
-            @Override
-            public boolean accept(final Node it) {
-                return it.type == ChunkType.XML_START_ELEMENT && ((Element) it).getName().equals(name);
-            }
-        });
-        return Arrays.asList(nodes.toArray(new Element[nodes.size()]));
+        final List<Element> elements = index().elementsByName.get(name);
+        if (null == elements) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(elements);
     }
 
     /**
@@ -415,12 +769,7 @@ public class Xml extends ChunkHeader {
      * @return the element with the specified id or null if not found
      */
     public Element getElementById(final int id) {
-        return (Element) find(this.chunks, new Filter<Node>() {
-            @Override
-            public boolean accept(final Node it) {
-                return it.type == ChunkType.XML_START_ELEMENT && ((Element) it).getId() == id;
-            }
-        });
+        return index().elementsById.get(id);
     }
 
     @Override
@@ -0,0 +1,915 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.Internal.await;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import android.util.TypedValue;
+
+/**
+ * The compiler of text XML to binary XML. The attribute names are mapped to
+ * resource ids through the {@link Xml.ResourceMap} in id order, and the
+ * attribute values are coerced to typed values, the references like
+ * {@code @string/app_name} are resolved through {@link Symbols} of application
+ * and the {@link ResourceTable}s, e.g. the {@code resources.arsc} of
+ * {@code android.jar} for the framework attributes:
+ *
+ * <pre>
+ * final XmlCompiler compiler = new XmlCompiler(symbols, framework);
+ * compiler.compile(new File("res"), new File("build/res"), executor);
+ * </pre>
+ *
+ * If an attribute is defined in one of the resource tables, its format and
+ * enum or flag symbols are used to coerce the value, otherwise the value is
+ * coerced by its literal form.
+ *
+ * @author johnsonlee
+ *
+ */
+public class XmlCompiler {
+
+    /**
+     * The type of attribute in the map of attribute resource
+     */
+    private static final int ATTR_TYPE = 0x01000000;
+
+    private static final int TYPE_ANY = 0x0000ffff;
+    private static final int TYPE_REFERENCE = 1 << 0;
+    private static final int TYPE_STRING = 1 << 1;
+    private static final int TYPE_INTEGER = 1 << 2;
+    private static final int TYPE_BOOLEAN = 1 << 3;
+    private static final int TYPE_COLOR = 1 << 4;
+    private static final int TYPE_FLOAT = 1 << 5;
+    private static final int TYPE_DIMENSION = 1 << 6;
+    private static final int TYPE_FRACTION = 1 << 7;
+    private static final int TYPE_ENUM = 1 << 16;
+    private static final int TYPE_FLAGS = 1 << 17;
+
+    private static final String ANDROID = "android";
+
+    private static final String RES_AUTO = "http://schemas.android.com/apk/res-auto";
+
+    private static final String RES_PREFIX = "http://schemas.android.com/apk/res/";
+
+    private static final Pattern REFERENCE = Pattern.compile("^([@?])(\\+)?(?:\\*?([\\w.]+):)?(?:([\\w-]+)/)?([\\w.]+)$");
+
+    private static final Pattern HEX4 = Pattern.compile("^[0-9a-fA-F]{4}$");
+
+    private static final Pattern NUMBER = Pattern.compile("^(-?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?)(px|dp|dip|sp|pt|in|mm|%|%p)?$");
+
+    private static final Pattern COLOR = Pattern.compile("^#([0-9a-fA-F]{3}|[0-9a-fA-F]{4}|[0-9a-fA-F]{6}|[0-9a-fA-F]{8})$");
+
+    private static final String[] DIMENSION_UNITS = { "px", "dp", "sp", "pt", "in", "mm" };
+
+    private static final short NODE_HEADER_SIZE = ChunkHeader.MIN_HEADER_SIZE + 8;
+
+    private static final short ATTRIBUTE_START = 20;
+
+    private static final short ATTRIBUTE_SIZE = 20;
+
+    /**
+     * The format of attribute resource
+     */
+    private static final class AttributeFormat {
+
+        static final AttributeFormat ANY = new AttributeFormat(TYPE_ANY, Collections.<String, Integer> emptyMap());
+
+        final int type;
+
+        final Map<String, Integer> symbols;
+
+        AttributeFormat(final int type, final Map<String, Integer> symbols) {
+            this.type = type;
+            this.symbols = symbols;
+        }
+    }
+
+    /**
+     * The parsed text node
+     */
+    private static final class Event {
+
+        final short type;
+        final int line;
+        String ns;
+        String name;
+        String text;
+        List<Attr> attrs;
+
+        Event(final short type, final int line) {
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    /**
+     * The parsed text attribute
+     */
+    private static final class Attr {
+
+        String ns;
+        String name;
+        String value;
+        int id;
+        byte dataType;
+        int data;
+    }
+
+    private final Symbols symbols;
+
+    private final ResourceTable[] tables;
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    private final ConcurrentMap<Integer, AttributeFormat> formats = new ConcurrentHashMap<Integer, AttributeFormat>();
+
+    /**
+     * Instantialize with the symbols of application and the resource tables
+     *
+     * @param symbols
+     *            The symbols of application, could be null
+     * @param tables
+     *            The resource tables, e.g. the framework resource table
+     */
+    public XmlCompiler(final Symbols symbols, final ResourceTable... tables) {
+        this.symbols = symbols;
+        this.tables = null != tables ? tables : new ResourceTable[0];
+
+        for (final ResourceTable table : this.tables) {
+            for (final ResourceTable.Package pkg : table.getPackages()) {
+                final String packageName = Constants.APP_PACKAGE_ID == pkg.getId() ? "" : (Constants.SYS_PACKAGE_ID == pkg.getId() ? ANDROID : pkg.getName());
+
+                for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                    for (final Map.Entry<ResourceName, Integer> entry : spec.entries().entrySet()) {
+                        final ResourceName rn = entry.getKey();
+                        this.ids.put(packageName + ":" + rn.typeName + "/" + rn.name, Internal.makeId(pkg.getId(), spec.id, entry.getValue()));
+                    }
+                }
+            }
+        }
+
+        if (null != symbols) {
+            for (final Symbols.Entry entry : symbols.entries()) {
+                if (!(entry instanceof Symbols.Styleable)) {
+                    this.ids.put(":" + entry.type.name + "/" + entry.name, entry.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the symbols of application
+     *
+     * @return the symbols of application
+     */
+    public Symbols getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Compiles the specified text XML file
+     *
+     * @param file
+     *            The text XML file
+     * @return the binary XML document
+     * @throws IOException
+     *             if error occurred
+     */
+    public Xml compile(final File file) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            return compile(in, file.getPath());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Compiles the text XML from the specified stream
+     *
+     * @param in
+     *            The input stream of text XML
+     * @param name
+     *            The name of source for error reporting
+     * @return the binary XML document
+     * @throws IOException
+     *             if error occurred
+     */
+    public Xml compile(final InputStream in, final String name) throws IOException {
+        final List<Event> events;
+
+        try {
+            events = parse(in);
+        } catch (final XMLStreamException e) {
+            throw new AaptException(name + ": " + e.getMessage(), e);
+        }
+
+        try {
+            return compile(events);
+        } catch (final AaptException e) {
+            throw new AaptException(name + ":" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compiles the specified text XML file into the specified binary XML file
+     *
+     * @param src
+     *            The text XML file
+     * @param dest
+     *            The binary XML file
+     * @throws IOException
+     *             if error occurred
+     */
+    public void compile(final File src, final File dest) throws IOException {
+        final Xml xml = compile(src);
+        final File parent = dest.getParentFile();
+
+        if (null != parent && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("Create directory " + parent + " failed");
+        }
+
+        final ChunkOutputStream out = new ChunkOutputStream(new BufferedOutputStream(new FileOutputStream(dest)));
+
+        try {
+            out.write(xml);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compiles all of the XML files of the specified resource directory in
+     * parallel, the {@code values} and {@code raw} directories are skipped
+     *
+     * @param resDir
+     *            The resource directory
+     * @param outDir
+     *            The output directory
+     * @param executor
+     *            The executor for compiling
+     * @return the compiled files
+     * @throws IOException
+     *             if error occurred
+     */
+    public List<File> compile(final File resDir, final File outDir, final ExecutorService executor) throws IOException {
+        final List<Path> sources = new ArrayList<Path>();
+        final Path root = resDir.toPath();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                final String name = dir.getFileName().toString();
+                if (dir.getParent().equals(root) && !name.startsWith("values") && !name.startsWith("raw")) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".xml")) {
+                    sources.add(file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Collections.sort(sources);
+
+        final List<Future<File>> futures = new ArrayList<Future<File>>(sources.size());
+
+        for (final Path source : sources) {
+            final File dest = new File(outDir, root.relativize(source).toString());
+
+            futures.add(executor.submit(new Callable<File>() {
+                @Override
+                public File call() throws IOException {
+                    compile(source.toFile(), dest);
+                    return dest;
+                }
+            }));
+        }
+
+        return await(futures);
+    }
+
+    private static List<Event> parse(final InputStream in) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+        final List<Event> events = new ArrayList<Event>();
+        final List<Integer> namespaceCounts = new ArrayList<Integer>();
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    final int line = reader.getLocation().getLineNumber();
+                    final int nsCount = reader.getNamespaceCount();
+
+                    for (int i = 0; i < nsCount; i++) {
+                        final Event ns = new Event(ChunkType.XML_START_NAMESPACE, line);
+                        ns.name = null != reader.getNamespacePrefix(i) ? reader.getNamespacePrefix(i) : "";
+                        ns.ns = reader.getNamespaceURI(i);
+                        events.add(ns);
+                    }
+
+                    final Event start = new Event(ChunkType.XML_START_ELEMENT, line);
+                    start.ns = emptyToNull(reader.getNamespaceURI());
+                    start.name = reader.getLocalName();
+                    start.attrs = new ArrayList<Attr>(reader.getAttributeCount());
+
+                    for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                        final Attr attr = new Attr();
+                        attr.ns = emptyToNull(reader.getAttributeNamespace(i));
+                        attr.name = reader.getAttributeLocalName(i);
+                        attr.value = reader.getAttributeValue(i);
+                        start.attrs.add(attr);
+                    }
+
+                    events.add(start);
+                    namespaceCounts.add(nsCount);
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    final int line = reader.getLocation().getLineNumber();
+                    final Event end = new Event(ChunkType.XML_END_ELEMENT, line);
+                    end.ns = emptyToNull(reader.getNamespaceURI());
+                    end.name = reader.getLocalName();
+                    events.add(end);
+
+                    for (int i = namespaceCounts.remove(namespaceCounts.size() - 1) - 1; i >= 0; i--) {
+                        final Event ns = new Event(ChunkType.XML_END_NAMESPACE, line);
+                        ns.name = null != reader.getNamespacePrefix(i) ? reader.getNamespacePrefix(i) : "";
+                        ns.ns = reader.getNamespaceURI(i);
+                        events.add(ns);
+                    }
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA: {
+                    if (!reader.isWhiteSpace() && !namespaceCounts.isEmpty()) {
+                        final Event text = new Event(ChunkType.XML_CDATA, reader.getLocation().getLineNumber());
+                        text.text = reader.getText().trim();
+                        events.add(text);
+                    }
+                    break;
+                }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return events;
+    }
+
+    private Xml compile(final List<Event> events) {
+        final List<Attr> mapped = new ArrayList<Attr>();
+
+        // resolve attribute ids and coerce values
+        for (final Event event : events) {
+            if (ChunkType.XML_START_ELEMENT != event.type) {
+                continue;
+            }
+
+            for (final Attr attr : event.attrs) {
+                attr.id = resolveAttribute(attr.ns, attr.name);
+                coerce(attr, event.line);
+
+                if (0 != attr.id) {
+                    mapped.add(attr);
+                }
+            }
+        }
+
+        // the attribute names with resource id come first in id order
+        Collections.sort(mapped, new Comparator<Attr>() {
+            @Override
+            public int compare(final Attr a, final Attr b) {
+                return a.id < b.id ? -1 : (a.id == b.id ? a.name.compareTo(b.name) : 1);
+            }
+        });
+
+        final Xml xml = new Xml();
+        final List<String> strings = new ArrayList<String>();
+        final List<Integer> resourceIds = new ArrayList<Integer>();
+        final Map<String, Integer> mappedIndices = new HashMap<String, Integer>();
+        final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+        for (final Attr attr : mapped) {
+            final String key = attr.name + "#" + attr.id;
+            if (!mappedIndices.containsKey(key)) {
+                mappedIndices.put(key, strings.size());
+                strings.add(attr.name);
+                resourceIds.add(attr.id);
+            }
+        }
+
+        int size = ChunkHeader.MIN_HEADER_SIZE;
+
+        for (final Event event : events) {
+            switch (event.type) {
+            case ChunkType.XML_START_NAMESPACE:
+            case ChunkType.XML_END_NAMESPACE: {
+                final Xml.Namespace ns = xml.new Namespace(event.type);
+                node(ns, event.line, NODE_HEADER_SIZE + 8);
+                ns.prefix = intern(strings, indices, event.name);
+                ns.uri = intern(strings, indices, event.ns);
+                xml.chunks.add(ns);
+                size += ns.size;
+                break;
+            }
+            case ChunkType.XML_START_ELEMENT: {
+                final Xml.Element element = xml.new Element(ChunkType.XML_START_ELEMENT);
+                node(element, event.line, NODE_HEADER_SIZE + ATTRIBUTE_START + event.attrs.size() * ATTRIBUTE_SIZE);
+                element.ns = null != event.ns ? intern(strings, indices, event.ns) : -1;
+                element.name = intern(strings, indices, event.name);
+                element.attributeStart = ATTRIBUTE_START;
+                element.attributeSize = ATTRIBUTE_SIZE;
+
+                for (final Attr attr : event.attrs) {
+                    final Xml.Attribute attribute = xml.new Attribute();
+                    attribute.ns = null != attr.ns ? intern(strings, indices, attr.ns) : -1;
+                    attribute.name = 0 != attr.id ? mappedIndices.get(attr.name + "#" + attr.id) : intern(strings, indices, attr.name);
+                    attribute.typedValue.size = 8;
+                    attribute.typedValue.dataType = attr.dataType;
+
+                    if (ValueType.STRING == attr.dataType) {
+                        attribute.rawValue = intern(strings, indices, attr.value);
+                        attribute.typedValue.data = attribute.rawValue;
+                    } else {
+                        attribute.rawValue = -1;
+                        attribute.typedValue.data = attr.data;
+                    }
+
+                    element.attributes.add(attribute);
+                }
+
+                Collections.sort(element.attributes, new Comparator<Xml.Attribute>() {
+                    @Override
+                    public int compare(final Xml.Attribute a, final Xml.Attribute b) {
+                        return a.name < b.name ? -1 : (a.name == b.name ? 0 : 1);
+                    }
+                });
+
+                for (int i = 0, n = element.attributes.size(); i < n; i++) {
+                    final Xml.Attribute attribute = element.attributes.get(i);
+                    final String name = strings.get(attribute.name);
+                    final boolean android = attribute.ns >= 0 && isAndroidSchema(strings, attribute.ns);
+
+                    if ("id".equals(name) && android) {
+                        element.idIndex = (short) (i + 1);
+                    } else if (attribute.ns < 0 && "class".equals(name)) {
+                        element.classIndex = (short) (i + 1);
+                    } else if (attribute.ns < 0 && "style".equals(name)) {
+                        element.styleIndex = (short) (i + 1);
+                    }
+                }
+
+                xml.chunks.add(element);
+                size += element.size;
+                break;
+            }
+            case ChunkType.XML_END_ELEMENT: {
+                final Xml.Element element = xml.new Element(ChunkType.XML_END_ELEMENT);
+                node(element, event.line, NODE_HEADER_SIZE + 8);
+                element.ns = null != event.ns ? intern(strings, indices, event.ns) : -1;
+                element.name = intern(strings, indices, event.name);
+                xml.chunks.add(element);
+                size += element.size;
+                break;
+            }
+            case ChunkType.XML_CDATA: {
+                final Xml.CharData cdata = xml.new CharData();
+                node(cdata, event.line, NODE_HEADER_SIZE + 12);
+                cdata.data = intern(strings, indices, event.text);
+                cdata.typedData.size = 8;
+                xml.chunks.add(cdata);
+                size += cdata.size;
+                break;
+            }
+            }
+        }
+
+        xml.pool = buildStringPool(strings);
+        size += xml.pool.size;
+
+        if (!resourceIds.isEmpty()) {
+            xml.resources = xml.new ResourceMap();
+            xml.resources.headerSize = ChunkHeader.MIN_HEADER_SIZE;
+            xml.resources.size = ChunkHeader.MIN_HEADER_SIZE + resourceIds.size() * 4;
+            xml.resources.ids.addAll(resourceIds);
+            size += xml.resources.size;
+        }
+
+        xml.headerSize = ChunkHeader.MIN_HEADER_SIZE;
+        xml.size = size;
+        return xml;
+    }
+
+    private static boolean isAndroidSchema(final List<String> strings, final int index) {
+        return Constants.ANDROID_SCHEMA.equals(strings.get(index));
+    }
+
+    private static StringPool buildStringPool(final List<String> strings) {
+        final StringPool pool = new StringPool();
+        pool.flags = StringPool.FLAG_UTF8;
+        pool.headerSize = StringPool.HEADER_SIZE;
+
+        int offset = 0;
+
+        for (final String s : strings) {
+            pool.strings.add(new IndexedEntry<String>(offset, s));
+            offset += pool.sizeOf(s);
+        }
+
+        pool.stringsStart = StringPool.HEADER_SIZE + strings.size() * 4;
+        pool.stylesStart = 0;
+        pool.size = pool.stringsStart + ((offset + 3) & ~3);
+        return pool;
+    }
+
+    private static void node(final Xml.Node node, final int line, final int size) {
+        node.headerSize = NODE_HEADER_SIZE;
+        node.size = size;
+        node.lineNumber = line;
+        node.commentIndex = -1;
+    }
+
+    private static int intern(final List<String> strings, final Map<String, Integer> indices, final String s) {
+        Integer index = indices.get(s);
+
+        if (null == index) {
+            index = strings.size();
+            indices.put(s, index);
+            strings.add(s);
+        }
+
+        return index;
+    }
+
+    private static String emptyToNull(final String s) {
+        return null == s || s.isEmpty() ? null : s;
+    }
+
+    private int resolveAttribute(final String ns, final String name) {
+        if (null == ns) {
+            return 0;
+        }
+
+        final Integer id;
+
+        if (Constants.ANDROID_SCHEMA.equals(ns)) {
+            id = this.ids.get(ANDROID + ":attr/" + name);
+        } else if (RES_AUTO.equals(ns) || ns.startsWith(RES_PREFIX)) {
+            id = this.ids.get(":attr/" + name);
+        } else {
+            return 0;
+        }
+
+        return null != id ? id : 0;
+    }
+
+    private int resolveReference(final String pkg, final String type, final String name) {
+        final String key = (null == pkg || !ANDROID.equals(pkg) ? "" : ANDROID) + ":" + type + "/" + name;
+        final Integer id = this.ids.get(key);
+        return null != id ? id : 0;
+    }
+
+    private void coerce(final Attr attr, final int line) {
+        final String value = attr.value;
+        // the attribute without namespace, e.g. style, accepts any format as aapt does
+        final AttributeFormat format = 0 != attr.id ? getAttributeFormat(attr.id) : null == attr.ns ? AttributeFormat.ANY : null;
+
+        attr.dataType = ValueType.STRING;
+
+        if (null == format) {
+            // the value of unknown namespaced attribute is kept as string
+            return;
+        }
+
+        final Matcher ref = REFERENCE.matcher(value);
+
+        if ("@null".equals(value)) {
+            attr.dataType = ValueType.REFERENCE;
+            attr.data = 0;
+            return;
+        }
+
+        if (ref.matches()) {
+            final boolean attribute = "?".equals(ref.group(1));
+            final String type = null != ref.group(4) ? ref.group(4) : (attribute ? "attr" : null);
+
+            if (null != type) {
+                final int id = resolveReference(ref.group(3), type, ref.group(5));
+                if (0 == id) {
+                    throw new AaptException(String.format("%d: No resource found that matches the given name '%s'", line, value));
+                }
+
+                attr.dataType = attribute ? ValueType.ATTRIBUTE : ValueType.REFERENCE;
+                attr.data = id;
+                return;
+            }
+        }
+
+        if (0 != (format.type & TYPE_ENUM) && format.symbols.containsKey(value)) {
+            attr.dataType = ValueType.INT_DEC;
+            attr.data = format.symbols.get(value);
+            return;
+        }
+
+        if (0 != (format.type & TYPE_FLAGS) && !value.isEmpty()) {
+            int flags = 0;
+            boolean matched = true;
+
+            for (final String flag : value.split("\\|")) {
+                final Integer mask = format.symbols.get(flag.trim());
+                if (null == mask) {
+                    matched = false;
+                    break;
+                }
+
+                flags |= mask;
+            }
+
+            if (matched) {
+                attr.dataType = ValueType.INT_HEX;
+                attr.data = flags;
+                return;
+            }
+        }
+
+        if (0 != (format.type & TYPE_BOOLEAN) && ("true".equals(value) || "false".equals(value))) {
+            attr.dataType = ValueType.INT_BOOLEAN;
+            attr.data = "true".equals(value) ? 0xffffffff : 0;
+            return;
+        }
+
+        if (0 != (format.type & TYPE_COLOR) && coerceColor(attr, value)) {
+            return;
+        }
+
+        if (0 != (format.type & TYPE_INTEGER) && coerceInteger(attr, value)) {
+            return;
+        }
+
+        if (0 != (format.type & (TYPE_FLOAT | TYPE_DIMENSION | TYPE_FRACTION)) && coerceNumber(attr, value, format.type)) {
+            return;
+        }
+
+        if (0 == (format.type & TYPE_STRING) && TYPE_ANY != format.type) {
+            throw new AaptException(String.format("%d: String types not allowed (at '%s' with value '%s')", line, attr.name, value));
+        }
+
+        attr.value = unescape(value, line);
+    }
+
+    private static boolean coerceColor(final Attr attr, final String value) {
+        final Matcher m = COLOR.matcher(value);
+        if (!m.matches()) {
+            return false;
+        }
+
+        final String hex = m.group(1);
+        final int v = (int) Long.parseLong(hex, 16);
+
+        switch (hex.length()) {
+        case 3:
+            attr.dataType = ValueType.INT_COLOR_RGB4;
+            attr.data = 0xff000000 | expand(v >> 8) << 16 | expand(v >> 4) << 8 | expand(v);
+            break;
+        case 4:
+            attr.dataType = ValueType.INT_COLOR_ARGB4;
+            attr.data = expand(v >> 12) << 24 | expand(v >> 8) << 16 | expand(v >> 4) << 8 | expand(v);
+            break;
+        case 6:
+            attr.dataType = ValueType.INT_COLOR_RGB8;
+            attr.data = 0xff000000 | v;
+            break;
+        default:
+            attr.dataType = ValueType.INT_COLOR_ARGB8;
+            attr.data = v;
+            break;
+        }
+
+        return true;
+    }
+
+    private static int expand(final int nibble) {
+        return (nibble & 0xf) << 4 | (nibble & 0xf);
+    }
+
+    private static boolean coerceInteger(final Attr attr, final String value) {
+        try {
+            if (value.startsWith("0x") || value.startsWith("0X")) {
+                attr.dataType = ValueType.INT_HEX;
+                attr.data = (int) Long.parseLong(value.substring(2), 16);
+            } else {
+                attr.dataType = ValueType.INT_DEC;
+                attr.data = Integer.parseInt(value);
+            }
+
+            return true;
+        } catch (final NumberFormatException e) {
+            attr.dataType = ValueType.STRING;
+            return false;
+        }
+    }
+
+    private static boolean coerceNumber(final Attr attr, final String value, final int type) {
+        final Matcher m = NUMBER.matcher(value);
+        if (!m.matches()) {
+            return false;
+        }
+
+        final float f = Float.parseFloat(m.group(1));
+        final String unit = m.group(2);
+
+        if (null == unit) {
+            if (0 == (type & TYPE_FLOAT)) {
+                return false;
+            }
+
+            attr.dataType = ValueType.FLOAT;
+            attr.data = Float.floatToIntBits(f);
+        } else if (unit.startsWith("%")) {
+            if (0 == (type & TYPE_FRACTION)) {
+                return false;
+            }
+
+            attr.dataType = ValueType.FRACTION;
+            attr.data = toComplex(f / 100, "%".equals(unit) ? TypedValue.COMPLEX_UNIT_FRACTION : TypedValue.COMPLEX_UNIT_FRACTION_PARENT);
+        } else {
+            if (0 == (type & TYPE_DIMENSION)) {
+                return false;
+            }
+
+            attr.dataType = ValueType.DIMENSION;
+            attr.data = toComplex(f, "dip".equals(unit) ? TypedValue.COMPLEX_UNIT_DIP : Arrays.asList(DIMENSION_UNITS).indexOf(unit));
+        }
+
+        return true;
+    }
+
+    /**
+     * Encodes the specified float into complex data
+     */
+    static int toComplex(final float value, final int unit) {
+        final boolean neg = value < 0;
+        final long bits = (long) ((neg ? -value : value) * (1 << 23) + .5f);
+        final int radix;
+        final int shift;
+
+        if ((bits & 0x7fffffL) == 0) {
+            radix = TypedValue.COMPLEX_RADIX_23p0;
+            shift = 23;
+        } else if ((bits & 0xffffffffff800000L) == 0) {
+            radix = TypedValue.COMPLEX_RADIX_0p23;
+            shift = 0;
+        } else if ((bits & 0xffffffff80000000L) == 0) {
+            radix = TypedValue.COMPLEX_RADIX_8p15;
+            shift = 8;
+        } else if ((bits & 0xffffff8000000000L) == 0) {
+            radix = TypedValue.COMPLEX_RADIX_16p7;
+            shift = 16;
+        } else {
+            radix = TypedValue.COMPLEX_RADIX_23p0;
+            shift = 23;
+        }
+
+        int mantissa = (int) ((bits >> shift) & TypedValue.COMPLEX_MANTISSA_MASK);
+        if (neg) {
+            mantissa = (-mantissa) & TypedValue.COMPLEX_MANTISSA_MASK;
+        }
+
+        return (radix << TypedValue.COMPLEX_RADIX_SHIFT) | (mantissa << TypedValue.COMPLEX_MANTISSA_SHIFT) | (unit << TypedValue.COMPLEX_UNIT_SHIFT);
+    }
+
+    private static String unescape(final String value, final int line) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+
+        final StringBuilder builder = new StringBuilder(value.length());
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            final char c = value.charAt(i);
+
+            if ('\\' != c || i + 1 >= n) {
+                builder.append(c);
+                continue;
+            }
+
+            final char e = value.charAt(++i);
+
+            switch (e) {
+            case 'n':
+                builder.append('\n');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'u':
+                if (i + 4 >= n || !HEX4.matcher(value.substring(i + 1, i + 5)).matches()) {
+                    throw new AaptException(String.format("%d: Bad unicode escape sequence in '%s'", line, value));
+                }
+
+                builder.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                i += 4;
+                break;
+            default:
+                builder.append(e);
+                break;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private AttributeFormat getAttributeFormat(final int attrId) {
+        AttributeFormat format = this.formats.get(attrId);
+
+        if (null == format) {
+            format = AttributeFormat.ANY;
+
+            for (final ResourceTable table : this.tables) {
+                if (table.getPackageIndex(attrId) < 0) {
+                    continue;
+                }
+
+                final ResourceTable.Entry entry = table.getEntry(attrId);
+                if (!(entry instanceof ResourceTable.MapEntry)) {
+                    continue;
+                }
+
+                final ResourceTable.MapEntry map = (ResourceTable.MapEntry) entry;
+                final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+                int type = TYPE_ANY;
+
+                for (int i = 0, n = map.getValueCount(); i < n; i++) {
+                    final ResourceTable.Map item = map.getValueAt(i);
+
+                    if (ATTR_TYPE == item.name) {
+                        type = item.value.data;
+                    } else if (table.getPackageIndex(item.name) >= 0) {
+                        final ResourceName rn = table.getResourceName(item.name);
+                        if (null != rn) {
+                            symbols.put(rn.name, item.value.data);
+                        }
+                    }
+                }
+
+                format = new AttributeFormat(type, symbols);
+                break;
+            }
+
+            this.formats.putIfAbsent(attrId, format);
+        }
+
+        return format;
+    }
+
+}
@@ -0,0 +1,518 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import android.util.TypedValue;
+
+/**
+ * The decompiler of binary XML which streams the document through
+ * {@link XmlPullParser} into a {@link StringBuilder}. The typed values are
+ * formatted as in the source, e.g. {@code 16dp}, {@code #ff00ff00} and
+ * {@code @string/app_name} if a {@link ResourceTable} is supplied to resolve
+ * the references, enums and flags.
+ *
+ * The decompiler is stateless except for the caches of resolved names, so an
+ * instance could be shared between threads.
+ *
+ * @author johnsonlee
+ *
+ */
+public class XmlDecompiler {
+
+    /**
+     * The type of attribute in the map of attribute resource
+     */
+    private static final int ATTR_TYPE = 0x01000000;
+
+    /**
+     * The attribute holds the enum values
+     */
+    private static final int TYPE_ENUM = 1 << 16;
+
+    /**
+     * The attribute holds the bit flags
+     */
+    private static final int TYPE_FLAGS = 1 << 17;
+
+    private static final String[] DIMENSION_UNITS = { "px", "dp", "sp", "pt", "in", "mm" };
+
+    private static final String[] FRACTION_UNITS = { "%", "%p" };
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final String INDENT = "    ";
+
+    /**
+     * The symbols of enum or flags attribute
+     */
+    private static final class AttributeSymbols {
+
+        static final AttributeSymbols NONE = new AttributeSymbols(0, new int[0], new String[0]);
+
+        final int type;
+        final int[] values;
+        final String[] names;
+
+        AttributeSymbols(final int type, final int[] values, final String[] names) {
+            this.type = type;
+            this.values = values;
+            this.names = names;
+        }
+    }
+
+    private final ResourceTable table;
+
+    private final String packageName;
+
+    private final ConcurrentMap<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+
+    private final ConcurrentMap<Integer, AttributeSymbols> attributes = new ConcurrentHashMap<Integer, AttributeSymbols>();
+
+    /**
+     * Default constructor, the references are formatted as resource id
+     */
+    public XmlDecompiler() {
+        this(null);
+    }
+
+    /**
+     * Instantialize with the resource table for name resolving
+     *
+     * @param table
+     *            The resource table, could be null
+     */
+    public XmlDecompiler(final ResourceTable table) {
+        this.table = table;
+        this.packageName = getPackageName(table);
+    }
+
+    /**
+     * Decompiles the specified binary XML file
+     *
+     * @param file
+     *            The binary XML file
+     * @return the text XML
+     * @throws IOException
+     *             if error occurred
+     */
+    public String decompile(final File file) throws IOException {
+        return decompile(XmlPullParser.open(file));
+    }
+
+    /**
+     * Decompiles the binary XML in the specified buffer from its current
+     * position
+     *
+     * @param buffer
+     *            The buffer of binary XML
+     * @return the text XML
+     */
+    public String decompile(final ByteBuffer buffer) {
+        return decompile(new XmlPullParser(buffer));
+    }
+
+    /**
+     * Decompiles the binary XML from the specified parser
+     *
+     * @param parser
+     *            The binary XML parser
+     * @return the text XML
+     */
+    public String decompile(final XmlPullParser parser) {
+        final StringBuilder out = new StringBuilder(4096);
+        decompile(parser, out);
+        return out.toString();
+    }
+
+    /**
+     * Decompiles the binary XML from the specified parser into the specified
+     * builder
+     *
+     * @param parser
+     *            The binary XML parser
+     * @param out
+     *            The output
+     */
+    public void decompile(final XmlPullParser parser, final StringBuilder out) {
+        int[] namespaces = new int[8];
+        int namespaceCount = 0;
+        int pendingNamespaces = 0;
+        boolean open = false;
+        boolean text = false;
+
+        out.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            switch (event) {
+            case XmlPullParser.START_NAMESPACE:
+                if (namespaceCount * 2 == namespaces.length) {
+                    final int[] grown = new int[namespaces.length * 2];
+                    System.arraycopy(namespaces, 0, grown, 0, namespaces.length);
+                    namespaces = grown;
+                }
+
+                namespaces[namespaceCount * 2] = parser.getNamespacePrefixIndex();
+                namespaces[namespaceCount * 2 + 1] = parser.getNamespaceUriIndex();
+                namespaceCount++;
+                pendingNamespaces++;
+                break;
+            case XmlPullParser.END_NAMESPACE:
+                namespaceCount--;
+                break;
+            case XmlPullParser.START_TAG: {
+                if (open) {
+                    out.append(">\n");
+                }
+
+                final int depth = parser.getDepth() - 1;
+                final int attributeCount = parser.getAttributeCount();
+                final boolean multiline = pendingNamespaces + attributeCount > 1;
+
+                indent(out, depth).append('<');
+                appendName(out, parser, parser.getNamespaceIndex(), parser.getNameIndex(), namespaces, namespaceCount);
+
+                for (int i = namespaceCount - pendingNamespaces; i < namespaceCount; i++) {
+                    separate(out, depth, multiline).append("xmlns:").append(parser.getString(namespaces[i * 2])).append("=\"");
+                    escape(out, parser.getString(namespaces[i * 2 + 1])).append('"');
+                }
+
+                for (int i = 0; i < attributeCount; i++) {
+                    separate(out, depth, multiline);
+                    appendName(out, parser, parser.getAttributeNamespaceIndex(i), parser.getAttributeNameIndex(i), namespaces, namespaceCount);
+                    out.append("=\"");
+                    appendAttributeValue(out, parser, i);
+                    out.append('"');
+                }
+
+                pendingNamespaces = 0;
+                open = true;
+                text = false;
+                break;
+            }
+            case XmlPullParser.END_TAG:
+                if (open) {
+                    out.append(" />\n");
+                } else {
+                    if (!text) {
+                        indent(out, parser.getDepth() - 1);
+                    }
+
+                    out.append("</");
+                    appendName(out, parser, parser.getNamespaceIndex(), parser.getNameIndex(), namespaces, namespaceCount);
+                    out.append(">\n");
+                }
+
+                open = false;
+                text = false;
+                break;
+            case XmlPullParser.TEXT:
+                if (open) {
+                    out.append('>');
+                    open = false;
+                }
+
+                escape(out, parser.getText());
+                text = true;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Formats the specified typed value
+     *
+     * @param attrId
+     *            The resource id of attribute which is used for enums and
+     *            flags resolving, 0 if unknown
+     * @param dataType
+     *            The value type
+     * @param data
+     *            The value data
+     * @return the formatted value
+     */
+    public String format(final int attrId, final byte dataType, final int data) {
+        return appendValue(new StringBuilder(), attrId, dataType, data).toString();
+    }
+
+    private void appendAttributeValue(final StringBuilder out, final XmlPullParser parser, final int index) {
+        final int rawValue = parser.getAttributeRawValueIndex(index);
+        final byte dataType = parser.getAttributeValueType(index);
+
+        if (ValueType.STRING == dataType || (ValueType.NULL == dataType && rawValue >= 0)) {
+            escape(out, parser.getString(rawValue >= 0 ? rawValue : parser.getAttributeValueData(index)));
+        } else {
+            appendValue(out, parser.getAttributeResourceId(index), dataType, parser.getAttributeValueData(index));
+        }
+    }
+
+    private StringBuilder appendValue(final StringBuilder out, final int attrId, final byte dataType, final int data) {
+        switch (dataType) {
+        case ValueType.NULL:
+            return out;
+        case ValueType.REFERENCE:
+        case ValueType.DYNAMIC_REFERENCE:
+            return 0 == data ? out.append("@null") : appendReference(out.append('@'), data);
+        case ValueType.ATTRIBUTE:
+        case ValueType.DYNAMIC_ATTRIBUTE:
+            return appendReference(out.append('?'), data);
+        case ValueType.FLOAT:
+            return appendFloat(out, Float.intBitsToFloat(data));
+        case ValueType.DIMENSION:
+            return appendComplex(out, dataType, data, 1, DIMENSION_UNITS);
+        case ValueType.FRACTION:
+            return appendComplex(out, dataType, data, 100, FRACTION_UNITS);
+        case ValueType.INT_BOOLEAN:
+            return out.append(0 != data ? "true" : "false");
+        case ValueType.INT_COLOR_ARGB8:
+            return appendHex(out.append('#'), data, 8);
+        case ValueType.INT_COLOR_RGB8:
+            return appendHex(out.append('#'), data, 6);
+        case ValueType.INT_COLOR_ARGB4:
+            return appendHex(appendHex(appendHex(appendHex(out.append('#'), data >>> 28, 1), data >>> 20, 1), data >>> 12, 1), data >>> 4, 1);
+        case ValueType.INT_COLOR_RGB4:
+            return appendHex(appendHex(appendHex(out.append('#'), data >>> 20, 1), data >>> 12, 1), data >>> 4, 1);
+        case ValueType.INT_DEC:
+        case ValueType.INT_HEX:
+            if (0 != attrId && appendSymbols(out, attrId, data)) {
+                return out;
+            }
+
+            return ValueType.INT_DEC == dataType ? out.append(data) : appendHex(out.append("0x"), data, 8);
+        default:
+            return appendRaw(out, dataType, data);
+        }
+    }
+
+    private static StringBuilder appendComplex(final StringBuilder out, final byte dataType, final int data, final int scale, final String[] units) {
+        final int unit = (data >> TypedValue.COMPLEX_UNIT_SHIFT) & TypedValue.COMPLEX_UNIT_MASK;
+
+        if (unit >= units.length) {
+            return appendRaw(out, dataType, data); // unknown unit
+        }
+
+        return appendFloat(out, TypedValue.complexToFloat(data) * scale).append(units[unit]);
+    }
+
+    private static StringBuilder appendRaw(final StringBuilder out, final byte dataType, final int data) {
+        return appendHex(out.append("(0x"), dataType & 0xff, 2).append(")0x").append(Integer.toHexString(data));
+    }
+
+    private StringBuilder appendReference(final StringBuilder out, final int resId) {
+        final String name = getReferenceName(resId);
+        return null != name ? out.append(name) : appendHex(out.append("0x"), resId, 8);
+    }
+
+    private boolean appendSymbols(final StringBuilder out, final int attrId, final int data) {
+        final AttributeSymbols symbols = getAttributeSymbols(attrId);
+
+        if (0 != (symbols.type & TYPE_ENUM)) {
+            for (int i = 0; i < symbols.values.length; i++) {
+                if (symbols.values[i] == data) {
+                    out.append(symbols.names[i]);
+                    return true;
+                }
+            }
+        }
+
+        if (0 != (symbols.type & TYPE_FLAGS)) {
+            final int start = out.length();
+            int remaining = data;
+
+            for (int i = 0; i < symbols.values.length && 0 != remaining; i++) {
+                final int mask = symbols.values[i];
+                if (0 != mask && (data & mask) == mask && 0 != (remaining & mask)) {
+                    if (out.length() > start) {
+                        out.append('|');
+                    }
+
+                    out.append(symbols.names[i]);
+                    remaining &= ~mask;
+                }
+            }
+
+            if (0 == remaining && out.length() > start) {
+                return true;
+            }
+
+            out.setLength(start);
+        }
+
+        return false;
+    }
+
+    private String getReferenceName(final int resId) {
+        if (null == this.table) {
+            return null;
+        }
+
+        String name = this.names.get(resId);
+
+        if (null == name) {
+            final ResourceName rn = getResourceName(resId);
+
+            if (null == rn) {
+                name = "";
+            } else if (rn.packageName.equals(this.packageName)) {
+                name = rn.typeName + "/" + rn.name;
+            } else {
+                name = rn.packageName + ":" + rn.typeName + "/" + rn.name;
+            }
+
+            this.names.putIfAbsent(resId, name);
+        }
+
+        return name.isEmpty() ? null : name;
+    }
+
+    private AttributeSymbols getAttributeSymbols(final int attrId) {
+        if (null == this.table) {
+            return AttributeSymbols.NONE;
+        }
+
+        AttributeSymbols symbols = this.attributes.get(attrId);
+
+        if (null == symbols) {
+            symbols = AttributeSymbols.NONE;
+
+            final ResourceTable.Entry entry = this.table.getEntry(attrId);
+
+            if (entry instanceof ResourceTable.MapEntry) {
+                final ResourceTable.MapEntry map = (ResourceTable.MapEntry) entry;
+                final int n = map.getValueCount();
+                final int[] values = new int[n];
+                final String[] names = new String[n];
+
+                int type = 0;
+                int count = 0;
+
+                for (int i = 0; i < n; i++) {
+                    final ResourceTable.Map item = map.getValueAt(i);
+
+                    if (ATTR_TYPE == item.name) {
+                        type = item.value.data;
+                    } else {
+                        final ResourceName rn = getResourceName(item.name);
+                        if (null != rn) {
+                            values[count] = item.value.data;
+                            names[count] = rn.name;
+                            count++;
+                        }
+                    }
+                }
+
+                if (count > 0) {
+                    final int[] v = new int[count];
+                    final String[] s = new String[count];
+                    System.arraycopy(values, 0, v, 0, count);
+                    System.arraycopy(names, 0, s, 0, count);
+                    symbols = new AttributeSymbols(type, v, s);
+                }
+            }
+
+            this.attributes.putIfAbsent(attrId, symbols);
+        }
+
+        return symbols;
+    }
+
+    private ResourceName getResourceName(final int resId) {
+        if (this.table.getPackageIndex(resId) < 0) {
+            return null;
+        }
+
+        try {
+            return this.table.getResourceName(resId);
+        } catch (final AaptException e) {
+            return null;
+        } catch (final IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static String getPackageName(final ResourceTable table) {
+        if (null == table || table.getPackageGroups().isEmpty()) {
+            return null;
+        }
+
+        return table.getPackageGroups().get(0).getName();
+    }
+
+    private static void appendName(final StringBuilder out, final XmlPullParser parser, final int ns, final int name, final int[] namespaces, final int namespaceCount) {
+        if (ns >= 0) {
+            for (int i = namespaceCount - 1; i >= 0; i--) {
+                if (namespaces[i * 2 + 1] == ns) {
+                    out.append(parser.getString(namespaces[i * 2])).append(':');
+                    break;
+                }
+            }
+        }
+
+        out.append(parser.getString(name));
+    }
+
+    private static StringBuilder separate(final StringBuilder out, final int depth, final boolean multiline) {
+        return multiline ? indent(out.append('\n'), depth + 1) : out.append(' ');
+    }
+
+    private static StringBuilder indent(final StringBuilder out, final int depth) {
+        for (int i = 0; i < depth; i++) {
+            out.append(INDENT);
+        }
+
+        return out;
+    }
+
+    private static StringBuilder appendFloat(final StringBuilder out, final float value) {
+        if (value == (int) value) {
+            return out.append((int) value);
+        }
+
+        return out.append(value);
+    }
+
+    private static StringBuilder appendHex(final StringBuilder out, final int value, final int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(value >>> shift) & 0xf]);
+        }
+
+        return out;
+    }
+
+    private static StringBuilder escape(final StringBuilder out, final String s) {
+        if (null == s) {
+            return out;
+        }
+
+        for (int i = 0, n = s.length(); i < n; i++) {
+            final char c = s.charAt(i);
+
+            switch (c) {
+            case '&':
+                out.append("&amp;");
+                break;
+            case '<':
+                out.append("&lt;");
+                break;
+            case '>':
+                out.append("&gt;");
+                break;
+            case '"':
+                out.append("&quot;");
+                break;
+            case '\n':
+                out.append("&#10;");
+                break;
+            default:
+                out.append(c);
+                break;
+            }
+        }
+
+        return out;
+    }
+
+}
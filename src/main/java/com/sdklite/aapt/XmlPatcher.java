@@ -0,0 +1,361 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-place patcher of binary XML, all of the edits are applied in a single
+ * streaming pass by overwriting the typed value of attributes, e.g.
+ *
+ * <pre>
+ * final List&lt;XmlPatcher.Edit&gt; pending = new XmlPatcher()
+ *         .set("manifest/application", "debuggable", ValueType.INT_BOOLEAN, 0xffffffff)
+ *         .set("manifest", "versionCode", ValueType.INT_DEC, 2)
+ *         .set("manifest/application/*", "exported", ValueType.INT_BOOLEAN, 0)
+ *         .apply(new File("AndroidManifest.xml"));
+ * </pre>
+ *
+ * The element path is the names of elements from the root element separated
+ * by {@code /}, and {@code *} matches any element. The edits which could not
+ * be applied to any of the matched elements without changing the size of
+ * document, e.g. the attribute or the string value does not exist, are
+ * returned to the caller for a full rewrite.
+ *
+ * @author johnsonlee
+ *
+ */
+public class XmlPatcher {
+
+    /**
+     * The edit of attribute
+     *
+     * @author johnsonlee
+     *
+     */
+    public static final class Edit {
+
+        final String[] path;
+        final String name;
+        final int id;
+        final byte dataType;
+        final int data;
+        final String string;
+
+        Edit(final String path, final String name, final int id, final byte dataType, final int data, final String string) {
+            this.path = path.split("/");
+            this.name = name;
+            this.id = id;
+            this.dataType = dataType;
+            this.data = data;
+            this.string = string;
+        }
+
+        /**
+         * Returns the element path
+         *
+         * @return the element path
+         */
+        public String getPath() {
+            final StringBuilder builder = new StringBuilder();
+
+            for (int i = 0; i < this.path.length; i++) {
+                if (i > 0) {
+                    builder.append('/');
+                }
+                builder.append(this.path[i]);
+            }
+
+            return builder.toString();
+        }
+
+        /**
+         * Returns the attribute name
+         *
+         * @return the attribute name or null if the attribute is specified by
+         *         resource id
+         */
+        public String getAttributeName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the resource id of attribute
+         *
+         * @return the resource id or 0 if the attribute is specified by name
+         */
+        public int getAttributeId() {
+            return this.id;
+        }
+
+        /**
+         * Returns the type of the new value
+         *
+         * @return the value type
+         * @see ValueType
+         */
+        public byte getDataType() {
+            return this.dataType;
+        }
+
+        /**
+         * Returns the data of the new value
+         *
+         * @return the data of the new value, it's meaningless for string value
+         */
+        public int getData() {
+            return this.data;
+        }
+
+        /**
+         * Returns the new string value
+         *
+         * @return the new string value or null if the value is not a string
+         */
+        public String getString() {
+            return this.string;
+        }
+
+        boolean matches(final List<String> names) {
+            if (names.size() != this.path.length) {
+                return false;
+            }
+
+            for (int i = 0; i < this.path.length; i++) {
+                if (!"*".equals(this.path[i]) && !this.path[i].equals(names.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            final String attr = null != this.name ? this.name : String.format("0x%08x", this.id);
+            final String value = null != this.string ? "\"" + this.string + "\"" : String.format("(0x%02x) 0x%08x", this.dataType, this.data);
+            return getPath() + "@" + attr + "=" + value;
+        }
+    }
+
+    /**
+     * The offset of raw value in attribute
+     */
+    private static final int RAW_VALUE_OFFSET = 8;
+
+    /**
+     * The offset of typed value in attribute
+     */
+    private static final int TYPED_VALUE_OFFSET = 12;
+
+    private final List<Edit> edits = new ArrayList<Edit>();
+
+    /**
+     * Default constructor
+     */
+    public XmlPatcher() {
+    }
+
+    /**
+     * Sets the typed value of the attribute with the specified name
+     *
+     * @param path
+     *            The element path, e.g. {@code manifest/application}
+     * @param name
+     *            The attribute name, e.g. {@code debuggable}
+     * @param dataType
+     *            The value type
+     * @param data
+     *            The value data
+     * @return this patcher
+     * @see ValueType
+     */
+    public XmlPatcher set(final String path, final String name, final byte dataType, final int data) {
+        this.edits.add(new Edit(path, name, 0, dataType, data, null));
+        return this;
+    }
+
+    /**
+     * Sets the typed value of the attribute with the specified resource id
+     *
+     * @param path
+     *            The element path, e.g. {@code manifest/application}
+     * @param id
+     *            The resource id of attribute, e.g. {@code 0x0101000f}
+     * @param dataType
+     *            The value type
+     * @param data
+     *            The value data
+     * @return this patcher
+     * @see ValueType
+     */
+    public XmlPatcher set(final String path, final int id, final byte dataType, final int data) {
+        this.edits.add(new Edit(path, null, id, dataType, data, null));
+        return this;
+    }
+
+    /**
+     * Sets the string value of the attribute with the specified name, the
+     * string must exist in the string pool
+     *
+     * @param path
+     *            The element path
+     * @param name
+     *            The attribute name
+     * @param value
+     *            The string value
+     * @return this patcher
+     */
+    public XmlPatcher setString(final String path, final String name, final String value) {
+        this.edits.add(new Edit(path, name, 0, ValueType.STRING, -1, value));
+        return this;
+    }
+
+    /**
+     * Sets the string value of the attribute with the specified resource id,
+     * the string must exist in the string pool
+     *
+     * @param path
+     *            The element path
+     * @param id
+     *            The resource id of attribute
+     * @param value
+     *            The string value
+     * @return this patcher
+     */
+    public XmlPatcher setString(final String path, final int id, final String value) {
+        this.edits.add(new Edit(path, null, id, ValueType.STRING, -1, value));
+        return this;
+    }
+
+    /**
+     * Returns the edits of this patcher
+     *
+     * @return the edits
+     */
+    public List<Edit> getEdits() {
+        return Collections.unmodifiableList(this.edits);
+    }
+
+    /**
+     * Applies all of the edits to the specified binary XML file
+     *
+     * @param file
+     *            The binary XML file
+     * @return the edits which need a full rewrite
+     * @throws IOException
+     *             if error occurred
+     */
+    public List<Edit> apply(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            final List<Edit> pending = apply(buffer);
+            buffer.force();
+            return pending;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Applies all of the edits to the binary XML in the specified buffer from
+     * its current position
+     *
+     * @param buffer
+     *            The buffer of binary XML
+     * @return the edits which need a full rewrite
+     */
+    public List<Edit> apply(final ByteBuffer buffer) {
+        final ByteBuffer out = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int start = buffer.position();
+        final XmlPullParser parser = new XmlPullParser(buffer);
+        final List<String> names = new ArrayList<String>();
+        final int n = this.edits.size();
+        final boolean[] applied = new boolean[n];
+
+        Map<String, Integer> strings = null;
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (XmlPullParser.START_TAG != event) {
+                continue;
+            }
+
+            if (null == strings) {
+                strings = indexStrings(parser);
+            }
+
+            while (names.size() >= parser.getDepth()) {
+                names.remove(names.size() - 1);
+            }
+            names.add(parser.getName());
+
+            for (int i = 0; i < n; i++) {
+                final Edit edit = this.edits.get(i);
+                if (!edit.matches(names)) {
+                    continue;
+                }
+
+                final int index = null != edit.name ? parser.getAttributeIndex(edit.name) : parser.getAttributeIndex(edit.id);
+                final Integer string = null != edit.string ? strings.get(edit.string) : null;
+
+                if (index < 0 || (null != edit.string && null == string)) {
+                    continue;
+                }
+
+                final int p = start + parser.getAttributeOffset(index);
+                final int data = null != string ? string : edit.data;
+
+                out.putInt(p + RAW_VALUE_OFFSET, null != string ? data : -1);
+                out.put(p + TYPED_VALUE_OFFSET + 3, edit.dataType);
+                out.putInt(p + TYPED_VALUE_OFFSET + 4, data);
+                applied[i] = true;
+            }
+        }
+
+        final List<Edit> pending = new ArrayList<Edit>();
+
+        for (int i = 0; i < n; i++) {
+            if (!applied[i]) {
+                pending.add(this.edits.get(i));
+            }
+        }
+
+        return pending;
+    }
+
+    private Map<String, Integer> indexStrings(final XmlPullParser parser) {
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        for (final Edit edit : this.edits) {
+            if (null != edit.string) {
+                strings.put(edit.string, null);
+            }
+        }
+
+        if (strings.isEmpty()) {
+            return strings;
+        }
+
+        for (int i = 0, n = parser.getStringCount(); i < n; i++) {
+            final String s = parser.getString(i);
+            if (strings.containsKey(s) && null == strings.get(s)) {
+                strings.put(s, i);
+            }
+        }
+
+        return strings;
+    }
+
+}
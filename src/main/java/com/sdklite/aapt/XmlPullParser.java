@@ -0,0 +1,776 @@
+package com.sdklite.aapt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import android.util.TypedValue;
+
+/**
+ * The streaming pull parser of binary XML which reads directly from the
+ * underlying buffer without building the {@link Xml} tree, the event types are
+ * the same as the chunk types of XML nodes:
+ *
+ * <pre>
+ * final XmlPullParser parser = XmlPullParser.open(new File("AndroidManifest.xml"));
+ *
+ * for (int event; (event = parser.next()) != XmlPullParser.END_DOCUMENT;) {
+ *     if (event == XmlPullParser.START_TAG) {
+ *         System.out.println(parser.getName());
+ *     }
+ * }
+ * </pre>
+ *
+ * Strings are decoded on demand and cached by index, the attributes of the
+ * current element are accessed by index without any allocation.
+ *
+ * @author johnsonlee
+ *
+ */
+public final class XmlPullParser {
+
+    /**
+     * Before the first call of {@link #next()}
+     */
+    public static final int START_DOCUMENT = 0;
+
+    /**
+     * The end of document
+     */
+    public static final int END_DOCUMENT = 1;
+
+    /**
+     * The namespace start
+     */
+    public static final int START_NAMESPACE = ChunkType.XML_START_NAMESPACE;
+
+    /**
+     * The namespace end
+     */
+    public static final int END_NAMESPACE = ChunkType.XML_END_NAMESPACE;
+
+    /**
+     * The element start
+     */
+    public static final int START_TAG = ChunkType.XML_START_ELEMENT;
+
+    /**
+     * The element end
+     */
+    public static final int END_TAG = ChunkType.XML_END_ELEMENT;
+
+    /**
+     * The CDATA section
+     */
+    public static final int TEXT = ChunkType.XML_CDATA;
+
+    /**
+     * The size of XML attribute without {@link ResourceValue}
+     */
+    private static final int ATTRIBUTE_VALUE_OFFSET = 12;
+
+    /**
+     * Open the specified binary XML file with memory mapping
+     *
+     * @param file
+     *            The binary XML file
+     * @return the pull parser
+     * @throws IOException
+     *             if error occurred
+     */
+    public static XmlPullParser open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            return new XmlPullParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int start;
+
+    private final int end;
+
+    private int position;
+
+    private int chunk = -1;
+
+    private int event = START_DOCUMENT;
+
+    private int depth;
+
+    private int attributes = -1;
+
+    private int attributeSize;
+
+    private int attributeCount;
+
+    private int poolOffset = -1;
+
+    private int poolFlags;
+
+    private int stringCount;
+
+    private int stringsStart;
+
+    private String[] strings;
+
+    private int resourceMapOffset = -1;
+
+    private int resourceMapHeaderSize;
+
+    private int resourceIdCount;
+
+    /**
+     * Instantialize with the buffer of binary XML from its current position
+     *
+     * @param buffer
+     *            The buffer of binary XML
+     */
+    public XmlPullParser(final ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.start = buffer.position();
+
+        if (buffer.remaining() < ChunkHeader.MIN_HEADER_SIZE || ChunkType.XML != this.buffer.getShort(this.start)) {
+            throw new AaptException(String.format("Expect chunk type 0x%04x", ChunkType.XML));
+        }
+
+        final int size = this.buffer.getInt(this.start + 4);
+        if (size < ChunkHeader.MIN_HEADER_SIZE || size > buffer.remaining()) {
+            throw new AaptException(String.format("Invalid XML size %d", size));
+        }
+
+        this.end = this.start + size;
+        this.position = this.start + (this.buffer.getShort(this.start + 2) & 0xffff);
+    }
+
+    /**
+     * Advance to the next event, the string pool and resource map are
+     * consumed silently
+     *
+     * @return the event type
+     */
+    public int next() {
+        if (END_TAG == this.event) {
+            this.depth--;
+        }
+
+        this.attributes = -1;
+        this.attributeCount = 0;
+
+        while (this.position + ChunkHeader.MIN_HEADER_SIZE <= this.end) {
+            final int p = this.position;
+            final short type = this.buffer.getShort(p);
+            final int headerSize = this.buffer.getShort(p + 2) & 0xffff;
+            final int size = this.buffer.getInt(p + 4);
+
+            if (size < ChunkHeader.MIN_HEADER_SIZE || p + size > this.end) {
+                throw new AaptException(String.format("Invalid chunk size %d at offset %d", size, p - this.start));
+            }
+
+            this.position = p + size;
+            this.chunk = p;
+
+            switch (type) {
+            case ChunkType.STRING_POOL:
+                this.poolOffset = p;
+                this.stringCount = this.buffer.getInt(p + 8);
+                this.poolFlags = this.buffer.getInt(p + 16);
+                this.stringsStart = p + this.buffer.getInt(p + 20);
+                this.strings = new String[this.stringCount];
+                continue;
+            case ChunkType.XML_RESOURCE_MAP:
+                this.resourceMapOffset = p + headerSize;
+                this.resourceMapHeaderSize = headerSize;
+                this.resourceIdCount = (size - headerSize) / 4;
+                continue;
+            case ChunkType.XML_START_ELEMENT:
+                this.depth++;
+                this.attributeSize = this.buffer.getShort(p + headerSize + 10) & 0xffff;
+                this.attributeCount = this.buffer.getShort(p + headerSize + 12) & 0xffff;
+                this.attributes = p + headerSize + (this.buffer.getShort(p + headerSize + 8) & 0xffff);
+                return this.event = START_TAG;
+            case ChunkType.XML_END_ELEMENT:
+            case ChunkType.XML_START_NAMESPACE:
+            case ChunkType.XML_END_NAMESPACE:
+            case ChunkType.XML_CDATA:
+                return this.event = type;
+            default:
+                throw new AaptException(String.format("Unexpected chunk type 0x%04x at offset %d", type, p - this.start));
+            }
+        }
+
+        this.chunk = -1;
+        return this.event = END_DOCUMENT;
+    }
+
+    /**
+     * Returns the current event type
+     *
+     * @return the current event type
+     */
+    public int getEventType() {
+        return this.event;
+    }
+
+    /**
+     * Returns the depth of the current element, the root element is 1
+     *
+     * @return the depth of the current element
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the offset of the current chunk relative to the document
+     *
+     * @return the offset of the current chunk or -1 if there is no current
+     *         chunk
+     */
+    public int getChunkOffset() {
+        return this.chunk < 0 ? -1 : this.chunk - this.start;
+    }
+
+    /**
+     * Returns the header size of the current chunk
+     *
+     * @return the header size of the current chunk
+     */
+    public short getChunkHeaderSize() {
+        return this.buffer.getShort(current() + 2);
+    }
+
+    /**
+     * Returns the size of the current chunk
+     *
+     * @return the size of the current chunk
+     */
+    public int getChunkSize() {
+        return this.buffer.getInt(current() + 4);
+    }
+
+    /**
+     * Returns the line number of the current node
+     *
+     * @return the line number of the current node
+     */
+    public int getLineNumber() {
+        return this.buffer.getInt(current() + 8);
+    }
+
+    /**
+     * Returns the string index of comment of the current node
+     *
+     * @return the string index of comment or -1 if no comment
+     */
+    public int getCommentIndex() {
+        return this.buffer.getInt(current() + 12);
+    }
+
+    /**
+     * Returns the string index of namespace URI of the current element
+     *
+     * @return the string index of namespace URI or -1 if not present
+     */
+    public int getNamespaceIndex() {
+        expect(START_TAG, END_TAG);
+        return this.buffer.getInt(extension());
+    }
+
+    /**
+     * Returns the string index of name of the current element
+     *
+     * @return the string index of name
+     */
+    public int getNameIndex() {
+        expect(START_TAG, END_TAG);
+        return this.buffer.getInt(extension() + 4);
+    }
+
+    /**
+     * Returns the name of the current element
+     *
+     * @return the name of the current element
+     */
+    public String getName() {
+        return getString(getNameIndex());
+    }
+
+    /**
+     * Returns the string index of prefix of the current namespace
+     *
+     * @return the string index of prefix
+     */
+    public int getNamespacePrefixIndex() {
+        expect(START_NAMESPACE, END_NAMESPACE);
+        return this.buffer.getInt(extension());
+    }
+
+    /**
+     * Returns the string index of URI of the current namespace
+     *
+     * @return the string index of URI
+     */
+    public int getNamespaceUriIndex() {
+        expect(START_NAMESPACE, END_NAMESPACE);
+        return this.buffer.getInt(extension() + 4);
+    }
+
+    /**
+     * Returns the string index of the current CDATA section
+     *
+     * @return the string index of text
+     */
+    public int getTextIndex() {
+        expect(TEXT);
+        return this.buffer.getInt(extension());
+    }
+
+    /**
+     * Returns the text of the current CDATA section
+     *
+     * @return the text
+     */
+    public String getText() {
+        return getString(getTextIndex());
+    }
+
+    /**
+     * Reads the typed value of the current CDATA section
+     *
+     * @param value
+     *            The value to be filled
+     * @return the specified value
+     */
+    public ResourceValue getTextTypedValue(final ResourceValue value) {
+        expect(TEXT);
+        return readResourceValue(extension() + 4, value);
+    }
+
+    /**
+     * Returns the start offset of attributes relative to the element extension
+     *
+     * @return the start offset of attributes
+     */
+    public short getAttributeStart() {
+        expect(START_TAG);
+        return this.buffer.getShort(extension() + 8);
+    }
+
+    /**
+     * Returns the size of each attribute
+     *
+     * @return the size of each attribute
+     */
+    public short getAttributeSize() {
+        expect(START_TAG);
+        return (short) this.attributeSize;
+    }
+
+    /**
+     * Returns the 1-based index of {@code id} attribute
+     *
+     * @return the 1-based index of {@code id} attribute or 0 if not present
+     */
+    public short getIdIndex() {
+        expect(START_TAG);
+        return this.buffer.getShort(extension() + 14);
+    }
+
+    /**
+     * Returns the 1-based index of {@code class} attribute
+     *
+     * @return the 1-based index of {@code class} attribute or 0 if not present
+     */
+    public short getClassIndex() {
+        expect(START_TAG);
+        return this.buffer.getShort(extension() + 16);
+    }
+
+    /**
+     * Returns the 1-based index of {@code style} attribute
+     *
+     * @return the 1-based index of {@code style} attribute or 0 if not present
+     */
+    public short getStyleIndex() {
+        expect(START_TAG);
+        return this.buffer.getShort(extension() + 18);
+    }
+
+    /**
+     * Returns the attribute count of the current element
+     *
+     * @return the attribute count or 0 if the current event is not
+     *         {@link #START_TAG}
+     */
+    public int getAttributeCount() {
+        return this.attributeCount;
+    }
+
+    /**
+     * Returns the offset of the specified attribute relative to the document
+     *
+     * @param index
+     *            The index of attribute
+     * @return the offset of attribute
+     */
+    public int getAttributeOffset(final int index) {
+        return attribute(index) - this.start;
+    }
+
+    /**
+     * Returns the string index of namespace URI of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the string index of namespace URI or -1 if not present
+     */
+    public int getAttributeNamespaceIndex(final int index) {
+        return this.buffer.getInt(attribute(index));
+    }
+
+    /**
+     * Returns the string index of name of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the string index of name
+     */
+    public int getAttributeNameIndex(final int index) {
+        return this.buffer.getInt(attribute(index) + 4);
+    }
+
+    /**
+     * Returns the name of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the name of attribute
+     */
+    public String getAttributeName(final int index) {
+        return getString(getAttributeNameIndex(index));
+    }
+
+    /**
+     * Returns the resource id of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the resource id or 0 if the name is not mapped
+     */
+    public int getAttributeResourceId(final int index) {
+        return getResourceId(getAttributeNameIndex(index));
+    }
+
+    /**
+     * Returns the string index of raw value of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the string index of raw value or -1 if not present
+     */
+    public int getAttributeRawValueIndex(final int index) {
+        return this.buffer.getInt(attribute(index) + 8);
+    }
+
+    /**
+     * Returns the value type of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the value type
+     * @see ValueType
+     */
+    public byte getAttributeValueType(final int index) {
+        return this.buffer.get(attribute(index) + ATTRIBUTE_VALUE_OFFSET + 3);
+    }
+
+    /**
+     * Returns the value data of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the value data
+     */
+    public int getAttributeValueData(final int index) {
+        return this.buffer.getInt(attribute(index) + ATTRIBUTE_VALUE_OFFSET + 4);
+    }
+
+    /**
+     * Returns the string value of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @return the raw value if present, otherwise the string coerced from
+     *         typed value
+     */
+    public String getAttributeValue(final int index) {
+        final int rawValue = getAttributeRawValueIndex(index);
+        if (rawValue >= 0) {
+            return getString(rawValue);
+        }
+
+        final byte type = getAttributeValueType(index);
+        final int data = getAttributeValueData(index);
+        return ValueType.STRING == type ? getString(data) : TypedValue.coerceToString(type, data);
+    }
+
+    /**
+     * Reads the typed value of the specified attribute
+     *
+     * @param index
+     *            The index of attribute
+     * @param value
+     *            The value to be filled
+     * @return the specified value
+     */
+    public ResourceValue getAttributeTypedValue(final int index, final ResourceValue value) {
+        return readResourceValue(attribute(index) + ATTRIBUTE_VALUE_OFFSET, value);
+    }
+
+    /**
+     * Returns the index of attribute with the specified resource id
+     *
+     * @param resId
+     *            The resource id of attribute
+     * @return the index of attribute or -1 if not found
+     */
+    public int getAttributeIndex(final int resId) {
+        for (int i = 0; i < this.attributeCount; i++) {
+            if (getAttributeResourceId(i) == resId) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of attribute with the specified name
+     *
+     * @param name
+     *            The name of attribute
+     * @return the index of attribute or -1 if not found
+     */
+    public int getAttributeIndex(final String name) {
+        for (int i = 0; i < this.attributeCount; i++) {
+            if (name.equals(getAttributeName(i))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the offset of string pool relative to the document
+     *
+     * @return the offset of string pool or -1 if the string pool has not been
+     *         reached
+     */
+    public int getStringPoolOffset() {
+        return this.poolOffset < 0 ? -1 : this.poolOffset - this.start;
+    }
+
+    /**
+     * Returns the number of strings in the string pool
+     *
+     * @return the number of strings
+     */
+    public int getStringCount() {
+        return this.stringCount;
+    }
+
+    /**
+     * Returns the string at the specified index of string pool
+     *
+     * @param index
+     *            The index of string
+     * @return the string or null if the index is negative
+     */
+    public String getString(final int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        if (index >= this.stringCount) {
+            throw new AaptException(String.format("String index %d out of bounds", index));
+        }
+
+        String s = this.strings[index];
+        if (null == s) {
+            s = this.strings[index] = decodeString(this.stringsStart + this.buffer.getInt(this.poolOffset + this.buffer.getShort(this.poolOffset + 2) + index * 4));
+        }
+
+        return s;
+    }
+
+    /**
+     * Returns the string pool decoded from the buffer, the strings that have
+     * been decoded by {@link #getString(int)} are reused
+     *
+     * @return the string pool or null if the string pool has not been reached
+     */
+    public StringPool getStringPool() {
+        if (this.poolOffset < 0) {
+            return null;
+        }
+
+        final int p = this.poolOffset;
+        final int offsets = p + (this.buffer.getShort(p + 2) & 0xffff);
+        final int styleCount = this.buffer.getInt(p + 12);
+        final StringPool pool = new StringPool();
+
+        pool.headerSize = this.buffer.getShort(p + 2);
+        pool.size = this.buffer.getInt(p + 4);
+        pool.flags = this.poolFlags;
+        pool.stringsStart = this.buffer.getInt(p + 20);
+        pool.stylesStart = this.buffer.getInt(p + 24);
+
+        for (int i = 0; i < this.stringCount; i++) {
+            pool.strings.add(new IndexedEntry<String>(this.buffer.getInt(offsets + i * 4), getString(i)));
+        }
+
+        for (int i = 0; i < styleCount; i++) {
+            final int index = this.buffer.getInt(offsets + (this.stringCount + i) * 4);
+            final StringPool.Style style = new StringPool.Style();
+
+            for (int q = p + pool.stylesStart + index; StringPool.Span.END != this.buffer.getInt(q); q += 12) {
+                final StringPool.Span span = new StringPool.Span();
+                span.name = this.buffer.getInt(q);
+                span.firstChar = this.buffer.getInt(q + 4);
+                span.lastChar = this.buffer.getInt(q + 8);
+                style.add(span);
+            }
+
+            pool.styles.add(new IndexedEntry<StringPool.Style>(index, style));
+        }
+
+        return pool;
+    }
+
+    /**
+     * Returns the offset of resource ids in the resource map relative to the
+     * document
+     *
+     * @return the offset of resource ids or -1 if the resource map has not
+     *         been reached
+     */
+    public int getResourceMapOffset() {
+        return this.resourceMapOffset < 0 ? -1 : this.resourceMapOffset - this.start;
+    }
+
+    /**
+     * Returns the header size of the resource map
+     *
+     * @return the header size or 0 if the resource map has not been reached
+     */
+    public int getResourceMapHeaderSize() {
+        return this.resourceMapHeaderSize;
+    }
+
+    /**
+     * Returns the number of resource ids in the resource map
+     *
+     * @return the number of resource ids
+     */
+    public int getResourceIdCount() {
+        return this.resourceIdCount;
+    }
+
+    /**
+     * Returns the resource id of the specified string
+     *
+     * @param index
+     *            The index of string
+     * @return the resource id or 0 if the string is not mapped
+     */
+    public int getResourceId(final int index) {
+        return index >= 0 && index < this.resourceIdCount ? this.buffer.getInt(this.resourceMapOffset + index * 4) : 0;
+    }
+
+    private String decodeString(final int offset) {
+        int p = offset;
+
+        if (0 != (this.poolFlags & StringPool.FLAG_UTF8)) {
+            if ((this.buffer.get(p++) & 0x80) != 0) {
+                p++;
+            }
+
+            int nbytes = this.buffer.get(p++) & 0xff;
+            if ((nbytes & 0x80) != 0) {
+                nbytes = ((nbytes & 0x7f) << 8) | (this.buffer.get(p++) & 0xff);
+            }
+
+            final byte[] data = new byte[nbytes];
+            for (int i = 0; i < nbytes; i++) {
+                data[i] = this.buffer.get(p + i);
+            }
+
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        int nchars = this.buffer.getShort(p) & 0xffff;
+        p += 2;
+
+        if ((nchars & 0x8000) != 0) {
+            nchars = ((nchars & 0x7fff) << 16) | (this.buffer.getShort(p) & 0xffff);
+            p += 2;
+        }
+
+        final char[] chars = new char[nchars];
+        for (int i = 0; i < nchars; i++) {
+            chars[i] = this.buffer.getChar(p + i * 2);
+        }
+
+        return new String(chars);
+    }
+
+    private ResourceValue readResourceValue(final int offset, final ResourceValue value) {
+        value.size = this.buffer.getShort(offset);
+        value.res0 = this.buffer.get(offset + 2);
+        value.dataType = this.buffer.get(offset + 3);
+        value.data = this.buffer.getInt(offset + 4);
+        return value;
+    }
+
+    private int current() {
+        if (this.chunk < 0) {
+            throw new IllegalStateException("No current node");
+        }
+
+        return this.chunk;
+    }
+
+    private int extension() {
+        return this.chunk + (this.buffer.getShort(this.chunk + 2) & 0xffff);
+    }
+
+    private int attribute(final int index) {
+        if (index < 0 || index >= this.attributeCount) {
+            throw new IndexOutOfBoundsException(String.format("Attribute index %d out of bounds %d", index, this.attributeCount));
+        }
+
+        return this.attributes + index * this.attributeSize;
+    }
+
+    private void expect(final int event) {
+        expect(event, event);
+    }
+
+    private void expect(final int event1, final int event2) {
+        if (this.event != event1 && this.event != event2) {
+            throw new IllegalStateException(String.format("Unexpected event 0x%04x", this.event));
+        }
+    }
+
+}
@@ -75,27 +75,27 @@ public class XmlVisitor extends SimpleVisitor {
             final Xml.Namespace ns = getNamespace();
             final Xml.Element start = (Xml.Element) chunk;
 
-            this.out.printf(getIndent(this.depth)).printf("<").printf(start.getName());
+            this.out.printf("%s<%s", getIndent(this.depth), start.getName());
 
             if (start == chunk.getDocument().getDocumentElement()) {
-                this.out.printf(" ").print(ns);
+                this.out.printf(" %s", ns);
             }
 
             final Iterator<Xml.Attribute> i = start.attributes();
             if (i.hasNext()) {
                 final Xml.Attribute first = i.next();
                 if (i.hasNext()) {
-                    this.out.printf("\n").printf(getIndent(this.depth + 1));
+                    this.out.printf("\n%s", getIndent(this.depth + 1));
                 } else {
                     this.out.printf(" ");
                 }
 
-                this.out.printf(ns.getPrefix()).printf(":").printf(first.getName()).printf("=\"").printf("%s", first.getValue()).printf("\"");
+                this.out.printf("%s:%s=\"%s\"", ns.getPrefix(), first.getName(), first.getValue());
 
                 while (i.hasNext()) {
                     final Xml.Attribute attr = i.next();
                     this.out.println();
-                    this.out.printf(getIndent(this.depth + 1)).printf(ns.getPrefix()).printf(":").printf(attr.getName()).printf("=\"").printf("%s", attr.getValue()).printf("\"");
+                    this.out.printf("%s%s:%s=\"%s\"", getIndent(this.depth + 1), ns.getPrefix(), attr.getName(), attr.getValue());
                 }
             }
 
@@ -108,7 +108,7 @@ public class XmlVisitor extends SimpleVisitor {
                 this.out.println(" />");
                 this.element = null;
             } else {
-                this.out.printf(getIndent(this.depth)).printf("</").printf(end.getName()).println(">");
+                this.out.printf("%s</%s>", getIndent(this.depth), end.getName()).println();
             }
 
             this.depth--;
@@ -1,8 +1,14 @@
 package com.sdklite.aapt;
 
+import static com.sdklite.aapt.ApkFixture.R_TXT;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -15,4 +21,38 @@ public class AaptTest {
         assertTrue(Aapt.setApplicationDebuggable("./src/test/data/AndroidManifest.xml"));
     }
 
+    @Test
+    public void deleteResourcesShouldBeOk() throws IOException {
+        final File dir = Files.createTempDirectory("unzipped").toFile();
+        final File res = new File(dir, "res");
+        final Set<String> expected = new HashSet<String>();
+
+        // the files of symbol entries in the type folders of symbols
+        expected.add(touch(res, "layout", "activity_main.xml"));
+        expected.add(touch(res, "drawable-hdpi-v4", "ic_launcher.png"));
+        expected.add(touch(res, "drawable-hdpi-v4", "ic_launcher.9.png"));
+        expected.add(touch(res, "anim", "abc_fade_in.xml"));
+        // all of the files in the type folders without symbols
+        expected.add(touch(res, "values", "strings.xml"));
+        expected.add(touch(res, "mipmap-xxhdpi", "unknown.png"));
+        // the files without symbol entries in the type folders of symbols
+        touch(res, "layout", "unused.xml");
+        touch(res, "animator", "abc_fade.xml");
+        touch(res, "drawable", "ic_launcher_background.xml");
+
+        final Set<String> deleted = new Aapt(dir, "25.0.0").deleteResources(new SymbolParser().parse(R_TXT));
+
+        assertEquals(expected, deleted);
+        assertEquals(0, res.list().length);
+        assertTrue(res.delete());
+        assertTrue(dir.delete());
+    }
+
+    private static String touch(final File res, final String type, final String name) throws IOException {
+        final File file = new File(new File(res, type), name);
+        file.getParentFile().mkdirs();
+        assertTrue(file.createNewFile());
+        return "res" + File.separator + type + File.separator + name;
+    }
+
 }
@@ -0,0 +1,84 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.ApkFixture.APP_APK;
+import static com.sdklite.aapt.ApkFixture.DATA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ApkBatchAnalyzerTest {
+
+    @Test
+    public void analyzeApkInBatchShouldBeOk() {
+        final List<ApkBatchAnalyzer.Summary> summaries = new ArrayList<ApkBatchAnalyzer.Summary>();
+        final ApkBatchAnalyzer analyzer = new ApkBatchAnalyzer(2, 1);
+
+        try {
+            assertEquals(3, analyzer.analyze(Arrays.asList(APP_APK, new File(DATA, "missing.apk"), APP_APK), new ApkBatchAnalyzer.Listener() {
+                @Override
+                public void onSummary(final ApkBatchAnalyzer.Summary summary) {
+                    summaries.add(summary);
+                }
+            }));
+        } finally {
+            analyzer.close();
+        }
+
+        assertEquals(ApkBatchAnalyzer.Stage.READ, summaries.get(1).getFailedStage());
+
+        for (final ApkBatchAnalyzer.Summary summary : Arrays.asList(summaries.get(0), summaries.get(2))) {
+            assertNull(summary.getError());
+            assertNotNull(summary.getPackageName());
+            assertTrue(summary.getResourceCount() > 0);
+            assertTrue(summary.getClassCount() > 0);
+        }
+
+        assertEquals(3, analyzer.getMetrics().get(0).getCount());
+        assertEquals(1, analyzer.getMetrics().get(0).getErrors());
+        assertEquals(2, analyzer.getMetrics().get(3).getCount());
+        assertTrue(ApkBatchAnalyzer.list(DATA).contains(APP_APK));
+    }
+
+    @Test
+    public void analyzeApkWithBackPressureShouldBeOk() {
+        final int capacity = 2;
+        final List<File> apks = Collections.nCopies(capacity * 4, APP_APK);
+        final List<ApkBatchAnalyzer.Summary> summaries = new ArrayList<ApkBatchAnalyzer.Summary>();
+        final ApkBatchAnalyzer analyzer = new ApkBatchAnalyzer(2, capacity);
+
+        try {
+            assertEquals(apks.size(), analyzer.analyze(apks, new ApkBatchAnalyzer.Listener() {
+                @Override
+                public void onSummary(final ApkBatchAnalyzer.Summary summary) {
+                    // no more than capacity APK files have been read ahead of the delivered ones
+                    assertTrue(analyzer.getMetrics().get(0).getCount() <= summaries.size() + capacity);
+                    summaries.add(summary);
+                }
+            }));
+        } finally {
+            analyzer.close();
+        }
+
+        assertEquals(apks.size(), summaries.size());
+
+        for (final ApkBatchAnalyzer.Summary summary : summaries) {
+            assertNull(summary.getError());
+            assertEquals(summaries.get(0).getClassCount(), summary.getClassCount());
+        }
+
+        assertEquals(apks.size(), analyzer.getMetrics().get(0).getCount());
+        assertEquals(0, analyzer.getMetrics().get(0).getErrors());
+        assertTrue(analyzer.getBlockedNanos() > 0);
+        assertTrue(analyzer.getBlockedNanos() <= analyzer.getElapsedNanos());
+    }
+
+}
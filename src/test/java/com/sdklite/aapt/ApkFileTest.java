@@ -4,23 +4,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import org.junit.After;
-import org.junit.Before;
 import org.junit.Test;
 
 import com.android.dex.Dex;
 
-public class ApkFileTest {
-
-    private ApkFile apk;
-
-    @Before
-    public void setup() throws IOException {
-        this.apk = new ApkFile("src" + File.separator + "test" + File.separator + "data" + File.separator + "app.apk");
-    }
+public class ApkFileTest extends ApkFixture {
 
     @Test
     public void getAndroidManifestShouldBeOk() throws IOException {
@@ -57,9 +51,22 @@ public class ApkFileTest {
         assertTrue(classes.iterator().hasNext());
     }
 
-    @After
-    public void teardown() throws IOException {
-        this.apk.close();
+    @Test
+    public void getClassesConcurrentlyShouldBeOk() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final List<String> expected = new ArrayList<String>();
+            for (final String name : this.apk.classes()) {
+                expected.add(name);
+            }
+
+            assertEquals(expected, this.apk.classes(executor));
+            assertEquals(expected.size(), this.apk.getClassIndex(executor).size());
+            assertEquals(Integer.valueOf(0), this.apk.getClassIndex(executor).get(expected.get(0)));
+        } finally {
+            executor.shutdown();
+        }
     }
-    
+
 }
@@ -0,0 +1,48 @@
+package com.sdklite.aapt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * The shared fixture of the tests against the bundled {@code app.apk}
+ *
+ * @author johnsonlee
+ *
+ */
+public abstract class ApkFixture {
+
+    static final File DATA = new File("src" + File.separator + "test" + File.separator + "data");
+
+    static final File APP_APK = new File(DATA, "app.apk");
+
+    static final File ANDROID_MANIFEST_XML = new File(DATA, "AndroidManifest.xml");
+
+    static final File R_TXT = new File(DATA, "R.txt");
+
+    protected ApkFile apk;
+
+    @Before
+    public void setup() throws IOException {
+        this.apk = new ApkFile(APP_APK);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        this.apk.close();
+    }
+
+    static byte[] toByteArray(final Chunk chunk) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (final ChunkOutputStream cos = new ChunkOutputStream(out)) {
+            cos.write(chunk);
+        }
+
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.ApkFixture.toByteArray;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class AssetGeneratorTest {
+
+    @Test
+    public void generateApkShouldBeOk() throws IOException {
+        final AssetGenerator generator = new AssetGenerator(1).setPackageCount(2).setTypeCount(14).setEntryCount(32).setConfigCount(3).setStyleCount(8);
+        final File file = File.createTempFile("synthetic", ".apk");
+
+        try {
+            final ResourceTable table = generator.writeApk(file);
+            final byte[] data = toByteArray(table);
+            assertEquals(table.getSize(), data.length);
+
+            final ApkFile apk = new ApkFile(file);
+            try {
+                final ResourceTable arsc = apk.getResourceTable();
+                assertEquals(2, arsc.getPackages().length);
+                assertEquals(8, arsc.getStringPool().getStyleCount());
+                assertEquals(ByteBuffer.wrap(data), ByteBuffer.wrap(toByteArray(arsc)));
+                assertEquals(0x7e01001f, arsc.getResourceId("com.example.synthetic1", "attr", "attr_31"));
+                assertEquals("manifest", apk.getAndroidManifest().getDocumentElement().getName());
+                assertEquals(14 * 32, generator.newSymbols(arsc).entries().size()); // keyed by type/name
+            } finally {
+                apk.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ChunkCacheTest extends ApkFixture {
+
+    @Test
+    public void cacheChunkByContentShouldBeOk() throws IOException {
+        final ChunkCache cache = new ChunkCache(8L << 20);
+        final ApkFile copy = new ApkFile(APP_APK);
+
+        try {
+            assertSame(cache.getResourceTable(this.apk), cache.getResourceTable(copy));
+            assertSame(cache.getAndroidManifest(this.apk), cache.getAndroidManifest(copy));
+        } finally {
+            copy.close();
+        }
+
+        final File xml = ANDROID_MANIFEST_XML;
+        assertSame(cache.getXml(xml), cache.getXml(xml));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+
+        final ChunkCache small = new ChunkCache(this.apk.getEntry(Aapt.RESOURCES_ARSC).getSize() * ChunkCache.FOOTPRINT_RATIO);
+        final ResourceTable table = small.getResourceTable(this.apk);
+        small.getAndroidManifest(this.apk);
+        assertEquals(1, small.getEvictionCount());
+        assertTrue(table != small.getResourceTable(this.apk));
+        assertEquals(0, small.getHitCount());
+    }
+
+    @Test
+    public void cachedXmlShouldBeFrozen() throws IOException, InterruptedException, ExecutionException {
+        final Xml xml = new ChunkCache(8L << 20).getXml(ANDROID_MANIFEST_XML);
+        final int expected = new ChunkParser().<Xml> parse(ANDROID_MANIFEST_XML).getDocumentElement().getChildren().size();
+        final Xml.Element manifest = xml.getDocumentElement();
+        final Xml.Attribute versionCode = manifest.getAttributeById(0x0101021b);
+
+        assertTrue(xml.isFrozen());
+
+        try {
+            manifest.removeAttribute(versionCode);
+            fail("frozen XML should not be modified");
+        } catch (final UnsupportedOperationException e) {
+        }
+
+        try {
+            manifest.attributes().remove();
+            fail("frozen XML should not be modified");
+        } catch (final UnsupportedOperationException e) {
+        }
+
+        try {
+            versionCode.getTypedValue();
+            fail("the typed value of frozen XML should not be exposed");
+        } catch (final UnsupportedOperationException e) {
+        }
+
+        assertEquals(ValueType.INT_DEC, versionCode.getDataType());
+        assertTrue(0 != versionCode.getData());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return xml.getDocumentElement().getChildren().size();
+                    }
+                }));
+            }
+
+            for (final Future<Integer> future : futures) {
+                assertEquals(expected, future.get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void remapCachedXmlShouldBeRejected() throws IOException {
+        final Xml xml = new ChunkCache(8L << 20).getAndroidManifest(this.apk);
+        final byte[] expected = toByteArray(this.apk.getAndroidManifest());
+        final ResourceIdRemapper remapper = new ResourceIdRemapper(new int[] { 0x0101021b, 0x7f060001 }, new int[] { 0x0101021c, 0x7f160001 });
+
+        try {
+            remapper.remap(xml);
+            fail("frozen XML should not be remapped");
+        } catch (final UnsupportedOperationException e) {
+        }
+
+        assertArrayEquals(expected, toByteArray(xml));
+        assertEquals(0x7f060001, xml.getElementsByName("application").get(0).getAttributeById(0x01010001).getData());
+    }
+
+    @Test
+    public void cachedResourceTableShouldBeFrozen() throws IOException {
+        final File synthetic = File.createTempFile("synthetic", ".apk");
+
+        try {
+            new AssetGenerator(7).setConfigCount(2).writeApk(synthetic);
+
+            final ApkFile apk = new ApkFile(synthetic);
+            try {
+                final ResourceTable table = new ChunkCache(8L << 20).getResourceTable(apk);
+                final ResourceTable copy = apk.getResourceTable();
+                final byte[] expected = toByteArray(copy);
+                final int style = Internal.makeId(0x7f, 3, 1);
+                final int string = Internal.makeId(0x7f, 2, 0);
+
+                assertTrue(table.isFrozen());
+
+                try {
+                    new ResourceIdRemapper(new int[] { string }, new int[] { string + 1 }).remap(table);
+                    fail("frozen resource table should not be remapped");
+                } catch (final UnsupportedOperationException e) {
+                }
+
+                try {
+                    table.purge(new Symbols());
+                    fail("frozen resource table should not be purged");
+                } catch (final UnsupportedOperationException e) {
+                }
+
+                try {
+                    table.getStringPool().purge(0);
+                    fail("string pool of frozen resource table should not be purged");
+                } catch (final UnsupportedOperationException e) {
+                }
+
+                final ResourceTable.Type type = table.getPackage().specs.get(1).getConfigs().get(0);
+                try {
+                    type.getEntries().clear();
+                    fail("frozen resource table should not be modified");
+                } catch (final UnsupportedOperationException e) {
+                }
+
+                try {
+                    ((ResourceTable.ValueEntry) type.getEntryAt(0)).getValue();
+                    fail("the value of frozen resource table should not be exposed");
+                } catch (final UnsupportedOperationException e) {
+                }
+
+                assertArrayEquals(expected, toByteArray(table));
+
+                final ResourceResolver resolver = new ResourceResolver(table);
+                final ResourceResolver expectedResolver = new ResourceResolver(copy);
+                assertEquals(expectedResolver.resolve(string, expectedResolver.newConfig("")).data, resolver.resolve(string, resolver.newConfig("")).data);
+                assertArrayEquals(new StyleFlattener(expectedResolver).flatten(style, expectedResolver.newConfig("")).getAttributes(), new StyleFlattener(resolver).flatten(style, resolver.newConfig("")).getAttributes());
+
+                final StringWriter dumped = new StringWriter();
+                final StringWriter expectedDump = new StringWriter();
+                new ResourceTableDumper().dump(table, dumped);
+                new ResourceTableDumper().dump(copy, expectedDump);
+                assertEquals(expectedDump.toString(), dumped.toString());
+            } finally {
+                apk.close();
+            }
+        } finally {
+            synthetic.delete();
+        }
+    }
+
+}
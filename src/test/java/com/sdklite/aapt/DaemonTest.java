@@ -0,0 +1,251 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DaemonTest extends ApkFixture {
+
+    @Test
+    public void daemonShouldBeOk() throws IOException {
+        final String path = APP_APK.getPath();
+        final ResourceTable table = this.apk.getResourceTable();
+        final int id = 0x7f040000;
+        final ResourceName name = table.getResourceName(id);
+        final String requests = "ping\n"
+                + String.format("name 0x%08x %s\n", id, path)
+                + String.format("id %s/%s %s\n", name.typeName, name.name, path)
+                + "dump unknown " + path + "\n"
+                + "stats\n";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Daemon daemon = new Daemon(1, 1);
+
+        try {
+            daemon.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out);
+        } finally {
+            daemon.close();
+        }
+
+        assertEquals("OK\npong\n.\n"
+                + "OK\n" + name + "\n.\n"
+                + String.format("OK\n0x%08x\n.\n", id)
+                + "ERROR Unknown dump type: unknown\n.\n"
+                + "OK\ncached 1\nhits 1\nmisses 1\n.\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void dumpShouldBeOk() throws IOException {
+        final Daemon daemon = new Daemon(2, 2);
+
+        try {
+            final List<String> responses = serve(daemon,
+                    "dump resources " + APP_APK.getPath(),
+                    "dump strings " + APP_APK.getPath(),
+                    "dump xml " + ANDROID_MANIFEST_XML.getPath());
+
+            assertEquals(3, responses.size());
+            assertTrue(responses.get(0).startsWith("OK\n"));
+            assertTrue(responses.get(0).contains("activity_horizontal_margin"));
+            assertTrue(responses.get(1).startsWith("OK\n"));
+            assertTrue(responses.get(1).contains("String pool of"));
+            assertTrue(responses.get(2).startsWith("OK\n"));
+            assertTrue(responses.get(2).contains("<manifest"));
+        } finally {
+            daemon.close();
+        }
+    }
+
+    @Test
+    public void respondInOrderOfRequestsShouldBeOk() throws IOException {
+        final ResourceName name = this.apk.getResourceTable().getResourceName(0x7f040000);
+        final List<String> requests = new ArrayList<String>();
+
+        // more requests than the in-flight limit, the slow and fast requests are interleaved
+        for (int i = 0; i < 4 * 4 * Daemon.DEFAULT_PENDING_PER_THREAD; i++) {
+            switch (i % 4) {
+            case 0:
+                requests.add("dump resources " + APP_APK.getPath());
+                break;
+            case 1:
+                requests.add("ping");
+                break;
+            case 2:
+                requests.add(String.format("name 0x%08x %s", 0x7f040000 + i, APP_APK.getPath()));
+                break;
+            default:
+                requests.add(String.format("id %s/%s %s", name.typeName, name.name, APP_APK.getPath()));
+                break;
+            }
+        }
+
+        final String[] lines = requests.toArray(new String[requests.size()]);
+        final Daemon sequential = new Daemon(1, 1);
+        final Daemon concurrent = new Daemon(4, 1);
+
+        try {
+            final List<String> expected = serve(sequential, lines);
+            assertEquals(lines.length, expected.size());
+            assertEquals(expected, serve(concurrent, lines));
+        } finally {
+            sequential.close();
+            concurrent.close();
+        }
+    }
+
+    @Test
+    public void reparseModifiedFileShouldBeOk() throws IOException {
+        final File arsc = File.createTempFile("daemon", ".arsc");
+        final Daemon daemon = new Daemon(1, 1);
+
+        try {
+            new AssetGenerator(1).writeResourceTable(arsc);
+            final List<String> before = serve(daemon, "dump strings " + arsc, "dump strings " + arsc);
+            assertEquals(before.get(0), before.get(1));
+
+            final long length = arsc.length();
+            final long lastModified = arsc.lastModified();
+            new AssetGenerator(2).setStringCount(7).writeResourceTable(arsc);
+            assertNotEquals(length, arsc.length());
+            assertTrue(arsc.setLastModified(lastModified));
+
+            final List<String> after = serve(daemon, "dump strings " + arsc, "stats");
+            assertNotEquals(before.get(0), after.get(0));
+            assertEquals("OK\ncached 1\nhits 1\nmisses 2\n.\n", after.get(1));
+
+            assertTrue(arsc.setLastModified(lastModified + 2000));
+            assertEquals("OK\ncached 1\nhits 1\nmisses 3\n.\n", serve(daemon, "dump strings " + arsc, "stats").get(1));
+        } finally {
+            daemon.close();
+            arsc.delete();
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedShouldBeOk() throws IOException {
+        final File arsc = File.createTempFile("daemon", ".arsc");
+        final Daemon one = new Daemon(1, 1);
+        final Daemon two = new Daemon(1, 2);
+
+        try {
+            new AssetGenerator(1).writeResourceTable(arsc);
+
+            final String[] requests = {
+                "dump strings " + APP_APK,
+                "dump strings " + arsc,
+                "dump strings " + APP_APK,
+                "stats"
+            };
+
+            assertEquals("OK\ncached 1\nhits 0\nmisses 3\n.\n", serve(one, requests).get(3));
+            assertEquals("OK\ncached 2\nhits 1\nmisses 2\n.\n", serve(two, requests).get(3));
+        } finally {
+            one.close();
+            two.close();
+            arsc.delete();
+        }
+    }
+
+    @Test
+    public void listenShouldBeOk() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Daemon daemon = new Daemon(1, 1, 1);
+        final Thread listener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.listen(server);
+                } catch (final IOException e) {
+                    throw new AaptException(e);
+                }
+            }
+        });
+        listener.start();
+
+        try (final Socket first = new Socket(server.getInetAddress(), server.getLocalPort())) {
+            final BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+            final OutputStream out = first.getOutputStream();
+
+            out.write("ping\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(Arrays.asList("OK", "pong", "."), readResponse(in));
+
+            // the first connection is still being served
+            try (final Socket second = new Socket(server.getInetAddress(), server.getLocalPort())) {
+                final BufferedReader rejected = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals(Arrays.asList("ERROR Too many connections", "."), readResponse(rejected));
+            }
+
+            out.write("shutdown\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(Arrays.asList("OK", "."), readResponse(in));
+        } finally {
+            listener.join(10000);
+            daemon.close();
+        }
+
+        assertFalse(listener.isAlive());
+        assertTrue(server.isClosed());
+    }
+
+    /**
+     * Serves the specified request lines and returns the framed responses
+     */
+    private static List<String> serve(final Daemon daemon, final String... requests) throws IOException {
+        final StringBuilder input = new StringBuilder();
+        for (final String request : requests) {
+            input.append(request).append('\n');
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        daemon.serve(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), out);
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8));
+        final List<String> responses = new ArrayList<String>();
+
+        for (List<String> lines; !(lines = readResponse(reader)).isEmpty();) {
+            final StringBuilder response = new StringBuilder();
+            for (final String line : lines) {
+                response.append(line).append('\n');
+            }
+            responses.add(response.toString());
+        }
+
+        return responses;
+    }
+
+    /**
+     * Reads the lines of a response until the {@code .} line, or returns an
+     * empty list at the end of input
+     */
+    private static List<String> readResponse(final BufferedReader reader) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+
+        for (String line; null != (line = reader.readLine());) {
+            lines.add(line);
+            if (".".equals(line)) {
+                break;
+            }
+        }
+
+        return lines;
+    }
+
+}
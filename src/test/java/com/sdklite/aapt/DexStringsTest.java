@@ -0,0 +1,78 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.android.dex.Dex;
+import com.android.dex.Mutf8;
+
+public class DexStringsTest extends ApkFixture {
+
+    /**
+     * The strings covering the 1, 2 and 3 byte encodings, embedded NULs which
+     * are encoded as 2 bytes, and the supplementary characters which are
+     * encoded as surrogate pairs
+     */
+    private static final List<String> STRINGS = Arrays.asList(
+            "", "\u0000", "\u0000\u0000", "a", "a\u0000", "a\u0000b", "ab", "b",
+            "\u007f", "\u0080", "\u07ff", "\u0800", "\ud7ff", "\ue000", "\uffff",
+            "\ud83d\ude00", "a\ud83d\ude00", "a\ud83d\ude01", "\ud800\udc00", "\udbff\udfff");
+
+    @Test
+    public void compareMutf8ShouldBeOk() throws IOException {
+        for (final String encoded : STRINGS) {
+            final byte[] bytes = Mutf8.encode(encoded);
+            final ByteBuffer data = ByteBuffer.allocate(bytes.length + 2);
+            data.put((byte) 0x7f).put(bytes).put((byte) 0); // offset 1 and zero terminated
+
+            for (final String s : STRINGS) {
+                assertEquals(encoded + " vs " + s, Integer.signum(encoded.compareTo(s)), Integer.signum(Mutf8.compare(data, 1, s)));
+            }
+        }
+    }
+
+    @Test
+    public void findStringIndexShouldBeOk() throws IOException {
+        for (final Dex dex : this.apk.dexes()) {
+            final List<String> strings = dex.strings();
+
+            for (int i = 0, n = strings.size(); i < n; i++) {
+                assertEquals(i, dex.findStringIndex(strings.get(i)));
+            }
+
+            for (final String s : STRINGS) {
+                assertEquals(s, Collections.binarySearch(strings, s), dex.findStringIndex(s));
+            }
+
+            for (final String s : Arrays.asList("Landroid/app/Activity;\u0000", "Ljava/lang/Object;\ud83d\ude00", "zzz\uffff")) {
+                assertTrue(dex.findStringIndex(s) < 0);
+                assertEquals(s, Collections.binarySearch(strings, s), dex.findStringIndex(s));
+            }
+        }
+    }
+
+    @Test
+    public void findTypeIndexShouldBeOk() throws IOException {
+        for (final Dex dex : this.apk.dexes()) {
+            final List<String> types = dex.typeNames();
+
+            for (int i = 0, n = types.size(); i < n; i++) {
+                assertEquals(i, dex.findTypeIndex(types.get(i)));
+            }
+
+            for (final String s : Arrays.asList("", "L", "Lnot/Found;", "Ljava/lang/Object;\u0000", "L\ud83d\ude00;", "[\uffff")) {
+                assertTrue(dex.findTypeIndex(s) < 0);
+                assertEquals(s, Collections.binarySearch(types, s), dex.findTypeIndex(s));
+            }
+        }
+    }
+
+}
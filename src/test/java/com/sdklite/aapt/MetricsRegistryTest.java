@@ -0,0 +1,143 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class MetricsRegistryTest extends ApkFixture {
+
+    @Test
+    public void instrumentationShouldBeOk() throws IOException {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        Instrumentations.set(metrics);
+
+        try {
+            final ResourceTable table = this.apk.getResourceTable();
+            final byte[] data = toByteArray(table);
+            final MetricsRegistry.Metric types = metrics.getMetric(Instrumentation.Phase.PARSE, ChunkType.TABLE_TYPE);
+
+            assertTrue(types.getCount() > 0);
+            assertTrue(types.getNanos() > 0);
+            assertEquals(types.getCount(), metrics.getMetric(Instrumentation.Phase.WRITE, ChunkType.TABLE_TYPE).getCount());
+            assertEquals(1, metrics.getMetric(Instrumentation.Phase.RECONCILE, ChunkType.TABLE).getCount());
+            assertEquals(data.length, metrics.getMetric(Instrumentation.Phase.WRITE, ChunkType.TABLE).getBytes());
+            assertNotNull(metrics.getMetric(Instrumentation.Phase.WRITE, table.getPackage().getName()));
+            assertEquals(1, metrics.getMetric(Instrumentation.Phase.WRITE, table.getPackage().getName()).getCount());
+            assertEquals(data.length, metrics.getMetric(Instrumentation.Phase.WRITE, table.getPackage().getName()).getBytes());
+            assertTrue(metrics.toString().contains("TABLE_TYPE_SPEC"));
+        } finally {
+            Instrumentations.set(null);
+        }
+    }
+
+    @Test
+    public void jfrInstrumentationShouldBeOk() throws Exception {
+        Assume.assumeTrue("JFR is not available", JfrInstrumentation.isAvailable());
+
+        final ResourceTable table = this.apk.getResourceTable();
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final Map<String, Long> probes = new TreeMap<String, Long>();
+
+        Instrumentations.set(metrics);
+
+        try {
+            toByteArray(table);
+        } finally {
+            Instrumentations.set(null);
+        }
+
+        for (final MetricsRegistry.Metric metric : metrics.getMetricsByType()) {
+            probes.put(metric.getPhase() + ":" + MetricsRegistry.nameOf(metric.getType()), metric.getCount());
+        }
+
+        // the JFR API is accessed reflectively since the tests are compiled against Java 7
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingClass.getConstructor().newInstance();
+        final JfrInstrumentation jfr = new JfrInstrumentation();
+        final File dump = File.createTempFile("aapt", ".jfr");
+        final Map<String, Long> events = new TreeMap<String, Long>();
+
+        try {
+            recordingClass.getMethod("enable", String.class).invoke(recording, JfrInstrumentation.EVENT_NAME);
+            recordingClass.getMethod("start").invoke(recording);
+            Instrumentations.set(jfr);
+
+            try {
+                toByteArray(table);
+            } finally {
+                Instrumentations.set(null);
+                recordingClass.getMethod("stop").invoke(recording);
+            }
+
+            recordingClass.getMethod("dump", Path.class).invoke(recording, dump.toPath());
+
+            final Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            final Method getEventType = recordedEvent.getMethod("getEventType");
+            final Method getString = recordedEvent.getMethod("getString", String.class);
+            final Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+
+            for (final Object event : (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, dump.toPath())) {
+                if (!JfrInstrumentation.EVENT_NAME.equals(getName.invoke(getEventType.invoke(event)))) {
+                    continue;
+                }
+
+                final String key = getString.invoke(event, "phase") + ":" + getString.invoke(event, "chunkType");
+                events.put(key, (events.containsKey(key) ? events.get(key) : 0L) + 1);
+            }
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            dump.delete();
+        }
+
+        // each probe is committed as an event
+        assertTrue(probes.size() > 0);
+        assertEquals(probes, events);
+    }
+
+    @Test
+    public void metricsBySourceShouldNotCountNestedChunks() throws IOException {
+        final byte[] data = toByteArray(this.apk.getResourceTable());
+        final File arsc = File.createTempFile("resources", ".arsc");
+        final File truncated = File.createTempFile("truncated", ".arsc");
+        final MetricsRegistry metrics = new MetricsRegistry();
+
+        Instrumentations.set(metrics);
+
+        try {
+            Files.write(arsc.toPath(), data);
+            Files.write(truncated.toPath(), Arrays.copyOf(data, data.length / 2));
+
+            try {
+                new ChunkParser().parse(truncated);
+                fail("truncated resource table should not be parsed");
+            } catch (final Exception e) {
+            }
+
+            new ChunkParser().parse(arsc);
+
+            final MetricsRegistry.Metric metric = metrics.getMetric(Instrumentation.Phase.PARSE, arsc.getPath());
+            assertEquals(1, metric.getCount());
+            assertEquals(data.length, metric.getBytes());
+            assertTrue(metrics.toString().contains(arsc.getPath() + " "));
+        } finally {
+            Instrumentations.set(null);
+            arsc.delete();
+            truncated.delete();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class ParallelChunkTraversalTest {
+
+    @Test
+    public void traverseResourceTableConcurrentlyShouldBeOk() {
+        final ResourceTable table = new AssetGenerator(1).setPackageCount(2).setConfigCount(3).newResourceTable();
+        final ParallelChunkTraversal.Reducer<ChunkCollector, List<String>> reducer = new ParallelChunkTraversal.Reducer<ChunkCollector, List<String>>() {
+            @Override
+            public ChunkCollector newVisitor() {
+                return new ChunkCollector();
+            }
+
+            @Override
+            public List<String> getResult(final ChunkCollector visitor) {
+                return visitor.chunks;
+            }
+
+            @Override
+            public List<String> reduce(final List<String> left, final List<String> right) {
+                left.addAll(right);
+                return left;
+            }
+        };
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            final List<String> expected = new ParallelChunkTraversal(pool, ParallelChunkTraversal.Granularity.PACKAGE, Integer.MAX_VALUE).traverse(table, reducer);
+            assertEquals(1 + 2 * 3 + 2 * 8 * 4, expected.size());
+
+            for (final ParallelChunkTraversal.Granularity granularity : ParallelChunkTraversal.Granularity.values()) {
+                assertEquals(expected, new ParallelChunkTraversal(pool, granularity, 1).traverse(table, reducer));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static final class ChunkCollector extends SimpleVisitor {
+
+        final List<String> chunks = new ArrayList<String>();
+
+        @Override
+        public void visit(final StringPool chunk) {
+            this.chunks.add("pool " + chunk.getStringCount());
+        }
+
+        @Override
+        public void visit(final ResourceTable.Package chunk) {
+            this.chunks.add("package " + chunk.getId());
+        }
+
+        @Override
+        public void visit(final ResourceTable.TypeSpec chunk) {
+            this.chunks.add("spec " + chunk.id);
+        }
+
+        @Override
+        public void visit(final ResourceTable.Type chunk) {
+            this.chunks.add("type " + chunk.id + " " + chunk.config);
+        }
+
+    }
+
+}
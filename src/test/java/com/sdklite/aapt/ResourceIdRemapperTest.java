@@ -0,0 +1,138 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ResourceIdRemapperTest extends ApkFixture {
+
+    @Test
+    public void remapResourceIdsShouldBeOk() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final File remapped = File.createTempFile("remapped", ".apk");
+        final File restored = File.createTempFile("restored", ".apk");
+
+        try {
+            final int[] oldIds = { 0x7f030000, 0x7f060001 };
+            final int[] newIds = { 0x7f130000, 0x7f160001 };
+
+            assertTrue(new ResourceIdRemapper(oldIds, newIds).remap(APP_APK, remapped, executor) > 0);
+
+            final ApkFile apk = new ApkFile(remapped);
+            try {
+                final Xml.Element application = apk.getAndroidManifest().getElementsByName("application").get(0);
+                assertEquals(0x7f160001, application.getAttributeById(0x01010001).getTypedValue().data);
+            } finally {
+                apk.close();
+            }
+
+            new ResourceIdRemapper(newIds, oldIds).remap(remapped, restored, executor);
+
+            final ApkFile copy = new ApkFile(restored);
+            try {
+                assertEquals(ByteBuffer.wrap(this.apk.getMainDex().getBytes()), ByteBuffer.wrap(copy.getMainDex().getBytes()));
+                assertEquals(ByteBuffer.wrap(toByteArray(this.apk.getAndroidManifest())), ByteBuffer.wrap(toByteArray(copy.getAndroidManifest())));
+            } finally {
+                copy.close();
+            }
+        } finally {
+            executor.shutdown();
+            remapped.delete();
+            restored.delete();
+        }
+    }
+
+    @Test
+    public void remapResourceTableShouldBeOk() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final File synthetic = File.createTempFile("synthetic", ".apk");
+        final File remapped = File.createTempFile("remapped", ".apk");
+
+        try {
+            // attr_0 is a style item name, style_0 is the parent of style_1,
+            // drawable_0 is referenced by drawable_1
+            final int[] oldIds = { 0x7f010000, 0x7f030000, 0x7f080000 };
+            final int[] newIds = { 0x7f110000, 0x7f130000, 0x7f180000 };
+            final List<Integer> references = getReferences(new AssetGenerator(1).setTypeCount(8).setEntryCount(8).writeApk(synthetic));
+
+            assertTrue(new ResourceIdRemapper(oldIds, newIds).remap(synthetic, remapped, executor) > 0);
+
+            final ApkFile apk = new ApkFile(remapped);
+            try {
+                final List<Integer> remappedReferences = getReferences(apk.getResourceTable());
+                assertEquals(references.size(), remappedReferences.size());
+
+                for (int i = 0; i < oldIds.length; i++) {
+                    assertTrue(Collections.frequency(references, oldIds[i]) > 0);
+                    assertEquals(0, Collections.frequency(remappedReferences, oldIds[i]));
+                    assertEquals(Collections.frequency(references, oldIds[i]), Collections.frequency(remappedReferences, newIds[i]));
+                }
+            } finally {
+                apk.close();
+            }
+        } finally {
+            executor.shutdown();
+            synthetic.delete();
+            remapped.delete();
+        }
+    }
+
+    @Test
+    public void remapXmlShouldInvalidateIndexes() throws IOException {
+        final Xml xml = this.apk.getAndroidManifest();
+        final Xml.Element manifest = xml.getDocumentElement();
+        assertNotNull(manifest.getAttributeById(0x0101021b));
+
+        assertTrue(new ResourceIdRemapper(new int[] { 0x0101021b }, new int[] { 0x0101ffff }).remap(xml) > 0);
+        assertNull(manifest.getAttributeById(0x0101021b));
+        assertNotNull(manifest.getAttributeById(0x0101ffff));
+    }
+
+    private static List<Integer> getReferences(final ResourceTable table) {
+        final List<Integer> references = new ArrayList<Integer>();
+
+        for (final ResourceTable.Package pkg : table.getPackages()) {
+            for (final ResourceTable.TypeSpec spec : pkg.specs) {
+                for (final ResourceTable.Type config : spec.configs) {
+                    for (final IndexedEntry<ResourceTable.Entry> entry : config.entries) {
+                        if (entry.value instanceof ResourceTable.ValueEntry) {
+                            addReference(references, ((ResourceTable.ValueEntry) entry.value).value);
+                        } else if (entry.value instanceof ResourceTable.MapEntry) {
+                            final ResourceTable.MapEntry me = (ResourceTable.MapEntry) entry.value;
+
+                            if (0 != me.parent) {
+                                references.add(me.parent);
+                            }
+
+                            for (final ResourceTable.Map map : me.values) {
+                                references.add(map.name);
+                                addReference(references, map.value);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return references;
+    }
+
+    private static void addReference(final List<Integer> references, final ResourceValue value) {
+        if (ValueType.REFERENCE == value.dataType || ValueType.ATTRIBUTE == value.dataType) {
+            references.add(value.data);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ResourceResolverTest extends ApkFixture {
+
+    @Test
+    public void resolveResourceShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ResourceResolver resolver = new ResourceResolver(table);
+        final StringPool pool = table.getStringPool();
+
+        assertEquals("res/mipmap-xhdpi-v4/ic_launcher.png", pool.getStringAt(resolver.resolve(0x7f020000, resolver.newConfig("xhdpi-v21")).data));
+        assertEquals("res/mipmap-xxhdpi-v4/ic_launcher.png", pool.getStringAt(resolver.resolve(0x7f020000, resolver.newConfig("400dpi-v21")).data));
+        assertEquals("res/mipmap-mdpi-v4/ic_launcher.png", pool.getStringAt(resolver.resolve(0x7f020000, resolver.newConfig("v21")).data));
+        assertNull(resolver.resolve(0x7f020000, resolver.newConfig("")));
+        assertTrue(resolver.resolve(0x7f040000, resolver.newConfig("w900dp-v21")).data != resolver.resolve(0x7f040000, resolver.newConfig("v21")).data);
+    }
+
+    @Test
+    public void evictRankingsShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ResourceResolver unbounded = new ResourceResolver(table, Integer.MAX_VALUE);
+        final ResourceResolver bounded = new ResourceResolver(table, 1);
+        final String[] qualifiers = { "xhdpi-v21", "400dpi-v21", "v21", "w900dp-v21", "ldpi-v4", "xhdpi-v21", "v21" };
+
+        for (final String q : qualifiers) {
+            for (final int resId : new int[] { 0x7f020000, 0x7f040000 }) {
+                final ResourceValue expected = unbounded.resolve(resId, unbounded.newConfig(q));
+                final ResourceValue actual = bounded.resolve(resId, bounded.newConfig(q));
+                assertEquals(q, null != expected ? expected.data : -1, null != actual ? actual.data : -1);
+            }
+        }
+
+        // one ranking for each of the two type specs
+        assertEquals(2, bounded.size());
+        assertEquals(5 * 2, unbounded.size());
+    }
+
+    @Test(expected = AaptException.class)
+    public void resolveCircularReferenceShouldFail() throws IOException {
+        final ResourceResolver resolver = new ResourceResolver(this.apk.getResourceTable());
+        final ResourceTable.Config config = resolver.newConfig("v21");
+        final ResourceValue value = ((ResourceTable.ValueEntry) resolver.resolveEntry(0x7f040000, config)).getValue();
+        value.dataType = ValueType.REFERENCE;
+        value.data = 0x7f040000;
+
+        resolver.resolve(0x7f040000, config);
+    }
+
+}
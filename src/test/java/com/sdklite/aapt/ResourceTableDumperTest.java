@@ -0,0 +1,37 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ResourceTableDumperTest extends ApkFixture {
+
+    @Test
+    public void dumpResourceTableShouldBeOk() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (final ResourceTable table : new ResourceTable[] { this.apk.getResourceTable(), new AssetGenerator(1).setPackageCount(2).setConfigCount(3).newResourceTable() }) {
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                table.accept(new ResourceTableVisitor(expected, true));
+
+                final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                new ResourceTableDumper().dump(table, actual);
+                assertEquals(expected.toString(), actual.toString());
+
+                final StringWriter concurrent = new StringWriter();
+                new ResourceTableDumper().dump(table, concurrent, executor);
+                assertEquals(expected.toString(), concurrent.toString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ResourceTableExporterTest extends ApkFixture {
+
+    @Test
+    public void exportResourceTableShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        final ResourceTableExporter jsonExporter = new JsonLinesExporter(json);
+        final ResourceTableExporter binaryExporter = new BinaryRecordExporter(binary);
+
+        final long count = jsonExporter.export(table);
+        assertEquals(count, binaryExporter.export(table));
+        jsonExporter.close();
+        binaryExporter.close();
+
+        final String[] lines = new String(json.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(count, lines.length);
+        assertTrue(json.toString("UTF-8").contains("\"type\":\"string\",\"name\":\"app_name\",\"config\":\"\",\"dataType\":3,"));
+
+        final BinaryRecordExporter.Reader reader = new BinaryRecordExporter.Reader(new ByteArrayInputStream(binary.toByteArray()));
+        try {
+            int i = 0;
+            for (ResourceTableExporter.Record record; null != (record = reader.next()); i++) {
+                final String line = lines[i];
+                assertTrue(line, line.startsWith(String.format("{\"id\":\"0x%08x\"", record.getId())));
+                assertTrue(line, line.contains("\"config\":\"" + record.getConfig() + "\""));
+                assertTrue(line, line.contains("\"key\":") == record.isBagItem());
+            }
+            assertEquals(count, i);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void exportUnresolvedKeyNameShouldBeOk() throws IOException {
+        final ResourceTable table = new AssetGenerator(1).setStyleCount(1).newResourceTable();
+        final ResourceTable.MapEntry style = (ResourceTable.MapEntry) table.getEntry(0x7f030000);
+
+        // out of range entry, unknown type and unknown package
+        for (final int key : new int[] { 0x7f01ffff, 0x7f7f0000, 0x7e010000 }) {
+            final ResourceTable.Map map = new ResourceTable.Map();
+            map.name = key;
+            map.value.size = 8;
+            map.value.dataType = ValueType.INT_DEC;
+            style.addValue(map);
+        }
+
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        final ResourceTableExporter exporter = new JsonLinesExporter(json);
+        exporter.export(table);
+        exporter.close();
+
+        int unresolved = 0;
+
+        for (final String line : json.toString("UTF-8").split("\n")) {
+            if (line.contains("\"key\":\"0x7f010000\"")) {
+                assertTrue(line, line.contains("\"keyName\":\"com.example.synthetic:attr/attr_0\""));
+            } else if (line.contains("\"key\":\"0x7f01ffff\"") || line.contains("\"key\":\"0x7f7f0000\"") || line.contains("\"key\":\"0x7e010000\"")) {
+                assertTrue(line, !line.contains("\"keyName\""));
+                unresolved++;
+            }
+        }
+
+        assertEquals(3, unresolved);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ResourceTableSnapshotTest extends ApkFixture {
+
+    @Test
+    public void snapshotResourceTableShouldBeOk() throws Exception {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ResourceTableSnapshot snapshot = table.snapshot();
+        final int appName = snapshot.getResourceId(null, "string", "app_name");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        assertEquals(table.getResourceId(null, "string", "app_name"), appName);
+        assertEquals(table.getResourceName(0x7f040000).toString(), snapshot.getResourceName(0x7f040000).toString());
+        assertEquals("Test", snapshot.getEntry(appName, "").getValue().getString());
+        assertEquals(2, snapshot.getEntries(0x7f040000).size());
+
+        try {
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int count = 0;
+                        for (int j = 0; j < 1000; j++) {
+                            count += snapshot.getResourceId(null, "string", "app_name") == appName ? 1 : 0;
+                            count += null != snapshot.getEntry(0x7f040000, "w820dp-v13") ? 1 : 0;
+                        }
+                        return count;
+                    }
+                }));
+            }
+
+            for (final Future<Integer> future : futures) {
+                assertEquals(2000, future.get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final ResourceTableSnapshot edited = snapshot.edit().setString(appName, "", "Hello").setString(appName, "zh-rCN", "Hello").remove(0x7f040000, "w820dp-v13").build();
+        assertEquals("Hello", edited.getEntry(appName, "zh-rCN").getValue().getString());
+        assertEquals(snapshot.getStringCount() + 1, edited.getStringCount());
+        assertNull(edited.getEntry(0x7f040000, "w820dp-v13"));
+        assertEquals("Test", snapshot.getEntry(appName, "").getValue().getString());
+        assertNotNull(snapshot.getEntry(0x7f040000, "w820dp-v13"));
+        assertTrue(snapshot.getEntry(0x7f050000, "") == edited.getEntry(0x7f050000, ""));
+    }
+
+    @Test
+    public void materializeSnapshotShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        assertArrayEquals(toByteArray(table), toByteArray(table.snapshot().toResourceTable()));
+
+        final ResourceTable styled = new AssetGenerator(1).setConfigCount(3).setStyleCount(4).setSpanCount(2).newResourceTable();
+        final ResourceTableSnapshot snapshot = styled.snapshot();
+        assertEquals(4, snapshot.getStyleCount());
+        assertArrayEquals(toByteArray(styled), toByteArray(snapshot.toResourceTable()));
+
+        final int appName = table.getResourceId(null, "string", "app_name");
+        final ResourceTable.Config config = new ResourceResolver(table).newConfig("zh-rCN");
+        final ResourceTableSnapshot edited = table.snapshot().edit().setString(appName, config, "Hello").remove(0x7f040000, "w820dp-v13").build();
+        final File arsc = File.createTempFile("edited", ".arsc");
+
+        try {
+            try (final ChunkOutputStream out = new ChunkOutputStream(new FileOutputStream(arsc))) {
+                out.write(edited.toResourceTable());
+            }
+
+            final ResourceTable parsed = new ChunkParser().parse(arsc);
+            final ResourceResolver resolver = new ResourceResolver(parsed);
+            final ResourceValue value = resolver.resolve(appName, resolver.newConfig("zh-rCN"));
+            assertEquals("Hello", parsed.getStringPool().getStringAt(value.data));
+            assertEquals("Test", parsed.getStringPool().getStringAt(resolver.resolve(appName, resolver.newConfig("")).data));
+            assertEquals(1, parsed.snapshot().getEntries(0x7f040000).size());
+            assertEquals(table.getResourceName(0x7f040000).toString(), parsed.getResourceName(0x7f040000).toString());
+        } finally {
+            arsc.delete();
+        }
+    }
+
+}
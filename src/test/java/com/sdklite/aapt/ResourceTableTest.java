@@ -0,0 +1,26 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ResourceTableTest extends ApkFixture {
+
+    @Test
+    public void getResourceIdShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final String pkg = table.getPackage().getName();
+
+        assertEquals(0x7f060001, table.getResourceId(null, "string", "app_name"));
+        assertEquals(0x7f060001, table.getResourceId(new ResourceName(pkg, "string", "app_name")));
+        assertEquals(0, table.getResourceId(pkg, "string", "nothing"));
+        assertEquals(0, table.getResourceId("nothing", "string", "app_name"));
+        assertArrayEquals(new int[] { 0x7f040001, 0x7f040002, 0, 0x7f060000 }, table.getResourceIds(pkg,
+                new String[] { "dimen", "dimen", "dimen", "string" },
+                new String[] { "activity_vertical_margin", "fab_margin", "nothing", "action_settings" }));
+    }
+
+}
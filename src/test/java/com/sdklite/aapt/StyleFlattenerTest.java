@@ -0,0 +1,68 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class StyleFlattenerTest extends ApkFixture {
+
+    @Test
+    public void flattenStyleShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ResourceTable.Type dimens = getDefaultType(table, 4);
+        dimens.entries.set(0, new IndexedEntry<ResourceTable.Entry>(0, newStyle(0x7f040001, 0x01010002, 2, 0x01010001, 1)));
+        dimens.entries.set(1, new IndexedEntry<ResourceTable.Entry>(0, newStyle(0x01030005, 0x01010003, 3, 0x01010002, 4)));
+
+        final ResourceResolver resolver = new ResourceResolver(table);
+        final StyleFlattener flattener = new StyleFlattener(resolver, 1);
+        final StyleFlattener.Style style = flattener.flatten(0x7f040000, resolver.newConfig("v21"));
+
+        assertArrayEquals(new int[] { 0x01010001, 0x01010002, 0x01010003 }, style.getAttributes());
+        assertEquals(2, style.getValueDataAt(style.indexOf(0x01010002)));
+        assertEquals(3, style.getValueDataAt(style.indexOf(0x01010003)));
+        assertEquals(0x01030005, style.getUnresolvedParent());
+        assertEquals(1, flattener.size());
+        assertNull(flattener.flatten(0x7f040002, resolver.newConfig("v21")));
+    }
+
+    @Test(expected = AaptException.class)
+    public void flattenCircularStyleShouldFail() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final ResourceTable.Type dimens = getDefaultType(table, 4);
+        dimens.entries.set(0, new IndexedEntry<ResourceTable.Entry>(0, newStyle(0x7f040001)));
+        dimens.entries.set(1, new IndexedEntry<ResourceTable.Entry>(0, newStyle(0x7f040000)));
+
+        final ResourceResolver resolver = new ResourceResolver(table);
+        new StyleFlattener(resolver).flatten(0x7f040000, resolver.newConfig("v21"));
+    }
+
+    private static ResourceTable.Type getDefaultType(final ResourceTable table, final int typeId) {
+        for (final ResourceTable.TypeSpec spec : table.getPackage().specs) {
+            if (typeId == spec.id) {
+                return spec.configs.get(0);
+            }
+        }
+
+        return null;
+    }
+
+    private static ResourceTable.MapEntry newStyle(final int parent, final int... items) {
+        final ResourceTable.MapEntry style = new ResourceTable.MapEntry();
+        style.parent = parent;
+
+        for (int i = 0; i < items.length; i += 2) {
+            final ResourceTable.Map item = new ResourceTable.Map();
+            item.name = items[i];
+            item.value.dataType = ValueType.INT_DEC;
+            item.value.data = items[i + 1];
+            style.addValue(item);
+        }
+
+        return style;
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.ApkFixture.R_TXT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SymbolsTest {
+
+    @Test
+    public void binarySymbolsShouldBeRoundTrip() throws IOException {
+        final SymbolParser parser = new SymbolParser();
+        final Symbols text = parser.parse(R_TXT);
+        final File bin = File.createTempFile("symbols", ".bin");
+
+        try {
+            final SymbolOutputStream out = new SymbolOutputStream(new BufferedOutputStream(new FileOutputStream(bin)));
+            try {
+                out.write(text);
+            } finally {
+                out.close();
+            }
+
+            final Symbols binary = parser.parse(bin);
+            assertEquals(text.entries().size(), binary.entries().size());
+            assertTrue(text.diff(binary).isEmpty());
+            assertEquals(text.toString(), binary.toString());
+
+            final Iterator<Map.Entry<String, Symbols.Entry>> i = text.iterator();
+            final Iterator<Map.Entry<String, Symbols.Entry>> j = binary.iterator();
+            while (i.hasNext()) {
+                assertEquals(i.next().getValue().toString(), j.next().getValue().toString());
+            }
+
+            assertEquals(0x7f050000, binary.getEntry("string/app_name").getValue());
+            assertNull(binary.getEntry("string/missing"));
+
+            binary.remove("string/app_name");
+            assertNull(binary.getEntry("string/app_name"));
+            assertEquals(text.entries().size() - 1, binary.entries().size());
+        } finally {
+            bin.delete();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class XmlCompilerTest extends ApkFixture {
+
+    @Test
+    public void compileXmlShouldBeOk() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+        final XmlDecompiler decompiler = new XmlDecompiler(table);
+        final String manifest = decompiler.decompile(ByteBuffer.wrap(toByteArray(this.apk.getAndroidManifest())));
+        final Xml xml = new XmlCompiler(null, table).compile(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), "AndroidManifest.xml");
+        final byte[] data = toByteArray(xml);
+
+        assertEquals(xml.getSize(), data.length);
+        assertEquals(manifest, decompiler.decompile(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void compileAttributeWithoutNamespaceShouldBeOk() throws IOException {
+        final ResourceTable table = new AssetGenerator(1).setTypeCount(8).setEntryCount(8).newResourceTable();
+        final Map<String, Xml.Attribute> attrs = getAttributes(compile(table, "<LinearLayout style=\"@style/style_0\" count=\"8\" text=\"\\u0041\"/>"));
+
+        assertEquals(ValueType.REFERENCE, attrs.get("style").getTypedValue().dataType);
+        assertEquals(0x7f030000, attrs.get("style").getTypedValue().data);
+        assertEquals(ValueType.INT_DEC, attrs.get("count").getTypedValue().dataType);
+        assertEquals(8, attrs.get("count").getTypedValue().data);
+        assertEquals(ValueType.STRING, attrs.get("text").getTypedValue().dataType);
+        assertEquals("A", attrs.get("text").getValue());
+    }
+
+    @Test
+    public void compileBadUnicodeEscapeShouldFail() throws IOException {
+        final ResourceTable table = this.apk.getResourceTable();
+
+        for (final String value : new String[] { "\\uZZZZ", "\\u00" }) {
+            try {
+                compile(table, "<LinearLayout\n text=\"" + value + "\"/>");
+                fail("Bad unicode escape sequence should be rejected: " + value);
+            } catch (final AaptException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("2: Bad unicode escape sequence"));
+            }
+        }
+    }
+
+    private static Xml compile(final ResourceTable table, final String xml) throws IOException {
+        return new XmlCompiler(null, table).compile(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "layout.xml");
+    }
+
+    private static Map<String, Xml.Attribute> getAttributes(final Xml xml) {
+        final Map<String, Xml.Attribute> attrs = new HashMap<String, Xml.Attribute>();
+
+        for (final Iterator<Xml.Attribute> i = xml.getDocumentElement().attributes(); i.hasNext();) {
+            final Xml.Attribute attr = i.next();
+            attrs.put(attr.getName(), attr);
+        }
+
+        return attrs;
+    }
+
+}
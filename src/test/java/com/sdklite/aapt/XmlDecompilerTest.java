@@ -0,0 +1,44 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class XmlDecompilerTest extends ApkFixture {
+
+    @Test
+    public void decompileXmlShouldBeOk() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final Map<String, String> xmls = this.apk.decompileXml(new XmlDecompiler(this.apk.getResourceTable()), executor);
+            final String manifest = xmls.get("AndroidManifest.xml");
+
+            assertNotNull(manifest);
+            assertTrue(manifest.contains("android:label=\"@string/app_name\""));
+            assertTrue(manifest.contains("android:versionCode=\"1\""));
+            assertTrue(xmls.containsKey("res/layout/activity_main.xml"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void formatComplexValueShouldBeOk() {
+        final XmlDecompiler decompiler = new XmlDecompiler();
+
+        assertEquals("16dp", decompiler.format(0, ValueType.DIMENSION, 0x1001));
+        assertEquals("50%p", decompiler.format(0, ValueType.FRACTION, 0x40000031));
+        // unknown units fall back to the raw value
+        assertEquals("(0x05)0x100f", decompiler.format(0, ValueType.DIMENSION, 0x100f));
+        assertEquals("(0x06)0x40000032", decompiler.format(0, ValueType.FRACTION, 0x40000032));
+    }
+
+}
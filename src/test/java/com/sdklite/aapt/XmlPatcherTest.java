@@ -0,0 +1,80 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.ApkFixture.ANDROID_MANIFEST_XML;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+public class XmlPatcherTest {
+
+    @Test
+    public void patchXmlShouldBeOk() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(ANDROID_MANIFEST_XML.toPath()));
+        final List<XmlPatcher.Edit> pending = new XmlPatcher()
+                .set("manifest", "versionCode", ValueType.INT_DEC, 12345)
+                .set("manifest/application", 0x0101000f, ValueType.INT_BOOLEAN, 0)
+                .set("manifest/application", "nothing", ValueType.INT_BOOLEAN, 0)
+                .set("nothing", "versionCode", ValueType.INT_DEC, 0)
+                .apply(buffer);
+
+        assertEquals(2, pending.size());
+        assertEquals("nothing", pending.get(0).getAttributeName());
+        assertEquals("nothing", pending.get(1).getPath());
+
+        final XmlPullParser parser = new XmlPullParser(buffer);
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (XmlPullParser.START_TAG != event) {
+                continue;
+            }
+
+            if (1 == parser.getDepth()) {
+                assertEquals(12345, parser.getAttributeValueData(parser.getAttributeIndex("versionCode")));
+            } else if ("application".equals(parser.getName())) {
+                final int index = parser.getAttributeIndex(0x0101000f);
+                assertEquals(ValueType.INT_BOOLEAN, parser.getAttributeValueType(index));
+                assertEquals(0, parser.getAttributeValueData(index));
+            }
+        }
+    }
+
+    @Test
+    public void patchPartiallyMatchedXmlShouldBeOk() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(ANDROID_MANIFEST_XML.toPath()));
+        final List<XmlPatcher.Edit> pending = new XmlPatcher()
+                .set("manifest/*", "anyDensity", ValueType.INT_BOOLEAN, 0)
+                .apply(buffer);
+
+        assertEquals(0, pending.size());
+
+        final XmlPullParser parser = new XmlPullParser(buffer);
+        int patched = 0;
+        int skipped = 0;
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (XmlPullParser.START_TAG != event || 2 != parser.getDepth()) {
+                continue;
+            }
+
+            final int index = parser.getAttributeIndex("anyDensity");
+            if (index < 0) {
+                skipped++;
+                continue;
+            }
+
+            assertEquals(ValueType.INT_BOOLEAN, parser.getAttributeValueType(index));
+            assertEquals(0, parser.getAttributeValueData(index));
+            patched++;
+        }
+
+        assertEquals(1, patched);
+        assertTrue(skipped > 0);
+    }
+
+}
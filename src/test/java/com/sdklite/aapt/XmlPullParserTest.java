@@ -0,0 +1,97 @@
+package com.sdklite.aapt;
+
+import static com.sdklite.aapt.ApkFixture.ANDROID_MANIFEST_XML;
+import static com.sdklite.aapt.ApkFixture.APP_APK;
+import static com.sdklite.aapt.ApkFixture.toByteArray;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class XmlPullParserTest {
+
+    @Test
+    public void parseShouldBeConsistentWithXml() throws IOException {
+        final File file = ANDROID_MANIFEST_XML;
+        final List<String> names = new ArrayList<String>();
+        final XmlPullParser parser = XmlPullParser.open(file);
+
+        int maxDepth = 0;
+
+        for (int event; XmlPullParser.END_DOCUMENT != (event = parser.next());) {
+            if (XmlPullParser.START_TAG == event) {
+                names.add(parser.getName());
+                maxDepth = Math.max(maxDepth, parser.getDepth());
+
+                for (int i = 0, n = parser.getAttributeCount(); i < n; i++) {
+                    final int resId = parser.getAttributeResourceId(i);
+                    if (0 != resId) {
+                        assertEquals(i, parser.getAttributeIndex(resId));
+                    }
+                }
+            }
+        }
+
+        assertEquals(0, parser.getDepth());
+        assertEquals("manifest", names.get(0));
+        assertTrue(maxDepth > 1);
+
+        final AssetEditor editor = new AssetEditor(file);
+
+        try {
+            final Xml xml = editor.parseXml();
+            final List<String> expected = new ArrayList<String>();
+
+            for (final Xml.Node node : xml.chunks) {
+                if (ChunkType.XML_START_ELEMENT == node.getType()) {
+                    expected.add(((Xml.Element) node).getName());
+                }
+            }
+
+            assertEquals(expected, names);
+        } finally {
+            editor.close();
+        }
+    }
+
+    @Test
+    public void parseXmlShouldBeByteIdentical() throws IOException {
+        final ZipFile zip = new ZipFile(APP_APK);
+        final ApkFile apk = new ApkFile(APP_APK);
+        final File tmp = File.createTempFile("parsed", ".xml");
+        int count = 0;
+
+        try {
+            for (final Enumeration<? extends ZipEntry> i = zip.entries(); i.hasMoreElements();) {
+                final ZipEntry entry = i.nextElement();
+                if (!entry.getName().endsWith(".xml")) {
+                    continue;
+                }
+
+                final byte[] data = apk.read(entry);
+                Files.write(tmp.toPath(), data);
+
+                final Xml xml = new ChunkParser().parse(tmp);
+                assertEquals(entry.getName(), ByteBuffer.wrap(data), ByteBuffer.wrap(toByteArray(xml)));
+                count++;
+            }
+        } finally {
+            apk.close();
+            zip.close();
+            tmp.delete();
+        }
+
+        assertTrue(count > 0);
+    }
+
+}
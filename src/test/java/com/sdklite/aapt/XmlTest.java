@@ -0,0 +1,55 @@
+package com.sdklite.aapt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class XmlTest extends ApkFixture {
+
+    @Test
+    public void getElementsShouldBeIndexed() throws IOException {
+        final Xml xml = this.apk.getAndroidManifest();
+        final Xml.Element manifest = xml.getDocumentElement();
+        final List<Xml.Element> applications = xml.getElementsByName("application");
+
+        assertEquals(1, applications.size());
+        assertEquals(manifest, applications.get(0).getParent());
+        assertTrue(manifest.getChildren().contains(applications.get(0)));
+        assertNull(manifest.getParent());
+        assertTrue(xml.getElementsByName("nothing").isEmpty());
+    }
+
+    @Test
+    public void getAttributeByIdShouldBeOk() throws IOException {
+        final Xml.Element manifest = this.apk.getAndroidManifest().getDocumentElement();
+
+        for (final Iterator<Xml.Attribute> i = manifest.attributes(); i.hasNext();) {
+            final Xml.Attribute attr = i.next();
+            if (0 != attr.getResourceId()) {
+                assertEquals(attr, manifest.getAttributeById(attr.getResourceId()));
+            }
+        }
+
+        assertNull(manifest.getAttributeById(0x7f000000));
+    }
+
+    @Test
+    public void getAttributeByIdShouldFollowResourceMap() throws IOException {
+        final Xml xml = this.apk.getAndroidManifest();
+        final Xml.Element manifest = xml.getDocumentElement();
+        final Xml.Attribute versionCode = manifest.getAttributeById(0x0101021b);
+
+        xml.resources.ids.set(versionCode.name, 0x0101ffff);
+        xml.invalidate();
+
+        assertNull(manifest.getAttributeById(0x0101021b));
+        assertEquals(versionCode, manifest.getAttributeById(0x0101ffff));
+    }
+
+}